@@ -0,0 +1,126 @@
+package com.drfirst.bblt.session1.config;
+
+import com.drfirst.bblt.session1.model.PriorityClass;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Priority admission control for upstream model calls. Requests carry a priority class
+ * (X-Request-Priority header, else the endpoint default); waiting calls are dequeued by class weight,
+ * and when queue delay stays above target for an interval (CoDel-style) the lowest classes are shed.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "admission")
+public class AdmissionConfig {
+
+    private boolean enabled = true;
+    private int maxConcurrentCalls = 24;                       // upstream calls in flight, all models and classes
+    private PriorityClass defaultClass = PriorityClass.API;
+    private Map<PriorityClass, Integer> weights = new EnumMap<>(Map.of(
+            PriorityClass.INTERACTIVE, 6,
+            PriorityClass.API, 3,
+            PriorityClass.BATCH, 1));
+    private Map<String, PriorityClass> endpointDefaults = new LinkedHashMap<>(Map.of(
+            "/api/models/benchmark", PriorityClass.BATCH,
+            "/api/models/compare", PriorityClass.BATCH));  // path prefix -> class when no header is sent
+    private int maxQueueLength = 100;                          // per class
+    private Duration maxQueueTime = Duration.ofSeconds(5);     // also capped by the request deadline
+    private Duration targetQueueDelay = Duration.ofMillis(100); // CoDel target
+    private Duration interval = Duration.ofSeconds(1);         // delay above target this long sheds one more class
+
+    /**
+     * Default class of the endpoint with the longest matching path prefix
+     */
+    public PriorityClass defaultClassFor(String path) {
+        PriorityClass match = defaultClass;
+        int matchedLength = -1;
+        for (Map.Entry<String, PriorityClass> entry : endpointDefaults.entrySet()) {
+            if (path != null && path.startsWith(entry.getKey()) && entry.getKey().length() > matchedLength) {
+                match = entry.getValue();
+                matchedLength = entry.getKey().length();
+            }
+        }
+        return match;
+    }
+
+    public int weightOf(PriorityClass priority) {
+        return Math.max(1, weights.getOrDefault(priority, 1));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public PriorityClass getDefaultClass() {
+        return defaultClass;
+    }
+
+    public void setDefaultClass(PriorityClass defaultClass) {
+        this.defaultClass = defaultClass;
+    }
+
+    public Map<PriorityClass, Integer> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(Map<PriorityClass, Integer> weights) {
+        this.weights = weights;
+    }
+
+    public Map<String, PriorityClass> getEndpointDefaults() {
+        return endpointDefaults;
+    }
+
+    public void setEndpointDefaults(Map<String, PriorityClass> endpointDefaults) {
+        this.endpointDefaults = endpointDefaults;
+    }
+
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    public void setMaxQueueLength(int maxQueueLength) {
+        this.maxQueueLength = maxQueueLength;
+    }
+
+    public Duration getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    public void setMaxQueueTime(Duration maxQueueTime) {
+        this.maxQueueTime = maxQueueTime;
+    }
+
+    public Duration getTargetQueueDelay() {
+        return targetQueueDelay;
+    }
+
+    public void setTargetQueueDelay(Duration targetQueueDelay) {
+        this.targetQueueDelay = targetQueueDelay;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+}
@@ -0,0 +1,127 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Compliance audit log of every prompt and response. Request threads only hand records to a ring
+ * buffer; a single writer appends them to gzip-compressed JSONL segments in the directory.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "audit")
+public class AuditConfig {
+
+    public enum Overflow {
+        DROP,   // a full ring drops the record at once and counts it
+        BLOCK   // the request thread waits up to maxBlock for space, then drops
+    }
+
+    public enum Fsync {
+        NONE,      // the OS decides when segment data reaches the disk
+        INTERVAL,  // at most fsyncInterval of records can be lost
+        BATCH      // after every written batch
+    }
+
+    private boolean enabled = true;
+    private String directory = "data/audit";
+    private int ringSize = 8192;                                // rounded up to a power of two
+    private Overflow overflow = Overflow.DROP;
+    private Duration maxBlock = Duration.ofMillis(50);
+    private int batchSize = 512;                                // records per write and flush
+    private DataSize maxSegmentSize = DataSize.ofMegabytes(64); // compressed; then a new segment is started
+    private Duration maxSegmentAge = Duration.ofHours(1);
+    private int compressionLevel = 6;                           // 1 (fastest) to 9 (smallest)
+    private Fsync fsync = Fsync.INTERVAL;
+    private Duration fsyncInterval = Duration.ofSeconds(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    public void setRingSize(int ringSize) {
+        this.ringSize = ringSize;
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow;
+    }
+
+    public Duration getMaxBlock() {
+        return maxBlock;
+    }
+
+    public void setMaxBlock(Duration maxBlock) {
+        this.maxBlock = maxBlock;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public DataSize getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    public void setMaxSegmentSize(DataSize maxSegmentSize) {
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public Duration getMaxSegmentAge() {
+        return maxSegmentAge;
+    }
+
+    public void setMaxSegmentAge(Duration maxSegmentAge) {
+        this.maxSegmentAge = maxSegmentAge;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public Fsync getFsync() {
+        return fsync;
+    }
+
+    public void setFsync(Fsync fsync) {
+        this.fsync = fsync;
+    }
+
+    public Duration getFsyncInterval() {
+        return fsyncInterval;
+    }
+
+    public void setFsyncInterval(Duration fsyncInterval) {
+        this.fsyncInterval = fsyncInterval;
+    }
+}
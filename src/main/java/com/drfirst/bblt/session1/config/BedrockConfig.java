@@ -1,11 +1,14 @@
 package com.drfirst.bblt.session1.config;
 
+import com.drfirst.bblt.session1.service.SdkCallTracing;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 
 @Configuration
@@ -20,10 +23,28 @@ public class BedrockConfig {
     }
 
     @Bean
-    public BedrockRuntimeClient bedrockRuntimeClient(AwsCredentialsProvider credentialsProvider) {
+    public BedrockRuntimeClient bedrockRuntimeClient(AwsCredentialsProvider credentialsProvider, RetryConfig retryConfig,
+                                                     DeadlineConfig deadlineConfig, ObservationRegistry observationRegistry) {
+        // apiCallTimeout is a backstop; request deadlines are enforced per call
         return BedrockRuntimeClient.builder()
                 .region(Region.of(awsRegion))
                 .credentialsProvider(credentialsProvider)
+                .overrideConfiguration(override -> override
+                        .retryStrategy(retryConfig.sdkRetryStrategy())
+                        .apiCallTimeout(deadlineConfig.getMaxTimeout())
+                        .addExecutionInterceptor(new SdkCallTracing(observationRegistry)))
+                .build();
+    }
+
+    @Bean
+    public BedrockRuntimeAsyncClient bedrockRuntimeAsyncClient(AwsCredentialsProvider credentialsProvider, RetryConfig retryConfig,
+                                                               ObservationRegistry observationRegistry) {
+        return BedrockRuntimeAsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(credentialsProvider)
+                .overrideConfiguration(override -> override
+                        .retryStrategy(retryConfig.sdkRetryStrategy())
+                        .addExecutionInterceptor(new SdkCallTracing(observationRegistry)))
                 .build();
     }
 
@@ -0,0 +1,145 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * State shared between replicas. Circuit breaker state changes and failure counts are published
+ * through the selected backend, so a model failing on one node trips its breaker on all of them.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterConfig {
+
+    private boolean enabled = false;
+    private String nodeId;                                      // defaults to HOSTNAME, else a random id
+    private String backend = "file";                            // "file" or "multicast"
+    private Duration syncInterval = Duration.ofMillis(250);     // changes are batched and published at this pace
+    private Duration heartbeatInterval = Duration.ofSeconds(5); // full state republished so late joiners catch up
+    private Duration maxStaleness = Duration.ofSeconds(15);     // peer reports older than this are ignored
+    private FileBackend file = new FileBackend();
+    private MulticastBackend multicast = new MulticastBackend();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public void setBackend(String backend) {
+        this.backend = backend;
+    }
+
+    public Duration getSyncInterval() {
+        return syncInterval;
+    }
+
+    public void setSyncInterval(Duration syncInterval) {
+        this.syncInterval = syncInterval;
+    }
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Duration getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    public void setMaxStaleness(Duration maxStaleness) {
+        this.maxStaleness = maxStaleness;
+    }
+
+    public FileBackend getFile() {
+        return file;
+    }
+
+    public void setFile(FileBackend file) {
+        this.file = file;
+    }
+
+    public MulticastBackend getMulticast() {
+        return multicast;
+    }
+
+    public void setMulticast(MulticastBackend multicast) {
+        this.multicast = multicast;
+    }
+
+    /**
+     * Shared directory (e.g. a volume mounted by every replica on one host); each node rewrites its own file
+     */
+    public static class FileBackend {
+        private String directory = "data/cluster";
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * UDP multicast on the local network; no external service needed
+     */
+    public static class MulticastBackend {
+        private String group = "239.255.42.99";
+        private int port = 45678;
+        private int timeToLive = 1;          // hops; 1 keeps datagrams on the local subnet
+        private int maxQueuedUpdates = 10000; // received updates buffered between syncs
+
+        public String getGroup() {
+            return group;
+        }
+
+        public void setGroup(String group) {
+            this.group = group;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public int getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(int timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public int getMaxQueuedUpdates() {
+            return maxQueuedUpdates;
+        }
+
+        public void setMaxQueuedUpdates(int maxQueuedUpdates) {
+            this.maxQueuedUpdates = maxQueuedUpdates;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Server-side conversation memory configuration.
+ * Prompts are built from a sliding window of recent turns plus a running summary of older ones.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "conversation")
+public class ConversationConfig {
+
+    private int tokenBudget = 8000;             // history tokens per prompt, further capped by the model's context window
+    private double compactionThreshold = 0.75;  // summarize once unsummarized history exceeds this share of the budget
+    private int keepRecentTurns = 6;            // turns never folded into the summary
+    private String summaryModelId = "nova-pro";
+    private int summaryMaxTokens = 512;
+    private Duration sessionTtl = Duration.ofHours(2);
+    private int maxSessions = 10000;          // sessions kept on the heap; older ones reload from the store
+    private StoreProperties store = new StoreProperties();
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    public void setTokenBudget(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    public int getKeepRecentTurns() {
+        return keepRecentTurns;
+    }
+
+    public void setKeepRecentTurns(int keepRecentTurns) {
+        this.keepRecentTurns = keepRecentTurns;
+    }
+
+    public String getSummaryModelId() {
+        return summaryModelId;
+    }
+
+    public void setSummaryModelId(String summaryModelId) {
+        this.summaryModelId = summaryModelId;
+    }
+
+    public int getSummaryMaxTokens() {
+        return summaryMaxTokens;
+    }
+
+    public void setSummaryMaxTokens(int summaryMaxTokens) {
+        this.summaryMaxTokens = summaryMaxTokens;
+    }
+
+    public Duration getSessionTtl() {
+        return sessionTtl;
+    }
+
+    public void setSessionTtl(Duration sessionTtl) {
+        this.sessionTtl = sessionTtl;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public StoreProperties getStore() {
+        return store;
+    }
+
+    public void setStore(StoreProperties store) {
+        this.store = store;
+    }
+
+    /**
+     * Memory-mapped, append-only persistent store for conversation turns and summaries
+     */
+    public static class StoreProperties {
+        private boolean enabled = false;
+        private String directory = "data/conversations";
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private boolean syncOnAppend = false;       // force every append to disk instead of relying on the page cache
+        private int indexInitialCapacity = 4096;
+        private double compactionLiveRatio = 0.5;   // rewrite the oldest segment once less than this share is live
+        private Duration maintenanceInterval = Duration.ofMinutes(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public boolean isSyncOnAppend() {
+            return syncOnAppend;
+        }
+
+        public void setSyncOnAppend(boolean syncOnAppend) {
+            this.syncOnAppend = syncOnAppend;
+        }
+
+        public int getIndexInitialCapacity() {
+            return indexInitialCapacity;
+        }
+
+        public void setIndexInitialCapacity(int indexInitialCapacity) {
+            this.indexInitialCapacity = indexInitialCapacity;
+        }
+
+        public double getCompactionLiveRatio() {
+            return compactionLiveRatio;
+        }
+
+        public void setCompactionLiveRatio(double compactionLiveRatio) {
+            this.compactionLiveRatio = compactionLiveRatio;
+        }
+
+        public Duration getMaintenanceInterval() {
+            return maintenanceInterval;
+        }
+
+        public void setMaintenanceInterval(Duration maintenanceInterval) {
+            this.maintenanceInterval = maintenanceInterval;
+        }
+    }
+}
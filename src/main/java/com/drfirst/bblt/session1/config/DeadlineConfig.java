@@ -0,0 +1,88 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Request deadlines. A client can send its own timeout (X-Request-Timeout-Ms); otherwise each
+ * model gets a default derived from its observed latency percentile.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "deadline")
+public class DeadlineConfig {
+
+    private Duration minRemaining = Duration.ofMillis(250); // do not start upstream work with less than this left
+    private Duration defaultTimeout = Duration.ofSeconds(60); // until a model has minSamples latencies
+    private Duration minTimeout = Duration.ofSeconds(5);
+    private Duration maxTimeout = Duration.ofSeconds(120);  // also the SDK apiCallTimeout backstop
+    private double percentile = 0.99;
+    private double multiplier = 2.0;                        // adaptive timeout = percentile latency * multiplier
+    private int minSamples = 20;
+    private int windowSize = 256;                           // latencies kept per model
+
+    public Duration getMinRemaining() {
+        return minRemaining;
+    }
+
+    public void setMinRemaining(Duration minRemaining) {
+        this.minRemaining = minRemaining;
+    }
+
+    public Duration getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    public void setDefaultTimeout(Duration defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public Duration getMinTimeout() {
+        return minTimeout;
+    }
+
+    public void setMinTimeout(Duration minTimeout) {
+        this.minTimeout = minTimeout;
+    }
+
+    public Duration getMaxTimeout() {
+        return maxTimeout;
+    }
+
+    public void setMaxTimeout(Duration maxTimeout) {
+        this.maxTimeout = maxTimeout;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+}
@@ -0,0 +1,92 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fallback graph: the models to try when a model fails, per model. At request time the candidates are
+ * ranked by live latency and error rate and raced, each next one starting after the stagger.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "fallback")
+public class FallbackConfig {
+
+    private Map<String, List<String>> graph = new LinkedHashMap<>(Map.of(
+            "claude-4-opus", List.of("claude-3-7-sonnet", "nova-pro", "titan-express"),
+            "claude-3-7-sonnet", List.of("nova-pro", "titan-express"),
+            "nova-pro", List.of("titan-express", "claude-3-7-sonnet"),
+            "titan-express", List.of("claude-3-7-sonnet", "nova-pro"),
+            "gemini-2.5-flash", List.of("claude-3-7-sonnet", "nova-pro")));
+    private List<String> defaultCandidates = new ArrayList<>(List.of("claude-3-7-sonnet", "nova-pro", "titan-express")); // models not in the graph
+    private Duration stagger = Duration.ofSeconds(1);  // start the next candidate if none has answered by then
+    private int maxParallel = 2;                       // candidates in flight at once
+    private long errorPenaltyMs = 10000;               // ranking: EWMA latency + error rate * penalty
+    private long unknownLatencyMs = 5000;              // ranking estimate for a model not observed yet
+    private int minSamples = 3;                        // below this, observations are blended with the estimate
+
+    public List<String> candidatesFor(String modelId) {
+        return graph.getOrDefault(modelId, defaultCandidates);
+    }
+
+    public Map<String, List<String>> getGraph() {
+        return graph;
+    }
+
+    public void setGraph(Map<String, List<String>> graph) {
+        this.graph = graph;
+    }
+
+    public List<String> getDefaultCandidates() {
+        return defaultCandidates;
+    }
+
+    public void setDefaultCandidates(List<String> defaultCandidates) {
+        this.defaultCandidates = defaultCandidates;
+    }
+
+    public Duration getStagger() {
+        return stagger;
+    }
+
+    public void setStagger(Duration stagger) {
+        this.stagger = stagger;
+    }
+
+    public int getMaxParallel() {
+        return maxParallel;
+    }
+
+    public void setMaxParallel(int maxParallel) {
+        this.maxParallel = maxParallel;
+    }
+
+    public long getErrorPenaltyMs() {
+        return errorPenaltyMs;
+    }
+
+    public void setErrorPenaltyMs(long errorPenaltyMs) {
+        this.errorPenaltyMs = errorPenaltyMs;
+    }
+
+    public long getUnknownLatencyMs() {
+        return unknownLatencyMs;
+    }
+
+    public void setUnknownLatencyMs(long unknownLatencyMs) {
+        this.unknownLatencyMs = unknownLatencyMs;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+}
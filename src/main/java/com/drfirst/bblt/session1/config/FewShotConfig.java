@@ -0,0 +1,58 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Server-side few-shot example selection configuration
+ */
+@Configuration
+@ConfigurationProperties(prefix = "few-shot")
+public class FewShotConfig {
+
+    private int defaultMaxExamples = 3;
+    private int defaultTokenBudget = 1000;  // tokens spent on examples per prompt
+    private int signatureSize = 64;         // MinHash functions per example
+    private int shingleSize = 3;            // character n-gram length
+    private int initialCapacity = 1024;
+
+    public int getDefaultMaxExamples() {
+        return defaultMaxExamples;
+    }
+
+    public void setDefaultMaxExamples(int defaultMaxExamples) {
+        this.defaultMaxExamples = defaultMaxExamples;
+    }
+
+    public int getDefaultTokenBudget() {
+        return defaultTokenBudget;
+    }
+
+    public void setDefaultTokenBudget(int defaultTokenBudget) {
+        this.defaultTokenBudget = defaultTokenBudget;
+    }
+
+    public int getSignatureSize() {
+        return signatureSize;
+    }
+
+    public void setSignatureSize(int signatureSize) {
+        this.signatureSize = signatureSize;
+    }
+
+    public int getShingleSize() {
+        return shingleSize;
+    }
+
+    public void setShingleSize(int shingleSize) {
+        this.shingleSize = shingleSize;
+    }
+
+    public int getInitialCapacity() {
+        return initialCapacity;
+    }
+
+    public void setInitialCapacity(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+    }
+}
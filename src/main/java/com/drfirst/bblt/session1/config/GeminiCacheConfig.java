@@ -0,0 +1,88 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Vertex AI context caching configuration for Gemini.
+ * Large system prompts and document sets are uploaded once as cached content and referenced by name.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "gemini.context-cache")
+public class GeminiCacheConfig {
+
+    private boolean enabled = false;
+    private String baseUrl;                 // override for a local Vertex stand-in; defaults to the regional endpoint
+    private boolean useApplicationDefaultCredentials = true;
+    private Duration defaultTtl = Duration.ofHours(1);
+    private Duration expiryMargin = Duration.ofSeconds(30);
+    private int minCacheTokens = 4096;      // smaller prompts are cheaper to re-send than to cache
+    private int maxEntries = 100;
+    private double cachedInputDiscount = 0.75; // cached input tokens are billed at 25% of the normal rate
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public boolean isUseApplicationDefaultCredentials() {
+        return useApplicationDefaultCredentials;
+    }
+
+    public void setUseApplicationDefaultCredentials(boolean useApplicationDefaultCredentials) {
+        this.useApplicationDefaultCredentials = useApplicationDefaultCredentials;
+    }
+
+    public Duration getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    public void setDefaultTtl(Duration defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    public Duration getExpiryMargin() {
+        return expiryMargin;
+    }
+
+    public void setExpiryMargin(Duration expiryMargin) {
+        this.expiryMargin = expiryMargin;
+    }
+
+    public int getMinCacheTokens() {
+        return minCacheTokens;
+    }
+
+    public void setMinCacheTokens(int minCacheTokens) {
+        this.minCacheTokens = minCacheTokens;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public double getCachedInputDiscount() {
+        return cachedInputDiscount;
+    }
+
+    public void setCachedInputDiscount(double cachedInputDiscount) {
+        this.cachedInputDiscount = cachedInputDiscount;
+    }
+}
@@ -0,0 +1,124 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Background health probes: cheap synthetic requests to models whose breaker is open or that keep
+ * failing, so a recovered model is let back in without waiting out the breaker timeout.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "health-probe")
+public class HealthProbeConfig {
+
+    private boolean enabled = true;
+    private Duration tickInterval = Duration.ofSeconds(1);   // how often the prober looks for due probes
+    private Duration initialDelay = Duration.ofSeconds(5);   // first probe after a model becomes unhealthy
+    private double multiplier = 2.0;                         // spacing grows by this factor per failed probe
+    private Duration maxDelay = Duration.ofMinutes(2);       // spacing cap
+    private double jitter = 0.2;                             // +/- fraction, so models are not probed in lockstep
+    private int degradedFailures = 2;                        // consecutive failures that make a closed breaker worth probing
+    private String prompt = "ping";
+    private int maxTokens = 5;
+    private Duration timeout = Duration.ofSeconds(10);
+    private int maxProbesPerHour = 120;                      // across all models
+    private double maxSpendPerHour = 0.05;                   // USD, estimated up front from prompt and maxTokens
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getTickInterval() {
+        return tickInterval;
+    }
+
+    public void setTickInterval(Duration tickInterval) {
+        this.tickInterval = tickInterval;
+    }
+
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    public void setInitialDelay(Duration initialDelay) {
+        this.initialDelay = initialDelay;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public void setMaxDelay(Duration maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    public void setJitter(double jitter) {
+        this.jitter = jitter;
+    }
+
+    public int getDegradedFailures() {
+        return degradedFailures;
+    }
+
+    public void setDegradedFailures(int degradedFailures) {
+        this.degradedFailures = degradedFailures;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getMaxProbesPerHour() {
+        return maxProbesPerHour;
+    }
+
+    public void setMaxProbesPerHour(int maxProbesPerHour) {
+        this.maxProbesPerHour = maxProbesPerHour;
+    }
+
+    public double getMaxSpendPerHour() {
+        return maxSpendPerHour;
+    }
+
+    public void setMaxSpendPerHour(double maxSpendPerHour) {
+        this.maxSpendPerHour = maxSpendPerHour;
+    }
+}
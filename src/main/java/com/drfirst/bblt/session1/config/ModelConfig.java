@@ -4,6 +4,7 @@ import jakarta.annotation.PostConstruct;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,6 +44,9 @@ public class ModelConfig {
         claude4Opus.setContextWindow(200000);
         claude4Opus.setCostPer1kInputTokens(0.015);
         claude4Opus.setCostPer1kOutputTokens(0.075);
+        // Slowest model: a small compartment keeps its stalls from tying up threads other models need
+        claude4Opus.getBulkhead().setMaxConcurrentCalls(4);
+        claude4Opus.getBulkhead().setMaxWaitingCalls(8);
         models.put("claude-4-opus", claude4Opus);
 
 
@@ -82,6 +86,7 @@ public class ModelConfig {
         private int contextWindow = 100000;
         private boolean streamingSupported = true;
         private RateLimits rateLimits = new RateLimits();
+        private Bulkhead bulkhead = new Bulkhead();
 
         @Override
         public String toString() {
@@ -98,6 +103,7 @@ public class ModelConfig {
                     ", contextWindow=" + contextWindow +
                     ", streamingSupported=" + streamingSupported +
                     ", rateLimits=" + rateLimits +
+                    ", bulkhead=" + bulkhead +
                     '}';
         }
 
@@ -197,6 +203,14 @@ public class ModelConfig {
         public void setRateLimits(RateLimits rateLimits) {
             this.rateLimits = rateLimits;
         }
+
+        public Bulkhead getBulkhead() {
+            return bulkhead;
+        }
+
+        public void setBulkhead(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
     }
 
     public static class RateLimits {
@@ -227,4 +241,47 @@ public class ModelConfig {
                     '}';
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Per-model concurrency compartment: calls beyond maxConcurrentCalls wait in the model's own queue
+     * for at most maxWait, and are rejected straight away once maxWaitingCalls are already waiting.
+     */
+    public static class Bulkhead {
+        private int maxConcurrentCalls = 10;
+        private int maxWaitingCalls = 20;
+        private Duration maxWait = Duration.ofSeconds(2); // also capped by the request deadline
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public int getMaxWaitingCalls() {
+            return maxWaitingCalls;
+        }
+
+        public void setMaxWaitingCalls(int maxWaitingCalls) {
+            this.maxWaitingCalls = maxWaitingCalls;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        @Override
+        public String toString() {
+            return "Bulkhead{" +
+                    "maxConcurrentCalls=" + maxConcurrentCalls +
+                    ", maxWaitingCalls=" + maxWaitingCalls +
+                    ", maxWait=" + maxWait +
+                    '}';
+        }
+    }
+}
@@ -26,42 +26,42 @@ public class OpenApiConfig {
                         .version("1.0.0")
                         .description("""
                             # AI Models Comparison Demo
-                            
+
                             This API demonstrates integration with multiple AI providers using Spring AI framework
                             and direct SDK approaches. It showcases the differences between various AI models and
                             integration patterns.
-                            
+
                             ## Available Integrations
-                            
+
                             ### AWS Bedrock (via Spring AI)
                             - **Claude 3.7 Sonnet** - Enhanced reasoning model with improved accuracy
-                            - **Claude 4.0 Opus** - Most capable Anthropic model  
+                            - **Claude 4.0 Opus** - Most capable Anthropic model
                             - **Nova Pro** - Amazon's latest foundation model
                             - **Amazon Titan Express** - Amazon's foundation model
-                            
+
                             ### Google Vertex AI (via Spring AI)
                             - **Gemini 2.5 Flash** - Google's latest high-speed model with 2M context window
-                            
+
                             ### Direct AWS SDK
                             - **Raw Bedrock SDK calls** - Direct integration without Spring AI abstraction
                             - **Manual JSON payload construction** - Shows underlying API structure
                             - **Custom response parsing** - Demonstrates model-specific response handling
-                            
+
                             ## Key Features
-                            
+
                             - **Model Comparison** - Side-by-side comparison of different AI models
                             - **Prompt Engineering** - Advanced prompting techniques and templates
                             - **Streaming Support** - Real-time response streaming
                             - **Cost Analysis** - Token usage and cost estimation
                             - **Performance Metrics** - Response time and throughput analysis
-                            
+
                             ## Authentication Required
-                            
+
                             - **AWS Credentials** - Set `AWS_ACCESS_KEY_ID` and `AWS_SECRET_ACCESS_KEY` environment variables
                             - **Google Cloud** - Configure `GOOGLE_VERTEX_PROJECT` and service account credentials
-                            
+
                             ## Usage Tips
-                            
+
                             1. Start with the `/api/health` endpoint to verify the service is running
                             2. Use `/api/models/list` to see available models and their configurations
                             3. Try the examples endpoints (`/api/*/examples`) for sample requests
@@ -0,0 +1,55 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Live latency histograms per model and endpoint. Recordings are cut into slices of sliceInterval;
+ * a window reports the slices that ended within it, so figures lag by at most one slice.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "performance")
+public class PerformanceConfig {
+
+    private boolean enabled = true;
+    private Duration sliceInterval = Duration.ofSeconds(10);
+    private List<Duration> windows = new ArrayList<>(List.of(
+            Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(15)));
+    private int significantDigits = 2;  // 1% value precision; 3 is 0.1% at roughly 8x the memory
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getSliceInterval() {
+        return sliceInterval;
+    }
+
+    public void setSliceInterval(Duration sliceInterval) {
+        this.sliceInterval = sliceInterval;
+    }
+
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    public void setWindows(List<Duration> windows) {
+        this.windows = windows;
+    }
+
+    public int getSignificantDigits() {
+        return significantDigits;
+    }
+
+    public void setSignificantDigits(int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+}
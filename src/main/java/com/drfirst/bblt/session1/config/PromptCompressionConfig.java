@@ -0,0 +1,62 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Input compression applied to user messages before they are sent to a model.
+ * Steps run in the configured order and the pipeline stops as soon as the message fits the target.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "prompt-compression")
+public class PromptCompressionConfig {
+
+    private boolean enabled = false;
+    private int targetTokens = 8000;        // messages at or under this size are left untouched
+    private double charsPerToken = 4.0;
+    private List<String> steps = new ArrayList<>(List.of("strip-markup", "whitespace", "dedupe-lines", "truncate-middle"));
+    private double truncateHeadRatio = 0.6; // share of the kept text taken from the start of the message
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getTargetTokens() {
+        return targetTokens;
+    }
+
+    public void setTargetTokens(int targetTokens) {
+        this.targetTokens = targetTokens;
+    }
+
+    public double getCharsPerToken() {
+        return charsPerToken;
+    }
+
+    public void setCharsPerToken(double charsPerToken) {
+        this.charsPerToken = charsPerToken;
+    }
+
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    public void setSteps(List<String> steps) {
+        this.steps = steps;
+    }
+
+    public double getTruncateHeadRatio() {
+        return truncateHeadRatio;
+    }
+
+    public void setTruncateHeadRatio(double truncateHeadRatio) {
+        this.truncateHeadRatio = truncateHeadRatio;
+    }
+}
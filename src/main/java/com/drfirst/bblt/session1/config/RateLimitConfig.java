@@ -0,0 +1,117 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Account quota enforcement for the per-model {@link ModelConfig.RateLimits}. Each node leases batches
+ * of request and token permits from a coordinator and spends them locally. The coordinator is either
+ * embedded in this process (mode "embedded"), embedded and also served to other processes over a
+ * socket ("server"), or reached over that socket ("remote").
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitConfig {
+
+    private boolean enabled = true;
+    private String mode = "embedded";                      // embedded, server or remote
+    private String nodeId;                                 // defaults to HOSTNAME, else a random id
+    private double batchFraction = 0.1;                    // lease size as a share of the per-minute limit
+    private double lowWatermark = 0.25;                    // refill in the background below this share of a batch
+    private Duration leaseTtl = Duration.ofSeconds(10);    // unused permits go back to the coordinator after this
+    private Duration maxWait = Duration.ofMillis(500);     // how long a caller waits for a refill when the local lease is empty
+    private Duration maintenanceInterval = Duration.ofSeconds(1);
+    private String host = "127.0.0.1";                     // coordinator socket, for server and remote modes
+    private int port = 47800;
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public double getBatchFraction() {
+        return batchFraction;
+    }
+
+    public void setBatchFraction(double batchFraction) {
+        this.batchFraction = batchFraction;
+    }
+
+    public double getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public void setLowWatermark(double lowWatermark) {
+        this.lowWatermark = lowWatermark;
+    }
+
+    public Duration getLeaseTtl() {
+        return leaseTtl;
+    }
+
+    public void setLeaseTtl(Duration leaseTtl) {
+        this.leaseTtl = leaseTtl;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    public Duration getMaintenanceInterval() {
+        return maintenanceInterval;
+    }
+
+    public void setMaintenanceInterval(Duration maintenanceInterval) {
+        this.maintenanceInterval = maintenanceInterval;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+}
@@ -0,0 +1,82 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-region Bedrock routing configuration.
+ * When no regions are listed, the single region from spring.ai.bedrock.aws.region is used.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "bedrock.multi-region")
+public class RegionConfig {
+
+    private List<RegionProperties> regions = new ArrayList<>();
+    private double ewmaAlpha = 0.3;
+    private long errorPenaltyMs = 10000;
+    private int maxRegionAttempts = 2;
+
+    public List<RegionProperties> getRegions() {
+        return regions;
+    }
+
+    public void setRegions(List<RegionProperties> regions) {
+        this.regions = regions;
+    }
+
+    public double getEwmaAlpha() {
+        return ewmaAlpha;
+    }
+
+    public void setEwmaAlpha(double ewmaAlpha) {
+        this.ewmaAlpha = ewmaAlpha;
+    }
+
+    public long getErrorPenaltyMs() {
+        return errorPenaltyMs;
+    }
+
+    public void setErrorPenaltyMs(long errorPenaltyMs) {
+        this.errorPenaltyMs = errorPenaltyMs;
+    }
+
+    public int getMaxRegionAttempts() {
+        return maxRegionAttempts;
+    }
+
+    public void setMaxRegionAttempts(int maxRegionAttempts) {
+        this.maxRegionAttempts = maxRegionAttempts;
+    }
+
+    public static class RegionProperties {
+        private String name;
+        private String endpointOverride; // e.g. http://localhost:9001 for a local stub
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getEndpointOverride() {
+            return endpointOverride;
+        }
+
+        public void setEndpointOverride(String endpointOverride) {
+            this.endpointOverride = endpointOverride;
+        }
+
+        @Override
+        public String toString() {
+            return "RegionProperties{" +
+                    "name='" + name + '\'' +
+                    ", endpointOverride='" + endpointOverride + '\'' +
+                    '}';
+        }
+    }
+}
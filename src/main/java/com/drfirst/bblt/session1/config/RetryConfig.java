@@ -0,0 +1,109 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.retries.api.RetryStrategy;
+
+import java.time.Duration;
+
+/**
+ * Single retry policy for upstream model calls. Retries are capped per logical request
+ * (maxAttempts, shared by every layer) and by budgets that allow at most a ratio of recent
+ * requests to be retried, globally and per model.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "retry")
+public class RetryConfig {
+
+    private int maxAttempts = 3;                        // upstream calls per logical request, all layers together
+    private Duration baseDelay = Duration.ofMillis(250);
+    private Duration maxDelay = Duration.ofSeconds(8);
+    private Duration maxRetryAfter = Duration.ofSeconds(20); // a longer server hint means give up rather than wait
+    private double budgetRatio = 0.1;                   // global: retries per request over the window
+    private double modelBudgetRatio = 0.2;              // per model
+    private int minRetriesPerWindow = 10;               // so low traffic can still retry
+    private Duration budgetWindow = Duration.ofSeconds(10);
+    private int sdkMaxAttempts = 1;                     // 1 disables AWS SDK retries; the retry engine owns them
+
+    /**
+     * Retry strategy for the AWS SDK clients
+     */
+    public RetryStrategy sdkRetryStrategy() {
+        return sdkMaxAttempts <= 1
+                ? AwsRetryStrategy.doNotRetry()
+                : AwsRetryStrategy.standardRetryStrategy().toBuilder().maxAttempts(sdkMaxAttempts).build();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getBaseDelay() {
+        return baseDelay;
+    }
+
+    public void setBaseDelay(Duration baseDelay) {
+        this.baseDelay = baseDelay;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    public void setMaxDelay(Duration maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    public Duration getMaxRetryAfter() {
+        return maxRetryAfter;
+    }
+
+    public void setMaxRetryAfter(Duration maxRetryAfter) {
+        this.maxRetryAfter = maxRetryAfter;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    public void setBudgetRatio(double budgetRatio) {
+        this.budgetRatio = budgetRatio;
+    }
+
+    public double getModelBudgetRatio() {
+        return modelBudgetRatio;
+    }
+
+    public void setModelBudgetRatio(double modelBudgetRatio) {
+        this.modelBudgetRatio = modelBudgetRatio;
+    }
+
+    public int getMinRetriesPerWindow() {
+        return minRetriesPerWindow;
+    }
+
+    public void setMinRetriesPerWindow(int minRetriesPerWindow) {
+        this.minRetriesPerWindow = minRetriesPerWindow;
+    }
+
+    public Duration getBudgetWindow() {
+        return budgetWindow;
+    }
+
+    public void setBudgetWindow(Duration budgetWindow) {
+        this.budgetWindow = budgetWindow;
+    }
+
+    public int getSdkMaxAttempts() {
+        return sdkMaxAttempts;
+    }
+
+    public void setSdkMaxAttempts(int sdkMaxAttempts) {
+        this.sdkMaxAttempts = sdkMaxAttempts;
+    }
+}
@@ -0,0 +1,50 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * SLO-aware model routing configuration.
+ * Live statistics replace the configured estimates once a model has enough samples.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "model-routing")
+public class RoutingConfig {
+
+    private double ewmaAlpha = 0.2;
+    private int minSamples = 3;             // below this, latency is treated as unknown
+    private long errorPenaltyMs = 10000;    // added to expected latency per unit of error rate
+    private double charsPerToken = 4.0;     // prompt size estimate used for context window checks
+
+    public double getEwmaAlpha() {
+        return ewmaAlpha;
+    }
+
+    public void setEwmaAlpha(double ewmaAlpha) {
+        this.ewmaAlpha = ewmaAlpha;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public long getErrorPenaltyMs() {
+        return errorPenaltyMs;
+    }
+
+    public void setErrorPenaltyMs(long errorPenaltyMs) {
+        this.errorPenaltyMs = errorPenaltyMs;
+    }
+
+    public double getCharsPerToken() {
+        return charsPerToken;
+    }
+
+    public void setCharsPerToken(double charsPerToken) {
+        this.charsPerToken = charsPerToken;
+    }
+}
@@ -0,0 +1,43 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Streaming retry and failover. Only failures before the first token are retried;
+ * once content has been sent, errors are reported to the client instead.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "stream-failover")
+public class StreamFailoverConfig {
+
+    private Duration firstTokenTimeout = Duration.ofSeconds(15);
+    private int retriesPerModel = 1;    // extra attempts on the same model before moving on
+    private int maxAttempts = 4;        // across all models
+
+    public Duration getFirstTokenTimeout() {
+        return firstTokenTimeout;
+    }
+
+    public void setFirstTokenTimeout(Duration firstTokenTimeout) {
+        this.firstTokenTimeout = firstTokenTimeout;
+    }
+
+    public int getRetriesPerModel() {
+        return retriesPerModel;
+    }
+
+    public void setRetriesPerModel(int retriesPerModel) {
+        this.retriesPerModel = retriesPerModel;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+}
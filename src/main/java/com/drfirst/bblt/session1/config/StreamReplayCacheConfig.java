@@ -0,0 +1,85 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Record-and-replay cache for streamed generations. Only deterministic requests are cached,
+ * i.e. those with a temperature at or below maxTemperature.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "stream-replay-cache")
+public class StreamReplayCacheConfig {
+
+    public enum ReplayMode {
+        FAST,   // emit all recorded chunks at once
+        PACED   // keep the original gaps between chunks
+    }
+
+    private boolean enabled = true;
+    private double maxTemperature = 0.0;
+    private ReplayMode replayMode = ReplayMode.FAST;
+    private Duration ttl = Duration.ofMinutes(30);
+    private int maxEntries = 500;
+    private DataSize maxTotalBytes = DataSize.ofMegabytes(32);
+    private DataSize maxEntryBytes = DataSize.ofKilobytes(512); // longer generations are streamed but not recorded
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    public void setMaxTemperature(double maxTemperature) {
+        this.maxTemperature = maxTemperature;
+    }
+
+    public ReplayMode getReplayMode() {
+        return replayMode;
+    }
+
+    public void setReplayMode(ReplayMode replayMode) {
+        this.replayMode = replayMode;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public DataSize getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    public void setMaxTotalBytes(DataSize maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    public DataSize getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public void setMaxEntryBytes(DataSize maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+    }
+}
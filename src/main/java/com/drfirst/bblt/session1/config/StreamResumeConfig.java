@@ -0,0 +1,52 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Replay buffers that let a dropped SSE client resume a generation with Last-Event-ID
+ */
+@Configuration
+@ConfigurationProperties(prefix = "stream-resume")
+public class StreamResumeConfig {
+
+    private int maxChunksPerStream = 4096;                 // ring size; older chunks cannot be replayed
+    private Duration gracePeriod = Duration.ofSeconds(60); // how long a detached generation is kept (and kept running)
+    private DataSize maxTotalBytes = DataSize.ofMegabytes(64);
+    private Duration sweepInterval = Duration.ofSeconds(5);
+
+    public int getMaxChunksPerStream() {
+        return maxChunksPerStream;
+    }
+
+    public void setMaxChunksPerStream(int maxChunksPerStream) {
+        this.maxChunksPerStream = maxChunksPerStream;
+    }
+
+    public Duration getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public void setGracePeriod(Duration gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    public DataSize getMaxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    public void setMaxTotalBytes(DataSize maxTotalBytes) {
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+}
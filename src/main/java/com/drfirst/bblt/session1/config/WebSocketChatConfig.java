@@ -0,0 +1,69 @@
+package com.drfirst.bblt.session1.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Multiplexed WebSocket chat: many concurrent streams over one connection
+ */
+@Configuration
+@ConfigurationProperties(prefix = "websocket-chat")
+public class WebSocketChatConfig {
+
+    private boolean enabled = true;
+    private String path = "/ws/chat";
+    private int maxStreamsPerConnection = 16;
+    private int initialCredits = 32;            // chunks a stream may send before the client grants more
+    private int maxMessageBytes = 1024 * 1024;  // largest inbound frame, i.e. the largest prompt
+    private Duration idleTimeout = Duration.ofMinutes(5);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getMaxStreamsPerConnection() {
+        return maxStreamsPerConnection;
+    }
+
+    public void setMaxStreamsPerConnection(int maxStreamsPerConnection) {
+        this.maxStreamsPerConnection = maxStreamsPerConnection;
+    }
+
+    public int getInitialCredits() {
+        return initialCredits;
+    }
+
+    public void setInitialCredits(int initialCredits) {
+        this.initialCredits = initialCredits;
+    }
+
+    public int getMaxMessageBytes() {
+        return maxMessageBytes;
+    }
+
+    public void setMaxMessageBytes(int maxMessageBytes) {
+        this.maxMessageBytes = maxMessageBytes;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+}
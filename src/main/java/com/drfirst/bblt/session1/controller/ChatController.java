@@ -2,18 +2,44 @@ package com.drfirst.bblt.session1.controller;
 
 import com.drfirst.bblt.session1.model.ChatRequest;
 import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.RoutingSlo;
+import com.drfirst.bblt.session1.service.AdmissionController;
+import com.drfirst.bblt.session1.service.AuditLog;
 import com.drfirst.bblt.session1.service.BedrockService;
+import com.drfirst.bblt.session1.service.ClusterBreakerSync;
+import com.drfirst.bblt.session1.service.ClusterRateLimiter;
+import com.drfirst.bblt.session1.service.Deadline;
+import com.drfirst.bblt.session1.service.DeadlinePolicy;
+import com.drfirst.bblt.session1.service.FallbackGraph;
+import com.drfirst.bblt.session1.service.HealthProber;
+import com.drfirst.bblt.session1.service.ModelBulkheads;
+import com.drfirst.bblt.session1.service.ModelRouter;
+import com.drfirst.bblt.session1.service.PromptCompressor;
+import com.drfirst.bblt.session1.service.RequestPriority;
+import com.drfirst.bblt.session1.service.ResumableStreamService;
+import com.drfirst.bblt.session1.service.RetryEngine;
+import com.drfirst.bblt.session1.service.SpanExporter;
+import com.drfirst.bblt.session1.service.StreamReplayCache;
+import com.drfirst.bblt.session1.service.Traces;
+import io.micrometer.observation.ObservationRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import reactor.core.publisher.Flux;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.validation.Valid;
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 @RestController
@@ -23,9 +49,54 @@ public class ChatController {
 
     private static final Logger log = Logger.getLogger(ChatController.class.getName());
     private final BedrockService bedrockService;
+    private final ModelRouter modelRouter;
+    private final PromptCompressor promptCompressor;
+    private final ChatWebSocketEndpoint webSocketEndpoint;
+    private final ResumableStreamService resumableStreamService;
+    private final StreamReplayCache streamReplayCache;
+    private final RetryEngine retryEngine;
+    private final DeadlinePolicy deadlinePolicy;
+    private final ModelBulkheads bulkheads;
+    private final AdmissionController admissionController;
+    private final FallbackGraph fallbackGraph;
+    private final HealthProber healthProber;
+    private final ClusterBreakerSync clusterBreakerSync;
+    private final ClusterRateLimiter rateLimiter;
+    private final SpanExporter spanExporter;
+    private final ObservationRegistry observationRegistry;
+    private final AuditLog auditLog;
+    private final ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public ChatController(BedrockService bedrockService) {
+    public ChatController(BedrockService bedrockService, ModelRouter modelRouter, PromptCompressor promptCompressor,
+                          ChatWebSocketEndpoint webSocketEndpoint, ResumableStreamService resumableStreamService,
+                          StreamReplayCache streamReplayCache, RetryEngine retryEngine,
+                          DeadlinePolicy deadlinePolicy, ModelBulkheads bulkheads,
+                          AdmissionController admissionController, FallbackGraph fallbackGraph,
+                          HealthProber healthProber, ClusterBreakerSync clusterBreakerSync,
+                          ClusterRateLimiter rateLimiter, SpanExporter spanExporter,
+                          ObservationRegistry observationRegistry, AuditLog auditLog) {
         this.bedrockService = bedrockService;
+        this.modelRouter = modelRouter;
+        this.promptCompressor = promptCompressor;
+        this.webSocketEndpoint = webSocketEndpoint;
+        this.resumableStreamService = resumableStreamService;
+        this.streamReplayCache = streamReplayCache;
+        this.retryEngine = retryEngine;
+        this.deadlinePolicy = deadlinePolicy;
+        this.bulkheads = bulkheads;
+        this.admissionController = admissionController;
+        this.fallbackGraph = fallbackGraph;
+        this.healthProber = healthProber;
+        this.clusterBreakerSync = clusterBreakerSync;
+        this.rateLimiter = rateLimiter;
+        this.spanExporter = spanExporter;
+        this.observationRegistry = observationRegistry;
+        this.auditLog = auditLog;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        requestExecutor.shutdownNow();
     }
 
     @GetMapping("/health")
@@ -39,28 +110,167 @@ public class ChatController {
     }
 
     @PostMapping("/completion")
-    public ResponseEntity<ChatResponse> chatCompletion(@Valid @RequestBody ChatRequest request) {
+    @Operation(
+        summary = "Chat completion with a request deadline",
+        description = "X-Request-Timeout-Ms sets the overall deadline; without it the model's adaptive timeout applies. " +
+                     "Retries and fallbacks stop when the deadline leaves too little time, and a client disconnect " +
+                     "cancels the upstream call. Answers 504 when the deadline passes first."
+    )
+    public DeferredResult<ResponseEntity<ChatResponse>> chatCompletion(
+            @Valid @RequestBody ChatRequest request,
+            @RequestHeader(value = "X-Request-Timeout-Ms", required = false) Long timeoutMs) {
         log.info("Received chat completion request for model: " + request.modelId());
-        
+
+        Deadline deadline = deadlinePolicy.deadlineFor(request.modelId(), timeoutMs);
+        DeferredResult<ResponseEntity<ChatResponse>> result = new DeferredResult<>(Math.max(1, deadline.remaining().toMillis()));
+
+        // The model call runs on its own virtual thread so it can be interrupted on timeout or disconnect;
+        // its spans stay children of this request's server span
+        Supplier<ChatResponse> call = Traces.propagate(observationRegistry,
+                RequestPriority.propagate(() -> bedrockService.processChat(request)));
+        Future<?> work = requestExecutor.submit(() -> {
+            try {
+                ChatResponse response = deadline.call(call);
+                result.setResult(ResponseEntity.ok(response));
+            } catch (Exception e) {
+                log.severe("Error processing chat completion: " + e.getMessage());
+                result.setResult(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(ChatResponse.error("Internal server error: " + e.getMessage(), request.modelId())));
+            }
+        });
+
+        result.onTimeout(() -> {
+            work.cancel(true);
+            deadlinePolicy.recordExceeded();
+            log.warning("Chat completion for " + request.modelId() + " exceeded its deadline of " + deadline);
+            result.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(ChatResponse.error("Request deadline of " + deadline.getTimeout().toMillis() + "ms exceeded",
+                            request.modelId())));
+        });
+        result.onError(error -> {
+            // Client went away: stop the upstream work instead of finishing it for nobody
+            if (work.cancel(true)) {
+                deadlinePolicy.recordDisconnect();
+                log.info("Cancelled chat completion for " + request.modelId() + " after client disconnect");
+            }
+        });
+        return result;
+    }
+
+    @PostMapping("/completion/routed")
+    @Operation(summary = "Chat completion with SLO-aware model selection",
+            description = "Ignores modelId and picks the provider/model with the best observed latency and cost "
+                    + "that fits the prompt and the X-Max-Latency-Ms / X-Max-Cost objectives")
+    public ResponseEntity<ChatResponse> chatCompletionRouted(
+            @Valid @RequestBody ChatRequest request,
+            @RequestHeader(value = "X-Max-Latency-Ms", required = false) Long maxLatencyMs,
+            @RequestHeader(value = "X-Max-Cost", required = false) Double maxCost) {
+        log.info("Received routed chat completion request (maxLatencyMs=" + maxLatencyMs + ", maxCost=" + maxCost + ")");
+
         try {
-            ChatResponse response = bedrockService.processChat(request);
+            ChatResponse response = modelRouter.route(request, new RoutingSlo(maxLatencyMs, maxCost));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
-            log.severe("Error processing chat completion: " + e.getMessage());
+            log.severe("Error processing routed chat completion: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(ChatResponse.error("Internal server error: " + e.getMessage(), request.modelId()));
         }
     }
 
     @PostMapping(value = "/completion/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> chatCompletionStream(@Valid @RequestBody ChatRequest request) {
+    @Operation(
+        summary = "Stream a chat completion with resumable events",
+        description = "Each event id is 'generationId:seq'. Reconnecting with a Last-Event-ID header resumes " +
+                     "from the next chunk without invoking the model again, while the generation is still buffered. " +
+                     "Failures before the first token fail over to another model, announced by a 'metadata' event."
+    )
+    public Flux<ServerSentEvent<Object>> chatCompletionStream(
+            @Valid @RequestBody ChatRequest request,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        Flux<ResumableStreamService.StreamEvent> resumedEvents = resume(lastEventId);
+        if (resumedEvents != null) {
+            log.info("Resuming streaming chat completion from event " + lastEventId);
+            return toServerSentEvents(resumedEvents);
+        }
+
         log.info("Received streaming chat completion request for model: " + request.modelId());
-        
-        return bedrockService.processStreamChat(request)
-                .delayElements(Duration.ofMillis(50)) // Add small delay for better UX
-                .doOnNext(content -> log.fine("Streaming chunk: " + content))
-                .doOnError(error -> log.severe("Streaming error: " + error.getMessage()))
-                .onErrorReturn("Error occurred during streaming");
+        String generationId = resumableStreamService.start(bedrockService.processStreamChat(request));
+        return toServerSentEvents(resumableStreamService.attach(generationId, 0)
+                .delayElements(Duration.ofMillis(50))); // Add small delay for better UX
+    }
+
+    @GetMapping(value = "/completion/stream/{generationId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Resume a streamed chat completion",
+        description = "Replays buffered chunks after the Last-Event-ID sequence (all chunks if absent), then follows live. " +
+                     "Usable as an EventSource URL."
+    )
+    public Flux<ServerSentEvent<Object>> resumeChatCompletionStream(
+            @PathVariable String generationId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        Flux<ResumableStreamService.StreamEvent> resumedEvents = resume(lastEventId);
+        if (resumedEvents == null) {
+            resumedEvents = resumableStreamService.attach(generationId, 0);
+        }
+        if (resumedEvents == null) {
+            return Flux.just(ServerSentEvent.<Object>builder()
+                    .event(ResumableStreamService.StreamEvent.ERROR)
+                    .data(Map.of("message", "Unknown or expired stream: " + generationId))
+                    .build());
+        }
+        return toServerSentEvents(resumedEvents);
+    }
+
+    @GetMapping("/completion/stream-buffers/stats")
+    public ResponseEntity<Map<String, Object>> getStreamBufferStats() {
+        return ResponseEntity.ok(resumableStreamService.getStats());
+    }
+
+    @GetMapping("/completion/stream-cache/stats")
+    @Operation(
+        summary = "Get stream replay cache statistics",
+        description = "Returns recordings held, hits and misses, and upstream streaming time saved by replays"
+    )
+    public ResponseEntity<Map<String, Object>> getStreamCacheStats() {
+        return ResponseEntity.ok(streamReplayCache.getStats());
+    }
+
+    @DeleteMapping("/completion/stream-cache")
+    public ResponseEntity<Map<String, Object>> clearStreamCache() {
+        streamReplayCache.clear();
+        return ResponseEntity.ok(Map.of("cleared", true, "timestamp", System.currentTimeMillis()));
+    }
+
+    /**
+     * Buffered events after a "generationId:seq" event id, or null if it does not name a live generation
+     */
+    private Flux<ResumableStreamService.StreamEvent> resume(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        int separator = lastEventId.lastIndexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            long seq = Long.parseLong(lastEventId.substring(separator + 1).trim());
+            return resumableStreamService.attach(lastEventId.substring(0, separator).trim(), seq);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Flux<ServerSentEvent<Object>> toServerSentEvents(Flux<ResumableStreamService.StreamEvent> events) {
+        return events
+                .map(event -> ServerSentEvent.<Object>builder()
+                        .id(event.eventId())
+                        .event(event.type())
+                        .data(event.data())
+                        .build())
+                .doOnNext(event -> log.fine("Streaming event: " + event.id()))
+                .doOnError(error -> log.severe("Streaming error: " + error.getMessage()));
     }
 
     @PostMapping("/completion/detailed")
@@ -147,15 +357,135 @@ public class ChatController {
     @GetMapping("/circuit-breaker-status")
     @Operation(
         summary = "Get circuit breaker status for all models",
-        description = "Returns the current circuit breaker state and failure counts for all models"
+        description = "Returns the current circuit breaker state and failure counts for all models, " +
+                     "plus per-region routing health"
     )
     public ResponseEntity<Map<String, Object>> getCircuitBreakerStatus() {
         Map<String, String> status = bedrockService.getCircuitBreakerStatus();
         
         return ResponseEntity.ok(Map.of(
                 "circuitBreakerStatus", status,
+                "regionHealth", bedrockService.getRegionHealth(),
                 "timestamp", System.currentTimeMillis(),
                 "info", "CLOSED = Normal operation, OPEN = Failing fast, HALF_OPEN = Testing recovery"
         ));
     }
-}
\ No newline at end of file
+
+    @GetMapping("/deadlines/stats")
+    @Operation(
+        summary = "Get request deadline statistics",
+        description = "Returns client and adaptive deadlines, work not started for lack of time, deadline misses, " +
+                     "cancellations on disconnect and the adaptive timeout per model"
+    )
+    public ResponseEntity<Map<String, Object>> getDeadlineStats() {
+        return ResponseEntity.ok(deadlinePolicy.getStats());
+    }
+
+    @GetMapping("/bulkheads/stats")
+    @Operation(
+        summary = "Get per-model bulkhead statistics",
+        description = "Returns each model's concurrency limit, calls in flight and waiting, saturation, " +
+                     "average wait and calls rejected because the model's compartment was full"
+    )
+    public ResponseEntity<Map<String, Object>> getBulkheadStats() {
+        return ResponseEntity.ok(bulkheads.getStats());
+    }
+
+    @GetMapping("/fallback/graph")
+    @Operation(
+        summary = "Get the fallback graph",
+        description = "Returns each model's configured fallbacks and their current health ranking " +
+                     "(EWMA latency plus error-rate penalty, lower is tried first), with the race stagger"
+    )
+    public ResponseEntity<Map<String, Object>> getFallbackGraph() {
+        return ResponseEntity.ok(fallbackGraph.getStats());
+    }
+
+    @GetMapping("/probes/stats")
+    @Operation(
+        summary = "Get health probe statistics",
+        description = "Returns the models currently being probed with their probe schedule and last outcome, " +
+                     "the hourly probe budget and each model's most recent breaker time-to-recovery"
+    )
+    public ResponseEntity<Map<String, Object>> getProbeStats() {
+        return ResponseEntity.ok(healthProber.getStats());
+    }
+
+    @GetMapping("/cluster/breakers")
+    @Operation(
+        summary = "Get cluster-shared circuit breaker state",
+        description = "Returns this node's id and backend, the peers heard from within the staleness bound, " +
+                     "publish/merge counters and the merged circuit breaker state"
+    )
+    public ResponseEntity<Map<String, Object>> getClusterBreakers() {
+        return ResponseEntity.ok(clusterBreakerSync.getStats());
+    }
+
+    @GetMapping("/rate-limits/stats")
+    @Operation(
+        summary = "Get cluster rate limit statistics",
+        description = "Returns this node's leased request and token permits per model, leases, returned permits " +
+                     "and rejections, plus the coordinator's account buckets and per-node leases when it runs here"
+    )
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+
+    @GetMapping("/tracing/stats")
+    @Operation(
+        summary = "Get span export statistics",
+        description = "Returns the span exporter and its target, the sample ratio, and spans queued, exported, " +
+                     "dropped on a full queue or sampled out"
+    )
+    public ResponseEntity<Map<String, Object>> getTracingStats() {
+        return ResponseEntity.ok(spanExporter.getStats());
+    }
+
+    @GetMapping("/audit/stats")
+    @Operation(
+        summary = "Get audit log statistics",
+        description = "Returns records appended, queued, dropped on a full ring and written, the sampled append " +
+                     "cost on request threads in nanoseconds, and the current segment, rotations and fsyncs"
+    )
+    public ResponseEntity<Map<String, Object>> getAuditStats() {
+        return ResponseEntity.ok(auditLog.getStats());
+    }
+
+    @GetMapping("/admission/stats")
+    @Operation(
+        summary = "Get priority admission statistics",
+        description = "Returns upstream calls in flight, the classes currently shed under overload and, per priority " +
+                     "class, its weight, queue length, admitted calls, queue time and shed counts"
+    )
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        return ResponseEntity.ok(admissionController.getStats());
+    }
+
+    @GetMapping("/retry/stats")
+    @Operation(
+        summary = "Get retry statistics",
+        description = "Returns requests, upstream attempts, retries and retry amplification (attempts per request), " +
+                     "globally and per model, with retry budget usage and denied retries"
+    )
+    public ResponseEntity<Map<String, Object>> getRetryStats() {
+        return ResponseEntity.ok(retryEngine.getStats());
+    }
+
+    @GetMapping("/compression/stats")
+    @Operation(
+        summary = "Get prompt compression statistics",
+        description = "Returns the configured compression steps, characters saved per step and average compression time"
+    )
+    public ResponseEntity<Map<String, Object>> getCompressionStats() {
+        return ResponseEntity.ok(promptCompressor.getStats());
+    }
+
+    @GetMapping("/ws/stats")
+    @Operation(
+        summary = "Get multiplexed WebSocket chat statistics",
+        description = "Returns open connections and active, total and cancelled streams for the WebSocket chat endpoint"
+    )
+    public ResponseEntity<Map<String, Object>> getWebSocketStats() {
+        return ResponseEntity.ok(webSocketEndpoint.getStats());
+    }
+}
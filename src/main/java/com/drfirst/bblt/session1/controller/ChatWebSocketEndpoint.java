@@ -0,0 +1,358 @@
+package com.drfirst.bblt.session1.controller;
+
+import com.drfirst.bblt.session1.config.WebSocketChatConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import com.drfirst.bblt.session1.service.ModelProviderRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.ServletContextAware;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Multiplexed chat over one WebSocket connection. Each JSON frame carries a client-chosen streamId:
+ *
+ * <pre>
+ * client: {"type":"start","streamId":"a","request":{...ChatRequest...},"credits":32}
+ *         {"type":"request","streamId":"a","n":16}     grant more chunks
+ *         {"type":"cancel","streamId":"a"}
+ * server: started, chunk (seq, data), metadata (e.g. model_switch), usage, complete, cancelled, error
+ * </pre>
+ *
+ * Flow control is credit based per stream: a stream sends at most as many chunks as the client has
+ * granted, so a slow consumer of one stream does not hold back the others. Models are resolved through
+ * {@link ModelProviderRegistry}, so bare ids and "provider:modelId" reach Bedrock or Gemini.
+ * Registered on the servlet container's JSR-356 server container, no extra dependencies needed.
+ */
+@Component
+public class ChatWebSocketEndpoint extends Endpoint implements ServletContextAware, SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketEndpoint.class);
+
+    private final ModelProviderRegistry providerRegistry;
+    private final WebSocketChatConfig webSocketConfig;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private ServletContext servletContext;
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final AtomicLong totalStreams = new AtomicLong();
+    private final AtomicLong cancelledStreams = new AtomicLong();
+    private final AtomicLong chunksSent = new AtomicLong();
+
+    public ChatWebSocketEndpoint(ModelProviderRegistry providerRegistry,
+                                 WebSocketChatConfig webSocketConfig,
+                                 ObjectMapper objectMapper,
+                                 Validator validator) {
+        this.providerRegistry = providerRegistry;
+        this.webSocketConfig = webSocketConfig;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!webSocketConfig.isEnabled()) {
+            return;
+        }
+        Object container = servletContext != null ? servletContext.getAttribute(ServerContainer.class.getName()) : null;
+        if (!(container instanceof ServerContainer serverContainer)) {
+            logger.warn("No WebSocket server container available, {} not registered", webSocketConfig.getPath());
+            return;
+        }
+
+        // Hand this bean to the container instead of letting it instantiate the endpoint class
+        ServerEndpointConfig endpointConfig = ServerEndpointConfig.Builder
+                .create(ChatWebSocketEndpoint.class, webSocketConfig.getPath())
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> endpointClass) {
+                        return endpointClass.cast(ChatWebSocketEndpoint.this);
+                    }
+                })
+                .build();
+        try {
+            serverContainer.addEndpoint(endpointConfig);
+        } catch (DeploymentException e) {
+            throw new IllegalStateException("Could not register WebSocket chat endpoint at " + webSocketConfig.getPath(), e);
+        }
+        logger.info("WebSocket chat endpoint registered at {} (max {} streams per connection)",
+                webSocketConfig.getPath(), webSocketConfig.getMaxStreamsPerConnection());
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        session.setMaxTextMessageBufferSize(webSocketConfig.getMaxMessageBytes());
+        session.setMaxIdleTimeout(webSocketConfig.getIdleTimeout().toMillis());
+        Connection connection = new Connection(session);
+        session.getUserProperties().put(Connection.class.getName(), connection);
+        session.addMessageHandler(String.class, (MessageHandler.Whole<String>) connection::onMessage);
+        connections.incrementAndGet();
+        logger.debug("WebSocket chat connection {} opened", session.getId());
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        Object connection = session.getUserProperties().remove(Connection.class.getName());
+        if (connection instanceof Connection open) {
+            open.close();
+            connections.decrementAndGet();
+        }
+        logger.debug("WebSocket chat connection {} closed: {}", session.getId(), closeReason.getReasonPhrase());
+    }
+
+    @Override
+    public void onError(Session session, Throwable error) {
+        logger.warn("WebSocket chat connection {} error: {}", session.getId(), error.getMessage());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("path", webSocketConfig.getPath());
+        stats.put("connections", connections.get());
+        stats.put("activeStreams", activeStreams.get());
+        stats.put("totalStreams", totalStreams.get());
+        stats.put("cancelledStreams", cancelledStreams.get());
+        stats.put("chunksSent", chunksSent.get());
+        return stats;
+    }
+
+    private String frame(String type, String streamId, Object... keyValues) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", type);
+        frame.put("streamId", streamId);
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            frame.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        try {
+            return objectMapper.writeValueAsString(frame);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize WebSocket frame", e);
+        }
+    }
+
+    /**
+     * Per-connection state. Outbound frames go through one queue drained by a virtual thread, so
+     * streams completing on different threads never write to the session concurrently.
+     */
+    private final class Connection {
+
+        private final Session session;
+        private final Map<String, StreamSubscriber> streams = new ConcurrentHashMap<>();
+        private final BlockingQueue<String> outbound = new LinkedBlockingQueue<>();
+        private final Thread writer;
+        private volatile boolean closed;
+
+        Connection(Session session) {
+            this.session = session;
+            this.writer = Thread.ofVirtual().name("ws-chat-writer-" + session.getId()).start(this::writeLoop);
+        }
+
+        void onMessage(String text) {
+            JsonNode message;
+            try {
+                message = objectMapper.readTree(text);
+            } catch (JsonProcessingException e) {
+                send(frame("error", null, "message", "Invalid JSON: " + e.getOriginalMessage()));
+                return;
+            }
+
+            String type = message.path("type").asText("");
+            String streamId = message.path("streamId").asText("");
+            if (streamId.isBlank()) {
+                send(frame("error", null, "message", "streamId is required"));
+                return;
+            }
+            switch (type) {
+                case "start" -> start(streamId, message);
+                case "request" -> grant(streamId, message.path("n").asLong(0));
+                case "cancel" -> cancel(streamId);
+                default -> send(frame("error", streamId, "message", "Unknown message type: " + type));
+            }
+        }
+
+        private void start(String streamId, JsonNode message) {
+            if (streams.containsKey(streamId)) {
+                send(frame("error", streamId, "message", "Stream is already active"));
+                return;
+            }
+            if (streams.size() >= webSocketConfig.getMaxStreamsPerConnection()) {
+                send(frame("error", streamId, "message",
+                        "Too many concurrent streams (max " + webSocketConfig.getMaxStreamsPerConnection() + ")"));
+                return;
+            }
+
+            ChatRequest request;
+            try {
+                request = objectMapper.treeToValue(message.path("request"), ChatRequest.class);
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                send(frame("error", streamId, "message", "Invalid request: " + e.getMessage()));
+                return;
+            }
+            if (request == null) {
+                send(frame("error", streamId, "message", "request is required"));
+                return;
+            }
+            Set<ConstraintViolation<ChatRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                send(frame("error", streamId, "message", violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .collect(Collectors.joining("; "))));
+                return;
+            }
+
+            long credits = message.path("credits").asLong(webSocketConfig.getInitialCredits());
+            StreamSubscriber subscriber = new StreamSubscriber(streamId, Math.max(1, credits));
+            streams.put(streamId, subscriber);
+            totalStreams.incrementAndGet();
+            activeStreams.incrementAndGet();
+            send(frame("started", streamId, "modelId", request.modelId()));
+            providerRegistry.stream(request).subscribe(subscriber);
+        }
+
+        private void grant(String streamId, long n) {
+            StreamSubscriber subscriber = streams.get(streamId);
+            if (subscriber == null) {
+                send(frame("error", streamId, "message", "Unknown stream"));
+            } else if (n <= 0) {
+                send(frame("error", streamId, "message", "n must be positive"));
+            } else {
+                subscriber.request(n);
+            }
+        }
+
+        private void cancel(String streamId) {
+            StreamSubscriber subscriber = streams.get(streamId);
+            if (subscriber == null) {
+                send(frame("error", streamId, "message", "Unknown stream"));
+                return;
+            }
+            subscriber.dispose();
+            cancelledStreams.incrementAndGet();
+            send(frame("cancelled", streamId));
+        }
+
+        void send(String frame) {
+            if (!closed) {
+                outbound.offer(frame);
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            streams.values().forEach(StreamSubscriber::dispose);
+            writer.interrupt();
+        }
+
+        private void writeLoop() {
+            try {
+                while (!closed) {
+                    String frame = outbound.take();
+                    session.getBasicRemote().sendText(frame);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("WebSocket chat connection {} write failed: {}", session.getId(), e.getMessage());
+                close();
+            }
+        }
+
+        /**
+         * One model stream; demand comes from the client's credits, not from the model
+         */
+        private final class StreamSubscriber extends BaseSubscriber<ChatStreamEvent> {
+
+            private final String streamId;
+            private final long initialCredits;
+            private long seq;
+            private boolean failed;
+
+            StreamSubscriber(String streamId, long initialCredits) {
+                this.streamId = streamId;
+                this.initialCredits = initialCredits;
+            }
+
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(initialCredits);
+            }
+
+            @Override
+            protected void hookOnNext(ChatStreamEvent event) {
+                switch (event.type()) {
+                    case ChatStreamEvent.CONTENT -> {
+                        chunksSent.incrementAndGet();
+                        send(frame("chunk", streamId, "seq", seq++, "data", event.content()));
+                    }
+                    case ChatStreamEvent.METADATA -> send(frame("metadata", streamId, "data", event.metadata()));
+                    case ChatStreamEvent.USAGE -> send(frame("usage", streamId, "metrics", event.metrics()));
+                    case ChatStreamEvent.ERROR -> {
+                        failed = true;
+                        send(frame("error", streamId, "message", event.content(), "details", event.metadata()));
+                    }
+                    default -> logger.debug("Ignoring stream event of type {}", event.type());
+                }
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                // A typed error event already told the client how the stream ended
+                if (!failed) {
+                    send(frame("complete", streamId, "chunks", seq));
+                }
+            }
+
+            @Override
+            protected void hookOnError(Throwable error) {
+                logger.warn("WebSocket chat stream {} failed: {}", streamId, error.getMessage());
+                send(frame("error", streamId, "message", error.getMessage()));
+            }
+
+            @Override
+            protected void hookFinally(SignalType type) {
+                if (streams.remove(streamId, this)) {
+                    activeStreams.decrementAndGet();
+                }
+            }
+        }
+    }
+}
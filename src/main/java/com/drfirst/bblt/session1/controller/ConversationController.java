@@ -0,0 +1,77 @@
+package com.drfirst.bblt.session1.controller;
+
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.service.ConversationMemory;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Multi-turn chat with server-side history. Clients send only the new message;
+ * the session's recent turns and summary are added to the prompt by the server.
+ */
+@RestController
+@RequestMapping("/api/conversations")
+@Validated
+@Tag(name = "Conversations", description = "Session-based chat with token-bounded server-side memory")
+public class ConversationController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationController.class);
+
+    private final ConversationMemory conversationMemory;
+
+    public ConversationController(ConversationMemory conversationMemory) {
+        this.conversationMemory = conversationMemory;
+    }
+
+    @PostMapping("/{sessionId}/messages")
+    @Operation(
+        summary = "Send the next message of a conversation",
+        description = "Builds the prompt from the session's recent turns and running summary within the "
+                + "model's context window and the configured token budget"
+    )
+    public ResponseEntity<ChatResponse> sendMessage(@PathVariable String sessionId,
+                                                    @Valid @RequestBody ChatRequest request) {
+        logger.info("Conversation {} message for model {}", sessionId, request.modelId());
+
+        ChatResponse response = conversationMemory.chat(sessionId, request);
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    @GetMapping("/{sessionId}")
+    @Operation(summary = "Get a conversation's turns and memory statistics")
+    public ResponseEntity<Map<String, Object>> getConversation(@PathVariable String sessionId) {
+        Map<String, Object> stats = conversationMemory.getSessionStats(sessionId);
+        if (stats == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> result = new LinkedHashMap<>(stats);
+        result.put("history", conversationMemory.getTurns(sessionId));
+        return ResponseEntity.ok(result);
+    }
+
+    @DeleteMapping("/{sessionId}")
+    @Operation(summary = "Delete a conversation")
+    public ResponseEntity<Map<String, Object>> deleteConversation(@PathVariable String sessionId) {
+        boolean deleted = conversationMemory.deleteSession(sessionId);
+        return ResponseEntity.ok(Map.of("sessionId", sessionId, "deleted", deleted));
+    }
+
+    @GetMapping("/stats")
+    @Operation(summary = "Aggregate conversation memory and token savings")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(conversationMemory.getStats());
+    }
+}
@@ -2,6 +2,7 @@ package com.drfirst.bblt.session1.controller;
 
 import com.drfirst.bblt.session1.model.ChatRequest;
 import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
 import com.drfirst.bblt.session1.service.DirectBedrockService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -10,8 +11,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.Map;
 
@@ -66,6 +69,64 @@ public class DirectBedrockController {
     }
 
 
+    @PostMapping(value = "/claude/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Stream Claude output using direct AWS Bedrock SDK",
+        description = "Uses InvokeModelWithResponseStream and decodes event-stream chunks incrementally. " +
+                     "Emits 'content' events with text deltas and a final 'usage' event with token usage and cost."
+    )
+    public Flux<ServerSentEvent<Object>> streamClaudeDirect(
+            @Valid @RequestBody ChatRequest request) {
+
+        logger.info("Direct Claude SDK stream request: model={}, message length={}",
+                   request.modelId(), request.message().length());
+
+        if (!request.modelId().contains("claude")) {
+            return Flux.just(errorEvent("This endpoint only supports Claude models. Use model ID containing 'claude'."));
+        }
+
+        return toServerSentEvents(directBedrockService.streamClaudeDirect(request), "Claude");
+    }
+
+    @PostMapping(value = "/nova-pro/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Stream Nova Pro output using direct AWS Bedrock SDK",
+        description = "Uses InvokeModelWithResponseStream and decodes event-stream chunks incrementally. " +
+                     "Emits 'content' events with text deltas and a final 'usage' event with token usage and cost."
+    )
+    public Flux<ServerSentEvent<Object>> streamNovaProDirect(
+            @Valid @RequestBody ChatRequest request) {
+
+        logger.info("Direct Nova Pro SDK stream request: model={}, message length={}",
+                   request.modelId(), request.message().length());
+
+        if (!request.modelId().contains("nova")) {
+            return Flux.just(errorEvent("This endpoint only supports Nova models. Use model ID containing 'nova'."));
+        }
+
+        return toServerSentEvents(directBedrockService.streamNovaProDirect(request), "Nova Pro");
+    }
+
+    private Flux<ServerSentEvent<Object>> toServerSentEvents(Flux<ChatStreamEvent> events, String modelFamily) {
+        return events
+                .map(event -> ServerSentEvent.builder()
+                        .event(event.type())
+                        .data(ChatStreamEvent.USAGE.equals(event.type()) ? event.metrics() : event.content())
+                        .build())
+                .doOnComplete(() -> logger.info("Direct {} SDK stream completed", modelFamily))
+                .onErrorResume(error -> {
+                    logger.error("Direct {} SDK stream error: {}", modelFamily, error.getMessage());
+                    return Flux.just(errorEvent("Direct " + modelFamily + " SDK stream failed: " + error.getMessage()));
+                });
+    }
+
+    private ServerSentEvent<Object> errorEvent(String message) {
+        return ServerSentEvent.builder()
+                .event("error")
+                .data((Object) message)
+                .build();
+    }
+
     @GetMapping("/examples")
     @Operation(
         summary = "Get example requests for direct SDK calls",
@@ -85,7 +146,9 @@ public class DirectBedrockController {
                 "includeMetrics", true
             ),
             "endpoints", Map.of(
-                "claude_direct", "/api/direct-bedrock/claude"
+                "claude_direct", "/api/direct-bedrock/claude",
+                "claude_stream", "/api/direct-bedrock/claude/stream",
+                "nova_pro_stream", "/api/direct-bedrock/nova-pro/stream"
             ),
             "notes", Map.of(
                 "payload_construction", "These endpoints show how to construct model-specific JSON payloads",
@@ -15,6 +15,8 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -121,6 +123,7 @@ public class GeminiController {
         String template = (String) request.get("template");
         @SuppressWarnings("unchecked")
         Map<String, Object> variables = (Map<String, Object>) request.getOrDefault("variables", Map.of());
+        String cacheHandle = (String) request.get("cacheHandle");
         
         if (template == null || template.trim().isEmpty()) {
             return ResponseEntity.badRequest().body(
@@ -130,7 +133,7 @@ public class GeminiController {
 
         logger.info("Gemini prompt engineering request with {} variables", variables.size());
 
-        ChatResponse response = geminiService.promptEngineering(template, variables);
+        ChatResponse response = geminiService.promptEngineering(template, variables, cacheHandle);
         
         if (response.isSuccess()) {
             logger.info("Gemini prompt engineering success: tokens={}", response.metrics().totalTokens());
@@ -141,6 +144,78 @@ public class GeminiController {
         }
     }
 
+    @PostMapping(value = "/cache", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Register a large context as Vertex AI cached content",
+        description = "Uploads a system prompt and/or document set once with a TTL and returns a handle. " +
+                     "Identical content reuses the existing live cache entry."
+    )
+    public ResponseEntity<Map<String, Object>> registerContext(
+            @RequestBody Map<String, Object> request) {
+
+        String systemPrompt = (String) request.get("systemPrompt");
+        @SuppressWarnings("unchecked")
+        List<String> documents = (List<String>) request.getOrDefault("documents", List.of());
+        Number ttlSeconds = (Number) request.get("ttlSeconds");
+
+        if ((systemPrompt == null || systemPrompt.isBlank()) && documents.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "systemPrompt or documents is required"));
+        }
+
+        try {
+            var entry = geminiService.registerContext(
+                    systemPrompt, documents, ttlSeconds != null ? Duration.ofSeconds(ttlSeconds.longValue()) : null);
+            logger.info("Gemini context registered: handle={}, tokens={}", entry.getHandle(), entry.getCachedTokens());
+            return ResponseEntity.ok(Map.of(
+                    "cacheHandle", entry.getHandle(),
+                    "cachedContent", entry.getName(),
+                    "cachedTokens", entry.getCachedTokens(),
+                    "expireTime", entry.getExpireTime().toString()
+            ));
+        } catch (Exception e) {
+            logger.error("Gemini context registration error: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", "Context registration failed: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping(value = "/cache/{cacheHandle}/chat", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(
+        summary = "Chat with Gemini against a cached context",
+        description = "Sends only the user message and references the cached context by handle"
+    )
+    public ResponseEntity<ChatResponse> chatWithCache(
+            @PathVariable String cacheHandle,
+            @Valid @RequestBody ChatRequest request) {
+
+        ChatResponse response = geminiService.chatWithCache(cacheHandle, request);
+
+        if (response.isSuccess()) {
+            logger.info("Gemini cached chat success: tokens={}", response.metrics().totalTokens());
+            return ResponseEntity.ok(response);
+        } else {
+            logger.error("Gemini cached chat error: {}", response.errorMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    @GetMapping("/cache")
+    @Operation(
+        summary = "Get Gemini context cache status",
+        description = "Returns live cache handles, expiry, reuse counts and cached-token savings"
+    )
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(geminiService.getContextCacheStats());
+    }
+
+    @DeleteMapping("/cache/{cacheHandle}")
+    @Operation(summary = "Delete a cached context")
+    public ResponseEntity<Map<String, Object>> evictContext(@PathVariable String cacheHandle) {
+        if (!geminiService.evictContext(cacheHandle)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("message", "Evicted cache handle " + cacheHandle));
+    }
+
     @GetMapping("/examples")
     @Operation(
         summary = "Get example requests for Gemini",
@@ -191,7 +266,8 @@ public class GeminiController {
                 "stream", "/api/gemini/stream",
                 "compare", "/api/gemini/compare-bedrock?topic=performance",
                 "info", "/api/gemini/info",
-                "prompt_engineering", "/api/gemini/prompt-engineering"
+                "prompt_engineering", "/api/gemini/prompt-engineering",
+                "cache", "/api/gemini/cache"
             ),
             "notes", Map.of(
                 "spring_ai_integration", "Uses Spring AI ChatClient for seamless integration",
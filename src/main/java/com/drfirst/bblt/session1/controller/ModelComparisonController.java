@@ -3,10 +3,14 @@ package com.drfirst.bblt.session1.controller;
 import com.drfirst.bblt.session1.model.ChatRequest;
 import com.drfirst.bblt.session1.model.ChatResponse;
 import com.drfirst.bblt.session1.service.BedrockService;
-import com.drfirst.bblt.session1.service.GeminiService;
+import com.drfirst.bblt.session1.service.LatencyHistograms;
+import com.drfirst.bblt.session1.service.ModelProviderRegistry;
+import com.drfirst.bblt.session1.service.ModelRouter;
+import com.drfirst.bblt.session1.service.RequestPriority;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -18,11 +22,34 @@ public class ModelComparisonController {
 
     private static final Logger log = Logger.getLogger(ModelComparisonController.class.getName());
     private final BedrockService bedrockService;
-    private final GeminiService geminiService;
+    private final ModelProviderRegistry providerRegistry;
+    private final ModelRouter modelRouter;
+    private final LatencyHistograms latencyHistograms;
 
-    public ModelComparisonController(BedrockService bedrockService, GeminiService geminiService) {
+    public ModelComparisonController(BedrockService bedrockService,
+                                     ModelProviderRegistry providerRegistry,
+                                     ModelRouter modelRouter,
+                                     LatencyHistograms latencyHistograms) {
         this.bedrockService = bedrockService;
-        this.geminiService = geminiService;
+        this.providerRegistry = providerRegistry;
+        this.modelRouter = modelRouter;
+        this.latencyHistograms = latencyHistograms;
+    }
+
+    @GetMapping("/providers")
+    public ResponseEntity<Map<String, Object>> getProviders() {
+        return ResponseEntity.ok(Map.of(
+                "providers", providerRegistry.getProviders(),
+                "routableModels", providerRegistry.getModelIds()
+        ));
+    }
+
+    @GetMapping("/routing/stats")
+    public ResponseEntity<Map<String, Object>> getRoutingStats() {
+        return ResponseEntity.ok(Map.of(
+                "models", modelRouter.getStatistics(),
+                "timestamp", System.currentTimeMillis()
+        ));
     }
 
     @PostMapping("/compare")
@@ -30,7 +57,7 @@ public class ModelComparisonController {
             @RequestParam String message,
             @RequestParam(defaultValue = "claude-3-7-sonnet,claude-4-opus,nova-pro,gemini-2.5-flash") List<String> modelIds) {
         
-        log.info("Comparing models: " + modelIds + " with message: " + message);
+        log.info("Comparing models: " + modelIds + " with a message of " + message.length() + " chars");
         
         return compareAllModels(message, modelIds)
                 .thenApply(metrics -> {
@@ -74,7 +101,7 @@ public class ModelComparisonController {
                 .map(prompt -> compareAllModels(prompt, modelIds))
                 .toList();
         
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
                 .thenApply(v -> {
                     List<List<ChatResponse.ModelPerformanceMetrics>> allResults = futures.stream()
                             .map(CompletableFuture::join)
@@ -112,29 +139,71 @@ public class ModelComparisonController {
                         "nova-pro", "AWS native, high context window",
                         "titan-express", "Fast responses, AWS native",
                         "gemini-2.5-flash", "Google AI, ultra-fast, 2M token context"
-                )
+                ),
+                "measured", latencyHistograms.getStats()
         );
         
         return ResponseEntity.ok(summary);
     }
 
+    /**
+     * Live latency, time to first token, tokens/sec, error rate and throughput per model and endpoint
+     */
+    @GetMapping("/performance/live")
+    public ResponseEntity<Map<String, Object>> getLivePerformance() {
+        return ResponseEntity.ok(latencyHistograms.getStats());
+    }
+
+    /**
+     * This node's histograms for one window, encoded so that several nodes' exports can be merged
+     */
+    @GetMapping("/performance/histograms")
+    public ResponseEntity<?> exportHistograms(@RequestParam(defaultValue = "5m") String window) {
+        try {
+            return ResponseEntity.ok(latencyHistograms.export(parseWindow(window)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid window: " + window));
+        }
+    }
+
+    /**
+     * Percentiles over the combined exports of several nodes
+     */
+    @PostMapping("/performance/histograms/merge")
+    public ResponseEntity<Map<String, Object>> mergeHistograms(@RequestBody List<LatencyHistograms.HistogramExport> exports) {
+        try {
+            return ResponseEntity.ok(latencyHistograms.merge(exports));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static Duration parseWindow(String window) {
+        // "5m", "90s" or an ISO-8601 duration
+        String value = window.trim().toLowerCase();
+        if (value.startsWith("p")) {
+            return Duration.parse(value.toUpperCase());
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.parse(window);
+    }
+
     private CompletableFuture<List<ChatResponse.ModelPerformanceMetrics>> compareAllModels(String message, List<String> modelIds) {
-        log.info("Comparing all models (Bedrock + Gemini): " + modelIds + " with message: " + message);
+        log.info("Comparing all models across providers: " + modelIds + " with a message of " + message.length() + " chars");
 
         List<CompletableFuture<ChatResponse.ModelPerformanceMetrics>> futures = modelIds.stream()
-                .map(modelId -> CompletableFuture.supplyAsync(() -> {
+                .map(modelId -> CompletableFuture.supplyAsync(RequestPriority.propagate(() -> {
                     ChatRequest request = new ChatRequest(
                             message, null, modelId, 1000, 0.7, 0.9, 40, false, true
                     );
 
-                    ChatResponse response;
-                    if (modelId.startsWith("gemini")) {
-                        // Use GeminiService for Gemini models
-                        response = geminiService.chatCompletion(request);
-                    } else {
-                        // Use BedrockService for AWS Bedrock models
-                        response = bedrockService.processChat(request);
-                    }
+                    // The registry resolves the provider (Bedrock, direct SDK, Gemini) for each model id
+                    ChatResponse response = providerRegistry.invoke(request);
 
                     if (response.metrics() != null) {
                         return response.metrics();
@@ -144,10 +213,10 @@ public class ModelComparisonController {
                                 modelId, 0, 0, 0, 0.0, "unknown"
                         );
                     }
-                }))
+                })))
                 .toList();
 
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
                 .thenApply(v -> futures.stream()
                         .map(CompletableFuture::join)
                         .toList());
@@ -1,5 +1,10 @@
 package com.drfirst.bblt.session1.controller;
 
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.CodeReviewRequest;
+import com.drfirst.bblt.session1.model.FewShotRequest;
+import com.drfirst.bblt.session1.model.RecipeRequest;
+import com.drfirst.bblt.session1.model.StoryRequest;
 import com.drfirst.bblt.session1.service.PromptEngineeringService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -24,10 +29,77 @@ public class PromptEngineeringController {
     }
 
 
+    @PostMapping("/recipe")
+    public ResponseEntity<ChatResponse> generateRecipe(@RequestBody RecipeRequest request) {
+        if (request.getIngredients() == null || request.getIngredients().isBlank()) {
+            return ResponseEntity.badRequest().body(ChatResponse.error("ingredients is required", request.getModelId()));
+        }
+        log.info("Recipe request for model: " + request.getModelId());
+        return toResponse(promptEngineeringService.generateRecipe(request));
+    }
+
+    @PostMapping("/story")
+    public ResponseEntity<ChatResponse> writeStory(@RequestBody StoryRequest request) {
+        if (request.getTheme() == null || request.getTheme().isBlank()) {
+            return ResponseEntity.badRequest().body(ChatResponse.error("theme is required", request.getModelId()));
+        }
+        log.info("Story request for model: " + request.getModelId());
+        return toResponse(promptEngineeringService.writeStory(request));
+    }
+
+    @PostMapping("/code-review")
+    public ResponseEntity<ChatResponse> reviewCode(@RequestBody CodeReviewRequest request) {
+        if (request.getCode() == null || request.getCode().isBlank()) {
+            return ResponseEntity.badRequest().body(ChatResponse.error("code is required", request.getModelId()));
+        }
+        log.info("Code review request for model: " + request.getModelId());
+        return toResponse(promptEngineeringService.reviewCode(request));
+    }
+
+    @PostMapping("/few-shot")
+    public ResponseEntity<ChatResponse> fewShot(@RequestBody FewShotRequest request) {
+        if (request.getQuery() == null || request.getQuery().isBlank()) {
+            return ResponseEntity.badRequest().body(ChatResponse.error("query is required", request.getModelId()));
+        }
+        log.info("Few-shot request for domain " + request.getDomain() + ", model: " + request.getModelId());
+        return toResponse(promptEngineeringService.fewShot(request));
+    }
+
+    @PostMapping("/few-shot/examples")
+    public ResponseEntity<Map<String, Object>> addFewShotExample(@RequestBody Map<String, String> request) {
+        String domain = request.get("domain");
+        String input = request.get("input");
+        String output = request.get("output");
+        if (domain == null || domain.isBlank() || input == null || input.isBlank() || output == null || output.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "domain, input and output are required"));
+        }
+        int id = promptEngineeringService.addFewShotExample(domain, input, output);
+        return ResponseEntity.ok(Map.of("id", id, "domain", domain));
+    }
+
+    @GetMapping("/few-shot/stats")
+    public ResponseEntity<Map<String, Object>> getFewShotStats() {
+        return ResponseEntity.ok(promptEngineeringService.getFewShotStats());
+    }
+
+    @GetMapping("/templates/stats")
+    public ResponseEntity<Map<String, Object>> getTemplateStats() {
+        return ResponseEntity.ok(promptEngineeringService.getTemplateStats());
+    }
+
+    private ResponseEntity<ChatResponse> toResponse(ChatResponse response) {
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        }
+        log.warning("Templated prompt failed: " + response.errorMessage());
+        return ResponseEntity.internalServerError().body(response);
+    }
+
     @GetMapping("/examples")
     public ResponseEntity<Map<String, Object>> getExamples() {
         return ResponseEntity.ok(Map.of(
-                "note", "All prompt templates are now implemented on the frontend for transparency",
+                "note", "Prompt templates are shown on the frontend for transparency; recipe, story and code review "
+                        + "prompts are also available server-side under /api/prompt-engineering",
                 "usage", "Click the Test buttons on the main page to see full prompts in the chat input before sending",
                 "fewShotDomains", Map.of(
                         "sentiment", "Classify text sentiment as POSITIVE, NEGATIVE, or NEUTRAL",
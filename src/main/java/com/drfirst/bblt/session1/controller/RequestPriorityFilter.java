@@ -0,0 +1,42 @@
+package com.drfirst.bblt.session1.controller;
+
+import com.drfirst.bblt.session1.config.AdmissionConfig;
+import com.drfirst.bblt.session1.model.PriorityClass;
+import com.drfirst.bblt.session1.service.RequestPriority;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Binds each request's priority class for admission control: the X-Request-Priority header
+ * (interactive, api or batch) if present, otherwise the endpoint's configured default.
+ */
+@Component
+public class RequestPriorityFilter extends OncePerRequestFilter {
+
+    private final AdmissionConfig admissionConfig;
+
+    public RequestPriorityFilter(AdmissionConfig admissionConfig) {
+        this.admissionConfig = admissionConfig;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        PriorityClass priority = PriorityClass.parse(request.getHeader(RequestPriority.HEADER));
+        if (priority == null) {
+            priority = admissionConfig.defaultClassFor(request.getRequestURI());
+        }
+        PriorityClass previous = RequestPriority.bind(priority);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestPriority.restore(previous);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.drfirst.bblt.session1.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
 import java.util.Map;
 
@@ -40,6 +42,28 @@ public record ChatResponse(
         );
     }
     
+    /**
+     * A call turned away before it reached the model (bulkhead full, shed, rate limited). It says
+     * nothing about the model's health, so it must not count as a model failure.
+     */
+    public static ChatResponse rejected(String errorMessage, String modelId) {
+        return new ChatResponse(
+            null,
+            modelId,
+            null,
+            Map.of("rejected", true),
+            LocalDateTime.now(),
+            null,
+            false,
+            errorMessage
+        );
+    }
+
+    @JsonIgnore
+    public boolean isRejected() {
+        return !isSuccess && metadata != null && Boolean.TRUE.equals(metadata.get("rejected"));
+    }
+    
     public record ModelPerformanceMetrics(
         String modelId,
         long responseTimeMs,
@@ -0,0 +1,37 @@
+package com.drfirst.bblt.session1.model;
+
+import java.util.Map;
+
+/**
+ * A single event in a streamed chat response.
+ * Content events carry a text delta; the final usage event carries the metrics.
+ * Metadata events announce things like a model switch; error events carry a typed failure.
+ */
+public record ChatStreamEvent(
+    String type,
+    String content,
+    ChatResponse.ModelPerformanceMetrics metrics,
+    Map<String, Object> metadata
+) {
+
+    public static final String CONTENT = "content";
+    public static final String USAGE = "usage";
+    public static final String METADATA = "metadata";
+    public static final String ERROR = "error";
+
+    public static ChatStreamEvent content(String content) {
+        return new ChatStreamEvent(CONTENT, content, null, null);
+    }
+
+    public static ChatStreamEvent usage(ChatResponse.ModelPerformanceMetrics metrics) {
+        return new ChatStreamEvent(USAGE, null, metrics, null);
+    }
+
+    public static ChatStreamEvent metadata(Map<String, Object> metadata) {
+        return new ChatStreamEvent(METADATA, null, null, metadata);
+    }
+
+    public static ChatStreamEvent error(String message, Map<String, Object> details) {
+        return new ChatStreamEvent(ERROR, message, null, details);
+    }
+}
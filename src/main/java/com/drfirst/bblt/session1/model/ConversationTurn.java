@@ -0,0 +1,17 @@
+package com.drfirst.bblt.session1.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored message of a conversation
+ */
+public record ConversationTurn(
+    String role,
+    String content,
+    int tokens,
+    LocalDateTime timestamp
+) {
+
+    public static final String USER = "user";
+    public static final String ASSISTANT = "assistant";
+}
@@ -13,6 +13,12 @@ public class FewShotRequest {
     @JsonProperty("modelId")
     private String modelId;
 
+    @JsonProperty("maxExamples")
+    private Integer maxExamples;
+
+    @JsonProperty("tokenBudget")
+    private Integer tokenBudget;
+
     public FewShotRequest() {}
 
     public FewShotRequest(String query, String domain, String modelId) {
@@ -44,4 +50,20 @@ public class FewShotRequest {
     public void setModelId(String modelId) {
         this.modelId = modelId;
     }
-}
\ No newline at end of file
+
+    public Integer getMaxExamples() {
+        return maxExamples;
+    }
+
+    public void setMaxExamples(Integer maxExamples) {
+        this.maxExamples = maxExamples;
+    }
+
+    public Integer getTokenBudget() {
+        return tokenBudget;
+    }
+
+    public void setTokenBudget(Integer tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+}
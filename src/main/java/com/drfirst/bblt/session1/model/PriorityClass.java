@@ -0,0 +1,26 @@
+package com.drfirst.bblt.session1.model;
+
+import java.util.Locale;
+
+/**
+ * Admission priority of a request, highest first. Under overload the lowest classes are shed first.
+ */
+public enum PriorityClass {
+    INTERACTIVE,
+    API,
+    BATCH;
+
+    /**
+     * Case-insensitive name, or null when the value is blank or unknown
+     */
+    public static PriorityClass parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
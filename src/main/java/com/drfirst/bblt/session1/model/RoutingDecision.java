@@ -0,0 +1,34 @@
+package com.drfirst.bblt.session1.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of SLO-aware model selection, attached to the response metadata under "routing"
+ */
+public record RoutingDecision(
+    String modelId,
+    String provider,
+    boolean sloMet,
+    Double expectedLatencyMs,
+    double expectedCost,
+    int estimatedInputTokens,
+    int candidatesConsidered,
+    String reason
+) {
+
+    public Map<String, Object> toMetadata(RoutingSlo slo) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("selectedModel", modelId);
+        metadata.put("provider", provider);
+        metadata.put("sloMet", sloMet);
+        metadata.put("maxLatencyMs", slo.maxLatencyMs());
+        metadata.put("maxCost", slo.maxCost());
+        metadata.put("expectedLatencyMs", expectedLatencyMs != null ? Math.round(expectedLatencyMs) : null);
+        metadata.put("expectedCost", expectedCost);
+        metadata.put("estimatedInputTokens", estimatedInputTokens);
+        metadata.put("candidatesConsidered", candidatesConsidered);
+        metadata.put("reason", reason);
+        return metadata;
+    }
+}
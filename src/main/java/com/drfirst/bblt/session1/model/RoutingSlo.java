@@ -0,0 +1,22 @@
+package com.drfirst.bblt.session1.model;
+
+/**
+ * Service level objective for a routed request. Either bound may be null.
+ */
+public record RoutingSlo(
+    Long maxLatencyMs,
+    Double maxCost
+) {
+
+    public static RoutingSlo none() {
+        return new RoutingSlo(null, null);
+    }
+
+    public boolean allowsLatency(double latencyMs) {
+        return maxLatencyMs == null || latencyMs <= maxLatencyMs;
+    }
+
+    public boolean allowsCost(double cost) {
+        return maxCost == null || cost <= maxCost;
+    }
+}
@@ -0,0 +1,423 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.AdmissionConfig;
+import com.drfirst.bblt.session1.model.PriorityClass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Priority admission for upstream model calls. At most maxConcurrentCalls run at once; the rest wait
+ * in one queue per priority class and are dequeued by smooth weighted round-robin over the class weights.
+ * Overload is detected CoDel-style from queue delay: when every dequeued call has waited longer than the
+ * target for a whole interval, the lowest class is shed (queued calls rejected, new ones refused), then the
+ * next lowest after another interval. The top class is never shed. Shedding stops as soon as a call is
+ * dequeued under target or the queues drain.
+ */
+@Component
+public class AdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+    private static final PriorityClass[] CLASSES = PriorityClass.values();
+    private static final int MAX_SHED_LEVEL = CLASSES.length - 1;
+
+    private final AdmissionConfig config;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<PriorityClass, ClassQueue> queues = new EnumMap<>(PriorityClass.class);
+    // Calls nested inside an admitted call (e.g. a fallback) must not queue behind their own parent
+    private final ThreadLocal<Ticket> held = new ThreadLocal<>();
+    private final AtomicLong overloadEpisodes = new AtomicLong();
+
+    private int inFlight;
+    private int shedLevel;            // number of lowest classes currently shed
+    private long firstAboveTargetAt;  // nanoTime deadline of the current above-target interval, 0 if none
+
+    @SuppressWarnings("this-escape") // the gauges only read fields that are set by then
+    public AdmissionController(AdmissionConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        for (PriorityClass priority : CLASSES) {
+            queues.put(priority, new ClassQueue(priority, meterRegistry));
+        }
+        Gauge.builder("llm.admission.in-flight", this, controller -> controller.inFlight).register(meterRegistry);
+        Gauge.builder("llm.admission.shed-level", this, controller -> controller.shedLevel).register(meterRegistry);
+    }
+
+    /**
+     * Wait for a slot, at most maxQueueTime (or what is left of the request deadline, if less)
+     *
+     * @param priority the caller's class; null means the configured default
+     * @throws AdmissionRejectedException when the class is being shed, its queue is full or the wait timed out
+     */
+    public Ticket admit(PriorityClass priority) {
+        if (!config.isEnabled() || held.get() != null) {
+            return Ticket.NONE;
+        }
+        Waiter waiter = enqueue(priority);
+        Duration maxWait = config.getMaxQueueTime();
+        Duration remaining = Deadline.currentRemaining();
+        if (remaining != null && remaining.compareTo(maxWait) < 0) {
+            maxWait = remaining;
+        }
+        try {
+            Ticket ticket = waiter.future.get(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            held.set(ticket);
+            return ticket;
+        } catch (TimeoutException e) {
+            Ticket ticket = abandon(waiter);
+            if (ticket != null) {
+                held.set(ticket);
+                return ticket;
+            }
+            throw waiter.queue.reject(waiter.queue.shedTimeout, "no slot within " + maxWait.toMillis() + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Ticket ticket = abandon(waiter);
+            if (ticket != null) {
+                ticket.release();
+            }
+            throw new AdmissionRejectedException(waiter.queue.priority, "Cancelled while waiting for admission");
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    /**
+     * Non-blocking variant for streams: the ticket is emitted once a slot is granted
+     */
+    public Mono<Ticket> admitAsync(PriorityClass priority) {
+        if (!config.isEnabled()) {
+            return Mono.just(Ticket.NONE);
+        }
+        return Mono.defer(() -> {
+            Waiter waiter = enqueue(priority);
+            return Mono.fromFuture(waiter.future)
+                    .timeout(config.getMaxQueueTime())
+                    .onErrorResume(TimeoutException.class, e -> {
+                        Ticket ticket = abandon(waiter);
+                        return ticket != null ? Mono.just(ticket) : Mono.error(waiter.queue.reject(waiter.queue.shedTimeout,
+                                "no slot within " + config.getMaxQueueTime().toMillis() + "ms"));
+                    })
+                    .doOnCancel(() -> {
+                        Ticket ticket = abandon(waiter);
+                        if (ticket != null) {
+                            ticket.release();
+                        }
+                    });
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> classes = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            for (ClassQueue queue : queues.values()) {
+                classes.put(queue.priority.name().toLowerCase(), queue.stats());
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("enabled", config.isEnabled());
+            stats.put("maxConcurrentCalls", config.getMaxConcurrentCalls());
+            stats.put("inFlight", inFlight);
+            stats.put("shedLevel", shedLevel);
+            stats.put("shedClasses", shedClasses());
+            stats.put("overloadEpisodes", overloadEpisodes.get());
+            stats.put("targetQueueDelayMs", config.getTargetQueueDelay().toMillis());
+            stats.put("classes", classes);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Waiter enqueue(PriorityClass priority) {
+        ClassQueue queue = queues.get(priority != null ? priority : config.getDefaultClass());
+        Waiter waiter = new Waiter(queue, System.nanoTime());
+        lock.lock();
+        try {
+            if (isShed(queue.priority)) {
+                throw queue.reject(queue.shedOverload, "shed under overload");
+            }
+            if (inFlight < config.getMaxConcurrentCalls()) {
+                inFlight++;
+                waiter.future.complete(queue.admitted(0));
+                return waiter;
+            }
+            if (queue.waiters.size() >= config.getMaxQueueLength()) {
+                throw queue.reject(queue.shedQueueFull, "queue is full (" + config.getMaxQueueLength() + " calls waiting)");
+            }
+            queue.waiters.add(waiter);
+            return waiter;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a waiter out of its queue after a timeout or cancellation
+     *
+     * @return the ticket if the waiter was granted a slot in the meantime, otherwise null
+     */
+    private Ticket abandon(Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.queue.waiters.remove(waiter)) {
+                waiter.future.cancel(false);
+                return null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return waiter.future.isDone() && !waiter.future.isCompletedExceptionally() ? waiter.future.join() : null;
+    }
+
+    private void release() {
+        List<Runnable> completions = new ArrayList<>();
+        lock.lock();
+        try {
+            inFlight--;
+            dispatch(completions);
+        } finally {
+            lock.unlock();
+        }
+        // Completing outside the lock: a granted stream starts its upstream call on this thread
+        completions.forEach(Runnable::run);
+    }
+
+    private void dispatch(List<Runnable> completions) {
+        long now = System.nanoTime();
+        while (inFlight < config.getMaxConcurrentCalls()) {
+            ClassQueue next = nextQueue();
+            if (next == null) {
+                break;
+            }
+            Waiter waiter = next.waiters.poll();
+            if (waiter.future.isDone()) {
+                continue; // cancelled while queued
+            }
+            long queuedNanos = now - waiter.enqueuedAt;
+            observeQueueDelay(queuedNanos, now, completions);
+            if (isShed(next.priority)) {
+                AdmissionRejectedException rejection = next.reject(next.shedOverload, "shed under overload");
+                completions.add(() -> waiter.future.completeExceptionally(rejection));
+                continue;
+            }
+            inFlight++;
+            Ticket ticket = next.admitted(queuedNanos);
+            completions.add(() -> {
+                if (!waiter.future.complete(ticket)) {
+                    ticket.release(); // the waiter gave up just now
+                }
+            });
+        }
+        if (queues.values().stream().allMatch(queue -> queue.waiters.isEmpty())) {
+            endOverload();
+        }
+    }
+
+    /**
+     * CoDel-style detection: a queue delay above target that persists for a full interval sheds one more class
+     */
+    private void observeQueueDelay(long queuedNanos, long now, List<Runnable> completions) {
+        if (queuedNanos < config.getTargetQueueDelay().toNanos()) {
+            endOverload();
+            return;
+        }
+        if (firstAboveTargetAt == 0) {
+            firstAboveTargetAt = now + config.getInterval().toNanos();
+        } else if (now >= firstAboveTargetAt && shedLevel < MAX_SHED_LEVEL) {
+            if (shedLevel == 0) {
+                overloadEpisodes.incrementAndGet();
+            }
+            shedLevel++;
+            firstAboveTargetAt = now + config.getInterval().toNanos();
+            logger.warn("Admission queue delay above {}ms for {}ms, shedding {}", config.getTargetQueueDelay().toMillis(),
+                    config.getInterval().toMillis(), shedClasses());
+            for (ClassQueue queue : queues.values()) {
+                if (isShed(queue.priority)) {
+                    Waiter waiter;
+                    while ((waiter = queue.waiters.poll()) != null) {
+                        Waiter shed = waiter;
+                        AdmissionRejectedException rejection = queue.reject(queue.shedOverload, "shed under overload");
+                        completions.add(() -> shed.future.completeExceptionally(rejection));
+                    }
+                }
+            }
+        }
+    }
+
+    private void endOverload() {
+        if (shedLevel > 0) {
+            logger.info("Admission queue delay back under target, no longer shedding");
+        }
+        shedLevel = 0;
+        firstAboveTargetAt = 0;
+    }
+
+    private boolean isShed(PriorityClass priority) {
+        return priority.ordinal() >= CLASSES.length - shedLevel;
+    }
+
+    private List<String> shedClasses() {
+        List<String> shed = new ArrayList<>();
+        for (PriorityClass priority : CLASSES) {
+            if (isShed(priority)) {
+                shed.add(priority.name().toLowerCase());
+            }
+        }
+        return shed;
+    }
+
+    /**
+     * Smooth weighted round-robin over the classes that have waiters
+     */
+    private ClassQueue nextQueue() {
+        ClassQueue best = null;
+        int totalWeight = 0;
+        for (ClassQueue queue : queues.values()) {
+            if (queue.waiters.isEmpty()) {
+                continue;
+            }
+            int weight = config.weightOf(queue.priority);
+            queue.currentWeight += weight;
+            totalWeight += weight;
+            if (best == null || queue.currentWeight > best.currentWeight) {
+                best = queue;
+            }
+        }
+        if (best != null) {
+            best.currentWeight -= totalWeight;
+        }
+        return best;
+    }
+
+    /**
+     * Thrown when a call is not admitted: its class is shed, its queue is full or it waited too long
+     */
+    public static class AdmissionRejectedException extends RuntimeException {
+
+        private final PriorityClass priority;
+
+        AdmissionRejectedException(PriorityClass priority, String message) {
+            super(message);
+            this.priority = priority;
+        }
+
+        public PriorityClass getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * An admitted call's slot; released exactly once
+     */
+    public static final class Ticket {
+
+        static final Ticket NONE = new Ticket(null);
+
+        private final AdmissionController controller;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(AdmissionController controller) {
+            this.controller = controller;
+        }
+
+        public void release() {
+            if (controller != null && released.compareAndSet(false, true)) {
+                if (controller.held.get() == this) {
+                    controller.held.remove();
+                }
+                controller.release();
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private final ClassQueue queue;
+        private final long enqueuedAt;
+        private final CompletableFuture<Ticket> future = new CompletableFuture<>();
+
+        Waiter(ClassQueue queue, long enqueuedAt) {
+            this.queue = queue;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class ClassQueue {
+
+        private final PriorityClass priority;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private final AtomicLong admittedCount = new AtomicLong();
+        private final Timer queueTime;
+        private final Counter shedOverload;
+        private final Counter shedQueueFull;
+        private final Counter shedTimeout;
+        private int currentWeight;
+
+        ClassQueue(PriorityClass priority, MeterRegistry meterRegistry) {
+            this.priority = priority;
+            String tag = priority.name().toLowerCase();
+            this.queueTime = Timer.builder("llm.admission.queue.time").tag("class", tag).register(meterRegistry);
+            this.shedOverload = meterRegistry.counter("llm.admission.shed", "class", tag, "reason", "overload");
+            this.shedQueueFull = meterRegistry.counter("llm.admission.shed", "class", tag, "reason", "queue-full");
+            this.shedTimeout = meterRegistry.counter("llm.admission.shed", "class", tag, "reason", "timeout");
+            Gauge.builder("llm.admission.queued", this, ClassQueue::queued).tag("class", tag).register(meterRegistry);
+        }
+
+        Ticket admitted(long queuedNanos) {
+            admittedCount.incrementAndGet();
+            queueTime.record(queuedNanos, TimeUnit.NANOSECONDS);
+            return new Ticket(AdmissionController.this);
+        }
+
+        AdmissionRejectedException reject(Counter counter, String reason) {
+            counter.increment();
+            logger.debug("Admission rejected {} call: {}", priority, reason);
+            return new AdmissionRejectedException(priority, "Server is overloaded; " + priority.name().toLowerCase()
+                    + " request not admitted (" + reason + "). Please retry later.");
+        }
+
+        int queued() {
+            lock.lock();
+            try {
+                return waiters.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("weight", config.weightOf(priority));
+            stats.put("queued", waiters.size());
+            stats.put("shed", isShed(priority));
+            stats.put("admitted", admittedCount.get());
+            stats.put("avgQueueMs", Math.round(queueTime.mean(TimeUnit.MILLISECONDS) * 10) / 10.0);
+            stats.put("maxQueueMs", Math.round(queueTime.max(TimeUnit.MILLISECONDS) * 10) / 10.0);
+            stats.put("shedOverload", (long) shedOverload.count());
+            stats.put("shedQueueFull", (long) shedQueueFull.count());
+            stats.put("shedTimeout", (long) shedTimeout.count());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.AuditConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.PriorityClass;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Audit trail of every prompt and response, kept off the request path. Request threads publish
+ * immutable records into a bounded multi-producer ring (a CAS on the claim sequence, no locks) and
+ * return; one writer thread drains the ring in batches, serializes the records to JSON lines and
+ * appends them to a gzip segment, rotated by size and age. Each batch is sync-flushed, so a crash
+ * loses at most the batch being written, and segments are fsynced per the configured policy.
+ * A full ring either drops the record (counted) or makes the request thread wait up to maxBlock.
+ */
+@Component
+public class AuditLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLog.class);
+
+    private static final String SUFFIX = ".jsonl.gz";
+    private static final String OPEN_SUFFIX = SUFFIX + ".open";
+    private static final DateTimeFormatter SEGMENT_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // One append in this many is timed, so measuring stays off most appends
+    private static final int APPEND_SAMPLE_RATE = 64;
+    private static final int BATCH_BUFFER_BYTES = 64 * 1024;
+
+    private final AuditConfig auditConfig;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // Ring: producers claim a sequence from tail, fill its slot, then publish the sequence number for
+    // that slot; the writer consumes in order from head and frees the slot by advancing head
+    private final Entry[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder sampledAppends = new LongAdder();
+    private final LongAdder sampledAppendNanos = new LongAdder();
+    private final AtomicLong maxAppendNanos = new AtomicLong();
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter writeFailures;
+    private final AtomicLong segmentsClosed = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+    private final AtomicReference<String> currentSegmentName = new AtomicReference<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    // Writer thread only
+    private Path directory;
+    private Segment segment;
+    private ByteArrayOutputStream lines = new ByteArrayOutputStream(BATCH_BUFFER_BYTES);
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(4096);
+    private long lastFsyncNanos = System.nanoTime();
+    private boolean unsynced;
+
+    @SuppressWarnings("this-escape") // the gauge only reads the ring's sequences, which are set by then
+    public AuditLog(AuditConfig auditConfig, MeterRegistry meterRegistry) {
+        this.auditConfig = auditConfig;
+        int capacity = Integer.highestOneBit(Math.max(2, auditConfig.getRingSize()) * 2 - 1);
+        this.slots = new Entry[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.dropped = meterRegistry.counter("llm.audit.dropped");
+        this.written = meterRegistry.counter("llm.audit.written");
+        this.writeFailures = meterRegistry.counter("llm.audit.write-failures");
+        Gauge.builder("llm.audit.queued", this, AuditLog::queued).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!auditConfig.isEnabled()) {
+            return;
+        }
+        directory = Paths.get(auditConfig.getDirectory());
+        Files.createDirectories(directory);
+        recoverOpenSegments();
+        running = true;
+        // A platform thread: the writer parks between batches and does blocking file I/O and fsync
+        writer = Thread.ofPlatform().daemon().name("audit-writer").start(this::writeLoop);
+        logger.info("Audit log writing to {} (ring {}, overflow {}, fsync {})", directory.toAbsolutePath(),
+                slots.length, auditConfig.getOverflow(), auditConfig.getFsync());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Publish the prompt and response of one model call; never blocks unless overflow is BLOCK
+     */
+    public void record(String channel, ChatRequest request, ChatResponse response, long latencyMs) {
+        if (!running) {
+            return;
+        }
+        boolean sampled = ThreadLocalRandom.current().nextInt(APPEND_SAMPLE_RATE) == 0;
+        long start = sampled ? System.nanoTime() : 0;
+        Entry entry = new Entry(System.currentTimeMillis(), channel, RequestPriority.current(),
+                request, response, latencyMs);
+        if (publish(entry)) {
+            appended.increment();
+        } else {
+            dropped.increment();
+        }
+        if (sampled) {
+            long nanos = System.nanoTime() - start;
+            sampledAppends.increment();
+            sampledAppendNanos.add(nanos);
+            maxAppendNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    /**
+     * Audit a stream once it ends, with its content and first error collected from the events
+     */
+    public <T> Flux<T> stream(String channel, ChatRequest request, Flux<T> events,
+                              Function<T, String> content, Function<T, String> error) {
+        if (!auditConfig.isEnabled()) {
+            return events;
+        }
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            StringBuilder text = new StringBuilder();
+            AtomicReference<String> failure = new AtomicReference<>();
+            return events
+                    .doOnNext(event -> {
+                        String chunk = content.apply(event);
+                        if (chunk != null) {
+                            text.append(chunk);
+                        }
+                        String message = error.apply(event);
+                        if (message != null) {
+                            failure.compareAndSet(null, message);
+                        }
+                    })
+                    .doOnError(e -> failure.compareAndSet(null, e.getMessage()))
+                    .doFinally(signal -> {
+                        String message = failure.get() != null ? failure.get()
+                                : switch (signal) {
+                                    case ON_COMPLETE -> null;
+                                    case CANCEL -> "cancelled by client";
+                                    default -> "stream ended with " + signal;
+                                };
+                        ChatResponse response = message == null
+                                ? ChatResponse.success(text.toString(), request.modelId(), null)
+                                : new ChatResponse(text.toString(), request.modelId(), null, null, null, null, false, message);
+                        record(channel, request, response, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                    });
+        });
+    }
+
+    private boolean publish(Entry entry) {
+        long deadline = 0;
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head.get() < slots.length) {
+                if (tail.compareAndSet(sequence, sequence + 1)) {
+                    int index = (int) sequence & mask;
+                    slots[index] = entry;
+                    // Ordered write: the writer sees the slot filled once it sees the sequence
+                    published.lazySet(index, sequence);
+                    return true;
+                }
+                continue; // lost the claim to another producer
+            }
+            if (auditConfig.getOverflow() != AuditConfig.Overflow.BLOCK || !running) {
+                return false;
+            }
+            if (deadline == 0) {
+                blocked.increment();
+                deadline = System.nanoTime() + auditConfig.getMaxBlock().toNanos();
+            } else if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+        }
+    }
+
+    private int drain(List<Entry> batch, int max) {
+        long next = head.get();
+        int count = 0;
+        while (count < max) {
+            int index = (int) next & mask;
+            if (published.get(index) != next) {
+                break; // not yet published (or not yet claimed)
+            }
+            batch.add(slots[index]);
+            slots[index] = null;
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            head.lazySet(next);
+        }
+        return count;
+    }
+
+    private long queued() {
+        return Math.max(0, tail.get() - head.get());
+    }
+
+    private void writeLoop() {
+        int batchSize = Math.max(1, auditConfig.getBatchSize());
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (true) {
+            // Read before draining, so everything published before stop() is still written
+            boolean stopping = !running;
+            if (drain(batch, batchSize) > 0) {
+                write(batch);
+                batch.clear();
+                continue;
+            }
+            if (stopping) {
+                break;
+            }
+            try {
+                maintain();
+            } catch (IOException e) {
+                logger.warn("Audit segment maintenance failed: {}", e.getMessage());
+                abandonSegment();
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            logger.warn("Failed to close audit segment: {}", e.getMessage());
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        try {
+            if (segment == null || segment.full()) {
+                closeSegment();
+                segment = openSegment();
+            }
+            int encoded = encode(batch);
+            lines.writeTo(segment.out);
+            // Sync flush: everything up to here decompresses even if the process dies before the segment is closed
+            segment.out.flush();
+            unsynced = true;
+            written.increment(encoded);
+            if (lines.size() > 64 * BATCH_BUFFER_BYTES) {
+                lines = new ByteArrayOutputStream(BATCH_BUFFER_BYTES); // don't keep one huge batch's buffer
+            }
+            if (auditConfig.getFsync() == AuditConfig.Fsync.BATCH) {
+                fsync();
+            } else {
+                maintain();
+            }
+        } catch (IOException | RuntimeException e) {
+            writeFailures.increment(batch.size());
+            logger.warn("Failed to write {} audit records to {}: {}", batch.size(), currentSegmentName.get(), e.getMessage());
+            abandonSegment();
+        }
+    }
+
+    /**
+     * Serialize the batch into JSON lines; a record that cannot be serialized is skipped and counted,
+     * without leaving a partial line behind
+     */
+    private int encode(List<Entry> batch) {
+        lines.reset();
+        int encoded = 0;
+        for (Entry entry : batch) {
+            line.reset();
+            try {
+                try (JsonGenerator json = jsonFactory.createGenerator(line, JsonEncoding.UTF8)) {
+                    entry.writeTo(json);
+                }
+                line.writeTo(lines);
+                encoded++;
+            } catch (IOException | RuntimeException e) {
+                writeFailures.increment();
+                logger.warn("Skipping audit record of {} that could not be serialized: {}", entry.request().modelId(), e.getMessage());
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Interval fsync and age-based rotation; runs after each batch and while idle
+     */
+    private void maintain() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        if (unsynced && auditConfig.getFsync() == AuditConfig.Fsync.INTERVAL
+                && System.nanoTime() - lastFsyncNanos >= auditConfig.getFsyncInterval().toNanos()) {
+            fsync();
+        }
+        if (System.nanoTime() - segment.openedNanos >= auditConfig.getMaxSegmentAge().toNanos()) {
+            closeSegment();
+        }
+    }
+
+    private void fsync() throws IOException {
+        segment.file.getChannel().force(false);
+        unsynced = false;
+        lastFsyncNanos = System.nanoTime();
+        fsyncs.incrementAndGet();
+    }
+
+    private Segment openSegment() throws IOException {
+        String name = "audit-" + SEGMENT_TIME.format(Instant.now()) + "-" + segmentsClosed.get();
+        Path path = directory.resolve(name + OPEN_SUFFIX);
+        FileOutputStream file = new FileOutputStream(path.toFile());
+        GZIPOutputStream gzip = new GZIPOutputStream(new BufferedOutputStream(file, 64 * 1024), 64 * 1024, true) {
+            {
+                def.setLevel(Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, auditConfig.getCompressionLevel())));
+            }
+        };
+        currentSegmentName.set(path.getFileName().toString());
+        return new Segment(path, file, gzip, System.nanoTime(), auditConfig.getMaxSegmentSize().toBytes());
+    }
+
+    /**
+     * Finish the gzip stream, fsync unless the policy is NONE, and give the segment its final name
+     */
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        Segment closing = segment;
+        segment = null;
+        currentSegmentName.set(null);
+        closing.out.close();
+        Path finalPath = finalName(closing.path);
+        Files.move(closing.path, finalPath);
+        if (auditConfig.getFsync() != AuditConfig.Fsync.NONE) {
+            // The data was forced before close; this makes the rename durable
+            try (FileChannel dir = FileChannel.open(directory)) {
+                dir.force(true);
+            } catch (IOException e) {
+                logger.debug("Directory fsync not supported: {}", e.getMessage());
+            }
+        }
+        unsynced = false;
+        segmentsClosed.incrementAndGet();
+        logger.info("Closed audit segment {}", finalPath.getFileName());
+    }
+
+    private void abandonSegment() {
+        Segment abandoned = segment;
+        if (abandoned == null) {
+            return;
+        }
+        try {
+            closeSegment();
+        } catch (IOException | RuntimeException e) {
+            // Left with its open name; recovered on the next start
+            logger.warn("Failed to close audit segment {}: {}", abandoned.path.getFileName(), e.getMessage());
+            try {
+                abandoned.file.close();
+            } catch (IOException ignored) {
+                // already failing
+            }
+        }
+    }
+
+    /**
+     * Segments left open by a crash hold every batch flushed before it; finish their names so they are picked up
+     */
+    private void recoverOpenSegments() throws IOException {
+        try (DirectoryStream<Path> open = Files.newDirectoryStream(directory, "*" + OPEN_SUFFIX)) {
+            for (Path path : open) {
+                Files.move(path, finalName(path));
+                logger.warn("Recovered audit segment {} from an unclean shutdown; its last batch may be truncated", path.getFileName());
+            }
+        }
+    }
+
+    private static Path finalName(Path openPath) {
+        String name = openPath.getFileName().toString();
+        return openPath.resolveSibling(name.substring(0, name.length() - OPEN_SUFFIX.length()) + SUFFIX);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", auditConfig.isEnabled());
+        stats.put("directory", directory != null ? directory.toAbsolutePath().toString() : null);
+        stats.put("ringSize", slots.length);
+        stats.put("overflow", auditConfig.getOverflow());
+        stats.put("fsync", auditConfig.getFsync());
+        stats.put("queued", queued());
+        stats.put("appended", appended.sum());
+        stats.put("blocked", blocked.sum());
+        stats.put("dropped", (long) dropped.count());
+        stats.put("written", (long) written.count());
+        stats.put("writeFailures", (long) writeFailures.count());
+        long samples = sampledAppends.sum();
+        stats.put("appendNanosAvg", samples > 0 ? sampledAppendNanos.sum() / samples : 0);
+        stats.put("appendNanosMax", maxAppendNanos.get());
+        stats.put("appendSamples", samples);
+        stats.put("currentSegment", currentSegmentName.get());
+        stats.put("segmentsClosed", segmentsClosed.get());
+        stats.put("fsyncs", fsyncs.get());
+        return stats;
+    }
+
+    private record Segment(Path path, FileOutputStream file, GZIPOutputStream out, long openedNanos, long maxBytes) {
+
+        boolean full() throws IOException {
+            return file.getChannel().size() >= maxBytes;
+        }
+    }
+
+    /**
+     * One audited call; serialized on the writer thread
+     */
+    private record Entry(long timestampMs, String channel, PriorityClass priority, ChatRequest request,
+                         ChatResponse response, long latencyMs) {
+
+        void writeTo(JsonGenerator json) throws IOException {
+            json.writeStartObject();
+            json.writeStringField("ts", Instant.ofEpochMilli(timestampMs).toString());
+            json.writeStringField("channel", channel);
+            json.writeStringField("requestId", response.requestId());
+            json.writeStringField("priority", priority != null ? priority.name().toLowerCase(Locale.ROOT) : null);
+            json.writeStringField("model", request.modelId());
+            json.writeStringField("respondedModel", response.modelId());
+            json.writeBooleanField("success", response.isSuccess());
+            json.writeNumberField("latencyMs", latencyMs);
+            if (response.metrics() != null) {
+                json.writeNumberField("inputTokens", response.metrics().inputTokens());
+                json.writeNumberField("outputTokens", response.metrics().outputTokens());
+            }
+            json.writeStringField("systemPrompt", request.systemPrompt());
+            json.writeStringField("prompt", request.message());
+            json.writeStringField("response", response.content());
+            if (!response.isSuccess()) {
+                json.writeStringField("error", response.errorMessage());
+            }
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+    }
+}
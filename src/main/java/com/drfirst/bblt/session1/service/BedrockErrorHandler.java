@@ -1,27 +1,39 @@
 package com.drfirst.bblt.session1.service;
 
+import com.drfirst.bblt.session1.config.FallbackConfig;
 import com.drfirst.bblt.session1.config.ModelConfig;
 import com.drfirst.bblt.session1.model.ChatRequest;
 import com.drfirst.bblt.session1.model.ChatResponse;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.services.bedrockruntime.model.AccessDeniedException;
-import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
-import software.amazon.awssdk.services.bedrockruntime.model.ValidationException;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
- * Enhanced error handler with retry logic, exponential backoff, and model fallback for AWS Bedrock calls.
+ * Enhanced error handler with circuit breakers and model fallback for AWS Bedrock calls; retries are delegated to {@link RetryEngine}.
  * Implements comprehensive resilience patterns for production-grade LLM applications.
  */
 @Component
@@ -30,25 +42,42 @@ public class BedrockErrorHandler {
     private static final Logger logger = LoggerFactory.getLogger(BedrockErrorHandler.class);
     
     private final ModelConfig modelConfig;
+    private final RetryEngine retryEngine;
+    private final DeadlinePolicy deadlinePolicy;
+    private final FallbackGraph fallbackGraph;
+    private final FallbackConfig fallbackConfig;
+    private final ObservationRegistry observationRegistry;
+    private final ExecutorService fallbackExecutor = Executors.newVirtualThreadPerTaskExecutor();
     private ModelInvoker modelInvoker; // Will be set after construction to avoid circular dependency
     
     // Circuit breaker state tracking
     private final Map<String, CircuitBreakerState> circuitBreakerStates = new ConcurrentHashMap<>();
     private final Map<String, Long> lastFailureTime = new ConcurrentHashMap<>();
     private final Map<String, Integer> consecutiveFailures = new ConcurrentHashMap<>();
-    
-    // Fallback model hierarchy: Claude -> Nova -> Titan
-    private final List<String> fallbackOrder = List.of(
-        "claude-3-7-sonnet",
-        "nova-pro",
-        "titan-express"
-    );
+    private final Map<String, Long> openedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastTimeToRecoveryMs = new ConcurrentHashMap<>();
+    // Cluster sharing: when each breaker last changed state, and the failure counts peers reported
+    private final Map<String, Long> stateChangedAt = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, PeerFailures>> peerFailures = new ConcurrentHashMap<>();
+    private volatile Consumer<String> stateListener = modelId -> {};
     
     private static final int CIRCUIT_BREAKER_THRESHOLD = 5;
     private static final Duration CIRCUIT_BREAKER_TIMEOUT = Duration.ofMinutes(5);
 
-    public BedrockErrorHandler(ModelConfig modelConfig) {
+    public BedrockErrorHandler(ModelConfig modelConfig, RetryEngine retryEngine, DeadlinePolicy deadlinePolicy,
+                               FallbackGraph fallbackGraph, FallbackConfig fallbackConfig,
+                               ObservationRegistry observationRegistry) {
         this.modelConfig = modelConfig;
+        this.retryEngine = retryEngine;
+        this.deadlinePolicy = deadlinePolicy;
+        this.fallbackGraph = fallbackGraph;
+        this.fallbackConfig = fallbackConfig;
+        this.observationRegistry = observationRegistry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fallbackExecutor.shutdownNow();
     }
 
     /**
@@ -59,14 +88,9 @@ public class BedrockErrorHandler {
     }
 
     /**
-     * Primary method with retry logic for throttling and transient errors
-     * This will be called by the actual service implementations
+     * Invoke a model through the shared retry engine, falling back to alternative models when it fails.
+     * Retries happen only inside the engine; each fallback model gets a single attempt.
      */
-    @Retryable(
-        retryFor = {ThrottlingException.class, ValidationException.class, RuntimeException.class},
-        maxAttempts = 4,
-        backoff = @Backoff(delay = 1000, multiplier = 2, maxDelay = 10000)
-    )
     public ChatResponse invokeWithRetry(ChatRequest request) {
         String modelId = request.modelId();
         
@@ -77,48 +101,52 @@ public class BedrockErrorHandler {
             logger.warn("Circuit breaker is OPEN for model: {}, attempting fallback", modelId);
             return attemptFallback(request, "Circuit breaker is open for model: " + modelId);
         }
+        if (modelInvoker == null) {
+            return attemptFallback(request, "Model invoker not initialized");
+        }
         
         try {
-            // This will be overridden by actual implementation - for now throw to trigger retry/fallback
-            recordFailure(modelId);
-            throw new RuntimeException("This method should be overridden by the calling service");
-            
-        } catch (ThrottlingException e) {
+            ChatResponse response = retryEngine.execute(modelId, () -> modelInvoker.invokeModelDirect(request));
+            if (response.isSuccess()) {
+                recordSuccess(modelId);
+                return response;
+            }
+            if (response.isRejected()) {
+                return response; // turned away before reaching the model: not a failure, nothing to fall back for
+            }
             recordFailure(modelId);
-            logger.warn("Throttling detected for model: {}, attempt will be retried", modelId);
-            throw e; // Will trigger retry
+            return attemptFallback(request, response.errorMessage());
             
         } catch (AccessDeniedException e) {
             recordFailure(modelId);
             logger.error("Access denied for model: {}, attempting fallback", modelId);
             return attemptFallback(request, "Access denied for model: " + modelId);
             
-        } catch (ValidationException e) {
-            recordFailure(modelId);
-            logger.warn("Validation error for model: {}, will retry: {}", modelId, e.getMessage());
-            throw e; // Will trigger retry
-            
         } catch (Exception e) {
             recordFailure(modelId);
-            logger.error("Unexpected error with model: {}, attempting fallback: {}", modelId, e.getMessage());
-            return attemptFallback(request, "Unexpected error: " + e.getMessage());
+            logger.error("Error with model: {} after retries, attempting fallback: {}", modelId, e.getMessage());
+            return attemptFallback(request, "All retries exhausted: " + e.getMessage());
         }
     }
 
     /**
-     * Recovery method when all retries are exhausted
+     * Fall back from a failed model along its fallback graph. Candidates with a closed breaker are ranked by
+     * live health and raced: the first starts at once, the next after the stagger (or as soon as one fails),
+     * at most maxParallel at a time, each with a single attempt. The first success wins and the rest are
+     * cancelled. The path taken, with the timing of every step, is returned in the "fallback" metadata.
+     * Traced as an "llm.fallback" span with one "llm.fallback.hop" span per candidate started.
      */
-    @Recover
-    public ChatResponse recover(Exception ex, ChatRequest request) {
-        logger.error("All retry attempts exhausted for model: {}, attempting final fallback", 
-                    request.modelId());
-        return attemptFallback(request, "All retries exhausted: " + ex.getMessage());
+    public ChatResponse attemptFallback(ChatRequest request, String originalError) {
+        Observation observation = Observation.createNotStarted("llm.fallback", observationRegistry)
+                .lowCardinalityKeyValue("fallback.from", request.modelId());
+        return observation.observe(() -> {
+            ChatResponse response = raceFallback(request, originalError);
+            observation.lowCardinalityKeyValue("fallback.winner", response.isSuccess() ? response.modelId() : "none");
+            return Traces.annotate(observation, response);
+        });
     }
 
-    /**
-     * Attempt fallback to alternative models - REAL IMPLEMENTATION
-     */
-    private ChatResponse attemptFallback(ChatRequest request, String originalError) {
+    private ChatResponse raceFallback(ChatRequest request, String originalError) {
         String originalModelId = request.modelId();
         
         if (modelInvoker == null) {
@@ -129,83 +157,60 @@ public class BedrockErrorHandler {
                 originalModelId
             );
         }
-        
-        logger.info("Starting fallback sequence for failed model: {}", originalModelId);
-        
-        // Try each fallback model in order
-        for (String fallbackModelId : fallbackOrder) {
-            if (fallbackModelId.equals(originalModelId)) {
-                logger.debug("Skipping original failing model: {}", fallbackModelId);
-                continue; // Skip the original failing model
-            }
-            
-            if (isCircuitBreakerOpen(fallbackModelId)) {
-                logger.warn("Skipping fallback model {} - circuit breaker is open", fallbackModelId);
-                continue;
+
+        List<String> ranked = fallbackGraph.candidatesFor(originalModelId);
+        logger.info("Starting fallback race for failed model {} over {}", originalModelId, ranked);
+
+        long raceStart = System.nanoTime();
+        List<FallbackStep> path = new ArrayList<>();
+        List<String> candidates = new ArrayList<>();
+        for (String candidate : ranked) {
+            if (isCircuitBreakerOpen(candidate)) {
+                path.add(new FallbackStep(candidate, 0, 0, "skipped", "circuit breaker open"));
+            } else {
+                candidates.add(candidate);
             }
-            
-            try {
-                logger.info("Attempting fallback from {} to {}", originalModelId, fallbackModelId);
-                long fallbackStartTime = System.currentTimeMillis();
-                
-                // Create new request with fallback model
-                ChatRequest fallbackRequest = new ChatRequest(
-                    request.message(),
-                    request.systemPrompt(),
+        }
+
+        FallbackRace race = new FallbackRace(request, candidates, raceStart, path);
+        FallbackRace.Winner winner = race.run();
+        long totalMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - raceStart);
+        Map<String, Object> report = fallbackReport(originalModelId, originalError, path, winner, totalMs);
+
+        if (winner != null) {
+            String fallbackModelId = winner.modelId();
+            ChatResponse fallbackResponse = winner.response();
+            logger.info("Successfully failed over from {} to {} in {}ms", originalModelId, fallbackModelId, totalMs);
+
+            // Create new response with fallback notification
+            String fallbackMessage = String.format(
+                "⚠️ Fallback used: %s → %s (took %dms)\n" +
+                "Original error: %s\n\n%s",
+                originalModelId, 
+                fallbackModelId,
+                totalMs,
+                originalError,
+                fallbackResponse.content()
+            );
+
+            // Update metrics to show fallback was used, timed over the whole race
+            ChatResponse.ModelPerformanceMetrics updatedMetrics = null;
+            if (fallbackResponse.metrics() != null) {
+                updatedMetrics = ChatResponse.ModelPerformanceMetrics.create(
                     fallbackModelId,
-                    request.maxTokens(),
-                    request.temperature(),
-                    request.topP(),
-                    request.topK(),
-                    request.stream(),
-                    request.includeMetrics()
+                    totalMs,
+                    fallbackResponse.metrics().inputTokens(),
+                    fallbackResponse.metrics().outputTokens(),
+                    fallbackResponse.metrics().estimatedCost(),
+                    "FALLBACK_SUCCESS"
                 );
-                
-                // Invoke the fallback model directly (no retry logic to avoid infinite loops)
-                ChatResponse fallbackResponse = modelInvoker.invokeModelDirect(fallbackRequest);
-                
-                if (fallbackResponse.isSuccess()) {
-                    recordSuccess(fallbackModelId);
-                    
-                    long fallbackTime = System.currentTimeMillis() - fallbackStartTime;
-                    logger.info("Successfully failed over from {} to {} in {}ms", 
-                               originalModelId, fallbackModelId, fallbackTime);
-                    
-                    // Create new response with fallback notification
-                    String fallbackMessage = String.format(
-                        "⚠️ Fallback used: %s → %s (took %dms)\n" +
-                        "Original error: %s\n\n%s",
-                        originalModelId, 
-                        fallbackModelId,
-                        fallbackTime,
-                        originalError,
-                        fallbackResponse.content()
-                    );
-                    
-                    // Update metrics to show fallback was used
-                    ChatResponse.ModelPerformanceMetrics updatedMetrics = null;
-                    if (fallbackResponse.metrics() != null) {
-                        updatedMetrics = ChatResponse.ModelPerformanceMetrics.create(
-                            fallbackModelId,
-                            fallbackResponse.metrics().responseTimeMs() + fallbackTime,
-                            fallbackResponse.metrics().inputTokens(),
-                            fallbackResponse.metrics().outputTokens(),
-                            fallbackResponse.metrics().estimatedCost(),
-                            "FALLBACK_SUCCESS"
-                        );
-                    }
-                    
-                    return ChatResponse.success(fallbackMessage, fallbackModelId, updatedMetrics);
-                    
-                } else {
-                    logger.warn("Fallback model {} returned error: {}", fallbackModelId, fallbackResponse.errorMessage());
-                    recordFailure(fallbackModelId);
-                }
-                
-            } catch (Exception e) {
-                logger.warn("Fallback model {} threw exception: {}", fallbackModelId, e.getMessage());
-                recordFailure(fallbackModelId);
             }
+
+            Map<String, Object> metadata = fallbackResponse.metadata() != null
+                    ? new LinkedHashMap<>(fallbackResponse.metadata()) : new LinkedHashMap<>();
+            metadata.put("fallback", report);
+            return new ChatResponse(fallbackMessage, fallbackModelId, updatedMetrics, metadata,
+                    LocalDateTime.now(), fallbackResponse.requestId(), true, null);
         }
         
         // All fallbacks failed
@@ -216,7 +221,9 @@ public class BedrockErrorHandler {
         errorMessage.append("⚠️ All models currently unavailable\n\n");
         errorMessage.append("Original model: ").append(originalModelId).append("\n");
         errorMessage.append("Original error: ").append(originalError).append("\n");
-        errorMessage.append("Attempted fallbacks: ").append(String.join(", ", fallbackOrder)).append("\n");
+        errorMessage.append("Attempted fallbacks: ").append(path.stream()
+                .map(step -> step.modelId() + " (" + step.outcome() + ", " + step.durationMs() + "ms)")
+                .collect(Collectors.joining(", "))).append("\n");
         errorMessage.append("Please try again later or contact support.\n\n");
         errorMessage.append("Circuit breaker status:\n");
         
@@ -225,9 +232,192 @@ public class BedrockErrorHandler {
             errorMessage.append("- ").append(model).append(": ").append(status).append("\n");
         });
         
-        return ChatResponse.error(errorMessage.toString(), originalModelId);
+        return new ChatResponse(null, originalModelId, null, Map.of("fallback", report),
+                LocalDateTime.now(), null, false, errorMessage.toString());
+    }
+
+    private static Map<String, Object> fallbackReport(String originalModelId, String originalError,
+                                                      List<FallbackStep> path, FallbackRace.Winner winner, long totalMs) {
+        List<Map<String, Object>> steps = new ArrayList<>();
+        // In start order; steps are collected as they finish
+        for (FallbackStep step : path.stream().sorted(Comparator.comparingLong(FallbackStep::startedAtMs)).toList()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("modelId", step.modelId());
+            entry.put("startedAtMs", step.startedAtMs());
+            entry.put("durationMs", step.durationMs());
+            entry.put("outcome", step.outcome());
+            if (step.error() != null) {
+                entry.put("error", step.error());
+            }
+            steps.add(entry);
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("from", originalModelId);
+        report.put("reason", originalError);
+        report.put("winner", winner != null ? winner.modelId() : null);
+        report.put("totalMs", totalMs);
+        report.put("path", steps);
+        return report;
+    }
+
+    /**
+     * One candidate of a fallback, with times relative to the start of the fallback
+     *
+     * @param outcome success, failed, rejected (turned away by a bulkhead, shedding or the rate limit),
+     *                cancelled (lost the race) or skipped
+     */
+    private record FallbackStep(String modelId, long startedAtMs, long durationMs, String outcome, String error) {
+    }
+
+    /**
+     * Staggered race over the ranked candidates; runs on the caller's thread, candidates on virtual threads
+     */
+    private final class FallbackRace {
+
+        private record Winner(String modelId, ChatResponse response) {
+        }
+
+        private record Attempt(String modelId, long startNanos, Observation hop) {
+        }
+
+        private final ChatRequest request;
+        private final List<String> candidates;
+        private final long raceStart;
+        private final List<FallbackStep> path;
+        private final ExecutorCompletionService<ChatResponse> completions = new ExecutorCompletionService<>(fallbackExecutor);
+        private final Map<Future<ChatResponse>, Attempt> running = new LinkedHashMap<>();
+        // The request's deadline and priority follow each candidate onto its thread
+        private final Deadline deadline = Deadline.current();
+        private int next;
+
+        FallbackRace(ChatRequest request, List<String> candidates, long raceStart, List<FallbackStep> path) {
+            this.request = request;
+            this.candidates = candidates;
+            this.raceStart = raceStart;
+            this.path = path;
+        }
+
+        Winner run() {
+            long staggerNanos = fallbackConfig.getStagger().toNanos();
+            int maxParallel = Math.max(1, fallbackConfig.getMaxParallel());
+            try {
+                launchNext();
+                while (!running.isEmpty()) {
+                    boolean canLaunch = next < candidates.size() && running.size() < maxParallel;
+                    Future<ChatResponse> done = completions.poll(canLaunch ? staggerNanos : Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        logger.info("No fallback answered within {}ms, starting the next candidate", fallbackConfig.getStagger().toMillis());
+                        launchNext();
+                        continue;
+                    }
+                    Attempt attempt = running.remove(done);
+                    ChatResponse response = outcome(done);
+                    if (response != null && response.isSuccess()) {
+                        recordSuccess(attempt.modelId());
+                        record(attempt, "success", null);
+                        return new Winner(attempt.modelId(), response);
+                    }
+                    String error = response != null ? response.errorMessage() : failure(done);
+                    if (response != null && response.isRejected()) {
+                        // Load shedding or quota, not the model's health: its breaker is left alone
+                        logger.warn("Fallback model {} rejected the call: {}", attempt.modelId(), error);
+                        record(attempt, "rejected", error);
+                    } else {
+                        logger.warn("Fallback model {} failed: {}", attempt.modelId(), error);
+                        recordFailure(attempt.modelId());
+                        record(attempt, "failed", error);
+                    }
+                    if (running.size() < maxParallel) {
+                        launchNext(); // a failure frees its slot straight away, no stagger
+                    }
+                }
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.info("Fallback for {} cancelled", request.modelId());
+                return null;
+            } finally {
+                // Losers (or everything, when cancelled) stop their upstream calls
+                running.forEach((future, attempt) -> {
+                    future.cancel(true);
+                    record(attempt, "cancelled", null);
+                });
+                running.clear();
+            }
+        }
+
+        @SuppressWarnings("try") // the scope is opened only to parent the hop's spans
+        private void launchNext() {
+            if (next >= candidates.size()) {
+                return;
+            }
+            String modelId = candidates.get(next++);
+            if (!deadlinePolicy.hasTimeFor("fallback to " + modelId)) {
+                next = candidates.size(); // past the request deadline or cancelled; no further upstream calls
+                return;
+            }
+            logger.info("Attempting fallback from {} to {}", request.modelId(), modelId);
+            ChatRequest fallbackRequest = ModelProviderRegistry.withModel(request, modelId);
+            // Single attempt per fallback model so fallbacks never multiply retries
+            Observation hop = Observation.createNotStarted("llm.fallback.hop", observationRegistry)
+                    .lowCardinalityKeyValue(Traces.MODEL, modelId)
+                    .lowCardinalityKeyValue("fallback.hop", Integer.toString(next))
+                    .start();
+            Supplier<ChatResponse> call = RequestPriority.propagate(() -> {
+                // The hop is the parent of the candidate's own spans on its thread
+                try (Observation.Scope scope = hop.openScope()) {
+                    return retryEngine.executeOnce(modelId, () -> modelInvoker.invokeModelDirect(fallbackRequest));
+                }
+            });
+            Future<ChatResponse> future = completions.submit(() -> deadline != null ? deadline.call(call) : call.get());
+            running.put(future, new Attempt(modelId, System.nanoTime(), hop));
+        }
+
+        private void record(Attempt attempt, String outcome, String error) {
+            attempt.hop().lowCardinalityKeyValue(Traces.OUTCOME, outcome);
+            if (error != null) {
+                attempt.hop().highCardinalityKeyValue("error.message", error);
+            }
+            attempt.hop().stop();
+            long now = System.nanoTime();
+            path.add(new FallbackStep(attempt.modelId(),
+                    TimeUnit.NANOSECONDS.toMillis(attempt.startNanos() - raceStart),
+                    TimeUnit.NANOSECONDS.toMillis(now - attempt.startNanos()),
+                    outcome, error));
+        }
+
+        private static ChatResponse outcome(Future<ChatResponse> done) {
+            try {
+                return done.get();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        private static String failure(Future<ChatResponse> done) {
+            try {
+                done.get();
+                return "no response";
+            } catch (ExecutionException e) {
+                return e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            } catch (Exception e) {
+                return e.getMessage();
+            }
+        }
     }
 
+    /**
+     * Fallback models to try after the given one failed, ranked by health, skipping any with an open circuit breaker
+     */
+    public List<String> getFallbackCandidates(String failedModelId) {
+        return fallbackGraph.candidatesFor(failedModelId).stream()
+                .filter(modelId -> !isCircuitBreakerOpen(modelId))
+                .toList();
+    }
+
+    public boolean isAvailable(String modelId) {
+        return !isCircuitBreakerOpen(modelId);
+    }
 
     /**
      * Circuit breaker logic
@@ -255,25 +445,146 @@ public class BedrockErrorHandler {
     }
 
     public void recordSuccess(String modelId) {
-        consecutiveFailures.put(modelId, 0);
-        circuitBreakerStates.put(modelId, CircuitBreakerState.CLOSED);
+        Integer failures = consecutiveFailures.put(modelId, 0);
+        CircuitBreakerState previous = circuitBreakerStates.put(modelId, CircuitBreakerState.CLOSED);
+        if (previous != null && previous != CircuitBreakerState.CLOSED) {
+            stateChangedAt.put(modelId, System.currentTimeMillis());
+        }
+        if ((failures != null && failures > 0) || (previous != null && previous != CircuitBreakerState.CLOSED)) {
+            stateListener.accept(modelId);
+        }
+        Long opened = openedAt.remove(modelId);
+        if (opened != null) {
+            long recoveryMs = System.currentTimeMillis() - opened;
+            lastTimeToRecoveryMs.put(modelId, recoveryMs);
+            logger.info("Circuit breaker CLOSED for model: {} after {}ms", modelId, recoveryMs);
+        }
         logger.debug("Recorded success for model: {}", modelId);
     }
 
+    /**
+     * Close the breaker after a successful health probe
+     *
+     * @return how long the breaker had been open, or null if it was not open
+     */
+    public Duration closeAfterProbe(String modelId) {
+        Long opened = openedAt.get(modelId);
+        recordSuccess(modelId);
+        return opened != null ? Duration.ofMillis(System.currentTimeMillis() - opened) : null;
+    }
+
+    /**
+     * Models a health prober should check: breaker open or half-open, or closed with at least
+     * degradedFailures consecutive failures
+     */
+    public List<String> getProbeTargets(int degradedFailures) {
+        List<String> targets = new ArrayList<>();
+        circuitBreakerStates.forEach((modelId, state) -> {
+            if (state != CircuitBreakerState.CLOSED
+                    || consecutiveFailures.getOrDefault(modelId, 0) >= degradedFailures) {
+                targets.add(modelId);
+            }
+        });
+        return targets;
+    }
+
+    /**
+     * Time from opening to closing of each model's most recent breaker trip
+     */
+    public Map<String, Long> getTimeToRecoveryMs() {
+        return Map.copyOf(lastTimeToRecoveryMs);
+    }
+
     public void recordFailure(String modelId) {
-        int failures = consecutiveFailures.getOrDefault(modelId, 0) + 1;
-        consecutiveFailures.put(modelId, failures);
+        int failures = consecutiveFailures.merge(modelId, 1, Integer::sum);
         lastFailureTime.put(modelId, System.currentTimeMillis());
-        
-        if (failures >= CIRCUIT_BREAKER_THRESHOLD) {
-            circuitBreakerStates.put(modelId, CircuitBreakerState.OPEN);
-            logger.warn("Circuit breaker OPENED for model: {} after {} consecutive failures", 
-                       modelId, failures);
+
+        // Failures peers reported count too, so the cluster trips after one threshold's worth in total
+        int clusterFailures = failures + peerFailureCount(modelId);
+        if (clusterFailures >= CIRCUIT_BREAKER_THRESHOLD) {
+            if (circuitBreakerStates.put(modelId, CircuitBreakerState.OPEN) != CircuitBreakerState.OPEN) {
+                openedAt.putIfAbsent(modelId, System.currentTimeMillis());
+                stateChangedAt.put(modelId, System.currentTimeMillis());
+            }
+            logger.warn("Circuit breaker OPENED for model: {} after {} consecutive failures ({} in the cluster)",
+                       modelId, failures, clusterFailures);
         }
-        
+        stateListener.accept(modelId);
+
         logger.debug("Recorded failure #{} for model: {}", failures, modelId);
     }
 
+    /**
+     * Called, on the recording thread, whenever a model's breaker state or failure count changes.
+     * Must not block: the cluster sync only marks the model for its next publish.
+     */
+    public void setStateListener(Consumer<String> stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * This node's view of every breaker it knows, for publishing to peers
+     */
+    public List<BreakerSnapshot> getBreakerSnapshots() {
+        List<BreakerSnapshot> snapshots = new ArrayList<>();
+        circuitBreakerStates.keySet().forEach(modelId -> snapshots.add(getBreakerSnapshot(modelId)));
+        return snapshots;
+    }
+
+    public BreakerSnapshot getBreakerSnapshot(String modelId) {
+        CircuitBreakerState state = circuitBreakerStates.getOrDefault(modelId, CircuitBreakerState.CLOSED);
+        return new BreakerSnapshot(modelId, state.name(), consecutiveFailures.getOrDefault(modelId, 0),
+                openedAt.getOrDefault(modelId, 0L), stateChangedAt.getOrDefault(modelId, 0L));
+    }
+
+    /**
+     * Merge a peer's view of one breaker. The most recent state change wins: a peer that opened the
+     * breaker after our last change opens it here (timing out from the peer's opening), and a peer
+     * that closed it (e.g. after a successful probe) closes it here. Peer changes are not re-announced.
+     *
+     * @return whether the local breaker state changed
+     */
+    public boolean applyPeerState(String nodeId, BreakerSnapshot peer, long sentAtMs) {
+        peerFailures.computeIfAbsent(peer.modelId(), id -> new ConcurrentHashMap<>())
+                .put(nodeId, new PeerFailures(peer.failures(), sentAtMs));
+        if (peer.changedAtMs() <= stateChangedAt.getOrDefault(peer.modelId(), 0L)) {
+            return false;
+        }
+        CircuitBreakerState local = circuitBreakerStates.getOrDefault(peer.modelId(), CircuitBreakerState.CLOSED);
+        if (CircuitBreakerState.OPEN.name().equals(peer.state()) && local != CircuitBreakerState.OPEN) {
+            circuitBreakerStates.put(peer.modelId(), CircuitBreakerState.OPEN);
+            openedAt.putIfAbsent(peer.modelId(), peer.openedAtMs() > 0 ? peer.openedAtMs() : peer.changedAtMs());
+            lastFailureTime.put(peer.modelId(), peer.changedAtMs());
+            stateChangedAt.put(peer.modelId(), peer.changedAtMs());
+            logger.warn("Circuit breaker OPENED for model: {} by peer {}", peer.modelId(), nodeId);
+            return true;
+        }
+        if (CircuitBreakerState.CLOSED.name().equals(peer.state()) && local != CircuitBreakerState.CLOSED) {
+            consecutiveFailures.put(peer.modelId(), 0);
+            circuitBreakerStates.put(peer.modelId(), CircuitBreakerState.CLOSED);
+            stateChangedAt.put(peer.modelId(), peer.changedAtMs());
+            Long opened = openedAt.remove(peer.modelId());
+            if (opened != null) {
+                lastTimeToRecoveryMs.put(peer.modelId(), peer.changedAtMs() - opened);
+            }
+            logger.info("Circuit breaker CLOSED for model: {} by peer {}", peer.modelId(), nodeId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forget failure counts from peers that have not reported since the given time
+     */
+    public void expirePeerFailures(long reportedBeforeMs) {
+        peerFailures.values().forEach(peers -> peers.values().removeIf(peer -> peer.reportedAtMs() < reportedBeforeMs));
+    }
+
+    private int peerFailureCount(String modelId) {
+        Map<String, PeerFailures> peers = peerFailures.get(modelId);
+        return peers == null ? 0 : peers.values().stream().mapToInt(PeerFailures::failures).sum();
+    }
+
     /**
      * Rough token estimation (improve with actual tokenizer if needed)
      */
@@ -281,6 +592,16 @@ public class BedrockErrorHandler {
         return Math.max(1, text.length() / 4);
     }
 
+    /**
+     * One breaker as shared with cluster peers
+     *
+     * @param state CLOSED, OPEN or HALF_OPEN
+     * @param changedAtMs when the breaker last changed state (epoch millis, 0 if never)
+     */
+    public record BreakerSnapshot(String modelId, String state, int failures, long openedAtMs, long changedAtMs) {}
+
+    private record PeerFailures(int failures, long reportedAtMs) {}
+
     /**
      * Circuit breaker states
      */
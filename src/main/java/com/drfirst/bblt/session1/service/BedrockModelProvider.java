@@ -0,0 +1,61 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Bedrock models through Spring AI, with BedrockService's retry and fallback
+ */
+@Component
+public class BedrockModelProvider implements ModelProvider {
+
+    private final BedrockService bedrockService;
+    private final ModelConfig modelConfig;
+
+    public BedrockModelProvider(BedrockService bedrockService, ModelConfig modelConfig) {
+        this.bedrockService = bedrockService;
+        this.modelConfig = modelConfig;
+    }
+
+    @Override
+    public String getName() {
+        return "bedrock";
+    }
+
+    @Override
+    public List<String> getModelIds() {
+        return bedrockService.getAvailableModels();
+    }
+
+    @Override
+    public ModelConfig.ModelProperties getModelProperties(String modelId) {
+        return modelConfig.getModels().get(modelId);
+    }
+
+    @Override
+    public ChatResponse invoke(ChatRequest request) {
+        // Retries and the fallback model are handled inside processChat
+        return bedrockService.processChat(request);
+    }
+
+    @Override
+    public ChatResponse invokeDirect(ChatRequest request) {
+        return bedrockService.invokeModelDirect(request);
+    }
+
+    @Override
+    public Flux<ChatStreamEvent> stream(ChatRequest request) {
+        return bedrockService.processStreamChat(request);
+    }
+
+    @Override
+    public boolean recordsStatistics() {
+        return true;
+    }
+}
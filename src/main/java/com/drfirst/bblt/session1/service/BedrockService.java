@@ -1,27 +1,36 @@
 package com.drfirst.bblt.session1.service;
 
 import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.config.StreamFailoverConfig;
 import com.drfirst.bblt.session1.model.ChatRequest;
 import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.springframework.ai.bedrock.converse.BedrockProxyChatModel;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.model.tool.ToolCallingChatOptions;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Recover;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
 
 import jakarta.annotation.PostConstruct;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 @Service
@@ -29,37 +38,79 @@ public class BedrockService implements ModelInvoker {
 
     private static final Logger log = Logger.getLogger(BedrockService.class.getName());
 
-    private final BedrockRuntimeClient bedrockRuntimeClient;
+    private final RegionalClientPool regionalClientPool;
     private final ModelConfig modelConfig;
     private final BedrockErrorHandler errorHandler;
+    private final PromptCompressor promptCompressor;
+    private final ModelStatistics modelStatistics;
+    private final StreamFailoverConfig streamFailoverConfig;
+    private final StreamReplayCache streamReplayCache;
+    private final RetryEngine retryEngine;
+    private final DeadlinePolicy deadlinePolicy;
+    private final ModelBulkheads bulkheads;
+    private final ObservationRegistry observationRegistry;
+    private final AuditLog auditLog;
+    private final LatencyHistograms latencyHistograms;
     private final Map<String, ChatClient> modelChatClients = new ConcurrentHashMap<>();
 
-    public BedrockService(BedrockRuntimeClient bedrockRuntimeClient, 
+    public BedrockService(RegionalClientPool regionalClientPool,
                          ModelConfig modelConfig,
-                         BedrockErrorHandler errorHandler) {
-        this.bedrockRuntimeClient = bedrockRuntimeClient;
+                         BedrockErrorHandler errorHandler,
+                         PromptCompressor promptCompressor,
+                         ModelStatistics modelStatistics,
+                         StreamFailoverConfig streamFailoverConfig,
+                         StreamReplayCache streamReplayCache,
+                         RetryEngine retryEngine,
+                         DeadlinePolicy deadlinePolicy,
+                         ModelBulkheads bulkheads,
+                         ObservationRegistry observationRegistry,
+                         AuditLog auditLog,
+                         LatencyHistograms latencyHistograms) {
+        this.regionalClientPool = regionalClientPool;
         this.modelConfig = modelConfig;
         this.errorHandler = errorHandler;
+        this.promptCompressor = promptCompressor;
+        this.modelStatistics = modelStatistics;
+        this.streamFailoverConfig = streamFailoverConfig;
+        this.streamReplayCache = streamReplayCache;
+        this.retryEngine = retryEngine;
+        this.deadlinePolicy = deadlinePolicy;
+        this.bulkheads = bulkheads;
+        this.observationRegistry = observationRegistry;
+        this.auditLog = auditLog;
+        this.latencyHistograms = latencyHistograms;
     }
 
     @PostConstruct
     public void init() {
-        // Set up circular dependency after construction
-        errorHandler.setModelInvoker(this);
+        // The error handler's model invoker is wired by ModelProviderRegistry so fallbacks can reach every provider
         log.info("BedrockService initialized with error handler and fallback capabilities");
     }
 
-    @Retryable(
-        retryFor = {RuntimeException.class},
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 1000, multiplier = 2, maxDelay = 5000)
-    )
+    /**
+     * Retries (including regional failover) are owned by the retry engine; when they are exhausted
+     * the model's fallback graph is raced, one attempt per fallback model. Traced as one "llm.chat"
+     * span with the retry attempts, fallback hops and SDK calls below it, written to the audit log and
+     * recorded in the live latency histograms.
+     */
     public ChatResponse processChat(ChatRequest request) {
+        long startNanos = System.nanoTime();
+        Observation observation = Observation.createNotStarted("llm.chat", observationRegistry)
+                .lowCardinalityKeyValue(Traces.MODEL, request.modelId())
+                .lowCardinalityKeyValue("breaker.state", errorHandler.getBreakerSnapshot(request.modelId()).state());
+        ChatResponse response = observation.observe(() -> Traces.annotate(observation, chat(request)));
+        long latencyNanos = System.nanoTime() - startNanos;
+        auditLog.record("chat", request, response, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        latencyHistograms.record(request.modelId(), "chat", latencyNanos, response.isSuccess(),
+                response.metrics() != null ? response.metrics().outputTokens() : -1);
+        return response;
+    }
+
+    private ChatResponse chat(ChatRequest request) {
         log.info("Processing chat request for model: " + request.modelId() + " with enhanced error handling");
 
-        // Check circuit breaker
-        Map<String, String> cbStatus = errorHandler.getCircuitBreakerStatus();
-        if (cbStatus.containsKey(request.modelId()) && cbStatus.get(request.modelId()).contains("OPEN")) {
+        // Check circuit breaker; past its timeout an open breaker moves to HALF_OPEN and admits a trial request
+        if (!errorHandler.isAvailable(request.modelId())) {
             log.warning("Circuit breaker is OPEN for model: " + request.modelId());
             return ChatResponse.error(
                 "⚠️ Model " + request.modelId() + " is temporarily unavailable (circuit breaker is open). Please try again later.",
@@ -67,8 +118,12 @@ public class BedrockService implements ModelInvoker {
             );
         }
 
+        if (!deadlinePolicy.hasTimeFor("call to " + request.modelId())) {
+            return deadlineExceeded(request.modelId());
+        }
+
         long startTime = System.currentTimeMillis();
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIds.next();
 
         try {
             ModelConfig.ModelProperties modelProps = modelConfig.getModels().get(request.modelId());
@@ -76,103 +131,249 @@ public class BedrockService implements ModelInvoker {
                 throw new IllegalArgumentException("Unknown model: " + request.modelId());
             }
             
-            log.info(modelProps.toString());
-            ChatClient chatClient = getOrCreateChatClient(request.modelId(), modelProps);
-            String promptText = buildPromptText(request);
-
-            String response = chatClient
-                    .prompt(promptText)
-                    .call()
-                    .content();
+            // Compression is deterministic, so every retry attempt sends the same prompt
+            PromptCompressor.Compression compression = promptCompressor.compress(request);
+            String promptText = buildPromptText(compression.request());
+
+            // Regional failover happens inside the pool and draws on the same retry attempts;
+            // the whole logical call holds one permit of the model's bulkhead, while every upstream
+            // attempt (first call, retry or regional failover) takes its own rate-limit permits
+            long reservation = ClusterRateLimiter.reservation(promptText, modelProps.getMaxTokens());
+            Runnable attemptPermits = () -> bulkheads.acquireAttemptPermits(request.modelId(), reservation);
+            RegionalClientPool.Routed<String> routed = bulkheads.execute(request.modelId(), reservation, () ->
+                    retryEngine.execute(request.modelId(), () ->
+                            regionalClientPool.execute(endpoint ->
+                                    getOrCreateChatClient(request.modelId(), modelProps, endpoint)
+                                            .prompt(promptText)
+                                            .call()
+                                            .content(), attemptPermits), attemptPermits));
 
             long endTime = System.currentTimeMillis();
             
             // Record success
             recordModelSuccess(request.modelId());
-
-            return buildChatResponse(request, response, startTime, endTime, requestId);
-
+            deadlinePolicy.recordLatency(request.modelId(), endTime - startTime);
+            recordStatistics(request.modelId(), endTime - startTime, compression.request(), routed.value().length());
+
+            ChatResponse response = buildChatResponse(compression.request(), routed.value(),
+                    startTime, endTime, requestId, routed.region());
+            releaseUnusedTokens(request.modelId(), reservation, promptText, routed.value().length());
+            return compression.annotate(response);
+
+        } catch (ModelBulkheads.BulkheadFullException | AdmissionController.AdmissionRejectedException
+                 | ClusterRateLimiter.RateLimitedException e) {
+            // Rejected before reaching the model: not a model failure, and no fallback to pile onto
+            return ChatResponse.rejected("⚠️ " + e.getMessage(), request.modelId());
         } catch (Exception e) {
             // Record failure for circuit breaker
             recordModelFailure(request.modelId(), e);
+            recordFailedCall(request.modelId(), System.currentTimeMillis() - startTime);
             
             log.severe("Error processing chat request: " + e.getMessage());
-            throw new RuntimeException("Model invocation failed: " + e.getMessage(), e);
+            return fallbackAfterFailure(request, e);
         }
     }
 
-    @Recover
-    public ChatResponse recover(RuntimeException ex, ChatRequest request) {
+    private ChatResponse fallbackAfterFailure(ChatRequest request, Exception ex) {
         log.severe("All retry attempts exhausted for model: " + request.modelId());
-        
-        // Try a fallback model
-        String fallbackModel = getFallbackModel(request.modelId());
-        if (fallbackModel != null && !fallbackModel.equals(request.modelId())) {
-            log.info("Attempting fallback from " + request.modelId() + " to " + fallbackModel);
-            
-            ChatRequest fallbackRequest = new ChatRequest(
-                request.message(),
-                request.systemPrompt(),
-                fallbackModel,
-                request.maxTokens(),
-                request.temperature(),
-                request.topP(),
-                request.topK(),
-                request.stream(),
-                request.includeMetrics()
-            );
-            
-            try {
-                ChatResponse fallbackResponse = processDirectCall(fallbackRequest);
-                if (fallbackResponse.isSuccess()) {
-                    return ChatResponse.success(
-                        "⚠️ Fallback used: " + request.modelId() + " → " + fallbackModel + "\n\n" + fallbackResponse.content(),
-                        fallbackModel,
-                        fallbackResponse.metrics()
-                    );
-                }
-            } catch (Exception e) {
-                log.warning("Fallback model " + fallbackModel + " also failed: " + e.getMessage());
-            }
+        if (!deadlinePolicy.hasTimeFor("fallback for " + request.modelId())) {
+            return deadlineExceeded(request.modelId());
         }
         
-        return ChatResponse.error(
-            "All models unavailable. Original error: " + ex.getMessage() + ". Please try again later.",
-            request.modelId()
-        );
+        // Health-ranked candidates from the fallback graph, raced with a stagger
+        return errorHandler.attemptFallback(request, ex.getMessage());
     }
 
-    public Flux<String> processStreamChat(ChatRequest request) {
+    /**
+     * Stream with failover. An error or a missed first-token deadline before any content moves to another
+     * region of the same model when the error was regional, is then retried on the same model, and then
+     * moved to the next healthy fallback, each switch announced by a metadata event.
+     * Once content has started, a failure ends the stream with a typed error event instead.
+     * Deterministic requests are served from the stream replay cache when a recording exists.
+     */
+    public Flux<ChatStreamEvent> processStreamChat(ChatRequest request) {
         log.info("Processing streaming chat request for model: " + request.modelId());
+        // Attempts after a failover subscribe on other threads; the priority travels in the Reactor context
+        Flux<ChatStreamEvent> events = streamReplayCache.stream("bedrock", request, () -> streamWithFailover(request),
+                event -> ChatStreamEvent.CONTENT.equals(event.type()) ? event.content() : null,
+                ChatStreamEvent::content);
+        Flux<ChatStreamEvent> audited = auditLog.stream("stream", request, events,
+                event -> ChatStreamEvent.CONTENT.equals(event.type()) ? event.content() : null,
+                event -> ChatStreamEvent.ERROR.equals(event.type()) ? event.content() : null);
+        return RequestPriority.propagate(latencyHistograms.stream(request.modelId(), "stream", audited,
+                event -> ChatStreamEvent.CONTENT.equals(event.type()),
+                event -> ChatStreamEvent.USAGE.equals(event.type()) ? event.metrics() : null,
+                event -> ChatStreamEvent.ERROR.equals(event.type())));
+    }
 
-        try {
-            ModelConfig.ModelProperties modelProps = modelConfig.getModels().get(request.modelId());
-            if (modelProps == null) {
-                return Flux.just("Error: Unknown model: " + request.modelId());
+    private Flux<ChatStreamEvent> streamWithFailover(ChatRequest request) {
+
+        if (!modelConfig.getModels().containsKey(request.modelId())) {
+            return Flux.just(streamError("UNKNOWN_MODEL", "Unknown model: " + request.modelId(), request.modelId(), 0));
+        }
+        List<String> plan = streamAttemptPlan(request.modelId());
+        if (plan.isEmpty()) {
+            return Flux.just(streamError("CIRCUIT_OPEN",
+                    "Model " + request.modelId() + " and all fallbacks are temporarily unavailable", request.modelId(), 0));
+        }
+        String reason = plan.get(0).equals(request.modelId()) ? null : "Circuit breaker is open for model: " + request.modelId();
+        retryEngine.recordRequest(request.modelId());
+        return streamAttempt(request, plan, 0, 0, Set.of(), request.modelId(), reason);
+    }
+
+    /**
+     * The requested model (plus retries) while its breaker is closed, then healthy fallbacks
+     */
+    private List<String> streamAttemptPlan(String modelId) {
+        List<String> plan = new ArrayList<>();
+        if (errorHandler.isAvailable(modelId)) {
+            for (int i = 0; i <= streamFailoverConfig.getRetriesPerModel(); i++) {
+                plan.add(modelId);
+            }
+        }
+        for (String fallback : errorHandler.getFallbackCandidates(modelId)) {
+            if (modelConfig.getModels().containsKey(fallback)) {
+                plan.add(fallback);
             }
+        }
+        return plan.size() > streamFailoverConfig.getMaxAttempts()
+                ? plan.subList(0, streamFailoverConfig.getMaxAttempts())
+                : plan;
+    }
+
+    private Flux<ChatStreamEvent> streamAttempt(ChatRequest request, List<String> plan, int index, int attempts,
+                                                Set<String> excludedRegions, String previousModelId, String lastError) {
+        if (index >= plan.size()) {
+            return Flux.just(streamError("ALL_MODELS_FAILED",
+                    "No model produced output. Last error: " + lastError, previousModelId, 0));
+        }
 
-            ChatClient chatClient = getOrCreateChatClient(request.modelId(), modelProps);
-            String promptText = buildPromptText(request);
+        String modelId = plan.get(index);
+        RegionalClientPool.RegionEndpoint endpoint = regionalClientPool.select(excludedRegions);
+        Flux<ChatStreamEvent> announcement = Flux.empty();
+        if (lastError != null) {
+            Map<String, Object> switchInfo = new LinkedHashMap<>();
+            switchInfo.put("event", !modelId.equals(previousModelId) ? "model_switch"
+                    : excludedRegions.isEmpty() ? "retry" : "region_failover");
+            switchInfo.put("from", previousModelId);
+            switchInfo.put("to", modelId);
+            switchInfo.put("region", endpoint.getName());
+            switchInfo.put("attempt", attempts + 1);
+            switchInfo.put("reason", lastError);
+            announcement = Flux.just(ChatStreamEvent.metadata(switchInfo));
+        }
 
-            return chatClient
-                    .prompt(promptText)
-                    .stream()
-                    .content()
-                    .doOnNext(content -> log.fine("Streaming content: " + content))
-                    .doOnError(error -> log.severe("Error in streaming: " + error.getMessage()))
-                    .onErrorReturn("Error occurred during streaming: " + request.modelId());
+        ModelConfig.ModelProperties modelProps = modelConfig.getModels().get(modelId);
+        ChatRequest attemptRequest = promptCompressor.compress(ModelProviderRegistry.withModel(request, modelId)).request();
+        AtomicLong startTime = new AtomicLong();
+        AtomicInteger chunks = new AtomicInteger();
+        AtomicInteger outputChars = new AtomicInteger();
+
+        String attemptPrompt = buildPromptText(attemptRequest);
+        long reservation = ClusterRateLimiter.reservation(attemptPrompt, modelProps.getMaxTokens());
+        Flux<ChatStreamEvent> attempt = bulkheads.stream(modelId, reservation, () -> regionalClientPool.track(endpoint,
+                        getOrCreateChatClient(modelId, modelProps, endpoint)
+                                .prompt(attemptPrompt)
+                                .stream()
+                                .content()))
+                .doOnSubscribe(subscription -> startTime.set(System.currentTimeMillis()))
+                // Deadline applies to the first token only
+                .timeout(Mono.delay(streamFailoverConfig.getFirstTokenTimeout()), chunk -> Flux.never())
+                .doOnNext(chunk -> {
+                    if (chunks.getAndIncrement() == 0) {
+                        modelStatistics.recordFirstToken(modelId, System.currentTimeMillis() - startTime.get());
+                    }
+                    outputChars.addAndGet(chunk.length());
+                })
+                .map(ChatStreamEvent::content)
+                .doOnComplete(() -> {
+                    recordModelSuccess(modelId);
+                    recordStatistics(modelId, System.currentTimeMillis() - startTime.get(), attemptRequest, outputChars.get());
+                    releaseUnusedTokens(modelId, reservation, attemptPrompt, outputChars.get());
+                })
+                .onErrorResume(error -> {
+                    if (!(error instanceof ModelBulkheads.BulkheadFullException
+                            || error instanceof AdmissionController.AdmissionRejectedException
+                            || error instanceof ClusterRateLimiter.RateLimitedException)) {
+                        recordModelFailure(modelId, error instanceof Exception e ? e : new RuntimeException(error));
+                        recordFailedCall(modelId, System.currentTimeMillis() - startTime.get());
+                    }
+                    String code = streamErrorCode(error);
+                    String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+                    if (chunks.get() > 0) {
+                        log.severe("Streaming failed on " + modelId + " after " + chunks.get() + " chunks: " + message);
+                        return Flux.just(streamError(code, message, modelId, chunks.get()));
+                    }
+                    if (error instanceof TimeoutException) {
+                        modelStatistics.recordFirstTokenTimeout(modelId);
+                    }
+                    log.warning("Streaming attempt " + (attempts + 1) + " on " + modelId + " in " + endpoint.getName()
+                            + " failed before first token: " + message);
+
+                    // A regional error (or a region too slow to start) moves to another region of the
+                    // same model first; like every further attempt, it is a retry the engine has to grant
+                    if (error instanceof TimeoutException || RegionalClientPool.isRegionalFailure(error)) {
+                        Set<String> excluded = new HashSet<>(excludedRegions);
+                        excluded.add(endpoint.getName());
+                        if (regionalClientPool.select(excluded) != null
+                                && retryEngine.decide(modelId, error, attempts + 1, plan.size(), false).allowed()) {
+                            return streamAttempt(request, plan, index, attempts + 1, excluded, modelId, code + ": " + message);
+                        }
+                    }
+
+                    int next = index + 1;
+                    while (next < plan.size()) {
+                        boolean sameModel = plan.get(next).equals(modelId);
+                        RetryEngine.RetryDecision decision = retryEngine.decide(modelId, error, attempts + 1, plan.size(), sameModel);
+                        if (decision.allowed()) {
+                            Flux<ChatStreamEvent> retry = streamAttempt(request, plan, next, attempts + 1, Set.of(), modelId, code + ": " + message);
+                            return decision.delay().isZero() ? retry : Mono.delay(decision.delay()).thenMany(retry);
+                        }
+                        if (!sameModel) {
+                            return Flux.just(streamError(code, message + " (not retried: " + decision.reason() + ")", modelId, 0));
+                        }
+                        next++; // not worth retrying this model, move on to the next one
+                    }
+                    return streamAttempt(request, plan, next, attempts + 1, Set.of(), modelId, code + ": " + message);
+                });
+
+        return announcement.concatWith(attempt);
+    }
 
-        } catch (Exception e) {
-            log.severe("Error setting up streaming chat: " + e.getMessage());
-            return Flux.just("Error: " + e.getMessage());
+    private static String streamErrorCode(Throwable error) {
+        if (error instanceof TimeoutException) {
+            return "FIRST_TOKEN_TIMEOUT";
         }
+        if (error instanceof ModelBulkheads.BulkheadFullException) {
+            return "BULKHEAD_FULL";
+        }
+        if (error instanceof AdmissionController.AdmissionRejectedException) {
+            return "SHED";
+        }
+        if (error instanceof ClusterRateLimiter.RateLimitedException) {
+            return "RATE_LIMITED";
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ThrottlingException) {
+                return "THROTTLED";
+            }
+        }
+        return "UPSTREAM_ERROR";
+    }
+
+    private static ChatStreamEvent streamError(String code, String message, String modelId, int chunksDelivered) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("code", code);
+        details.put("modelId", modelId);
+        details.put("chunksDelivered", chunksDelivered);
+        return ChatStreamEvent.error(message, details);
     }
 
     public CompletableFuture<List<ChatResponse.ModelPerformanceMetrics>> compareModels(String message, List<String> modelIds) {
-        log.info("Comparing models: " + modelIds + " with message: " + message);
+        log.info("Comparing models: " + modelIds + " with a message of " + message.length() + " chars");
 
         List<CompletableFuture<ChatResponse.ModelPerformanceMetrics>> futures = modelIds.stream()
-                .map(modelId -> CompletableFuture.supplyAsync(() -> {
+                .map(modelId -> CompletableFuture.supplyAsync(RequestPriority.propagate(() -> {
                     ChatRequest request = new ChatRequest(
                             message, null, modelId, 1000, 0.7, 0.9, 40, false, true
                     );
@@ -187,27 +388,29 @@ public class BedrockService implements ModelInvoker {
                             response.metrics() != null ? response.metrics().estimatedCost() : 0,
                             response.metrics() != null ? response.metrics().finishReason() : "unknown"
                     );
-                }))
+                })))
                 .toList();
 
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
                 .thenApply(v -> futures.stream()
                         .map(CompletableFuture::join)
                         .toList());
     }
 
-    private ChatClient getOrCreateChatClient(String modelId, ModelConfig.ModelProperties modelProps) {
-        return modelChatClients.computeIfAbsent(modelId, k -> {
-            ChatModel chatModel = createChatModel(modelProps);
+    private ChatClient getOrCreateChatClient(String modelId, ModelConfig.ModelProperties modelProps,
+                                             RegionalClientPool.RegionEndpoint endpoint) {
+        return modelChatClients.computeIfAbsent(modelId + "@" + endpoint.getName(), k -> {
+            ChatModel chatModel = createChatModel(modelProps, endpoint);
             return ChatClient.builder(chatModel).build();
         });
     }
 
-    private ChatModel createChatModel(ModelConfig.ModelProperties modelProps) {
+    private ChatModel createChatModel(ModelConfig.ModelProperties modelProps, RegionalClientPool.RegionEndpoint endpoint) {
         String actualModelId = modelProps.getModelId();
 
         return BedrockProxyChatModel.builder()
-                .bedrockRuntimeClient(bedrockRuntimeClient)
+                .bedrockRuntimeClient(endpoint.getClient())
+                .bedrockRuntimeAsyncClient(endpoint.getAsyncClient())
                 .defaultOptions(
                         ToolCallingChatOptions.builder()
                                 .model(actualModelId)
@@ -228,7 +431,7 @@ public class BedrockService implements ModelInvoker {
     }
 
     private ChatResponse buildChatResponse(ChatRequest request, String content,
-                                           long startTime, long endTime, String requestId) {
+                                           long startTime, long endTime, String requestId, String region) {
         long responseTime = endTime - startTime;
 
         // Mock token usage for now - in real implementation this would come from the model response
@@ -254,6 +457,7 @@ public class BedrockService implements ModelInvoker {
         metadata.put("maxTokens", request.maxTokens());
         metadata.put("topP", request.topP());
         metadata.put("topK", request.topK());
+        metadata.put("region", region);
         metadata.put("response", content);
 
         return new ChatResponse(
@@ -306,7 +510,7 @@ public class BedrockService implements ModelInvoker {
     }
 
     public List<String> getAvailableModels() {
-        return List.of("claude-3-7-sonnet", "claude-4-opus", "nova-pro", "titan-express");
+        return modelConfig.getModels().keySet().stream().sorted().toList();
     }
 
     /**
@@ -316,6 +520,13 @@ public class BedrockService implements ModelInvoker {
         return errorHandler.getCircuitBreakerStatus();
     }
 
+    /**
+     * Get per-region routing health (EWMA latency, error rate, in-flight calls)
+     */
+    public Map<String, Map<String, Object>> getRegionHealth() {
+        return regionalClientPool.getRegionHealth();
+    }
+
     /**
      * Record successful model invocation for circuit breaker
      */
@@ -342,59 +553,94 @@ public class BedrockService implements ModelInvoker {
     }
 
     /**
-     * Get fallback model for the given model
+     * Feed the live statistics the router and the fallback graph rank by; tokens and cost are estimated
+     * as in the response metrics
+     */
+    private void recordStatistics(String modelId, long latencyMs, ChatRequest request, int outputChars) {
+        int inputTokens = request.message().length() / 4;
+        int outputTokens = outputChars / 4;
+        modelStatistics.record(modelId, latencyMs, true, outputTokens, calculateCost(modelId, inputTokens, outputTokens));
+    }
+
+    /**
+     * A call that reached the model and failed; cancelled calls (a lost fallback race, a client that
+     * went away) say nothing about the model and are not recorded
      */
-    private String getFallbackModel(String modelId) {
-        switch (modelId) {
-            case "claude-4-opus":
-                return "claude-3-7-sonnet";
-            case "claude-3-7-sonnet":
-                return "nova-pro";
-            case "nova-pro":
-                return "titan-express";
-            case "titan-express":
-                return "claude-3-7-sonnet";
-            default:
-                return "claude-3-7-sonnet";
+    private void recordFailedCall(String modelId, long latencyMs) {
+        if (!Thread.currentThread().isInterrupted()) {
+            modelStatistics.record(modelId, latencyMs, false, 0, 0.0);
         }
     }
 
+    private ChatResponse deadlineExceeded(String modelId) {
+        deadlinePolicy.recordExceeded();
+        Deadline deadline = Deadline.current();
+        return ChatResponse.error(
+            "⚠️ Request deadline exceeded" + (deadline != null ? " (" + deadline.getTimeout().toMillis() + "ms)" : "")
+                    + " before model " + modelId + " could answer",
+            modelId
+        );
+    }
+
     /**
      * Process chat without retry logic for fallback scenarios
      */
     private ChatResponse processDirectCall(ChatRequest request) {
         long startTime = System.currentTimeMillis();
-        String requestId = UUID.randomUUID().toString();
+        String requestId = RequestIds.next();
 
         ModelConfig.ModelProperties modelProps = modelConfig.getModels().get(request.modelId());
         if (modelProps == null) {
             throw new IllegalArgumentException("Unknown model: " + request.modelId());
         }
 
-        ChatClient chatClient = getOrCreateChatClient(request.modelId(), modelProps);
-        String promptText = buildPromptText(request);
+        PromptCompressor.Compression compression = promptCompressor.compress(request);
+        String promptText = buildPromptText(compression.request());
 
-        String response = chatClient
-                .prompt(promptText)
-                .call()
-                .content();
+        long reservation = ClusterRateLimiter.reservation(promptText, modelProps.getMaxTokens());
+        RegionalClientPool.Routed<String> routed = bulkheads.execute(request.modelId(), reservation, () ->
+                regionalClientPool.execute(endpoint ->
+                        getOrCreateChatClient(request.modelId(), modelProps, endpoint)
+                                .prompt(promptText)
+                                .call()
+                                .content(), () -> bulkheads.acquireAttemptPermits(request.modelId(), reservation)));
 
         long endTime = System.currentTimeMillis();
+        recordStatistics(request.modelId(), endTime - startTime, compression.request(), routed.value().length());
+
+        ChatResponse response = buildChatResponse(compression.request(), routed.value(),
+                startTime, endTime, requestId, routed.region());
+        releaseUnusedTokens(request.modelId(), reservation, promptText, routed.value().length());
+        return compression.annotate(response);
+    }
 
-        return buildChatResponse(request, response, startTime, endTime, requestId);
+    /**
+     * Return what the call reserved beyond the tokens it used to the model's rate limit. The chat client
+     * reports no usage, so it is estimated the same way as the reservation.
+     */
+    private void releaseUnusedTokens(String modelId, long reservation, String promptText, int outputChars) {
+        bulkheads.releaseUnusedTokens(modelId, reservation, ClusterRateLimiter.reservation(promptText, 0) + outputChars / 4);
     }
 
     /**
      * Implementation of ModelInvoker interface for fallback mechanism
-     * This method is called by BedrockErrorHandler to invoke models directly
+     * This method is called by BedrockErrorHandler to invoke models directly.
+     * A call turned away by the bulkhead, admission control or the rate limiter comes back as a
+     * rejected response, so fallbacks and probes do not count it against the model.
      */
     @Override
     public ChatResponse invokeModelDirect(ChatRequest request) {
         log.info("Direct model invocation for fallback: " + request.modelId());
+        long startTime = System.currentTimeMillis();
         
         try {
             return processDirectCall(request);
+        } catch (ModelBulkheads.BulkheadFullException | AdmissionController.AdmissionRejectedException
+                 | ClusterRateLimiter.RateLimitedException e) {
+            log.warning("Direct model invocation rejected: " + e.getMessage());
+            return ChatResponse.rejected(e.getMessage(), request.modelId());
         } catch (Exception e) {
+            recordFailedCall(request.modelId(), System.currentTimeMillis() - startTime);
             log.severe("Direct model invocation failed: " + e.getMessage());
             return ChatResponse.error(
                 "Direct invocation failed: " + e.getMessage(), 
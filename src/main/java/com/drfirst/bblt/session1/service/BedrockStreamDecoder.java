@@ -0,0 +1,94 @@
+package com.drfirst.bblt.session1.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Incremental decoder for InvokeModelWithResponseStream payload chunks.
+ * Each chunk is walked with a streaming parser directly over its bytes, so only the text delta
+ * itself becomes a String. Usage and stop reason are accumulated across chunks; the final
+ * chunk's amazon-bedrock-invocationMetrics carry the authoritative token counts.
+ * Not thread-safe: create one decoder per stream.
+ */
+class BedrockStreamDecoder {
+
+    private final JsonFactory jsonFactory;
+
+    private int inputTokens;
+    private int outputTokens;
+    private String stopReason;
+
+    BedrockStreamDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Decode one chunk and return its text delta, or null if the chunk carries no text
+     */
+    String decode(byte[] payload) throws IOException {
+        String text = null;
+
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                String name = parser.currentName();
+                if (name == null) {
+                    continue; // array elements and the root object
+                }
+                if (token == JsonToken.VALUE_STRING) {
+                    switch (name) {
+                        // Claude content_block_delta / Nova contentBlockDelta: {"delta": {"text": "..."}}
+                        case "text" -> {
+                            if ("delta".equals(parentName(parser))) {
+                                text = append(text, parser.getText());
+                            }
+                        }
+                        // Prompt-style models (generation) and Titan (outputText)
+                        case "generation", "outputText" -> text = append(text, parser.getText());
+                        case "stop_reason", "stopReason", "completionReason" -> stopReason = parser.getText();
+                        default -> {
+                            // not needed
+                        }
+                    }
+                } else if (token == JsonToken.VALUE_NUMBER_INT) {
+                    switch (name) {
+                        case "input_tokens", "inputTokens", "inputTokenCount", "prompt_token_count" ->
+                                inputTokens = Math.max(inputTokens, parser.getIntValue());
+                        case "output_tokens", "outputTokens", "outputTokenCount", "generation_token_count" ->
+                                outputTokens = Math.max(outputTokens, parser.getIntValue());
+                        default -> {
+                            // not needed
+                        }
+                    }
+                }
+            }
+        }
+
+        return text;
+    }
+
+    private static String parentName(JsonParser parser) {
+        JsonStreamContext parent = parser.getParsingContext().getParent();
+        return parent != null ? parent.getCurrentName() : null;
+    }
+
+    private static String append(String current, String delta) {
+        return current == null ? delta : current + delta;
+    }
+
+    int getInputTokens() {
+        return inputTokens;
+    }
+
+    int getOutputTokens() {
+        return outputTokens;
+    }
+
+    String getStopReason() {
+        return stopReason;
+    }
+}
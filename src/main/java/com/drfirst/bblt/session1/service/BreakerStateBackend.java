@@ -0,0 +1,64 @@
+package com.drfirst.bblt.session1.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport that shares circuit breaker state between replicas for {@link ClusterBreakerSync}.
+ * Delivery is best effort: a lost update is repaired by the next heartbeat.
+ */
+public interface BreakerStateBackend {
+
+    /**
+     * Name selected by cluster.backend
+     */
+    String getName();
+
+    void start(String nodeId) throws IOException;
+
+    /**
+     * Publish this node's changed breakers; with fullState the updates are everything this node knows
+     */
+    void publish(List<BreakerUpdate> updates, boolean fullState);
+
+    /**
+     * Updates from peers received since the last poll; may include this node's own
+     */
+    List<BreakerUpdate> poll();
+
+    void close();
+
+    Map<String, Object> getStats();
+
+    /**
+     * One node's view of one breaker at the time it was sent
+     */
+    record BreakerUpdate(String nodeId, long sentAtMs, BedrockErrorHandler.BreakerSnapshot breaker) {
+
+        private static final String SEPARATOR = "\t";
+
+        public String encode() {
+            return String.join(SEPARATOR, nodeId, Long.toString(sentAtMs), breaker.modelId(), breaker.state(),
+                    Integer.toString(breaker.failures()), Long.toString(breaker.openedAtMs()),
+                    Long.toString(breaker.changedAtMs()));
+        }
+
+        /**
+         * @return the update, or null if the line is malformed
+         */
+        public static BreakerUpdate decode(String line) {
+            String[] fields = line.split(SEPARATOR);
+            if (fields.length != 7) {
+                return null;
+            }
+            try {
+                return new BreakerUpdate(fields[0], Long.parseLong(fields[1]),
+                        new BedrockErrorHandler.BreakerSnapshot(fields[2], fields[3], Integer.parseInt(fields[4]),
+                                Long.parseLong(fields[5]), Long.parseLong(fields[6])));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Codec for Anthropic's Messages API format on Bedrock
+ */
+class ClaudePayloadCodec implements PayloadCodec {
+
+    private static final String ANTHROPIC_VERSION = "bedrock-2023-05-31";
+
+    @Override
+    public void writeRequest(ChatRequest request, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("anthropic_version", ANTHROPIC_VERSION);
+        generator.writeNumberField("max_tokens", request.maxTokens());
+        generator.writeNumberField("temperature", request.temperature());
+        generator.writeNumberField("top_p", request.topP());
+        generator.writeNumberField("top_k", request.topK());
+
+        if (request.systemPrompt() != null && !request.systemPrompt().trim().isEmpty()) {
+            generator.writeStringField("system", request.systemPrompt());
+        }
+
+        generator.writeArrayFieldStart("messages");
+        generator.writeStartObject();
+        generator.writeStringField("role", "user");
+        generator.writeStringField("content", request.message());
+        generator.writeEndObject();
+        generator.writeEndArray();
+
+        generator.writeEndObject();
+    }
+
+    @Override
+    public DecodedResponse readResponse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object in Claude response");
+        }
+
+        String content = null;
+        int inputTokens = 0;
+        int outputTokens = 0;
+        String stopReason = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "content" -> content = readTextBlocks(parser, value);
+                case "stop_reason" -> stopReason = parser.getValueAsString();
+                case "usage" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String usageField = parser.currentName();
+                            parser.nextToken();
+                            switch (usageField) {
+                                case "input_tokens" -> inputTokens = parser.getValueAsInt(0);
+                                case "output_tokens" -> outputTokens = parser.getValueAsInt(0);
+                                default -> parser.skipChildren();
+                            }
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        return new DecodedResponse(content != null ? content : "", inputTokens, outputTokens, stopReason);
+    }
+
+    /**
+     * Concatenate the text of all {"type": "text", "text": "..."} blocks
+     */
+    private String readTextBlocks(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+
+        String text = null;
+        StringBuilder combined = null;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("text".equals(field)) {
+                    String blockText = parser.getValueAsString();
+                    if (text == null) {
+                        text = blockText;
+                    } else {
+                        // Multiple text blocks are rare; only then pay for a builder
+                        if (combined == null) {
+                            combined = new StringBuilder(text);
+                        }
+                        combined.append(blockText);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return combined != null ? combined.toString() : text;
+    }
+}
@@ -0,0 +1,175 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ClusterConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares {@link BedrockErrorHandler} circuit breakers across replicas. Requests never wait on the
+ * cluster: a breaker change only marks the model dirty, and a background sync publishes dirty
+ * breakers every syncInterval, republishes everything every heartbeatInterval, and merges what
+ * peers sent. A peer's change is therefore seen within about one sync interval plus transport delay;
+ * reports older than maxStaleness (e.g. from a dead node) are ignored, and their failure counts expire.
+ * Conflicting changes resolve to the most recent one by wall clock.
+ */
+@Component
+public class ClusterBreakerSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterBreakerSync.class);
+
+    private final ClusterConfig clusterConfig;
+    private final BedrockErrorHandler errorHandler;
+    private final List<BreakerStateBackend> backends;
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> peersLastSeen = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("cluster-breaker-sync").factory());
+    private final Counter published;
+    private final Counter received;
+    private final Counter applied;
+    private final Counter stale;
+
+    private BreakerStateBackend backend;
+    private String nodeId;
+    private long lastHeartbeatMs;
+
+    public ClusterBreakerSync(ClusterConfig clusterConfig, BedrockErrorHandler errorHandler,
+                              List<BreakerStateBackend> backends, MeterRegistry meterRegistry) {
+        this.clusterConfig = clusterConfig;
+        this.errorHandler = errorHandler;
+        this.backends = backends;
+        this.published = meterRegistry.counter("llm.cluster.breaker.published");
+        this.received = meterRegistry.counter("llm.cluster.breaker.received");
+        this.applied = meterRegistry.counter("llm.cluster.breaker.applied");
+        this.stale = meterRegistry.counter("llm.cluster.breaker.stale");
+        Gauge.builder("llm.cluster.peers", peersLastSeen, Map::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!clusterConfig.isEnabled()) {
+            logger.info("Cluster breaker sharing disabled");
+            return;
+        }
+        backend = backends.stream()
+                .filter(candidate -> candidate.getName().equals(clusterConfig.getBackend()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown cluster backend: " + clusterConfig.getBackend()));
+        nodeId = resolveNodeId();
+        backend.start(nodeId);
+        errorHandler.setStateListener(dirty::add);
+
+        long intervalMs = clusterConfig.getSyncInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::sync, 0, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Cluster breaker sharing started as node {} via {} backend", nodeId, backend.getName());
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        if (backend != null) {
+            backend.close();
+        }
+    }
+
+    /**
+     * Publish local changes, then merge peers' updates
+     */
+    void sync() {
+        try {
+            long now = System.currentTimeMillis();
+            boolean heartbeat = now - lastHeartbeatMs >= clusterConfig.getHeartbeatInterval().toMillis();
+            List<BedrockErrorHandler.BreakerSnapshot> changed;
+            if (heartbeat) {
+                dirty.clear();
+                changed = errorHandler.getBreakerSnapshots();
+                lastHeartbeatMs = now;
+            } else {
+                changed = new ArrayList<>();
+                for (Iterator<String> it = dirty.iterator(); it.hasNext(); ) {
+                    // Unmark before reading, so a change racing with the read is published next time
+                    String modelId = it.next();
+                    it.remove();
+                    changed.add(errorHandler.getBreakerSnapshot(modelId));
+                }
+            }
+            if (heartbeat || !changed.isEmpty()) {
+                backend.publish(changed.stream()
+                        .map(breaker -> new BreakerStateBackend.BreakerUpdate(nodeId, now, breaker))
+                        .toList(), heartbeat);
+                published.increment(changed.size());
+            }
+
+            long staleBefore = now - clusterConfig.getMaxStaleness().toMillis();
+            for (BreakerStateBackend.BreakerUpdate update : backend.poll()) {
+                if (update.nodeId().equals(nodeId)) {
+                    continue;
+                }
+                received.increment();
+                if (update.sentAtMs() < staleBefore) {
+                    stale.increment();
+                    continue;
+                }
+                peersLastSeen.merge(update.nodeId(), update.sentAtMs(), Math::max);
+                if (errorHandler.applyPeerState(update.nodeId(), update.breaker(), update.sentAtMs())) {
+                    applied.increment();
+                }
+            }
+            errorHandler.expirePeerFailures(staleBefore);
+            peersLastSeen.values().removeIf(lastSeen -> lastSeen < staleBefore);
+        } catch (RuntimeException e) {
+            logger.warn("Cluster breaker sync failed", e);
+        }
+    }
+
+    private String resolveNodeId() {
+        if (clusterConfig.getNodeId() != null && !clusterConfig.getNodeId().isBlank()) {
+            return clusterConfig.getNodeId();
+        }
+        String hostname = System.getenv("HOSTNAME");
+        return hostname != null && !hostname.isBlank() ? hostname : UUID.randomUUID().toString();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> peers = new TreeMap<>();
+        long now = System.currentTimeMillis();
+        peersLastSeen.forEach((peer, lastSeen) -> peers.put(peer, now - lastSeen));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", clusterConfig.isEnabled());
+        stats.put("nodeId", nodeId);
+        stats.put("backend", backend != null ? backend.getName() : null);
+        stats.put("syncIntervalMs", clusterConfig.getSyncInterval().toMillis());
+        stats.put("maxStalenessMs", clusterConfig.getMaxStaleness().toMillis());
+        stats.put("peersLastSeenMsAgo", peers);
+        stats.put("published", (long) published.count());
+        stats.put("received", (long) received.count());
+        stats.put("applied", (long) applied.count());
+        stats.put("stale", (long) stale.count());
+        if (backend != null) {
+            stats.put("transport", backend.getStats());
+        }
+        stats.put("breakers", errorHandler.getCircuitBreakerStatus());
+        return stats;
+    }
+}
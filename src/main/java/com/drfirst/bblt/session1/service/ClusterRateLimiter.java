@@ -0,0 +1,426 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.config.RateLimitConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Enforces the per-model {@link ModelConfig.RateLimits} across all nodes. Each call takes one request
+ * permit and its token reservation (prompt estimate plus maxTokens, as Bedrock itself reserves) from a
+ * local pool with compare-and-set only; the pool is leased in batches from a {@link RateLimitLeaseClient}
+ * and topped up in the background before it runs dry. Reserved tokens a completed call did not use go
+ * back to the local pool; permits left unused for leaseTtl go back to the coordinator, so idle nodes
+ * do not sit on capacity busy ones need. A caller only waits when its
+ * pool is empty, for at most maxWait, and is then rejected with {@link RateLimitedException}.
+ * If the coordinator cannot be reached, calls pass unmetered until it can.
+ */
+@Component
+public class ClusterRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRateLimiter.class);
+
+    private final RateLimitConfig rateLimitConfig;
+    private final ModelConfig modelConfig;
+    private final RateLimitCoordinator coordinator;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenance =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("rate-limit-maintenance").factory());
+    private final ExecutorService leaseExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private RateLimitLeaseClient client;
+    private String nodeId;
+
+    public ClusterRateLimiter(RateLimitConfig rateLimitConfig, ModelConfig modelConfig,
+                              RateLimitCoordinator coordinator, MeterRegistry meterRegistry) {
+        this.rateLimitConfig = rateLimitConfig;
+        this.modelConfig = modelConfig;
+        this.coordinator = coordinator;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!rateLimitConfig.isEnabled()) {
+            logger.info("Rate limiting disabled");
+            return;
+        }
+        nodeId = resolveNodeId();
+        client = "remote".equals(rateLimitConfig.getMode())
+                ? new SocketRateLimitClient(rateLimitConfig.getHost(), rateLimitConfig.getPort(), rateLimitConfig.getConnectTimeout())
+                : coordinator;
+        long intervalMs = rateLimitConfig.getMaintenanceInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::maintain, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Rate limiting as node {} with {} coordinator", nodeId, rateLimitConfig.getMode());
+    }
+
+    @PreDestroy
+    public void stop() {
+        maintenance.shutdownNow();
+        pools.values().forEach(Pool::returnUnused);
+        leaseExecutor.shutdownNow();
+        if (client instanceof SocketRateLimitClient socketClient) {
+            socketClient.close();
+        }
+    }
+
+    /**
+     * Take one request and the given tokens for the model, waiting for a refill for at most maxWait
+     * (or what is left of the request deadline, if less)
+     */
+    public void acquire(String modelId, long tokens) {
+        Pool pool = pool(modelId);
+        if (pool == null || pool.tryTake(tokens)) {
+            return;
+        }
+        long waitNanos = maxWait().toNanos();
+        long giveUpAt = System.nanoTime() + waitNanos;
+        while (waitNanos > 0) {
+            try {
+                boolean unmetered = pool.refill(tokens).get(waitNanos, TimeUnit.NANOSECONDS);
+                if (unmetered || pool.tryTake(tokens)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                break;
+            }
+            if (pool.exhausted) {
+                break; // the coordinator has nothing left either; waiting longer will not help
+            }
+            waitNanos = giveUpAt - System.nanoTime();
+        }
+        throw pool.reject(tokens);
+    }
+
+    /**
+     * Non-blocking {@link #acquire}: completes once the permits are taken
+     */
+    public Mono<Void> acquireAsync(String modelId, long tokens) {
+        return Mono.defer(() -> {
+            Pool pool = pool(modelId);
+            if (pool == null || pool.tryTake(tokens)) {
+                return Mono.empty();
+            }
+            return Mono.fromFuture(pool.refill(tokens))
+                    .timeout(maxWait())
+                    .onErrorResume(TimeoutException.class, e -> Mono.just(false))
+                    .flatMap(unmetered -> unmetered || pool.tryTake(tokens) ? Mono.<Void>empty() : Mono.error(pool.reject(tokens)));
+        });
+    }
+
+    /**
+     * Give the part of a call's token reservation it did not use back to the local pool, once the call
+     * has completed and its actual usage is known; a short answer to a large maxTokens would otherwise
+     * hold its whole output allowance until the lease expired
+     */
+    public void release(String modelId, long reservedTokens, long usedTokens) {
+        long unused = reservedTokens - Math.max(0, usedTokens);
+        if (unused <= 0) {
+            return;
+        }
+        Pool pool = pool(modelId);
+        if (pool != null) {
+            pool.refund(unused);
+        }
+    }
+
+    /**
+     * Tokens to reserve for a call: the prompt estimate plus the full output allowance
+     */
+    public static long reservation(String prompt, int maxTokens) {
+        return (prompt != null ? prompt.length() / 4 : 0) + Math.max(0, maxTokens);
+    }
+
+    private Duration maxWait() {
+        Duration maxWait = rateLimitConfig.getMaxWait();
+        Duration remaining = Deadline.currentRemaining();
+        return remaining != null && remaining.compareTo(maxWait) < 0 ? remaining : maxWait;
+    }
+
+    /**
+     * Return expired leases and top up pools that are in use and running low
+     */
+    void maintain() {
+        long now = System.currentTimeMillis();
+        long ttlMs = rateLimitConfig.getLeaseTtl().toMillis();
+        for (Pool pool : pools.values()) {
+            try {
+                if (pool.leasedAtMs != 0 && now - pool.leasedAtMs > ttlMs) {
+                    // Every lease goes back after its TTL, so the coordinator can rebalance fair shares
+                    pool.returnUnused();
+                    if (now - pool.lastUsedMs < ttlMs) {
+                        pool.refill(0);
+                    }
+                } else if (now - pool.lastUsedMs < ttlMs && pool.isLow()) {
+                    pool.refill(0);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Rate limit maintenance failed for model {}", pool.modelId, e);
+            }
+        }
+    }
+
+    /**
+     * The model's local pool, or null when the model is not rate limited
+     */
+    private Pool pool(String modelId) {
+        if (client == null) {
+            return null;
+        }
+        Pool pool = pools.get(modelId);
+        if (pool != null) {
+            return pool;
+        }
+        ModelConfig.ModelProperties props = modelConfig.getModels().get(modelId);
+        if (props == null || props.getRateLimits() == null) {
+            return null;
+        }
+        return pools.computeIfAbsent(modelId, id -> new Pool(id, props.getRateLimits()));
+    }
+
+    private String resolveNodeId() {
+        if (rateLimitConfig.getNodeId() != null && !rateLimitConfig.getNodeId().isBlank()) {
+            return rateLimitConfig.getNodeId().replaceAll("\\s", "_");
+        }
+        String hostname = System.getenv("HOSTNAME");
+        return hostname != null && !hostname.isBlank() ? hostname : UUID.randomUUID().toString();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> models = new TreeMap<>();
+        pools.forEach((modelId, pool) -> models.put(modelId, pool.stats()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", rateLimitConfig.isEnabled());
+        stats.put("mode", rateLimitConfig.getMode());
+        stats.put("nodeId", nodeId);
+        stats.put("local", models);
+        if (!"remote".equals(rateLimitConfig.getMode())) {
+            stats.put("coordinator", coordinator.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Thrown when a model's account quota has no permits left for this call
+     */
+    public static class RateLimitedException extends RuntimeException {
+
+        private final String modelId;
+
+        RateLimitedException(String modelId, String message) {
+            super(message);
+            this.modelId = modelId;
+        }
+
+        public String getModelId() {
+            return modelId;
+        }
+    }
+
+    /**
+     * This node's leased, not yet spent permits of one model
+     */
+    private final class Pool {
+
+        private final String modelId;
+        private final int requestBatch;
+        private final long tokenBatch;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong tokens = new AtomicLong();
+        private final AtomicReference<CompletableFuture<Boolean>> refilling = new AtomicReference<>();
+        private final AtomicLong leases = new AtomicLong();
+        private final AtomicLong returnedRequests = new AtomicLong();
+        private final AtomicLong returnedTokens = new AtomicLong();
+        private final AtomicLong refundedTokens = new AtomicLong();
+        private final AtomicLong unmetered = new AtomicLong();
+        private final Counter rejected;
+        private volatile long leasedAtMs;
+        private volatile long lastUsedMs;
+        private volatile long unmeteredUntilMs;
+        private volatile boolean exhausted;
+
+        Pool(String modelId, ModelConfig.RateLimits limits) {
+            this.modelId = modelId;
+            this.requestBatch = (int) Math.max(1, Math.round(limits.getRequestsPerMinute() * rateLimitConfig.getBatchFraction()));
+            this.tokenBatch = Math.max(1, Math.round(limits.getTokensPerMinute() * rateLimitConfig.getBatchFraction()));
+            this.rejected = meterRegistry.counter("llm.ratelimit.rejected", "model", modelId);
+            Gauge.builder("llm.ratelimit.local.requests", requests, AtomicLong::get).tag("model", modelId).register(meterRegistry);
+            Gauge.builder("llm.ratelimit.local.tokens", tokens, AtomicLong::get).tag("model", modelId).register(meterRegistry);
+        }
+
+        /**
+         * Lock-free take of one request and the tokens; takes nothing if either is short
+         */
+        boolean tryTake(long tokenCount) {
+            lastUsedMs = System.currentTimeMillis();
+            if (lastUsedMs < unmeteredUntilMs) {
+                unmetered.incrementAndGet();
+                return true;
+            }
+            if (!take(requests, 1)) {
+                return false;
+            }
+            if (tokenCount > 0 && !take(tokens, tokenCount)) {
+                requests.incrementAndGet();
+                return false;
+            }
+            if (isLow()) {
+                refill(0); // lease ahead, so the next callers do not have to wait
+            }
+            return true;
+        }
+
+        private boolean take(AtomicLong permits, long count) {
+            long available;
+            do {
+                available = permits.get();
+                if (available < count) {
+                    return false;
+                }
+            } while (!permits.compareAndSet(available, available - count));
+            return true;
+        }
+
+        /**
+         * Put back tokens reserved by a completed call and not used; unmetered calls took none
+         */
+        void refund(long tokenCount) {
+            if (System.currentTimeMillis() < unmeteredUntilMs) {
+                return;
+            }
+            tokens.addAndGet(tokenCount);
+            refundedTokens.addAndGet(tokenCount);
+        }
+
+        boolean isLow() {
+            return requests.get() < requestBatch * rateLimitConfig.getLowWatermark()
+                    || tokens.get() < tokenBatch * rateLimitConfig.getLowWatermark();
+        }
+
+        /**
+         * Lease another batch in the background; concurrent callers share one lease in flight.
+         * Completes with true when calls may pass unmetered because the coordinator is unreachable.
+         */
+        CompletableFuture<Boolean> refill(long neededTokens) {
+            CompletableFuture<Boolean> inFlight = refilling.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+            CompletableFuture<Boolean> lease = new CompletableFuture<>();
+            if (!refilling.compareAndSet(null, lease)) {
+                return refilling.get() != null ? refilling.get() : CompletableFuture.completedFuture(false);
+            }
+            leaseExecutor.execute(() -> {
+                // Cleared before completing, so woken waiters that need more start a fresh lease
+                try {
+                    boolean unmetered = leaseBatch(neededTokens);
+                    refilling.set(null);
+                    lease.complete(unmetered);
+                } catch (RuntimeException e) {
+                    refilling.set(null);
+                    lease.completeExceptionally(e);
+                }
+            });
+            return lease;
+        }
+
+        private boolean leaseBatch(long neededTokens) {
+            long askTokens = Math.max(tokenBatch, neededTokens);
+            try {
+                RateLimitLeaseClient.Grant grant = client.lease(nodeId, modelId, requestBatch, askTokens, Math.max(1, neededTokens));
+                if (grant.unlimited()) {
+                    unmeteredUntilMs = Long.MAX_VALUE;
+                    return true;
+                }
+                requests.addAndGet(grant.requests());
+                tokens.addAndGet(grant.tokens());
+                exhausted = grant.requests() == 0 || grant.tokens() == 0;
+                if (grant.requests() > 0 || grant.tokens() > 0) {
+                    // The lease ages from its first grant: top-ups must not keep permits from ever going back
+                    if (leasedAtMs == 0) {
+                        leasedAtMs = System.currentTimeMillis();
+                    }
+                    leases.incrementAndGet();
+                }
+                return false;
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return false; // shutting down
+                }
+                // Failing open: an unreachable coordinator must not stop all traffic; Bedrock still throttles
+                unmeteredUntilMs = System.currentTimeMillis() + rateLimitConfig.getLeaseTtl().toMillis();
+                logger.warn("Rate limit coordinator ({}) unreachable, model {} unmetered for {}: {}",
+                        client, modelId, rateLimitConfig.getLeaseTtl(), e.getMessage());
+                return true;
+            }
+        }
+
+        void returnUnused() {
+            leasedAtMs = 0;
+            long unusedRequests = requests.getAndSet(0);
+            long unusedTokens = tokens.getAndSet(0);
+            if (unusedRequests == 0 && unusedTokens == 0) {
+                return;
+            }
+            try {
+                client.release(nodeId, modelId, (int) unusedRequests, unusedTokens);
+                returnedRequests.addAndGet(unusedRequests);
+                returnedTokens.addAndGet(unusedTokens);
+            } catch (IOException e) {
+                logger.debug("Could not return permits of model {}: {}", modelId, e.getMessage());
+            }
+        }
+
+        RateLimitedException reject(long tokenCount) {
+            rejected.increment();
+            logger.warn("Rate limit reached for model {} ({} tokens requested)", modelId, tokenCount);
+            return new RateLimitedException(modelId, "Rate limit reached for model " + modelId
+                    + " (account quota of requests or tokens per minute). Please retry shortly.");
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requestBatch", requestBatch);
+            stats.put("tokenBatch", tokenBatch);
+            stats.put("localRequests", requests.get());
+            stats.put("localTokens", tokens.get());
+            stats.put("leases", leases.get());
+            stats.put("returnedRequests", returnedRequests.get());
+            stats.put("returnedTokens", returnedTokens.get());
+            stats.put("refundedTokens", refundedTokens.get());
+            stats.put("unmetered", unmetered.get());
+            stats.put("rejected", (long) rejected.count());
+            stats.put("exhausted", exhausted);
+            return stats;
+        }
+    }
+}
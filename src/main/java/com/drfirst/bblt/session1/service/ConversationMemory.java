@@ -0,0 +1,410 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ConversationConfig;
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ConversationTurn;
+import com.drfirst.bblt.session1.model.PriorityClass;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side conversation memory keyed by session id.
+ * Each prompt carries only the newest turns that fit the token budget and the model's context window,
+ * preceded by a running summary of older turns. Summaries are produced in the background once the
+ * unsummarized history grows past the compaction threshold, so the request path never waits on them.
+ * When a {@link ConversationStore} is configured, turns and summaries are written through to it and
+ * sessions that are not on the heap (evicted, or after a restart) are reloaded from it.
+ */
+@Service
+public class ConversationMemory {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationMemory.class);
+
+    private static final String SUMMARY_SYSTEM_PROMPT =
+            "You compress chat histories. Keep facts, decisions, names, numbers and open questions. Be concise.";
+
+    private final ModelProviderRegistry providerRegistry;
+    private final ConversationConfig conversationConfig;
+    private final ConversationStore conversationStore;
+    private final Map<String, Conversation> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService compactionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong promptTokensSent = new AtomicLong();
+    private final AtomicLong fullHistoryTokens = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    public ConversationMemory(ModelProviderRegistry providerRegistry,
+                              ConversationConfig conversationConfig,
+                              Optional<ConversationStore> conversationStore) {
+        this.providerRegistry = providerRegistry;
+        this.conversationConfig = conversationConfig;
+        this.conversationStore = conversationStore.orElse(null);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        compactionExecutor.shutdownNow();
+    }
+
+    /**
+     * Send the next user message of a session, with history assembled server-side
+     */
+    public ChatResponse chat(String sessionId, ChatRequest request) {
+        ModelConfig.ModelProperties modelProps = providerRegistry.getModelProperties(request.modelId());
+        if (modelProps == null) {
+            return ChatResponse.error("Unknown model: " + request.modelId(), request.modelId());
+        }
+
+        Conversation conversation = getOrCreate(sessionId);
+        PromptWindow window;
+        synchronized (conversation) {
+            window = buildWindow(conversation, request, modelProps);
+        }
+
+        ChatResponse response = providerRegistry.invoke(ModelProviderRegistry.withMessage(request, window.prompt()));
+        if (!response.isSuccess()) {
+            return response;
+        }
+
+        synchronized (conversation) {
+            append(sessionId, conversation, new ConversationTurn(ConversationTurn.USER, request.message(),
+                    estimateTokens(request.message()), LocalDateTime.now()));
+            append(sessionId, conversation, new ConversationTurn(ConversationTurn.ASSISTANT, response.content(),
+                    estimateTokens(response.content()), LocalDateTime.now()));
+            conversation.promptTokensSent += window.promptTokens();
+            conversation.fullHistoryTokens += window.fullHistoryTokens();
+        }
+        promptTokensSent.addAndGet(window.promptTokens());
+        fullHistoryTokens.addAndGet(window.fullHistoryTokens());
+
+        scheduleCompactionIfNeeded(sessionId, conversation);
+
+        Map<String, Object> metadata = response.metadata() != null ? new HashMap<>(response.metadata()) : new HashMap<>();
+        metadata.put("conversation", Map.of(
+                "sessionId", sessionId,
+                "turnsIncluded", window.turnsIncluded(),
+                "summaryIncluded", window.summaryIncluded(),
+                "promptTokens", window.promptTokens(),
+                "fullHistoryTokens", window.fullHistoryTokens()
+        ));
+        return new ChatResponse(
+                response.content(),
+                response.modelId(),
+                response.metrics(),
+                metadata,
+                response.timestamp(),
+                response.requestId(),
+                response.isSuccess(),
+                response.errorMessage()
+        );
+    }
+
+    private void append(String sessionId, Conversation conversation, ConversationTurn turn) {
+        if (conversationStore != null) {
+            conversationStore.appendTurn(sessionId, conversation.summarizedTurns + conversation.turns.size(), turn);
+        }
+        conversation.append(turn);
+    }
+
+    /**
+     * Select the newest turns that fit, walking backwards, and render the prompt in one pass
+     */
+    private PromptWindow buildWindow(Conversation conversation, ChatRequest request, ModelConfig.ModelProperties modelProps) {
+        int messageTokens = estimateTokens(request.message());
+        int reserved = request.maxTokens() + messageTokens + estimateTokens(request.systemPrompt());
+        int budget = Math.min(conversationConfig.getTokenBudget(), modelProps.getContextWindow() - reserved);
+
+        List<ConversationTurn> turns = conversation.turns;
+        int used = 0;
+        int first = turns.size();
+        while (first > 0 && used + turns.get(first - 1).tokens() <= budget) {
+            used += turns.get(--first).tokens();
+        }
+        boolean includeSummary = conversation.summary != null && used + conversation.summaryTokens <= budget;
+        if (includeSummary) {
+            used += conversation.summaryTokens;
+        }
+
+        int fullHistory = conversation.summarizedTokens + conversation.unsummarizedTokens + messageTokens;
+        if (first == turns.size() && !includeSummary) {
+            return new PromptWindow(request.message(), 0, false, messageTokens, fullHistory);
+        }
+
+        StringBuilder prompt = new StringBuilder((used + messageTokens) * 4 + 64);
+        if (includeSummary) {
+            prompt.append("Summary of the earlier conversation:\n").append(conversation.summary).append("\n\n");
+        }
+        for (int i = first; i < turns.size(); i++) {
+            ConversationTurn turn = turns.get(i);
+            prompt.append(ConversationTurn.USER.equals(turn.role()) ? "User: " : "Assistant: ")
+                    .append(turn.content())
+                    .append("\n\n");
+        }
+        prompt.append("User: ").append(request.message());
+
+        return new PromptWindow(prompt.toString(), turns.size() - first, includeSummary, used + messageTokens, fullHistory);
+    }
+
+    private void scheduleCompactionIfNeeded(String sessionId, Conversation conversation) {
+        int toSummarize;
+        synchronized (conversation) {
+            toSummarize = conversation.turns.size() - conversationConfig.getKeepRecentTurns();
+            boolean overThreshold = conversation.unsummarizedTokens
+                    > conversationConfig.getTokenBudget() * conversationConfig.getCompactionThreshold();
+            if (!overThreshold || toSummarize <= 0) {
+                return;
+            }
+        }
+        if (!conversation.compacting.compareAndSet(false, true)) {
+            return; // one summarization per session at a time
+        }
+        compactionExecutor.execute(() -> {
+            try {
+                compact(sessionId, conversation, toSummarize);
+            } finally {
+                conversation.compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Fold the oldest turns into the running summary. Only compaction removes turns and it is
+     * exclusive per session, so the first {@code count} turns are unchanged when it finishes.
+     */
+    private void compact(String sessionId, Conversation conversation, int count) {
+        String previousSummary;
+        List<ConversationTurn> oldest;
+        synchronized (conversation) {
+            previousSummary = conversation.summary;
+            oldest = new ArrayList<>(conversation.turns.subList(0, count));
+        }
+
+        StringBuilder prompt = new StringBuilder();
+        if (previousSummary != null) {
+            prompt.append("Existing summary:\n").append(previousSummary).append("\n\n");
+        }
+        prompt.append("Conversation to add to the summary:\n");
+        for (ConversationTurn turn : oldest) {
+            prompt.append(turn.role()).append(": ").append(turn.content()).append('\n');
+        }
+        prompt.append("\nWrite the updated summary.");
+
+        ChatRequest summaryRequest = new ChatRequest(
+                prompt.toString(), SUMMARY_SYSTEM_PROMPT, conversationConfig.getSummaryModelId(),
+                conversationConfig.getSummaryMaxTokens(), 0.2, 0.9, 40, false, false
+        );
+
+        try {
+            // Background work: first to be shed when upstream capacity runs short
+            ChatResponse summary = RequestPriority.call(PriorityClass.BATCH, () -> providerRegistry.invoke(summaryRequest));
+            if (!summary.isSuccess() || summary.content() == null) {
+                logger.warn("Summarization for session {} failed: {}", sessionId, summary.errorMessage());
+                return;
+            }
+            synchronized (conversation) {
+                conversation.replaceWithSummary(count, summary.content(), estimateTokens(summary.content()));
+                if (conversationStore != null) {
+                    conversationStore.appendSummary(sessionId, conversation.summarizedTurns,
+                            conversation.summarizedTokens, conversation.summary, conversation.summaryTokens);
+                }
+            }
+            compactions.incrementAndGet();
+            logger.info("Compacted {} turns of session {} into a {}-token summary",
+                    count, sessionId, estimateTokens(summary.content()));
+        } catch (Exception e) {
+            logger.warn("Summarization for session {} failed: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private Conversation getOrCreate(String sessionId) {
+        long now = System.currentTimeMillis();
+        long ttlMs = conversationConfig.getSessionTtl().toMillis();
+
+        Conversation existing = sessions.get(sessionId);
+        if (existing != null && now - existing.lastAccess <= ttlMs) {
+            existing.lastAccess = now;
+            return existing;
+        }
+        if (sessions.size() >= conversationConfig.getMaxSessions()) {
+            evictSessions(now, ttlMs);
+        }
+        Conversation conversation = sessions.compute(sessionId, (id, current) ->
+                current != null && now - current.lastAccess <= ttlMs ? current : restore(id));
+        conversation.lastAccess = now;
+        return conversation;
+    }
+
+    /**
+     * Reload a session from the store, or start an empty one
+     */
+    private Conversation restore(String sessionId) {
+        Conversation conversation = new Conversation();
+        if (conversationStore == null) {
+            return conversation;
+        }
+        ConversationStore.StoredConversation stored = conversationStore.load(sessionId);
+        if (stored != null) {
+            conversation.summary = stored.summary();
+            conversation.summaryTokens = stored.summaryTokens();
+            conversation.summarizedTurns = stored.summarizedTurns();
+            conversation.summarizedTokens = stored.summarizedTokens();
+            for (ConversationTurn turn : stored.turns()) {
+                conversation.append(turn);
+            }
+        }
+        return conversation;
+    }
+
+    /**
+     * Drop expired sessions, then the least recently used ones if still at capacity
+     */
+    private void evictSessions(long now, long ttlMs) {
+        sessions.values().removeIf(conversation -> now - conversation.lastAccess > ttlMs);
+        while (sessions.size() >= conversationConfig.getMaxSessions()) {
+            sessions.entrySet().stream()
+                    .min((a, b) -> Long.compare(a.getValue().lastAccess, b.getValue().lastAccess))
+                    .ifPresent(oldest -> sessions.remove(oldest.getKey()));
+        }
+    }
+
+    /**
+     * Existing session from the heap or the store, without creating one
+     */
+    private Conversation find(String sessionId) {
+        Conversation conversation = sessions.get(sessionId);
+        if (conversation != null || conversationStore == null || conversationStore.load(sessionId) == null) {
+            return conversation;
+        }
+        return getOrCreate(sessionId);
+    }
+
+    public boolean deleteSession(String sessionId) {
+        boolean removed = sessions.remove(sessionId) != null;
+        if (conversationStore != null) {
+            conversationStore.delete(sessionId);
+        }
+        return removed;
+    }
+
+    /**
+     * Per-session memory footprint, history and token savings, or null if the session is unknown
+     */
+    public Map<String, Object> getSessionStats(String sessionId) {
+        Conversation conversation = find(sessionId);
+        if (conversation == null) {
+            return null;
+        }
+        synchronized (conversation) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("sessionId", sessionId);
+            stats.put("turns", conversation.turns.size());
+            stats.put("summarizedTurns", conversation.summarizedTurns);
+            stats.put("storedTokens", conversation.unsummarizedTokens + conversation.summaryTokens);
+            stats.put("summaryTokens", conversation.summaryTokens);
+            stats.put("memoryBytes", conversation.memoryBytes());
+            stats.put("promptTokensSent", conversation.promptTokensSent);
+            stats.put("fullHistoryTokens", conversation.fullHistoryTokens);
+            stats.put("tokensSaved", conversation.fullHistoryTokens - conversation.promptTokensSent);
+            stats.put("compacting", conversation.compacting.get());
+            stats.put("idleSeconds", Duration.ofMillis(System.currentTimeMillis() - conversation.lastAccess).toSeconds());
+            return stats;
+        }
+    }
+
+    public List<ConversationTurn> getTurns(String sessionId) {
+        Conversation conversation = find(sessionId);
+        if (conversation == null) {
+            return List.of();
+        }
+        synchronized (conversation) {
+            return List.copyOf(conversation.turns);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long memoryBytes = sessions.values().stream().mapToLong(conversation -> {
+            synchronized (conversation) {
+                return conversation.memoryBytes();
+            }
+        }).sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("memoryBytes", memoryBytes);
+        stats.put("promptTokensSent", promptTokensSent.get());
+        stats.put("fullHistoryTokens", fullHistoryTokens.get());
+        stats.put("tokensSaved", fullHistoryTokens.get() - promptTokensSent.get());
+        stats.put("compactions", compactions.get());
+        if (conversationStore != null) {
+            stats.put("store", conversationStore.getStats());
+        }
+        return stats;
+    }
+
+    private static int estimateTokens(String text) {
+        // Rough approximation: 1 token ≈ 4 characters
+        return text != null ? text.length() / 4 : 0;
+    }
+
+    private record PromptWindow(String prompt, int turnsIncluded, boolean summaryIncluded,
+                                int promptTokens, int fullHistoryTokens) {}
+
+    /**
+     * Mutable session state; guarded by synchronizing on the instance
+     */
+    private static class Conversation {
+        private final List<ConversationTurn> turns = new ArrayList<>();
+        private final AtomicBoolean compacting = new AtomicBoolean();
+        private String summary;
+        private int summaryTokens;
+        private int summarizedTurns;
+        private int summarizedTokens;       // original size of everything folded into the summary
+        private int unsummarizedTokens;
+        private long promptTokensSent;
+        private long fullHistoryTokens;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        void append(ConversationTurn turn) {
+            turns.add(turn);
+            unsummarizedTokens += turn.tokens();
+        }
+
+        void replaceWithSummary(int count, String newSummary, int newSummaryTokens) {
+            List<ConversationTurn> folded = turns.subList(0, count);
+            for (ConversationTurn turn : folded) {
+                unsummarizedTokens -= turn.tokens();
+                summarizedTokens += turn.tokens();
+            }
+            folded.clear();
+            summarizedTurns += count;
+            summary = newSummary;
+            summaryTokens = newSummaryTokens;
+        }
+
+        long memoryBytes() {
+            // UTF-16 content plus a rough per-turn object overhead
+            long bytes = summary != null ? summary.length() * 2L : 0;
+            for (ConversationTurn turn : turns) {
+                bytes += turn.content().length() * 2L + 64;
+            }
+            return bytes;
+        }
+    }
+}
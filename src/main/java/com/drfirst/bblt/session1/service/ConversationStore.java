@@ -0,0 +1,34 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.model.ConversationTurn;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable storage behind {@link ConversationMemory}. Turns carry a per-session ordinal;
+ * a summary record folds every turn below its ordinal.
+ */
+public interface ConversationStore {
+
+    void appendTurn(String sessionId, int ordinal, ConversationTurn turn);
+
+    void appendSummary(String sessionId, int summarizedTurns, int summarizedTokens, String summary, int summaryTokens);
+
+    /**
+     * Current summary and unsummarized turns, or null if the session is unknown or expired
+     */
+    StoredConversation load(String sessionId);
+
+    void delete(String sessionId);
+
+    Map<String, Object> getStats();
+
+    record StoredConversation(
+        String summary,
+        int summaryTokens,
+        int summarizedTurns,
+        int summarizedTokens,
+        List<ConversationTurn> turns
+    ) {}
+}
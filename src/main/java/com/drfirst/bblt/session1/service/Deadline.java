@@ -0,0 +1,85 @@
+package com.drfirst.bblt.session1.service;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Point in time by which a request must be answered. Bound to the worker thread while the request
+ * runs, so the service, retry and fallback layers can check the remaining budget without threading
+ * it through every signature.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+    private final Duration timeout;
+    private final String source;
+
+    private Deadline(Duration timeout, String source) {
+        this.expiresAtNanos = System.nanoTime() + timeout.toNanos();
+        this.timeout = timeout;
+        this.source = source;
+    }
+
+    /**
+     * @param source where the timeout came from, e.g. "client" or "adaptive"
+     */
+    public static Deadline after(Duration timeout, String source) {
+        return new Deadline(timeout, source);
+    }
+
+    /**
+     * Deadline of the request running on this thread, or null if there is none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Remaining time of the current deadline, or null when the thread has no deadline
+     */
+    public static Duration currentRemaining() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null ? deadline.remaining() : null;
+    }
+
+    /**
+     * Run the call with this deadline bound to the current thread
+     */
+    public <T> T call(Supplier<T> call) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public Duration remaining() {
+        long nanos = expiresAtNanos - System.nanoTime();
+        return nanos > 0 ? Duration.ofNanos(nanos) : Duration.ZERO;
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return timeout.toMillis() + "ms (" + source + ", " + remaining().toMillis() + "ms left)";
+    }
+}
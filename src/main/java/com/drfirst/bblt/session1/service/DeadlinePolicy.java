@@ -0,0 +1,154 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.DeadlineConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates request deadlines and answers whether there is still enough time to start more work.
+ * Without a client timeout, a model's deadline adapts to its observed latency: the configured
+ * percentile of recent successful calls times a multiplier, clamped to [minTimeout, maxTimeout].
+ */
+@Component
+public class DeadlinePolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlinePolicy.class);
+
+    private final DeadlineConfig deadlineConfig;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final AtomicLong clientDeadlines = new AtomicLong();
+    private final AtomicLong adaptiveDeadlines = new AtomicLong();
+    private final AtomicLong rejectedBeforeStart = new AtomicLong();
+    private final AtomicLong exceeded = new AtomicLong();
+    private final AtomicLong cancelledOnDisconnect = new AtomicLong();
+
+    public DeadlinePolicy(DeadlineConfig deadlineConfig) {
+        this.deadlineConfig = deadlineConfig;
+    }
+
+    /**
+     * The client's timeout when given (capped at maxTimeout), otherwise the model's adaptive default
+     */
+    public Deadline deadlineFor(String modelId, Long clientTimeoutMs) {
+        if (clientTimeoutMs != null && clientTimeoutMs > 0) {
+            clientDeadlines.incrementAndGet();
+            Duration requested = Duration.ofMillis(clientTimeoutMs);
+            return Deadline.after(requested.compareTo(deadlineConfig.getMaxTimeout()) > 0
+                    ? deadlineConfig.getMaxTimeout() : requested, "client");
+        }
+        adaptiveDeadlines.incrementAndGet();
+        return Deadline.after(defaultTimeout(modelId), "adaptive");
+    }
+
+    public Duration defaultTimeout(String modelId) {
+        LatencyWindow window = latencies.get(modelId);
+        if (window == null || window.size() < deadlineConfig.getMinSamples()) {
+            return deadlineConfig.getDefaultTimeout();
+        }
+        long millis = Math.round(window.percentile(deadlineConfig.getPercentile()) * deadlineConfig.getMultiplier());
+        long clamped = Math.max(deadlineConfig.getMinTimeout().toMillis(), Math.min(deadlineConfig.getMaxTimeout().toMillis(), millis));
+        return Duration.ofMillis(clamped);
+    }
+
+    /**
+     * Whether the current thread's deadline leaves enough time to start the given work.
+     * A cancelled (interrupted) request has no time left; threads without a deadline always have time.
+     */
+    public boolean hasTimeFor(String stage) {
+        return hasTimeFor(stage, Duration.ZERO);
+    }
+
+    /**
+     * Same as {@link #hasTimeFor(String)}, for work that first waits for the given delay
+     */
+    public boolean hasTimeFor(String stage, Duration delay) {
+        if (Thread.currentThread().isInterrupted()) {
+            rejectedBeforeStart.incrementAndGet();
+            logger.info("Not starting {}: request was cancelled", stage);
+            return false;
+        }
+        Deadline deadline = Deadline.current();
+        if (deadline == null || deadline.remaining().compareTo(delay.plus(deadlineConfig.getMinRemaining())) >= 0) {
+            return true;
+        }
+        rejectedBeforeStart.incrementAndGet();
+        logger.info("Not starting {}: deadline {} leaves too little time", stage, deadline);
+        return false;
+    }
+
+    public void recordLatency(String modelId, long latencyMs) {
+        latencies.computeIfAbsent(modelId, id -> new LatencyWindow(deadlineConfig.getWindowSize())).add(latencyMs);
+    }
+
+    public void recordExceeded() {
+        exceeded.incrementAndGet();
+    }
+
+    public void recordDisconnect() {
+        cancelledOnDisconnect.incrementAndGet();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> models = new TreeMap<>();
+        latencies.forEach((modelId, window) -> {
+            Map<String, Object> model = new LinkedHashMap<>();
+            model.put("samples", window.size());
+            if (window.size() > 0) {
+                model.put("p50Ms", Math.round(window.percentile(0.5)));
+                model.put("p99Ms", Math.round(window.percentile(0.99)));
+            }
+            model.put("defaultTimeoutMs", defaultTimeout(modelId).toMillis());
+            models.put(modelId, model);
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("clientDeadlines", clientDeadlines.get());
+        stats.put("adaptiveDeadlines", adaptiveDeadlines.get());
+        stats.put("rejectedBeforeStart", rejectedBeforeStart.get());
+        stats.put("exceeded", exceeded.get());
+        stats.put("cancelledOnDisconnect", cancelledOnDisconnect.get());
+        stats.put("models", models);
+        return stats;
+    }
+
+    /**
+     * Ring of the most recent latencies of one model
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void add(long latencyMs) {
+            samples[next] = latencyMs;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized double percentile(double quantile) {
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bedrock models through raw SDK calls. Serves the same model ids as {@link BedrockModelProvider}
+ * at a lower priority, so it is reached with the "direct-sdk:" prefix or by the router.
+ */
+@Component
+public class DirectBedrockModelProvider implements ModelProvider {
+
+    private final ModelConfig modelConfig;
+    private final Map<String, Function<ChatRequest, ChatResponse>> invokers = new LinkedHashMap<>();
+    private final Map<String, Function<ChatRequest, Flux<ChatStreamEvent>>> streamers = new LinkedHashMap<>();
+
+    public DirectBedrockModelProvider(DirectBedrockService directBedrockService, ModelConfig modelConfig) {
+        this.modelConfig = modelConfig;
+        // Only models with a payload codec can be called directly
+        invokers.put("claude-3-7-sonnet", directBedrockService::invokeClaudeDirect);
+        invokers.put("claude-4-opus", directBedrockService::invokeClaudeDirect);
+        invokers.put("nova-pro", directBedrockService::invokeNovaProDirect);
+        streamers.put("claude-3-7-sonnet", directBedrockService::streamClaudeDirect);
+        streamers.put("claude-4-opus", directBedrockService::streamClaudeDirect);
+        streamers.put("nova-pro", directBedrockService::streamNovaProDirect);
+    }
+
+    @Override
+    public String getName() {
+        return "direct-sdk";
+    }
+
+    @Override
+    public List<String> getModelIds() {
+        return invokers.keySet().stream()
+                .filter(modelConfig.getModels()::containsKey)
+                .toList();
+    }
+
+    @Override
+    public ModelConfig.ModelProperties getModelProperties(String modelId) {
+        return modelConfig.getModels().get(modelId);
+    }
+
+    @Override
+    public ChatResponse invoke(ChatRequest request) {
+        Function<ChatRequest, ChatResponse> invoker = invokers.get(request.modelId());
+        if (invoker == null) {
+            return ChatResponse.error("Model not supported by direct SDK calls: " + request.modelId(), request.modelId());
+        }
+        return invoker.apply(request);
+    }
+
+    @Override
+    public Flux<ChatStreamEvent> stream(ChatRequest request) {
+        Function<ChatRequest, Flux<ChatStreamEvent>> streamer = streamers.get(request.modelId());
+        if (streamer == null) {
+            return Flux.error(new IllegalArgumentException("Model not supported by direct SDK streaming: " + request.modelId()));
+        }
+        return streamer.apply(request);
+    }
+
+    @Override
+    public int getPriority() {
+        return 100;
+    }
+}
@@ -3,39 +3,65 @@ package com.drfirst.bblt.session1.service;
 import com.drfirst.bblt.session1.config.ModelConfig;
 import com.drfirst.bblt.session1.model.ChatRequest;
 import com.drfirst.bblt.session1.model.ChatResponse;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import reactor.core.publisher.Flux;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for direct AWS Bedrock SDK calls without Spring AI abstraction.
  * Demonstrates raw JSON payload construction and response parsing.
+ * Payloads are written and read with Jackson's streaming API through per-model-family codecs,
+ * so no intermediate Maps, JSON Strings or JsonNode trees are built.
+ * Calls are written to the audit log and recorded in the live latency histograms under the
+ * "direct-chat" and "direct-stream" endpoints, apart from the Spring AI paths of the same models.
  */
 @Service
 public class DirectBedrockService {
 
     private static final Logger logger = LoggerFactory.getLogger(DirectBedrockService.class);
-    
-    private final BedrockRuntimeClient bedrockClient;
+
+    private final RegionalClientPool regionalClientPool;
+    private final RetryEngine retryEngine;
+    private final ModelBulkheads bulkheads;
     private final ModelConfig modelConfig;
-    private final ObjectMapper objectMapper;
+    private final AuditLog auditLog;
+    private final LatencyHistograms latencyHistograms;
+    private final JsonFactory jsonFactory;
+    private final PayloadCodec claudeCodec = new ClaudePayloadCodec();
+    private final PayloadCodec novaProCodec = new NovaProPayloadCodec();
 
-    public DirectBedrockService(BedrockRuntimeClient bedrockClient, 
-                               ModelConfig modelConfig) {
-        this.bedrockClient = bedrockClient;
+    public DirectBedrockService(RegionalClientPool regionalClientPool,
+                               RetryEngine retryEngine,
+                               ModelBulkheads bulkheads,
+                               ModelConfig modelConfig,
+                               ObjectMapper objectMapper,
+                               AuditLog auditLog,
+                               LatencyHistograms latencyHistograms) {
+        this.regionalClientPool = regionalClientPool;
+        this.retryEngine = retryEngine;
+        this.bulkheads = bulkheads;
         this.modelConfig = modelConfig;
-        this.objectMapper = new ObjectMapper();
+        this.auditLog = auditLog;
+        this.latencyHistograms = latencyHistograms;
+        // Shared, Spring-configured mapper; its factory is thread-safe and recycles parser buffers
+        this.jsonFactory = objectMapper.getFactory();
     }
 
     /**
@@ -43,42 +69,7 @@ public class DirectBedrockService {
      */
     public ChatResponse invokeClaudeDirect(ChatRequest request) {
         logger.info("Invoking Claude model directly using raw AWS SDK: {}", request.modelId());
-        long startTime = System.currentTimeMillis();
-        
-        try {
-            ModelConfig.ModelProperties modelProps = modelConfig.getModels().get(request.modelId());
-            if (modelProps == null) {
-                return ChatResponse.error("Unknown model: " + request.modelId(), request.modelId());
-            }
-            
-            // Build Claude-specific payload
-            Map<String, Object> payload = buildClaudePayload(request, modelProps);
-            String payloadJson = objectMapper.writeValueAsString(payload);
-            
-            logger.debug("Claude payload: {}", payloadJson);
-            
-            // Direct AWS SDK call
-            InvokeModelRequest invokeRequest = InvokeModelRequest.builder()
-                    .modelId(modelProps.getModelId())
-                    .body(SdkBytes.fromString(payloadJson, StandardCharsets.UTF_8))
-                    .contentType("application/json")
-                    .accept("application/json")
-                    .build();
-            
-            InvokeModelResponse response = bedrockClient.invokeModel(invokeRequest);
-            String responseBody = response.body().asString(StandardCharsets.UTF_8);
-            
-            logger.debug("Claude response: {}", responseBody);
-            
-            return parseClaudeResponse(responseBody, request.modelId(), startTime, modelProps);
-            
-        } catch (Exception e) {
-            logger.error("Direct Claude invocation failed: {}", e.getMessage(), e);
-            return ChatResponse.error(
-                "Direct Claude SDK call failed: " + e.getMessage(), 
-                request.modelId()
-            );
-        }
+        return invokeDirect(request, "Claude", claudeCodec);
     }
 
     /**
@@ -86,154 +77,246 @@ public class DirectBedrockService {
      */
     public ChatResponse invokeNovaProDirect(ChatRequest request) {
         logger.info("Invoking Nova Pro model directly using raw AWS SDK: {}", request.modelId());
+        return invokeDirect(request, "Nova Pro", novaProCodec);
+    }
+
+    private ChatResponse invokeDirect(ChatRequest request, String modelFamily, PayloadCodec codec) {
+        long startNanos = System.nanoTime();
+        ChatResponse response = invoke(request, modelFamily, codec);
+        long latencyNanos = System.nanoTime() - startNanos;
+        auditLog.record("direct-chat", request, response, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        latencyHistograms.record(request.modelId(), "direct-chat", latencyNanos, response.isSuccess(),
+                response.metrics() != null ? response.metrics().outputTokens() : -1);
+        return response;
+    }
+
+    private ChatResponse invoke(ChatRequest request, String modelFamily, PayloadCodec codec) {
         long startTime = System.currentTimeMillis();
-        
+
         try {
             ModelConfig.ModelProperties modelProps = modelConfig.getModels().get(request.modelId());
             if (modelProps == null) {
                 return ChatResponse.error("Unknown model: " + request.modelId(), request.modelId());
             }
-            
-            // Build Nova Pro-specific payload
-            Map<String, Object> payload = buildNovaProPayload(request, modelProps);
-            String payloadJson = objectMapper.writeValueAsString(payload);
-            
-            logger.debug("Nova Pro payload: {}", payloadJson);
-            
+
+            // Build the model-specific payload straight into this thread's reusable buffer
+            PayloadBuffer buffer = PayloadBuffer.acquire();
+            writePayload(request, codec, buffer);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} payload: {}", modelFamily, buffer.toUtf8String());
+            }
+
             // Direct AWS SDK call
-            InvokeModelRequest invokeRequest = InvokeModelRequest.builder()
+            InvokeModelRequest.Builder requestBuilder = InvokeModelRequest.builder()
                     .modelId(modelProps.getModelId())
-                    .body(SdkBytes.fromString(payloadJson, StandardCharsets.UTF_8))
+                    .body(buffer.toSdkBytes())
                     .contentType("application/json")
-                    .accept("application/json")
-                    .build();
-            
-            InvokeModelResponse response = bedrockClient.invokeModel(invokeRequest);
-            String responseBody = response.body().asString(StandardCharsets.UTF_8);
-            
-            logger.debug("Nova Pro response: {}", responseBody);
-            
-            return parseNovaProResponse(responseBody, request.modelId(), startTime, modelProps);
-            
+                    .accept("application/json");
+            // The SDK gives up when the request deadline does
+            Duration remaining = Deadline.currentRemaining();
+            if (remaining != null) {
+                requestBuilder.overrideConfiguration(override -> override.apiCallTimeout(remaining));
+            }
+            InvokeModelRequest invokeRequest = requestBuilder.build();
+
+            // SDK retries are off; the retry engine owns retries and regional failover attempts,
+            // all inside the model's bulkhead (shared with BedrockService), each taking its own rate-limit permits
+            long reservation = ClusterRateLimiter.reservation(request.message(), request.maxTokens());
+            Runnable attemptPermits = () -> bulkheads.acquireAttemptPermits(request.modelId(), reservation);
+            InvokeModelResponse response = bulkheads.execute(request.modelId(), reservation, () ->
+                    retryEngine.execute(request.modelId(), () -> regionalClientPool
+                            .execute(endpoint -> endpoint.getClient().invokeModel(invokeRequest), attemptPermits)
+                            .value(), attemptPermits));
+
+            // Parse directly from the response bytes without copying them into a String
+            byte[] responseBody = response.body().asByteArrayUnsafe();
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} response: {}", modelFamily, new String(responseBody, StandardCharsets.UTF_8));
+            }
+
+            ChatResponse parsed = parseResponse(responseBody, codec, request, startTime, modelProps, modelFamily);
+            if (parsed.metrics() != null) {
+                bulkheads.releaseUnusedTokens(request.modelId(), reservation, parsed.metrics().totalTokens());
+            }
+            return parsed;
+
+        } catch (ModelBulkheads.BulkheadFullException | AdmissionController.AdmissionRejectedException
+                 | ClusterRateLimiter.RateLimitedException e) {
+            logger.warn("Direct {} call rejected: {}", modelFamily, e.getMessage());
+            return ChatResponse.rejected(e.getMessage(), request.modelId());
         } catch (Exception e) {
-            logger.error("Direct Nova Pro invocation failed: {}", e.getMessage(), e);
+            logger.error("Direct {} invocation failed: {}", modelFamily, e.getMessage(), e);
             return ChatResponse.error(
-                "Direct Nova Pro SDK call failed: " + e.getMessage(), 
+                "Direct " + modelFamily + " SDK call failed: " + e.getMessage(),
                 request.modelId()
             );
         }
     }
 
     /**
-     * Build Claude-specific payload according to Anthropic's format
+     * Stream Claude output using InvokeModelWithResponseStream
      */
-    private Map<String, Object> buildClaudePayload(ChatRequest request, ModelConfig.ModelProperties modelProps) {
-        Map<String, Object> payload = new HashMap<>();
-        
-        // Claude expects messages in a specific format
-        Map<String, Object> message = new HashMap<>();
-        message.put("role", "user");
-        message.put("content", request.message());
-        
-        payload.put("messages", List.of(message));
-        payload.put("max_tokens", request.maxTokens());
-        payload.put("temperature", request.temperature());
-        payload.put("top_p", request.topP());
-        payload.put("top_k", request.topK());
-        
-        // Add system prompt if provided
-        if (request.systemPrompt() != null && !request.systemPrompt().trim().isEmpty()) {
-            payload.put("system", request.systemPrompt());
-        }
-        
-        payload.put("anthropic_version", "bedrock-2023-05-31");
-        
-        return payload;
+    public Flux<ChatStreamEvent> streamClaudeDirect(ChatRequest request) {
+        logger.info("Streaming Claude model directly using raw AWS SDK: {}", request.modelId());
+        return streamDirect(request, "Claude", claudeCodec);
     }
 
     /**
-     * Build Nova Pro-specific payload according to Amazon's format
+     * Stream Nova Pro output using InvokeModelWithResponseStream
      */
-    private Map<String, Object> buildNovaProPayload(ChatRequest request, ModelConfig.ModelProperties modelProps) {
-        Map<String, Object> payload = new HashMap<>();
-        
-        // Nova Pro expects Amazon's format
-        String prompt = request.message();
-        if (request.systemPrompt() != null && !request.systemPrompt().trim().isEmpty()) {
-            prompt = request.systemPrompt() + "\n\nHuman: " + request.message() + "\n\nAssistant:";
-        } else {
-            prompt = "Human: " + request.message() + "\n\nAssistant:";
-        }
-        
-        payload.put("prompt", prompt);
-        payload.put("max_gen_len", request.maxTokens());
-        payload.put("temperature", request.temperature());
-        payload.put("top_p", request.topP());
-        
-        return payload;
+    public Flux<ChatStreamEvent> streamNovaProDirect(ChatRequest request) {
+        logger.info("Streaming Nova Pro model directly using raw AWS SDK: {}", request.modelId());
+        return streamDirect(request, "Nova Pro", novaProCodec);
+    }
+
+    private Flux<ChatStreamEvent> streamDirect(ChatRequest request, String modelFamily, PayloadCodec codec) {
+        Flux<ChatStreamEvent> audited = auditLog.stream("direct-stream", request, openStream(request, modelFamily, codec),
+                event -> ChatStreamEvent.CONTENT.equals(event.type()) ? event.content() : null,
+                event -> ChatStreamEvent.ERROR.equals(event.type()) ? event.content() : null);
+        return RequestPriority.propagate(latencyHistograms.stream(request.modelId(), "direct-stream", audited,
+                event -> ChatStreamEvent.CONTENT.equals(event.type()),
+                event -> ChatStreamEvent.USAGE.equals(event.type()) ? event.metrics() : null,
+                event -> ChatStreamEvent.ERROR.equals(event.type())));
     }
 
     /**
-     * Parse Claude response
+     * Invoke a model with response streaming and decode event-stream chunks incrementally.
+     * Emits one content event per text delta and a final usage event with the metrics.
      */
-    private ChatResponse parseClaudeResponse(String responseBody, String modelId, long startTime, ModelConfig.ModelProperties modelProps) {
+    private Flux<ChatStreamEvent> openStream(ChatRequest request, String modelFamily, PayloadCodec codec) {
+        ModelConfig.ModelProperties modelProps = modelConfig.getModels().get(request.modelId());
+        if (modelProps == null) {
+            return Flux.error(new IllegalArgumentException("Unknown model: " + request.modelId()));
+        }
+
+        long startTime = System.currentTimeMillis();
+        InvokeModelWithResponseStreamRequest streamRequest;
         try {
-            JsonNode response = objectMapper.readTree(responseBody);
-            
-            // Extract content from Claude response
-            String content = response.path("content").get(0).path("text").asText();
-            
-            // Extract usage metrics
-            JsonNode usage = response.path("usage");
-            int inputTokens = usage.path("input_tokens").asInt(0);
-            int outputTokens = usage.path("output_tokens").asInt(0);
-            
-            // Calculate metrics
-            long responseTime = System.currentTimeMillis() - startTime;
-            double estimatedCost = calculateCost(inputTokens, outputTokens, modelProps);
-            String finishReason = response.path("stop_reason").asText("complete");
-            
-            ChatResponse.ModelPerformanceMetrics metrics = ChatResponse.ModelPerformanceMetrics.create(
-                    modelId, responseTime, inputTokens, outputTokens, estimatedCost, finishReason
-            );
-            
-            return ChatResponse.success(content, modelId, metrics);
-            
+            // toSdkBytes copies out of the thread's buffer, so the async client
+            // can safely read the body later on another thread
+            PayloadBuffer buffer = PayloadBuffer.acquire();
+            writePayload(request, codec, buffer);
+            if (logger.isDebugEnabled()) {
+                logger.debug("{} stream payload: {}", modelFamily, buffer.toUtf8String());
+            }
+
+            InvokeModelWithResponseStreamRequest.Builder requestBuilder = InvokeModelWithResponseStreamRequest.builder()
+                    .modelId(modelProps.getModelId())
+                    .body(buffer.toSdkBytes())
+                    .contentType("application/json")
+                    .accept("application/json");
+            // The SDK gives up when the request deadline does, as for a non-streaming call
+            Duration remaining = Deadline.currentRemaining();
+            if (remaining != null) {
+                requestBuilder.overrideConfiguration(override -> override.apiCallTimeout(remaining));
+            }
+            streamRequest = requestBuilder.build();
         } catch (Exception e) {
-            logger.error("Error parsing Claude response: {}", e.getMessage(), e);
-            return ChatResponse.error("Failed to parse Claude response: " + e.getMessage(), modelId);
+            logger.error("Failed to build {} stream payload: {}", modelFamily, e.getMessage(), e);
+            return Flux.error(e);
         }
+
+        // The region is picked when the bulkhead admits the stream, and its health and load track the stream
+        long reservation = ClusterRateLimiter.reservation(request.message(), request.maxTokens());
+        return bulkheads.stream(request.modelId(), reservation, () -> {
+            RegionalClientPool.RegionEndpoint endpoint = regionalClientPool.select();
+            return regionalClientPool.track(endpoint, invokeStream(endpoint, streamRequest, request, modelFamily,
+                    modelProps, reservation, startTime));
+        });
     }
 
     /**
-     * Parse Nova Pro response
+     * One streaming call against the given region; cancelling the subscription cancels the SDK call
      */
-    private ChatResponse parseNovaProResponse(String responseBody, String modelId, long startTime, ModelConfig.ModelProperties modelProps) {
-        try {
-            JsonNode response = objectMapper.readTree(responseBody);
-            
-            // Extract content from Nova Pro response
-            String content = response.path("generation").asText();
-            
-            // Nova Pro provides detailed usage metrics
-            // We'll estimate based on content length
-            int inputTokens = estimateTokens(modelId + " input");
-            int outputTokens = estimateTokens(content);
-            
+    private Flux<ChatStreamEvent> invokeStream(RegionalClientPool.RegionEndpoint endpoint,
+                                               InvokeModelWithResponseStreamRequest streamRequest, ChatRequest request,
+                                               String modelFamily, ModelConfig.ModelProperties modelProps,
+                                               long reservation, long startTime) {
+        return Flux.create(sink -> {
+            BedrockStreamDecoder decoder = new BedrockStreamDecoder(jsonFactory);
+
+            InvokeModelWithResponseStreamResponseHandler handler = InvokeModelWithResponseStreamResponseHandler.builder()
+                    .subscriber(InvokeModelWithResponseStreamResponseHandler.Visitor.builder()
+                            .onChunk(chunk -> {
+                                try {
+                                    // Parse straight from the payload bytes, no String copy of the chunk
+                                    String text = decoder.decode(chunk.bytes().asByteArrayUnsafe());
+                                    if (text != null && !text.isEmpty()) {
+                                        sink.next(ChatStreamEvent.content(text));
+                                    }
+                                } catch (IOException e) {
+                                    sink.error(e);
+                                }
+                            })
+                            .build())
+                    .onError(error -> {
+                        logger.error("Direct {} stream failed: {}", modelFamily, error.getMessage());
+                        sink.error(error);
+                    })
+                    .onComplete(() -> {
+                        ChatResponse.ModelPerformanceMetrics metrics = buildStreamMetrics(request, decoder, startTime, modelProps);
+                        bulkheads.releaseUnusedTokens(request.modelId(), reservation, metrics.totalTokens());
+                        sink.next(ChatStreamEvent.usage(metrics));
+                        sink.complete();
+                    })
+                    .build();
+
+            CompletableFuture<Void> call = endpoint.getAsyncClient().invokeModelWithResponseStream(streamRequest, handler);
+            sink.onDispose(() -> call.cancel(true));
+        });
+    }
+
+    private ChatResponse.ModelPerformanceMetrics buildStreamMetrics(ChatRequest request, BedrockStreamDecoder decoder,
+                                                                    long startTime, ModelConfig.ModelProperties modelProps) {
+        // Fall back to estimates when the final event did not carry usage
+        int inputTokens = decoder.getInputTokens() > 0 ? decoder.getInputTokens() : estimateTokens(request.message());
+        int outputTokens = decoder.getOutputTokens();
+        long responseTime = System.currentTimeMillis() - startTime;
+        double estimatedCost = calculateCost(inputTokens, outputTokens, modelProps);
+        String finishReason = decoder.getStopReason() != null ? decoder.getStopReason() : "complete";
+
+        return ChatResponse.ModelPerformanceMetrics.create(
+                request.modelId(), responseTime, inputTokens, outputTokens, estimatedCost, finishReason
+        );
+    }
+
+    /**
+     * Write the request JSON as UTF-8 directly into the buffer
+     */
+    private void writePayload(ChatRequest request, PayloadCodec codec, PayloadBuffer buffer) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(buffer, JsonEncoding.UTF8)) {
+            codec.writeRequest(request, generator);
+        }
+    }
+
+    /**
+     * Parse a model response with the family codec, extracting only content, usage and stop reason
+     */
+    private ChatResponse parseResponse(byte[] responseBody, PayloadCodec codec, ChatRequest request, long startTime,
+                                       ModelConfig.ModelProperties modelProps, String modelFamily) {
+        String modelId = request.modelId();
+        try (JsonParser parser = jsonFactory.createParser(responseBody)) {
+            PayloadCodec.DecodedResponse decoded = codec.readResponse(parser);
+
+            // Models that don't report usage get an estimate based on content length
+            int inputTokens = decoded.inputTokens() > 0 ? decoded.inputTokens() : estimateTokens(request.message());
+            int outputTokens = decoded.outputTokens() > 0 ? decoded.outputTokens() : estimateTokens(decoded.content());
+
             // Calculate metrics
             long responseTime = System.currentTimeMillis() - startTime;
             double estimatedCost = calculateCost(inputTokens, outputTokens, modelProps);
-            String finishReason = response.path("stop_reason").asText("complete");
-            
+            String finishReason = decoded.stopReason() != null ? decoded.stopReason() : "complete";
+
             ChatResponse.ModelPerformanceMetrics metrics = ChatResponse.ModelPerformanceMetrics.create(
                     modelId, responseTime, inputTokens, outputTokens, estimatedCost, finishReason
             );
-            
-            return ChatResponse.success(content, modelId, metrics);
-            
+
+            return ChatResponse.success(decoded.content(), modelId, metrics);
+
         } catch (Exception e) {
-            logger.error("Error parsing Nova Pro response: {}", e.getMessage(), e);
-            return ChatResponse.error("Failed to parse Nova Pro response: " + e.getMessage(), modelId);
+            logger.error("Error parsing {} response: {}", modelFamily, e.getMessage(), e);
+            return ChatResponse.error("Failed to parse " + modelFamily + " response: " + e.getMessage(), modelId);
         }
     }
 
@@ -253,4 +336,4 @@ public class DirectBedrockService {
         // Rough approximation: 1 token ≈ 4 characters
         return text.length() / 4;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.drfirst.bblt.session1.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Collapses runs of identical consecutive lines, typical of logs and polling output, into the
+ * first line followed by a repeat marker. Blank lines are left to the whitespace step.
+ */
+@Component
+public class DuplicateLineCompressionStep implements PromptCompressionStep {
+
+    @Override
+    public String getName() {
+        return "dedupe-lines";
+    }
+
+    @Override
+    public String apply(String text, int targetChars) {
+        StringBuilder out = new StringBuilder(text.length());
+        int prevStart = -1;
+        int prevEnd = -1;
+        int repeats = 0;
+
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            int length = end - start;
+            boolean duplicate = length > 0 && prevStart >= 0 && prevEnd - prevStart == length
+                    && text.regionMatches(start, text, prevStart, length);
+
+            if (duplicate) {
+                repeats++;
+            } else {
+                appendRepeatMarker(out, repeats, true);
+                repeats = 0;
+                out.append(text, start, end);
+                if (end < text.length()) {
+                    out.append('\n');
+                }
+                prevStart = start;
+                prevEnd = end;
+            }
+            start = end + 1;
+        }
+        appendRepeatMarker(out, repeats, false);
+        return out.toString();
+    }
+
+    private static void appendRepeatMarker(StringBuilder out, int repeats, boolean moreLines) {
+        if (repeats == 0) {
+            return;
+        }
+        if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+            out.append('\n');
+        }
+        out.append("[previous line repeated ").append(repeats).append(repeats == 1 ? " more time]" : " more times]");
+        if (moreLines) {
+            out.append('\n');
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.drfirst.bblt.session1.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free exponentially weighted moving average, updated with CAS on the double bits.
+ * The first sample seeds the average instead of decaying from zero.
+ */
+final class Ewma {
+
+    private static final long UNSET = Double.doubleToLongBits(Double.NaN);
+
+    private final double alpha;
+    private final AtomicLong bits = new AtomicLong(UNSET);
+
+    Ewma(double alpha) {
+        this.alpha = alpha;
+    }
+
+    void update(double sample) {
+        long current;
+        long next;
+        do {
+            current = bits.get();
+            double value = Double.longBitsToDouble(current);
+            double updated = Double.isNaN(value) ? sample : value + alpha * (sample - value);
+            next = Double.doubleToLongBits(updated);
+        } while (!bits.compareAndSet(current, next));
+    }
+
+    boolean hasSamples() {
+        return bits.get() != UNSET;
+    }
+
+    /**
+     * Current average, or the given default before the first sample
+     */
+    double get(double defaultValue) {
+        double value = Double.longBitsToDouble(bits.get());
+        return Double.isNaN(value) ? defaultValue : value;
+    }
+}
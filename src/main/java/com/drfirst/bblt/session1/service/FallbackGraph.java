@@ -0,0 +1,78 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.FallbackConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fallback candidates of a model from the configured graph, ranked by live health: EWMA latency plus
+ * an error-rate penalty from {@link ModelStatistics}, which sees every Bedrock and Gemini call but not
+ * calls rejected by bulkheads, load shedding or the rate limiter. Models without observations rank by
+ * an assumed latency, and until a model has minSamples observations its score is blended with that
+ * assumption, so one lucky or unlucky call does not reorder the graph. Ties keep the configured order.
+ */
+@Component
+public class FallbackGraph {
+
+    private final FallbackConfig fallbackConfig;
+    private final ModelStatistics modelStatistics;
+
+    public FallbackGraph(FallbackConfig fallbackConfig, ModelStatistics modelStatistics) {
+        this.fallbackConfig = fallbackConfig;
+        this.modelStatistics = modelStatistics;
+    }
+
+    /**
+     * Ranked fallbacks for the failed model, healthiest first; never includes the model itself
+     */
+    public List<String> candidatesFor(String failedModelId) {
+        List<String> candidates = new ArrayList<>(new LinkedHashSet<>(fallbackConfig.candidatesFor(failedModelId)));
+        candidates.remove(failedModelId);
+        // List.sort is stable, so equal scores keep the configured order
+        candidates.sort(Comparator.comparingDouble(this::score));
+        return candidates;
+    }
+
+    /**
+     * Expected cost of trying the model, in milliseconds
+     */
+    public double score(String modelId) {
+        ModelStatistics.ModelStats stats = modelStatistics.find(modelId);
+        if (stats == null || stats.getRequests() == 0) {
+            return fallbackConfig.getUnknownLatencyMs();
+        }
+        double observed = stats.getLatencyMs() + stats.getErrorRate() * fallbackConfig.getErrorPenaltyMs();
+        double weight = Math.min(1.0, (double) stats.getRequests() / Math.max(1, fallbackConfig.getMinSamples()));
+        return weight * observed + (1 - weight) * fallbackConfig.getUnknownLatencyMs();
+    }
+
+    /**
+     * Configured and current ranked candidates per model, with scores
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> models = new TreeMap<>();
+        fallbackConfig.getGraph().forEach((modelId, configured) -> {
+            Map<String, Long> ranked = new LinkedHashMap<>();
+            candidatesFor(modelId).forEach(candidate -> ranked.put(candidate, Math.round(score(candidate))));
+            Map<String, Object> model = new LinkedHashMap<>();
+            model.put("configured", configured);
+            model.put("ranked", ranked);
+            models.put(modelId, model);
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("staggerMs", fallbackConfig.getStagger().toMillis());
+        stats.put("maxParallel", fallbackConfig.getMaxParallel());
+        stats.put("minSamples", fallbackConfig.getMinSamples());
+        stats.put("defaultCandidates", fallbackConfig.getDefaultCandidates());
+        stats.put("models", models);
+        return stats;
+    }
+}
@@ -0,0 +1,318 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.FewShotConfig;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Few-shot example store with a MinHash similarity index over character n-grams.
+ * Signatures live in one flat int array (signatureSize ints per example) next to parallel
+ * primitive arrays for domain and token count, so selection is a linear, allocation-light scan.
+ * Candidates are ordered by a counting sort on the number of matching signature slots, then
+ * taken greedily while they fit the token budget.
+ */
+@Service
+public class FewShotExampleStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FewShotExampleStore.class);
+
+    private final FewShotConfig fewShotConfig;
+    private final int signatureSize;
+    private final int[] seeds;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Parallel arrays indexed by example id
+    private int[] signatures;
+    private int[] domains;
+    private int[] tokens;
+    private String[] inputs;
+    private String[] outputs;
+    private int size;
+
+    private final Map<String, Integer> domainIds = new HashMap<>();
+    private final List<DomainSpec> domainSpecs = new ArrayList<>();
+    private long[] domainTokens = new long[8];
+    private int[] domainCounts = new int[8];
+
+    private final AtomicLong selections = new AtomicLong();
+    private final AtomicLong selectionNanos = new AtomicLong();
+    private final AtomicLong tokensSaved = new AtomicLong();
+
+    public FewShotExampleStore(FewShotConfig fewShotConfig) {
+        this.fewShotConfig = fewShotConfig;
+        this.signatureSize = fewShotConfig.getSignatureSize();
+        this.seeds = new int[signatureSize];
+        // Fixed seeds so signatures are stable across restarts
+        long state = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < signatureSize; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            seeds[i] = (int) mix64(state);
+        }
+        int capacity = Math.max(16, fewShotConfig.getInitialCapacity());
+        this.signatures = new int[capacity * signatureSize];
+        this.domains = new int[capacity];
+        this.tokens = new int[capacity];
+        this.inputs = new String[capacity];
+        this.outputs = new String[capacity];
+    }
+
+    @PostConstruct
+    public void init() {
+        // Same domains and examples the UI used to inline into every prompt
+        registerDomain("sentiment", "You are a sentiment analysis expert. Classify text as POSITIVE, NEGATIVE, or NEUTRAL. "
+                + "Consider context, tone, and emotional indicators.", "Text", "Sentiment");
+        addExample("sentiment", "I love this product! It works perfectly and exceeded my expectations.", "POSITIVE");
+        addExample("sentiment", "This item broke after one day. Completely disappointed and frustrated.", "NEGATIVE");
+        addExample("sentiment", "The product is okay. It does what it's supposed to do.", "NEUTRAL");
+
+        registerDomain("classification", "You are a text classification expert. Categorize the input based on the examples "
+                + "provided. Use the same categories and format as shown in the examples.", "Text", "Category");
+        addExample("classification", "How do I reset my password?", "TECHNICAL_SUPPORT");
+        addExample("classification", "I want to return this item for a refund", "RETURNS");
+        addExample("classification", "When will my order arrive?", "SHIPPING");
+
+        registerDomain("translation", "You are a professional translator. Provide accurate, natural-sounding translations "
+                + "that preserve meaning, tone, and cultural context.", "English", "Spanish");
+        addExample("translation", "Good morning, how are you today?", "Buenos días, ¿cómo estás hoy?");
+        addExample("translation", "Thank you for your help", "Gracias por tu ayuda");
+        addExample("translation", "Where is the nearest restaurant?", "¿Dónde está el restaurante más cercano?");
+
+        logger.info("FewShotExampleStore initialized with {} examples in {} domains", size, domainSpecs.size());
+    }
+
+    /**
+     * Register or update a domain's system prompt and example labels
+     */
+    public void registerDomain(String domain, String systemPrompt, String inputLabel, String outputLabel) {
+        lock.writeLock().lock();
+        try {
+            int id = domainId(domain);
+            domainSpecs.set(id, new DomainSpec(domain, systemPrompt, inputLabel, outputLabel));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add an example and return its id
+     */
+    public int addExample(String domain, String input, String output) {
+        int[] signature = signature(input);
+        int exampleTokens = estimateTokens(input) + estimateTokens(output) + 4; // labels and separators
+
+        lock.writeLock().lock();
+        try {
+            int domainIndex = domainId(domain);
+            ensureCapacity(size + 1);
+            System.arraycopy(signature, 0, signatures, size * signatureSize, signatureSize);
+            domains[size] = domainIndex;
+            tokens[size] = exampleTokens;
+            inputs[size] = input;
+            outputs[size] = output;
+            domainTokens[domainIndex] += exampleTokens;
+            domainCounts[domainIndex]++;
+            return size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Pick up to maxExamples examples of a domain most similar to the query that together fit the token budget
+     */
+    public Selection select(String domain, String query, int maxExamples, int tokenBudget) {
+        long start = System.nanoTime();
+        int[] querySignature = signature(query);
+
+        lock.readLock().lock();
+        try {
+            Integer domainIdValue = domainIds.get(normalizeDomain(domain));
+            DomainSpec spec = domainIdValue != null ? domainSpecs.get(domainIdValue) : DomainSpec.generic(domain);
+            if (domainIdValue == null || domainCounts[domainIdValue] == 0) {
+                return new Selection(spec, List.of(), 0, 0, 0, System.nanoTime() - start);
+            }
+            int domainId = domainIdValue;
+
+            // Score = number of equal MinHash slots (estimates Jaccard similarity * signatureSize)
+            int candidates = domainCounts[domainId];
+            int[] ids = new int[candidates];
+            int[] scores = new int[candidates];
+            int[] bucketCounts = new int[signatureSize + 1];
+            int n = 0;
+            for (int id = 0; id < size; id++) {
+                if (domains[id] != domainId) {
+                    continue;
+                }
+                int base = id * signatureSize;
+                int score = 0;
+                for (int i = 0; i < signatureSize; i++) {
+                    if (signatures[base + i] == querySignature[i]) {
+                        score++;
+                    }
+                }
+                ids[n] = id;
+                scores[n] = score;
+                bucketCounts[score]++;
+                n++;
+            }
+
+            // Counting sort by descending score
+            int[] bucketStart = new int[signatureSize + 1];
+            for (int score = signatureSize - 1; score >= 0; score--) {
+                bucketStart[score] = bucketStart[score + 1] + bucketCounts[score + 1];
+            }
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[bucketStart[scores[i]]++] = i;
+            }
+
+            List<Example> selected = new ArrayList<>(maxExamples);
+            int usedTokens = 0;
+            for (int i = 0; i < n && selected.size() < maxExamples; i++) {
+                int candidate = order[i];
+                int id = ids[candidate];
+                if (usedTokens + tokens[id] > tokenBudget) {
+                    continue;
+                }
+                usedTokens += tokens[id];
+                selected.add(new Example(id, inputs[id], outputs[id], tokens[id],
+                        (double) scores[candidate] / signatureSize));
+            }
+
+            long allTokens = domainTokens[domainId];
+            long elapsed = System.nanoTime() - start;
+            selections.incrementAndGet();
+            selectionNanos.addAndGet(elapsed);
+            tokensSaved.addAndGet(allTokens - usedTokens);
+            return new Selection(spec, selected, candidates, usedTokens, allTokens, elapsed);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> perDomain = new LinkedHashMap<>();
+            for (int i = 0; i < domainSpecs.size(); i++) {
+                perDomain.put(domainSpecs.get(i).name(), Map.of("examples", domainCounts[i], "tokens", domainTokens[i]));
+            }
+            long count = selections.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("examples", size);
+            stats.put("domains", perDomain);
+            stats.put("indexBytes", (long) signatures.length * Integer.BYTES + (long) domains.length * Integer.BYTES * 2);
+            stats.put("selections", count);
+            stats.put("avgSelectionMicros", count > 0 ? selectionNanos.get() / count / 1000 : 0);
+            stats.put("tokensSaved", tokensSaved.get());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int domainId(String domain) {
+        String key = normalizeDomain(domain);
+        Integer id = domainIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        int newId = domainSpecs.size();
+        domainIds.put(key, newId);
+        domainSpecs.add(DomainSpec.generic(key));
+        if (newId >= domainTokens.length) {
+            domainTokens = Arrays.copyOf(domainTokens, newId * 2);
+            domainCounts = Arrays.copyOf(domainCounts, newId * 2);
+        }
+        return newId;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= domains.length) {
+            return;
+        }
+        int capacity = domains.length * 2;
+        signatures = Arrays.copyOf(signatures, capacity * signatureSize);
+        domains = Arrays.copyOf(domains, capacity);
+        tokens = Arrays.copyOf(tokens, capacity);
+        inputs = Arrays.copyOf(inputs, capacity);
+        outputs = Arrays.copyOf(outputs, capacity);
+    }
+
+    /**
+     * MinHash signature of the lowercased text's character shingles
+     */
+    private int[] signature(String text) {
+        int[] signature = new int[signatureSize];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        String normalized = text.toLowerCase();
+        int shingle = fewShotConfig.getShingleSize();
+        int last = Math.max(0, normalized.length() - shingle);
+
+        for (int start = 0; start <= last; start++) {
+            int end = Math.min(normalized.length(), start + shingle);
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + normalized.charAt(i);
+            }
+            for (int i = 0; i < signatureSize; i++) {
+                int value = mix32(h ^ seeds[i]);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static int mix32(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String normalizeDomain(String domain) {
+        return domain != null ? domain.trim().toLowerCase() : "general";
+    }
+
+    private static int estimateTokens(String text) {
+        // Rough approximation: 1 token ≈ 4 characters
+        return text != null ? (text.length() + 3) / 4 : 0;
+    }
+
+    public record DomainSpec(String name, String systemPrompt, String inputLabel, String outputLabel) {
+        static DomainSpec generic(String name) {
+            return new DomainSpec(name,
+                    "You are an expert assistant. Follow the patterns shown in the examples to provide accurate and helpful responses.",
+                    "Input", "Output");
+        }
+    }
+
+    public record Example(int id, String input, String output, int tokens, double similarity) {}
+
+    /**
+     * Selected examples plus what sending the whole domain would have cost
+     */
+    public record Selection(DomainSpec domain, List<Example> examples, int examplesConsidered,
+                            int selectedTokens, long allExamplesTokens, long selectionNanos) {}
+}
@@ -0,0 +1,134 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ClusterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Shares breaker state through a directory every replica can see. Each node owns one file holding
+ * its full view, replaced atomically on every publish; peers re-read a file only when it changed.
+ */
+@Component
+public class FileBreakerStateBackend implements BreakerStateBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileBreakerStateBackend.class);
+
+    private static final String SUFFIX = ".breakers";
+
+    private final ClusterConfig clusterConfig;
+    private final Map<String, BedrockErrorHandler.BreakerSnapshot> ownState = new ConcurrentHashMap<>();
+    private final Map<Path, String> lastVersion = new ConcurrentHashMap<>();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private Path directory;
+    private Path ownFile;
+    private String nodeId;
+
+    public FileBreakerStateBackend(ClusterConfig clusterConfig) {
+        this.clusterConfig = clusterConfig;
+    }
+
+    @Override
+    public String getName() {
+        return "file";
+    }
+
+    @Override
+    public void start(String nodeId) throws IOException {
+        this.nodeId = nodeId;
+        this.directory = Paths.get(clusterConfig.getFile().getDirectory());
+        Files.createDirectories(directory);
+        this.ownFile = directory.resolve(nodeId.replaceAll("[^A-Za-z0-9._-]", "_") + SUFFIX);
+        logger.info("Sharing breaker state through {}", ownFile.toAbsolutePath());
+    }
+
+    @Override
+    public void publish(List<BreakerUpdate> updates, boolean fullState) {
+        updates.forEach(update -> ownState.put(update.breaker().modelId(), update.breaker()));
+        long sentAtMs = System.currentTimeMillis();
+        StringBuilder content = new StringBuilder();
+        ownState.values().forEach(breaker ->
+                content.append(new BreakerUpdate(nodeId, sentAtMs, breaker).encode()).append('\n'));
+        try {
+            Path temp = Files.createTempFile(directory, ".tmp-", SUFFIX);
+            Files.writeString(temp, content, StandardCharsets.UTF_8);
+            Files.move(temp, ownFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writes.incrementAndGet();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            logger.warn("Failed to write breaker state to {}: {}", ownFile, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<BreakerUpdate> poll() {
+        List<BreakerUpdate> updates = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .filter(file -> !file.equals(ownFile))
+                    .forEach(file -> read(file, updates));
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            logger.warn("Failed to list breaker state in {}: {}", directory, e.getMessage());
+        }
+        return updates;
+    }
+
+    private void read(Path file, List<BreakerUpdate> updates) {
+        try {
+            // Every publish replaces the file, so its inode changes even within the mtime granularity
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            String version = attributes.fileKey() + "@" + attributes.lastModifiedTime().toMillis();
+            if (version.equals(lastVersion.put(file, version))) {
+                return;
+            }
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                BreakerUpdate update = BreakerUpdate.decode(line);
+                if (update != null) {
+                    updates.add(update);
+                }
+            }
+            reads.incrementAndGet();
+        } catch (NoSuchFileException e) {
+            lastVersion.remove(file);
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            logger.warn("Failed to read breaker state from {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        // The file stays; peers stop trusting it once it is older than the staleness bound
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("directory", directory != null ? directory.toAbsolutePath().toString() : null);
+        stats.put("writes", writes.get());
+        stats.put("reads", reads.get());
+        stats.put("errors", errors.get());
+        return stats;
+    }
+}
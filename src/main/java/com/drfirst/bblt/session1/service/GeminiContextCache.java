@@ -0,0 +1,390 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.GeminiCacheConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.auth.oauth2.GoogleCredentials;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local bookkeeping and REST client for Vertex AI cached content.
+ * A system prompt plus document set is uploaded once, gets a TTL, and is then referenced by a
+ * handle derived from its content hash, so identical contexts are reused instead of re-sent.
+ * The base URL is configurable so the cache can run against a local stand-in for Vertex.
+ */
+@Service
+public class GeminiContextCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeminiContextCache.class);
+    private static final String CLOUD_PLATFORM_SCOPE = "https://www.googleapis.com/auth/cloud-platform";
+
+    // Gemini 2.5 Flash input price per token, matching GeminiService
+    private static final double INPUT_COST_PER_TOKEN = 0.15 / 1_000_000.0;
+
+    private final GeminiCacheConfig cacheConfig;
+    private final RestClient restClient;
+    private final String projectId;
+    private final String location;
+    private final String model;
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+
+    private final Counter registrations;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter cachedTokensServed;
+    private final Counter costSaved;
+    private final AtomicLong totalCachedTokens = new AtomicLong();
+    private final AtomicLong totalGenerations = new AtomicLong();
+
+    private volatile GoogleCredentials credentials;
+
+    public GeminiContextCache(GeminiCacheConfig cacheConfig,
+                              MeterRegistry meterRegistry,
+                              @Value("${spring.ai.vertex.ai.gemini.project-id:}") String projectId,
+                              @Value("${spring.ai.vertex.ai.gemini.location:us-central1}") String location,
+                              @Value("${spring.ai.vertex.ai.gemini.chat.options.model:gemini-2.5-flash}") String model) {
+        this.cacheConfig = cacheConfig;
+        this.projectId = projectId;
+        this.location = location;
+        this.model = model;
+
+        String baseUrl = cacheConfig.getBaseUrl() != null && !cacheConfig.getBaseUrl().isBlank()
+                ? cacheConfig.getBaseUrl()
+                : "https://" + location + "-aiplatform.googleapis.com/v1";
+        this.restClient = RestClient.builder().baseUrl(baseUrl).build();
+
+        this.registrations = meterRegistry.counter("gemini.cache.registrations");
+        this.hits = meterRegistry.counter("gemini.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("gemini.cache.requests", "result", "miss");
+        this.cachedTokensServed = meterRegistry.counter("gemini.cache.tokens.saved");
+        this.costSaved = meterRegistry.counter("gemini.cache.cost.saved");
+        meterRegistry.gaugeMapSize("gemini.cache.entries", List.of(), entries);
+    }
+
+    public boolean isEnabled() {
+        return cacheConfig.isEnabled();
+    }
+
+    /**
+     * Whether a system prompt is large enough that caching it pays off
+     */
+    public boolean shouldCache(String systemPrompt) {
+        return cacheConfig.isEnabled()
+                && systemPrompt != null
+                && estimateTokens(systemPrompt) >= cacheConfig.getMinCacheTokens();
+    }
+
+    /**
+     * Register a context, or reuse the live entry if the same content is already cached
+     */
+    public CacheEntry register(String systemPrompt, List<String> documents, Duration ttl) {
+        Duration effectiveTtl = ttl != null ? ttl : cacheConfig.getDefaultTtl();
+        String handle = handleFor(systemPrompt, documents);
+        Instant now = Instant.now();
+
+        CacheEntry entry = entries.compute(handle, (key, existing) -> {
+            if (existing != null && !existing.isExpired(now, cacheConfig.getExpiryMargin())) {
+                hits.increment();
+                return existing;
+            }
+            misses.increment();
+            return createRemote(key, systemPrompt, documents, effectiveTtl);
+        });
+
+        entry.lastUsed = now;
+        enforceCapacity();
+        return entry;
+    }
+
+    /**
+     * Look up a live entry by handle; expired entries are dropped
+     */
+    public CacheEntry get(String handle) {
+        CacheEntry entry = entries.get(handle);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(Instant.now(), cacheConfig.getExpiryMargin())) {
+            entries.remove(handle, entry);
+            logger.info("Gemini cache entry {} expired", handle);
+            return null;
+        }
+        entry.lastUsed = Instant.now();
+        return entry;
+    }
+
+    /**
+     * Generate content referencing the cached context instead of re-sending it
+     */
+    public CachedGeneration generate(CacheEntry entry, ChatRequest request) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("cachedContent", entry.getName());
+        body.put("contents", List.of(userContent(List.of(request.message()))));
+        body.put("generationConfig", Map.of(
+                "temperature", request.temperature(),
+                "topP", request.topP(),
+                "maxOutputTokens", request.maxTokens()
+        ));
+
+        JsonNode response = restClient.post()
+                .uri("/" + modelResource() + ":generateContent")
+                .headers(this::applyAuth)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(JsonNode.class);
+
+        if (response == null) {
+            throw new IllegalStateException("Empty generateContent response from Vertex AI");
+        }
+
+        StringBuilder content = new StringBuilder();
+        JsonNode candidate = response.path("candidates").path(0);
+        for (JsonNode part : candidate.path("content").path("parts")) {
+            content.append(part.path("text").asText(""));
+        }
+
+        JsonNode usage = response.path("usageMetadata");
+        int cachedTokens = usage.path("cachedContentTokenCount").asInt(entry.getCachedTokens());
+        CachedGeneration generation = new CachedGeneration(
+                content.toString(),
+                usage.path("promptTokenCount").asInt(0),
+                usage.path("candidatesTokenCount").asInt(0),
+                cachedTokens,
+                candidate.path("finishReason").asText("complete")
+        );
+
+        entry.uses.incrementAndGet();
+        totalGenerations.incrementAndGet();
+        totalCachedTokens.addAndGet(cachedTokens);
+        cachedTokensServed.increment(cachedTokens);
+        costSaved.increment(cachedTokens * INPUT_COST_PER_TOKEN * cacheConfig.getCachedInputDiscount());
+
+        return generation;
+    }
+
+    /**
+     * Remove an entry locally and delete it on Vertex
+     */
+    public boolean evict(String handle) {
+        CacheEntry entry = entries.remove(handle);
+        if (entry == null) {
+            return false;
+        }
+        deleteRemote(entry);
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        List<Map<String, Object>> live = new ArrayList<>();
+        Instant now = Instant.now();
+        entries.values().forEach(entry -> live.add(Map.of(
+                "handle", entry.getHandle(),
+                "name", entry.getName(),
+                "cachedTokens", entry.getCachedTokens(),
+                "uses", entry.uses.get(),
+                "expiresInSeconds", Math.max(0, Duration.between(now, entry.getExpireTime()).toSeconds())
+        )));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cacheConfig.isEnabled());
+        stats.put("entries", live);
+        stats.put("registrations", (long) registrations.count());
+        stats.put("hits", (long) hits.count());
+        stats.put("misses", (long) misses.count());
+        stats.put("cachedGenerations", totalGenerations.get());
+        stats.put("cachedTokensServed", totalCachedTokens.get());
+        stats.put("estimatedCostSaved", costSaved.count());
+        return stats;
+    }
+
+    /**
+     * Cost of input tokens when part of them were served from the cache
+     */
+    public double inputCost(int promptTokens, int cachedTokens) {
+        int uncached = Math.max(0, promptTokens - cachedTokens);
+        double cachedRate = INPUT_COST_PER_TOKEN * (1.0 - cacheConfig.getCachedInputDiscount());
+        return uncached * INPUT_COST_PER_TOKEN + cachedTokens * cachedRate;
+    }
+
+    private CacheEntry createRemote(String handle, String systemPrompt, List<String> documents, Duration ttl) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", modelResource());
+        body.put("displayName", "bblt-" + handle);
+        if (systemPrompt != null && !systemPrompt.isBlank()) {
+            body.put("systemInstruction", Map.of("parts", List.of(Map.of("text", systemPrompt))));
+        }
+        if (documents != null && !documents.isEmpty()) {
+            body.put("contents", List.of(userContent(documents)));
+        }
+        body.put("ttl", ttl.toSeconds() + "s");
+
+        JsonNode response = restClient.post()
+                .uri("/projects/" + projectId + "/locations/" + location + "/cachedContents")
+                .headers(this::applyAuth)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(JsonNode.class);
+
+        if (response == null || response.path("name").asText("").isEmpty()) {
+            throw new IllegalStateException("Vertex AI did not return a cached content name");
+        }
+
+        String expireTimeText = response.path("expireTime").asText(null);
+        Instant expireTime = expireTimeText != null ? Instant.parse(expireTimeText) : Instant.now().plus(ttl);
+        int cachedTokens = response.path("usageMetadata").path("totalTokenCount")
+                .asInt(estimateTokens(systemPrompt) + estimateTokens(String.join("", documents != null ? documents : List.of())));
+
+        registrations.increment();
+        logger.info("Registered Gemini cached content {} ({} tokens, expires {})",
+                response.path("name").asText(), cachedTokens, expireTime);
+
+        return new CacheEntry(handle, response.path("name").asText(), cachedTokens, expireTime);
+    }
+
+    private void deleteRemote(CacheEntry entry) {
+        try {
+            restClient.delete()
+                    .uri("/" + entry.getName())
+                    .headers(this::applyAuth)
+                    .retrieve()
+                    .toBodilessEntity();
+        } catch (Exception e) {
+            // Vertex expires it on its own once the TTL passes
+            logger.warn("Failed to delete Gemini cached content {}: {}", entry.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Keep the local map bounded: drop expired entries, then the least recently used ones
+     */
+    private void enforceCapacity() {
+        Instant now = Instant.now();
+        entries.values().removeIf(entry -> entry.isExpired(now, cacheConfig.getExpiryMargin()));
+
+        while (entries.size() > cacheConfig.getMaxEntries()) {
+            entries.values().stream()
+                    .min((a, b) -> a.lastUsed.compareTo(b.lastUsed))
+                    .ifPresent(oldest -> {
+                        if (entries.remove(oldest.getHandle(), oldest)) {
+                            deleteRemote(oldest);
+                        }
+                    });
+        }
+    }
+
+    private Map<String, Object> userContent(List<String> texts) {
+        return Map.of(
+                "role", "user",
+                "parts", texts.stream().map(text -> Map.of("text", text)).toList()
+        );
+    }
+
+    private String modelResource() {
+        return "projects/" + projectId + "/locations/" + location + "/publishers/google/models/" + model;
+    }
+
+    private void applyAuth(HttpHeaders headers) {
+        if (!cacheConfig.isUseApplicationDefaultCredentials()) {
+            return; // local stand-in
+        }
+        try {
+            if (credentials == null) {
+                credentials = GoogleCredentials.getApplicationDefault().createScoped(CLOUD_PLATFORM_SCOPE);
+            }
+            credentials.refreshIfExpired();
+            headers.setBearerAuth(credentials.getAccessToken().getTokenValue());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to obtain Google credentials for Vertex AI: " + e.getMessage(), e);
+        }
+    }
+
+    private static String handleFor(String systemPrompt, List<String> documents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((systemPrompt != null ? systemPrompt : "").getBytes(StandardCharsets.UTF_8));
+            if (documents != null) {
+                for (String document : documents) {
+                    digest.update((byte) 0); // separator so ["ab"] and ["a", "b"] differ
+                    digest.update(document.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static int estimateTokens(String text) {
+        // Same approximation as GeminiService: 1 token ≈ 3 characters
+        return text != null ? text.length() / 3 : 0;
+    }
+
+    /**
+     * Result of a generation that referenced cached content
+     */
+    public record CachedGeneration(String content, int promptTokens, int outputTokens, int cachedTokens,
+                                   String finishReason) {}
+
+    /**
+     * A registered cached context
+     */
+    public static class CacheEntry {
+        private final String handle;
+        private final String name;
+        private final int cachedTokens;
+        private final Instant expireTime;
+        private final AtomicLong uses = new AtomicLong();
+        private volatile Instant lastUsed = Instant.now();
+
+        CacheEntry(String handle, String name, int cachedTokens, Instant expireTime) {
+            this.handle = handle;
+            this.name = name;
+            this.cachedTokens = cachedTokens;
+            this.expireTime = expireTime;
+        }
+
+        boolean isExpired(Instant now, Duration margin) {
+            return now.plus(margin).isAfter(expireTime);
+        }
+
+        public String getHandle() {
+            return handle;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCachedTokens() {
+            return cachedTokens;
+        }
+
+        public Instant getExpireTime() {
+            return expireTime;
+        }
+    }
+}
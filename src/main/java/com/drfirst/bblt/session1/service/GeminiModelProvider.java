@@ -0,0 +1,64 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Gemini on Vertex AI through GeminiService
+ */
+@Component
+public class GeminiModelProvider implements ModelProvider {
+
+    private final GeminiService geminiService;
+    private final ModelConfig.ModelProperties properties;
+
+    public GeminiModelProvider(GeminiService geminiService) {
+        this.geminiService = geminiService;
+
+        // Gemini 2.5 Flash limits and preview pricing
+        properties = new ModelConfig.ModelProperties();
+        properties.setModelId(GeminiService.MODEL_ID);
+        properties.setDisplayName("Gemini 2.5 Flash");
+        properties.setProvider("Google");
+        properties.setMaxTokens(8192);
+        properties.setContextWindow(2097152);
+        properties.setCostPer1kInputTokens(0.00015);
+        properties.setCostPer1kOutputTokens(0.0006);
+    }
+
+    @Override
+    public String getName() {
+        return "gemini";
+    }
+
+    @Override
+    public List<String> getModelIds() {
+        return List.of(GeminiService.MODEL_ID);
+    }
+
+    @Override
+    public ModelConfig.ModelProperties getModelProperties(String modelId) {
+        return GeminiService.MODEL_ID.equals(modelId) ? properties : null;
+    }
+
+    @Override
+    public ChatResponse invoke(ChatRequest request) {
+        return geminiService.chatCompletion(request);
+    }
+
+    @Override
+    public Flux<ChatStreamEvent> stream(ChatRequest request) {
+        return geminiService.chatStream(request).map(ChatStreamEvent::content);
+    }
+
+    @Override
+    public boolean recordsStatistics() {
+        return true;
+    }
+}
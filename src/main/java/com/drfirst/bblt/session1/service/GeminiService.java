@@ -5,13 +5,18 @@ import com.drfirst.bblt.session1.model.ChatResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatModel;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Service for Google Vertex AI Gemini integration using Spring AI ChatClient.
@@ -21,20 +26,108 @@ import java.util.Map;
 public class GeminiService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeminiService.class);
+
+    public static final String MODEL_ID = "gemini-2.5-flash";
+
+    private static final String COMPARE_WITH_BEDROCK_TEMPLATE = """
+            Compare Google Gemini 2.5 Flash with AWS Bedrock models for the following topic: {topic}
+            
+            Please provide a detailed comparison covering:
+            1. Model capabilities and strengths
+            2. Integration differences (Spring AI perspective)
+            3. Pricing considerations
+            4. Use case recommendations
+            5. Performance characteristics
+            
+            Focus on practical insights for developers choosing between these platforms.
+            """;
     
     private final ChatClient geminiChatClient;
     private final VertexAiGeminiChatModel geminiChatModel;
-
-    public GeminiService(VertexAiGeminiChatModel geminiChatModel) {
+    private final GeminiContextCache contextCache;
+    private final PromptTemplateEngine templateEngine;
+    private final PromptTemplateEngine.CompiledTemplate compareWithBedrockTemplate;
+    private final PromptCompressor promptCompressor;
+    private final StreamReplayCache streamReplayCache;
+    private final ModelBulkheads bulkheads;
+    private final AuditLog auditLog;
+    private final LatencyHistograms latencyHistograms;
+    private final ModelStatistics modelStatistics;
+
+    public GeminiService(VertexAiGeminiChatModel geminiChatModel,
+                         GeminiContextCache contextCache,
+                         PromptTemplateEngine templateEngine,
+                         PromptCompressor promptCompressor,
+                         StreamReplayCache streamReplayCache,
+                         ModelBulkheads bulkheads,
+                         AuditLog auditLog,
+                         LatencyHistograms latencyHistograms,
+                         ModelStatistics modelStatistics) {
         this.geminiChatModel = geminiChatModel;
         this.geminiChatClient = ChatClient.builder(geminiChatModel).build();
+        this.contextCache = contextCache;
+        this.templateEngine = templateEngine;
+        this.compareWithBedrockTemplate = templateEngine.compile(COMPARE_WITH_BEDROCK_TEMPLATE);
+        this.promptCompressor = promptCompressor;
+        this.streamReplayCache = streamReplayCache;
+        this.bulkheads = bulkheads;
+        this.auditLog = auditLog;
+        this.latencyHistograms = latencyHistograms;
+        this.modelStatistics = modelStatistics;
         logger.info("GeminiService initialized with Vertex AI Gemini ChatClient");
     }
 
     /**
-     * Simple chat completion using Gemini via Spring AI ChatClient
+     * Simple chat completion using Gemini via Spring AI ChatClient, written to the audit log and
+     * recorded in the live latency histograms and model statistics
      */
     public ChatResponse chatCompletion(ChatRequest request) {
+        return observed("chat", request, () -> complete(request));
+    }
+
+    /**
+     * Every blocking Gemini call goes through here, so each endpoint is audited and measured the same way
+     */
+    private ChatResponse observed(String endpoint, ChatRequest request, Supplier<ChatResponse> call) {
+        long startNanos = System.nanoTime();
+        ChatResponse response = call.get();
+        long latencyNanos = System.nanoTime() - startNanos;
+        auditLog.record(endpoint, request, response, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        latencyHistograms.record(MODEL_ID, endpoint, latencyNanos, response.isSuccess(),
+                response.metrics() != null ? response.metrics().outputTokens() : -1);
+        recordStatistics(response, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        return response;
+    }
+
+    /**
+     * Feed the live statistics the router and the fallback graph rank by. Rejected calls never reached
+     * the model and cancelled ones say nothing about it, so neither is recorded.
+     */
+    private void recordStatistics(ChatResponse response, long latencyMs) {
+        if (response.isRejected() || Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        if (response.isSuccess() && response.metrics() != null) {
+            modelStatistics.record(MODEL_ID, latencyMs, true, response.metrics().outputTokens(), response.metrics().estimatedCost());
+        } else {
+            modelStatistics.record(MODEL_ID, latencyMs, response.isSuccess(), 0, 0.0);
+        }
+    }
+
+    private ChatResponse complete(ChatRequest originalRequest) {
+        PromptCompressor.Compression compression = promptCompressor.compress(originalRequest);
+        ChatRequest request = compression.request();
+
+        // Large system prompts are cached on Vertex and referenced instead of re-sent
+        if (contextCache.shouldCache(request.systemPrompt())) {
+            try {
+                GeminiContextCache.CacheEntry entry = contextCache.register(request.systemPrompt(), List.of(), null);
+                return compression.annotate(chatWithCachedContext(entry, request));
+            } catch (Exception e) {
+                logger.warn("Gemini context caching failed, sending full context: {}", e.getMessage());
+            }
+        }
+
         long startTime = System.currentTimeMillis();
         
         try {
@@ -50,10 +143,9 @@ public class GeminiService {
                 clientRequest = clientRequest.system(request.systemPrompt());
             }
 
-            // Execute the request with default options
-            String response = clientRequest
-                    .call()
-                    .content();
+            // Execute the request with default options, inside Gemini's bulkhead
+            ChatClient.ChatClientRequestSpec call = clientRequest;
+            String response = bulkheads.execute(MODEL_ID, () -> call.call().content());
 
             // Calculate metrics (Gemini-specific estimation)
             long responseTime = System.currentTimeMillis() - startTime;
@@ -62,24 +154,111 @@ public class GeminiService {
             double estimatedCost = calculateGeminiCost(inputTokens, outputTokens);
 
             ChatResponse.ModelPerformanceMetrics metrics = ChatResponse.ModelPerformanceMetrics.create(
-                    "gemini-2.5-flash", responseTime, inputTokens, outputTokens, estimatedCost, "complete"
+                    MODEL_ID, responseTime, inputTokens, outputTokens, estimatedCost, "complete"
             );
 
             logger.info("Gemini chat success: tokens={}, cost=${}, time={}ms", 
                        metrics.totalTokens(), metrics.estimatedCost(), responseTime);
 
-            return ChatResponse.success(response, "gemini-2.5-flash", metrics);
+            return compression.annotate(ChatResponse.success(response, MODEL_ID, metrics));
 
+        } catch (ModelBulkheads.BulkheadFullException | AdmissionController.AdmissionRejectedException e) {
+            logger.warn("Gemini chat rejected: {}", e.getMessage());
+            return ChatResponse.rejected(e.getMessage(), MODEL_ID);
         } catch (Exception e) {
             logger.error("Error with Gemini chat: {}", e.getMessage(), e);
-            return ChatResponse.error("Gemini chat failed: " + e.getMessage(), "gemini-2.5-flash");
+            return ChatResponse.error("Gemini chat failed: " + e.getMessage(), MODEL_ID);
+        }
+    }
+
+    /**
+     * Register a system prompt and/or document set as Vertex AI cached content
+     */
+    public GeminiContextCache.CacheEntry registerContext(String systemPrompt, List<String> documents, Duration ttl) {
+        return contextCache.register(systemPrompt, documents, ttl);
+    }
+
+    /**
+     * Chat against a previously registered cached context
+     */
+    public ChatResponse chatWithCache(String cacheHandle, ChatRequest request) {
+        return observed("cache-chat", request, () -> completeWithCache(cacheHandle, request));
+    }
+
+    private ChatResponse completeWithCache(String cacheHandle, ChatRequest request) {
+        GeminiContextCache.CacheEntry entry = contextCache.get(cacheHandle);
+        if (entry == null) {
+            return ChatResponse.error("Unknown or expired cache handle: " + cacheHandle, MODEL_ID);
+        }
+        return chatWithCachedContext(entry, request);
+    }
+
+    private ChatResponse chatWithCachedContext(GeminiContextCache.CacheEntry entry, ChatRequest request) {
+        long startTime = System.currentTimeMillis();
+
+        try {
+            logger.info("Gemini cached chat request: handle={}, message length={}",
+                       entry.getHandle(), request.message().length());
+
+            GeminiContextCache.CachedGeneration generation = bulkheads.execute(MODEL_ID, () -> contextCache.generate(entry, request));
+
+            long responseTime = System.currentTimeMillis() - startTime;
+            int inputTokens = generation.promptTokens() > 0 ? generation.promptTokens() : estimateTokens(request.message());
+            int outputTokens = generation.outputTokens() > 0 ? generation.outputTokens() : estimateTokens(generation.content());
+            double estimatedCost = contextCache.inputCost(inputTokens, generation.cachedTokens())
+                    + (outputTokens / 1_000_000.0) * 0.60;
+
+            ChatResponse.ModelPerformanceMetrics metrics = ChatResponse.ModelPerformanceMetrics.create(
+                    MODEL_ID, responseTime, inputTokens, outputTokens, estimatedCost, generation.finishReason()
+            );
+
+            logger.info("Gemini cached chat success: tokens={}, cachedTokens={}, cost=${}, time={}ms",
+                       metrics.totalTokens(), generation.cachedTokens(), metrics.estimatedCost(), responseTime);
+
+            return new ChatResponse(
+                    generation.content(),
+                    MODEL_ID,
+                    metrics,
+                    Map.of(
+                            "cacheHandle", entry.getHandle(),
+                            "cachedContent", entry.getName(),
+                            "cachedTokens", generation.cachedTokens()
+                    ),
+                    LocalDateTime.now(),
+                    null,
+                    true,
+                    null
+            );
+
+        } catch (ModelBulkheads.BulkheadFullException | AdmissionController.AdmissionRejectedException e) {
+            logger.warn("Gemini cached chat rejected: {}", e.getMessage());
+            return ChatResponse.rejected(e.getMessage(), MODEL_ID);
+        } catch (Exception e) {
+            logger.error("Error with Gemini cached chat: {}", e.getMessage(), e);
+            return ChatResponse.error("Gemini cached chat failed: " + e.getMessage(), MODEL_ID);
         }
     }
 
+    public Map<String, Object> getContextCacheStats() {
+        return contextCache.getStats();
+    }
+
+    public boolean evictContext(String cacheHandle) {
+        return contextCache.evict(cacheHandle);
+    }
+
     /**
-     * Streaming chat with Gemini using Spring AI ChatClient
+     * Streaming chat with Gemini using Spring AI ChatClient; repeat deterministic requests are replayed from cache
      */
     public Flux<String> chatStream(ChatRequest request) {
+        Flux<String> chunks = streamReplayCache.stream("gemini", request, () -> streamFromModel(request),
+                chunk -> chunk, chunk -> chunk);
+        Flux<String> audited = auditLog.stream("stream", request, chunks, chunk -> chunk, chunk -> null);
+        return RequestPriority.propagate(latencyHistograms.stream(MODEL_ID, "stream", audited,
+                chunk -> !chunk.isEmpty(), chunk -> null, chunk -> false));
+    }
+
+    private Flux<String> streamFromModel(ChatRequest request) {
         try {
             logger.info("Gemini stream request: message length={}", request.message().length());
 
@@ -93,13 +272,30 @@ public class GeminiService {
                 clientRequest = clientRequest.system(request.systemPrompt());
             }
 
-            // Execute streaming request with default options
-            return clientRequest
-                    .stream()
-                    .content()
-                    .doOnNext(chunk -> logger.debug("Gemini stream chunk: {}", chunk))
-                    .doOnComplete(() -> logger.info("Gemini stream completed"))
-                    .doOnError(error -> logger.error("Gemini stream error: {}", error.getMessage()));
+            // Execute streaming request with default options, holding a slot of Gemini's bulkhead
+            ChatClient.ChatClientRequestSpec call = clientRequest;
+            int inputTokens = estimateTokens(request.message() + (request.systemPrompt() != null ? request.systemPrompt() : ""));
+            AtomicLong startTime = new AtomicLong();
+            AtomicInteger outputChars = new AtomicInteger();
+            return bulkheads.stream(MODEL_ID, () -> call.stream().content())
+                    .doOnSubscribe(subscription -> startTime.set(System.currentTimeMillis()))
+                    .doOnNext(chunk -> {
+                        logger.debug("Gemini stream chunk: {}", chunk);
+                        outputChars.addAndGet(chunk.length());
+                    })
+                    .doOnComplete(() -> {
+                        logger.info("Gemini stream completed");
+                        int outputTokens = outputChars.get() / 3;
+                        modelStatistics.record(MODEL_ID, System.currentTimeMillis() - startTime.get(), true,
+                                outputTokens, calculateGeminiCost(inputTokens, outputTokens));
+                    })
+                    .doOnError(error -> {
+                        logger.error("Gemini stream error: {}", error.getMessage());
+                        if (!(error instanceof ModelBulkheads.BulkheadFullException
+                                || error instanceof AdmissionController.AdmissionRejectedException)) {
+                            modelStatistics.record(MODEL_ID, System.currentTimeMillis() - startTime.get(), false, 0, 0.0);
+                        }
+                    });
 
         } catch (Exception e) {
             logger.error("Error with Gemini stream: {}", e.getMessage(), e);
@@ -111,39 +307,74 @@ public class GeminiService {
      * Advanced prompt engineering with Gemini
      */
     public ChatResponse promptEngineering(String template, Map<String, Object> variables) {
-        long startTime = System.currentTimeMillis();
-        
+        return promptEngineering(template, variables, null);
+    }
+
+    /**
+     * Prompt engineering against an optional cached context (e.g. a large document set)
+     */
+    public ChatResponse promptEngineering(String template, Map<String, Object> variables, String cacheHandle) {
+        logger.info("Gemini prompt engineering with template: {}", template);
         try {
-            logger.info("Gemini prompt engineering with template: {}", template);
+            return promptEngineering(templateEngine.compile(template), variables, cacheHandle);
+        } catch (Exception e) {
+            logger.error("Error with Gemini prompt engineering: {}", e.getMessage(), e);
+            return ChatResponse.error("Gemini prompt engineering failed: " + e.getMessage(), MODEL_ID);
+        }
+    }
 
-            // Create prompt template
-            PromptTemplate promptTemplate = new PromptTemplate(template);
-            Prompt prompt = promptTemplate.create(variables);
+    /**
+     * Prompt engineering with an already compiled template
+     */
+    public ChatResponse promptEngineering(PromptTemplateEngine.CompiledTemplate template,
+                                          Map<String, Object> variables, String cacheHandle) {
+        String prompt;
+        try {
+            prompt = templateEngine.render(template, variables);
+        } catch (Exception e) {
+            logger.error("Error with Gemini prompt engineering: {}", e.getMessage(), e);
+            return ChatResponse.error("Gemini prompt engineering failed: " + e.getMessage(), MODEL_ID);
+        }
 
-            // Execute with ChatClient
-            String response = geminiChatClient
+        // Same generation settings as the configured Gemini chat options
+        ChatRequest request = new ChatRequest(prompt, null, MODEL_ID, 8192, 0.7, 0.4, 40, false, true);
+        if (cacheHandle != null && !cacheHandle.isBlank()) {
+            return observed("prompt-engineering", request, () -> completeWithCache(cacheHandle, request));
+        }
+        return observed("prompt-engineering", request, () -> completePrompt(prompt));
+    }
+
+    private ChatResponse completePrompt(String prompt) {
+        long startTime = System.currentTimeMillis();
+        
+        try {
+            // Execute with ChatClient, inside Gemini's bulkhead
+            String response = bulkheads.execute(MODEL_ID, () -> geminiChatClient
                     .prompt(prompt)
                     .call()
-                    .content();
+                    .content());
 
             // Calculate metrics
             long responseTime = System.currentTimeMillis() - startTime;
-            int inputTokens = estimateTokens(template + variables.toString());
+            int inputTokens = estimateTokens(prompt);
             int outputTokens = estimateTokens(response);
             double estimatedCost = calculateGeminiCost(inputTokens, outputTokens);
 
             ChatResponse.ModelPerformanceMetrics metrics = ChatResponse.ModelPerformanceMetrics.create(
-                    "gemini-2.5-flash", responseTime, inputTokens, outputTokens, estimatedCost, "complete"
+                    MODEL_ID, responseTime, inputTokens, outputTokens, estimatedCost, "complete"
             );
 
             logger.info("Gemini prompt engineering success: tokens={}, cost=${}", 
                        metrics.totalTokens(), metrics.estimatedCost());
 
-            return ChatResponse.success(response, "gemini-2.5-flash", metrics);
+            return ChatResponse.success(response, MODEL_ID, metrics);
 
+        } catch (ModelBulkheads.BulkheadFullException | AdmissionController.AdmissionRejectedException e) {
+            logger.warn("Gemini prompt engineering rejected: {}", e.getMessage());
+            return ChatResponse.rejected(e.getMessage(), MODEL_ID);
         } catch (Exception e) {
             logger.error("Error with Gemini prompt engineering: {}", e.getMessage(), e);
-            return ChatResponse.error("Gemini prompt engineering failed: " + e.getMessage(), "gemini-2.5-flash");
+            return ChatResponse.error("Gemini prompt engineering failed: " + e.getMessage(), MODEL_ID);
         }
     }
 
@@ -183,20 +414,7 @@ public class GeminiService {
      * Compare with AWS Bedrock models
      */
     public ChatResponse compareWithBedrock(String topic) {
-        String template = """
-            Compare Google Gemini 2.5 Flash with AWS Bedrock models for the following topic: {topic}
-            
-            Please provide a detailed comparison covering:
-            1. Model capabilities and strengths
-            2. Integration differences (Spring AI perspective)
-            3. Pricing considerations
-            4. Use case recommendations
-            5. Performance characteristics
-            
-            Focus on practical insights for developers choosing between these platforms.
-            """;
-
-        return promptEngineering(template, Map.of("topic", topic));
+        return promptEngineering(compareWithBedrockTemplate, Map.of("topic", topic), null);
     }
 
     /**
@@ -0,0 +1,249 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.HealthProbeConfig;
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.PriorityClass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actively checks unhealthy models instead of letting the first user request after the breaker
+ * timeout find out. Models whose breaker is open, or that keep failing while closed, get a tiny
+ * synthetic request at exponentially growing intervals; a successful probe closes the breaker at once
+ * and reports how long the model was out. Probes bypass the breaker and the retry engine, run as
+ * batch priority, and stop when the hourly probe count or estimated spend cap is reached.
+ */
+@Component
+public class HealthProber {
+
+    private static final Logger logger = LoggerFactory.getLogger(HealthProber.class);
+
+    private final HealthProbeConfig probeConfig;
+    private final BedrockErrorHandler errorHandler;
+    private final ModelProviderRegistry registry;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ProbeState> states = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("health-prober").factory());
+    private final ExecutorService probeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Timer probeClosedRecovery;
+    private final Counter budgetExhausted;
+
+    // Hourly probe budget, reset at the start of each window
+    private long budgetWindowStartMs = System.currentTimeMillis();
+    private int probesInWindow;
+    private double spendInWindow;
+
+    public HealthProber(HealthProbeConfig probeConfig, BedrockErrorHandler errorHandler,
+                        ModelProviderRegistry registry, MeterRegistry meterRegistry) {
+        this.probeConfig = probeConfig;
+        this.errorHandler = errorHandler;
+        this.registry = registry;
+        this.meterRegistry = meterRegistry;
+        this.probeClosedRecovery = Timer.builder("llm.breaker.time-to-recovery")
+                .tag("closed-by", "probe")
+                .register(meterRegistry);
+        this.budgetExhausted = meterRegistry.counter("llm.probe.budget-exhausted");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!probeConfig.isEnabled()) {
+            logger.info("Health probes disabled");
+            return;
+        }
+        long tickMs = probeConfig.getTickInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * Start due probes, forget models that became healthy and cancel probes past their timeout
+     */
+    void tick() {
+        try {
+            Set<String> targets = new HashSet<>(errorHandler.getProbeTargets(probeConfig.getDegradedFailures()));
+            long now = System.currentTimeMillis();
+            states.entrySet().removeIf(entry -> !targets.contains(entry.getKey()) && entry.getValue().inFlight == null);
+            for (String modelId : targets) {
+                ProbeState state = states.computeIfAbsent(modelId, id -> new ProbeState(now, nextDelay(0)));
+                if (state.inFlight != null) {
+                    if (now - state.startedAtMs > probeConfig.getTimeout().toMillis() * 2) {
+                        // The provider ignored the deadline; interrupt the probe so it cannot pile up
+                        state.inFlight.cancel(true);
+                    }
+                    continue;
+                }
+                if (now >= state.nextProbeAtMs && reserveBudget(modelId)) {
+                    // Under the state lock, so the probe cannot finish and clear inFlight before it is set
+                    synchronized (state) {
+                        state.startedAtMs = now;
+                        state.inFlight = probeExecutor.submit(() -> probe(modelId, state));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Health probe tick failed", e);
+        }
+    }
+
+    private void probe(String modelId, ProbeState state) {
+        long start = System.currentTimeMillis();
+        String outcome;
+        String error = null;
+        try {
+            ChatRequest request = new ChatRequest(probeConfig.getPrompt(), null, modelId,
+                    probeConfig.getMaxTokens(), 0.0, 0.9, 40, false, false);
+            ChatResponse response = Deadline.after(probeConfig.getTimeout(), "probe")
+                    .call(() -> RequestPriority.call(PriorityClass.BATCH, () -> registry.invokeModelDirect(request)));
+            outcome = response.isSuccess() ? "success" : response.isRejected() ? "rejected" : "failure";
+            error = response.errorMessage();
+        } catch (RuntimeException e) {
+            outcome = Thread.currentThread().isInterrupted() ? "timeout" : "failure";
+            error = e.getMessage();
+        }
+        long latencyMs = System.currentTimeMillis() - start;
+        meterRegistry.counter("llm.probe.sent", "model", modelId, "outcome", outcome).increment();
+
+        synchronized (state) {
+            state.probes++;
+            state.lastOutcome = outcome;
+            state.lastLatencyMs = latencyMs;
+            if ("success".equals(outcome)) {
+                Duration recovery = errorHandler.closeAfterProbe(modelId);
+                if (recovery != null) {
+                    probeClosedRecovery.record(recovery);
+                }
+                logger.info("Health probe of model {} succeeded in {}ms; breaker closed{}", modelId, latencyMs,
+                        recovery != null ? " after " + recovery.toMillis() + "ms out" : "");
+                states.remove(modelId);
+            } else if ("rejected".equals(outcome)) {
+                // Turned away locally (bulkhead, shedding, rate limit): try again without backing off further
+                state.nextProbeAtMs = System.currentTimeMillis() + nextDelay(state.failedProbes);
+                logger.info("Health probe of model {} was rejected locally ({}); next in {}ms", modelId, error,
+                        state.nextProbeAtMs - System.currentTimeMillis());
+            } else {
+                state.failedProbes++;
+                state.nextProbeAtMs = System.currentTimeMillis() + nextDelay(state.failedProbes);
+                logger.info("Health probe of model {} failed ({}); next in {}ms", modelId, error,
+                        state.nextProbeAtMs - System.currentTimeMillis());
+            }
+            state.inFlight = null;
+        }
+    }
+
+    /**
+     * Exponential spacing with jitter: initialDelay * multiplier^failedProbes, capped at maxDelay
+     */
+    private long nextDelay(int failedProbes) {
+        double delay = probeConfig.getInitialDelay().toMillis() * Math.pow(probeConfig.getMultiplier(), failedProbes);
+        delay = Math.min(delay, probeConfig.getMaxDelay().toMillis());
+        double jitter = probeConfig.getJitter();
+        if (jitter > 0) {
+            delay *= 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        }
+        return Math.max(0, Math.round(delay));
+    }
+
+    /**
+     * Take one probe out of the hourly budget, charging its worst-case cost (full maxTokens output)
+     */
+    private synchronized boolean reserveBudget(String modelId) {
+        long now = System.currentTimeMillis();
+        if (now - budgetWindowStartMs >= TimeUnit.HOURS.toMillis(1)) {
+            budgetWindowStartMs = now;
+            probesInWindow = 0;
+            spendInWindow = 0.0;
+        }
+        ModelConfig.ModelProperties props = registry.getModelProperties(modelId);
+        double cost = props != null ? ModelProviderRegistry.estimateCost(props,
+                ModelProviderRegistry.estimateTokens(probeConfig.getPrompt()), probeConfig.getMaxTokens()) : 0.0;
+        if (probesInWindow >= probeConfig.getMaxProbesPerHour() || spendInWindow + cost > probeConfig.getMaxSpendPerHour()) {
+            budgetExhausted.increment();
+            logger.debug("Health probe budget exhausted; skipping probe of model {}", modelId);
+            return false;
+        }
+        probesInWindow++;
+        spendInWindow += cost;
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> models = new TreeMap<>();
+        long now = System.currentTimeMillis();
+        states.forEach((modelId, state) -> {
+            synchronized (state) {
+                Map<String, Object> model = new LinkedHashMap<>();
+                model.put("probes", state.probes);
+                model.put("failedProbes", state.failedProbes);
+                model.put("inFlight", state.inFlight != null);
+                model.put("nextProbeInMs", Math.max(0, state.nextProbeAtMs - now));
+                model.put("lastOutcome", state.lastOutcome);
+                model.put("lastLatencyMs", state.lastLatencyMs);
+                models.put(modelId, model);
+            }
+        });
+
+        Map<String, Object> budget = new LinkedHashMap<>();
+        synchronized (this) {
+            budget.put("probesThisHour", probesInWindow);
+            budget.put("maxProbesPerHour", probeConfig.getMaxProbesPerHour());
+            budget.put("spendThisHour", Math.round(spendInWindow * 1_000_000) / 1_000_000.0);
+            budget.put("maxSpendPerHour", probeConfig.getMaxSpendPerHour());
+        }
+        budget.put("exhausted", (long) budgetExhausted.count());
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", probeConfig.isEnabled());
+        stats.put("budget", budget);
+        stats.put("probing", models);
+        stats.put("timeToRecoveryMs", new TreeMap<>(errorHandler.getTimeToRecoveryMs()));
+        stats.put("probeRecoveries", probeClosedRecovery.count());
+        return stats;
+    }
+
+    /**
+     * Probe schedule of one unhealthy model
+     */
+    private static final class ProbeState {
+
+        private long nextProbeAtMs;
+        private long startedAtMs;
+        private int probes;
+        private int failedProbes;
+        private String lastOutcome;
+        private long lastLatencyMs;
+        private volatile Future<?> inFlight;
+
+        ProbeState(long now, long initialDelayMs) {
+            this.nextProbeAtMs = now + initialDelayMs;
+        }
+    }
+}
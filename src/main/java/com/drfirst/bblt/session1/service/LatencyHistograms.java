@@ -0,0 +1,393 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.PerformanceConfig;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+/**
+ * Rolling latency histograms per model and endpoint (chat or stream), as seen by the caller of the
+ * requested model, fallbacks included. Calls record into HdrHistogram {@link Recorder}s, which are
+ * wait-free for writers, and into monotonic counters. Every slice interval a background thread swaps
+ * out each recorder's interval histogram and keeps it compressed in a ring of slices covering the
+ * longest window; a window's percentiles merge the slices that ended within it.
+ * The compressed slices use HdrHistogram's standard encoding, so histograms exported from several
+ * nodes can be decoded and added together to give cluster-wide percentiles.
+ */
+@Component
+public class LatencyHistograms {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyHistograms.class);
+
+    private final PerformanceConfig performanceConfig;
+    private final Map<Key, Series> series = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService roller =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("latency-histograms").factory());
+    private final int slicesKept;
+
+    public LatencyHistograms(PerformanceConfig performanceConfig) {
+        this.performanceConfig = performanceConfig;
+        long longestMs = performanceConfig.getWindows().stream().mapToLong(Duration::toMillis).max().orElse(0);
+        this.slicesKept = (int) Math.max(1, Math.ceilDiv(longestMs, performanceConfig.getSliceInterval().toMillis()));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!performanceConfig.isEnabled()) {
+            return;
+        }
+        long intervalMs = performanceConfig.getSliceInterval().toMillis();
+        roller.scheduleAtFixedRate(this::roll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Latency histograms: {}ms slices over windows {}", intervalMs, performanceConfig.getWindows());
+    }
+
+    @PreDestroy
+    public void stop() {
+        roller.shutdownNow();
+    }
+
+    /**
+     * Record a finished call; outputTokens below zero means unknown
+     */
+    public void record(String modelId, String endpoint, long latencyNanos, boolean success, int outputTokens) {
+        if (!performanceConfig.isEnabled()) {
+            return;
+        }
+        series(modelId, endpoint).record(latencyNanos, -1, success, outputTokens);
+    }
+
+    /**
+     * Record a stream once it ends, with its time to first content; cancelled streams are not recorded
+     */
+    public <T> Flux<T> stream(String modelId, String endpoint, Flux<T> events, Predicate<T> content,
+                              Function<T, ChatResponse.ModelPerformanceMetrics> usage, Predicate<T> error) {
+        if (!performanceConfig.isEnabled()) {
+            return events;
+        }
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            AtomicLong firstContentNanos = new AtomicLong(-1);
+            AtomicLong outputTokens = new AtomicLong(-1);
+            AtomicBoolean failed = new AtomicBoolean();
+            return events
+                    .doOnNext(event -> {
+                        if (content.test(event)) {
+                            firstContentNanos.compareAndSet(-1, System.nanoTime() - startNanos);
+                        }
+                        ChatResponse.ModelPerformanceMetrics metrics = usage.apply(event);
+                        if (metrics != null) {
+                            outputTokens.set(metrics.outputTokens());
+                        }
+                        if (error.test(event)) {
+                            failed.set(true);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (signal != SignalType.CANCEL) {
+                            series(modelId, endpoint).record(System.nanoTime() - startNanos, firstContentNanos.get(),
+                                    signal == SignalType.ON_COMPLETE && !failed.get(), (int) outputTokens.get());
+                        }
+                    });
+        });
+    }
+
+    private Series series(String modelId, String endpoint) {
+        return series.computeIfAbsent(new Key(modelId, endpoint), key -> new Series(performanceConfig.getSignificantDigits(), slicesKept));
+    }
+
+    void roll() {
+        long now = System.currentTimeMillis();
+        try {
+            series.values().forEach(s -> s.roll(now));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to roll latency histograms: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Measured figures per model, endpoint and configured window
+     */
+    public Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, Object>> models = new TreeMap<>();
+        series.forEach((key, s) -> {
+            Map<String, Object> windows = new LinkedHashMap<>();
+            for (Duration window : performanceConfig.getWindows()) {
+                Aggregate aggregate = new Aggregate(performanceConfig.getSignificantDigits());
+                aggregate.add(s.export(key, now, window));
+                windows.put(label(window), aggregate.summary());
+            }
+            models.computeIfAbsent(key.modelId(), id -> new TreeMap<>()).put(key.endpoint(), windows);
+        });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sliceIntervalMs", performanceConfig.getSliceInterval().toMillis());
+        stats.put("windows", performanceConfig.getWindows().stream().map(LatencyHistograms::label).toList());
+        stats.put("models", models);
+        return stats;
+    }
+
+    /**
+     * The window's histograms and counters per model and endpoint, in a form another node can merge
+     */
+    public List<HistogramExport> export(Duration window) {
+        long now = System.currentTimeMillis();
+        List<HistogramExport> exports = new ArrayList<>();
+        series.forEach((key, s) -> exports.add(s.export(key, now, window)));
+        return exports;
+    }
+
+    /**
+     * Combine exports (e.g. one per node) into figures per model and endpoint
+     */
+    public Map<String, Object> merge(List<HistogramExport> exports) {
+        Map<Key, Aggregate> aggregates = new LinkedHashMap<>();
+        for (HistogramExport export : exports) {
+            aggregates.computeIfAbsent(new Key(export.modelId(), export.endpoint()),
+                    key -> new Aggregate(performanceConfig.getSignificantDigits())).add(export);
+        }
+        Map<String, Map<String, Object>> models = new TreeMap<>();
+        aggregates.forEach((key, aggregate) ->
+                models.computeIfAbsent(key.modelId(), id -> new TreeMap<>()).put(key.endpoint(), aggregate.summary()));
+        Map<String, Object> merged = new LinkedHashMap<>();
+        merged.put("parts", exports.size());
+        merged.put("models", models);
+        return merged;
+    }
+
+    private static String label(Duration window) {
+        return window.toSeconds() % 60 == 0 ? window.toMinutes() + "m" : window.toSeconds() + "s";
+    }
+
+    private record Key(String modelId, String endpoint) {
+    }
+
+    /**
+     * One window of one model and endpoint. Histograms hold microseconds, base64 of HdrHistogram's
+     * compressed encoding (null when empty); the throughput figures need the seconds the window covered.
+     */
+    public record HistogramExport(String modelId, String endpoint, double coveredSeconds, long requests, long errors,
+                                  long outputTokens, long generationMicros, String latency, String timeToFirstToken) {
+    }
+
+    /**
+     * Live recorders of one model and endpoint, and the ring of finished slices
+     */
+    private static final class Series {
+
+        private final int significantDigits;
+        private final Recorder latency;
+        private final Recorder timeToFirstToken;
+        // Monotonic, so a slice is the difference between two reads and no update is lost to a reset
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+        private final LongAdder generationMicros = new LongAdder();
+
+        // Roller thread only
+        private Histogram latencyRecycle;
+        private Histogram timeToFirstTokenRecycle;
+        private long lastRequests;
+        private long lastErrors;
+        private long lastOutputTokens;
+        private long lastGenerationMicros;
+        private long lastRollMs = System.currentTimeMillis();
+
+        private final Slice[] slices;
+        private int next;
+
+        Series(int significantDigits, int slicesKept) {
+            this.significantDigits = significantDigits;
+            this.latency = new Recorder(significantDigits);
+            this.timeToFirstToken = new Recorder(significantDigits);
+            this.slices = new Slice[slicesKept];
+        }
+
+        void record(long latencyNanos, long timeToFirstTokenNanos, boolean success, int tokens) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+            latency.recordValue(micros);
+            if (timeToFirstTokenNanos >= 0) {
+                timeToFirstToken.recordValue(TimeUnit.NANOSECONDS.toMicros(timeToFirstTokenNanos));
+            }
+            requests.increment();
+            if (!success) {
+                errors.increment();
+            } else if (tokens > 0) {
+                outputTokens.add(tokens);
+                generationMicros.add(micros);
+            }
+        }
+
+        void roll(long now) {
+            latencyRecycle = latency.getIntervalHistogram(latencyRecycle);
+            timeToFirstTokenRecycle = timeToFirstToken.getIntervalHistogram(timeToFirstTokenRecycle);
+            long requestsNow = requests.sum();
+            long errorsNow = errors.sum();
+            long tokensNow = outputTokens.sum();
+            long generationNow = generationMicros.sum();
+            Slice slice = new Slice(now, now - lastRollMs, encode(latencyRecycle), encode(timeToFirstTokenRecycle),
+                    requestsNow - lastRequests, errorsNow - lastErrors,
+                    tokensNow - lastOutputTokens, generationNow - lastGenerationMicros);
+            lastRequests = requestsNow;
+            lastErrors = errorsNow;
+            lastOutputTokens = tokensNow;
+            lastGenerationMicros = generationNow;
+            lastRollMs = now;
+            synchronized (this) {
+                slices[next] = slice;
+                next = (next + 1) % slices.length;
+            }
+        }
+
+        HistogramExport export(Key key, long now, Duration window) {
+            List<Slice> inWindow = new ArrayList<>();
+            synchronized (this) {
+                for (Slice slice : slices) {
+                    if (slice != null && slice.endMs() > now - window.toMillis()) {
+                        inWindow.add(slice);
+                    }
+                }
+            }
+            Histogram latencies = new Histogram(significantDigits);
+            Histogram firstTokens = new Histogram(significantDigits);
+            long covered = 0, requestCount = 0, errorCount = 0, tokens = 0, generation = 0;
+            for (Slice slice : inWindow) {
+                if (slice.latency() != null) {
+                    latencies.add(decode(slice.latency()));
+                }
+                if (slice.timeToFirstToken() != null) {
+                    firstTokens.add(decode(slice.timeToFirstToken()));
+                }
+                covered += slice.durationMs();
+                requestCount += slice.requests();
+                errorCount += slice.errors();
+                tokens += slice.outputTokens();
+                generation += slice.generationMicros();
+            }
+            return new HistogramExport(key.modelId(), key.endpoint(), covered / 1000.0, requestCount, errorCount,
+                    tokens, generation, base64(latencies), base64(firstTokens));
+        }
+
+        private static byte[] encode(Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            int length = histogram.encodeIntoCompressedByteBuffer(buffer, Deflater.BEST_SPEED);
+            return Arrays.copyOf(buffer.array(), length);
+        }
+
+        private static String base64(Histogram histogram) {
+            byte[] encoded = encode(histogram);
+            return encoded != null ? Base64.getEncoder().encodeToString(encoded) : null;
+        }
+    }
+
+    private record Slice(long endMs, long durationMs, byte[] latency, byte[] timeToFirstToken,
+                         long requests, long errors, long outputTokens, long generationMicros) {
+    }
+
+    private static Histogram decode(byte[] encoded) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Not an encoded HdrHistogram: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Exports added together; throughput adds up per part, since parts from different nodes overlap in time
+     */
+    private static final class Aggregate {
+
+        private final Histogram latency;
+        private final Histogram timeToFirstToken;
+        private long requests;
+        private long errors;
+        private long outputTokens;
+        private long generationMicros;
+        private double requestsPerSec;
+
+        Aggregate(int significantDigits) {
+            this.latency = new Histogram(significantDigits);
+            this.timeToFirstToken = new Histogram(significantDigits);
+        }
+
+        void add(HistogramExport export) {
+            if (export.latency() != null) {
+                latency.add(decode(Base64.getDecoder().decode(export.latency())));
+            }
+            if (export.timeToFirstToken() != null) {
+                timeToFirstToken.add(decode(Base64.getDecoder().decode(export.timeToFirstToken())));
+            }
+            requests += export.requests();
+            errors += export.errors();
+            outputTokens += export.outputTokens();
+            generationMicros += export.generationMicros();
+            if (export.coveredSeconds() > 0) {
+                requestsPerSec += export.requests() / export.coveredSeconds();
+            }
+        }
+
+        Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", requests);
+            summary.put("errors", errors);
+            summary.put("errorRate", requests > 0 ? round((double) errors / requests, 1000) : 0.0);
+            summary.put("requestsPerSec", round(requestsPerSec, 1000));
+            summary.put("outputTokensPerSec", generationMicros > 0 ? round(outputTokens * 1_000_000.0 / generationMicros, 10) : null);
+            summary.put("latencyMs", percentiles(latency));
+            summary.put("timeToFirstTokenMs", timeToFirstToken.getTotalCount() > 0 ? percentiles(timeToFirstToken) : null);
+            return summary;
+        }
+
+        private static Map<String, Object> percentiles(Histogram micros) {
+            Map<String, Object> percentiles = new LinkedHashMap<>();
+            if (micros.getTotalCount() == 0) {
+                return percentiles;
+            }
+            percentiles.put("p50", millis(micros.getValueAtPercentile(50)));
+            percentiles.put("p90", millis(micros.getValueAtPercentile(90)));
+            percentiles.put("p99", millis(micros.getValueAtPercentile(99)));
+            percentiles.put("max", millis(micros.getMaxValue()));
+            percentiles.put("mean", round(micros.getMean() / 1000.0, 10));
+            return percentiles;
+        }
+
+        private static double millis(long micros) {
+            return round(micros / 1000.0, 10);
+        }
+
+        private static double round(double value, int scale) {
+            return Math.round(value * scale) / (double) scale;
+        }
+    }
+}
@@ -0,0 +1,654 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ConversationConfig;
+import com.drfirst.bblt.session1.model.ConversationTurn;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Conversation store on segmented, memory-mapped, append-only log files.
+ *
+ * Every record links to the previous record of its session, so the off-heap index only keeps
+ * each session's head address and loading walks the chain backwards through the mapped segments
+ * without read syscalls. A record's length field is written last and covered by a CRC, so
+ * recovery replays each segment until the first empty or torn record.
+ *
+ * Compaction always takes the oldest segment: sessions with live records in it are rewritten
+ * as a fresh chain at the log head and the segment file is deleted. Sessions idle longer than
+ * the session TTL are dropped from the index and their records become garbage.
+ */
+@Component
+@ConditionalOnProperty(prefix = "conversation.store", name = "enabled", havingValue = "true")
+public class MappedConversationStore implements ConversationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedConversationStore.class);
+
+    private static final byte TURN = 1;
+    private static final byte SUMMARY = 2;
+    private static final byte DELETE = 3;
+
+    private static final byte ROLE_USER = 0;
+    private static final byte ROLE_ASSISTANT = 1;
+
+    // Record: length, crc, then the fields below (covered by length and crc), then session id and payload
+    private static final int FRAME = 8;
+    private static final int TYPE = 0;
+    private static final int PREV = 1;
+    private static final int TIMESTAMP = 9;
+    private static final int ORDINAL = 17;
+    private static final int TOKENS = 21;
+    private static final int AUX = 25;
+    private static final int ROLE = 29;
+    private static final int SESSION_LENGTH = 30;
+    private static final int HEADER = 32;
+
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final ConversationConfig conversationConfig;
+    private final ConversationConfig.StoreProperties storeConfig;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapSessionIndex index;
+    private final ScheduledExecutorService maintenance =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("conversation-store-maintenance").factory());
+
+    private Path directory;
+    private Segment active;
+
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong bytesReclaimed = new AtomicLong();
+    private final AtomicLong expiredSessions = new AtomicLong();
+    private long recoveredRecords;
+    private long recoveryMs;
+
+    public MappedConversationStore(ConversationConfig conversationConfig) {
+        this.conversationConfig = conversationConfig;
+        this.storeConfig = conversationConfig.getStore();
+        this.index = new OffHeapSessionIndex(storeConfig.getIndexInitialCapacity(), this::recordMatches);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Paths.get(storeConfig.getDirectory());
+        Files.createDirectories(directory);
+        recover();
+
+        long intervalMs = storeConfig.getMaintenanceInterval().toMillis();
+        maintenance.scheduleWithFixedDelay(this::runMaintenance, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("MappedConversationStore opened {} with {} segments, {} sessions ({} records recovered in {}ms)",
+                directory.toAbsolutePath(), segments.size(), index.size(), recoveredRecords, recoveryMs);
+    }
+
+    @PreDestroy
+    public void close() {
+        maintenance.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---- appends ----
+
+    @Override
+    public void appendTurn(String sessionId, int ordinal, ConversationTurn turn) {
+        long timestamp = turn.timestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        byte role = ConversationTurn.USER.equals(turn.role()) ? ROLE_USER : ROLE_ASSISTANT;
+        byte[] payload = turn.content().getBytes(StandardCharsets.UTF_8);
+
+        lock.writeLock().lock();
+        try {
+            byte[] sid = sessionId.getBytes(StandardCharsets.UTF_8);
+            int slot = index.findOrInsert(sid, OffHeapSessionIndex.hash(sid));
+            long address = append(TURN, sid, index.head(slot), timestamp, ordinal, turn.tokens(), 0, role, payload);
+            linkAppended(slot, address, timestamp);
+            index.setTurnCount(slot, Math.max(index.turnCount(slot), ordinal + 1));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void appendSummary(String sessionId, int summarizedTurns, int summarizedTokens, String summary, int summaryTokens) {
+        byte[] payload = summary.getBytes(StandardCharsets.UTF_8);
+        long timestamp = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            byte[] sid = sessionId.getBytes(StandardCharsets.UTF_8);
+            int slot = index.findOrInsert(sid, OffHeapSessionIndex.hash(sid));
+            long address = append(SUMMARY, sid, index.head(slot), timestamp, summarizedTurns, summaryTokens,
+                    summarizedTokens, (byte) 0, payload);
+            linkAppended(slot, address, timestamp);
+            index.setSummarizedTurns(slot, summarizedTurns);
+            index.setTurnCount(slot, Math.max(index.turnCount(slot), summarizedTurns));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(String sessionId) {
+        lock.writeLock().lock();
+        try {
+            byte[] sid = sessionId.getBytes(StandardCharsets.UTF_8);
+            int slot = index.find(sid, OffHeapSessionIndex.hash(sid));
+            if (slot >= 0) {
+                // Tombstone record so recovery does not resurrect the session
+                append(DELETE, sid, 0, System.currentTimeMillis(), 0, 0, 0, (byte) 0, NO_PAYLOAD);
+                index.remove(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void linkAppended(int slot, long address, long timestamp) {
+        if (index.head(slot) == 0) {
+            index.setBase(slot, address); // first record of a new chain
+        }
+        index.setHead(slot, address);
+        index.setLastAppend(slot, Math.max(index.lastAppend(slot), timestamp));
+    }
+
+    /**
+     * Write one record at the end of the active segment, rolling to a new segment when full.
+     * The length field is written last, after the CRC, so a torn write is never replayed.
+     */
+    private long append(byte type, byte[] sessionId, long prev, long timestamp,
+                        int ordinal, int tokens, int aux, byte role, byte[] payload) {
+        int length = HEADER + sessionId.length + payload.length;
+        int total = FRAME + length;
+        if (total > segmentCapacity()) {
+            throw new IllegalArgumentException("Conversation record of " + total + " bytes exceeds the segment size");
+        }
+        if (active == null || active.capacity() - active.writePosition < total) {
+            roll();
+        }
+
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.writePosition;
+        int body = position + FRAME;
+        buffer.put(body + TYPE, type);
+        buffer.putLong(body + PREV, prev);
+        buffer.putLong(body + TIMESTAMP, timestamp);
+        buffer.putInt(body + ORDINAL, ordinal);
+        buffer.putInt(body + TOKENS, tokens);
+        buffer.putInt(body + AUX, aux);
+        buffer.put(body + ROLE, role);
+        buffer.putShort(body + SESSION_LENGTH, (short) sessionId.length);
+        buffer.put(body + HEADER, sessionId);
+        buffer.put(body + HEADER + sessionId.length, payload);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(body, length));
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, length);
+
+        if (storeConfig.isSyncOnAppend()) {
+            buffer.force(position, total);
+        }
+        active.writePosition += total;
+        appends.incrementAndGet();
+        return address(active.id, position);
+    }
+
+    private void roll() {
+        int nextId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        try {
+            if (active != null) {
+                active.buffer.force(); // sealed segments are durable
+            }
+            Segment segment = Segment.open(directory.resolve(segmentName(nextId)), nextId, segmentCapacity());
+            segments.put(nextId, segment);
+            active = segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create conversation segment " + nextId, e);
+        }
+    }
+
+    // ---- reads ----
+
+    @Override
+    public StoredConversation load(String sessionId) {
+        lock.readLock().lock();
+        try {
+            byte[] sid = sessionId.getBytes(StandardCharsets.UTF_8);
+            int slot = index.find(sid, OffHeapSessionIndex.hash(sid));
+            if (slot < 0 || isExpired(index.lastAppend(slot), System.currentTimeMillis())) {
+                return null;
+            }
+            loads.incrementAndGet();
+            return loadChain(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walk the session's chain back from the head until the current summary and every
+     * unsummarized turn have been seen. Payloads are decoded straight from the mapped segments.
+     */
+    private StoredConversation loadChain(int slot) {
+        int summarized = index.summarizedTurns(slot);
+        int needed = index.turnCount(slot) - summarized;
+        ConversationTurn[] turns = new ConversationTurn[Math.max(needed, 0)];
+        int collected = 0;
+        String summary = null;
+        int summaryTokens = 0;
+        int summarizedTokens = 0;
+
+        long address = index.head(slot);
+        long base = index.base(slot);
+        while (address != 0 && address >= base && (collected < needed || (summarized > 0 && summary == null))) {
+            ByteBuffer buffer = segmentBuffer(address);
+            int body = offset(address) + FRAME;
+            byte type = buffer.get(body + TYPE);
+            int ordinal = buffer.getInt(body + ORDINAL);
+
+            if (type == TURN && ordinal >= summarized && ordinal - summarized < turns.length
+                    && turns[ordinal - summarized] == null) {
+                turns[ordinal - summarized] = new ConversationTurn(
+                        buffer.get(body + ROLE) == ROLE_USER ? ConversationTurn.USER : ConversationTurn.ASSISTANT,
+                        payload(buffer, body),
+                        buffer.getInt(body + TOKENS),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong(body + TIMESTAMP)), ZoneId.systemDefault())
+                );
+                collected++;
+            } else if (type == SUMMARY && ordinal == summarized && summary == null) {
+                summary = payload(buffer, body);
+                summaryTokens = buffer.getInt(body + TOKENS);
+                summarizedTokens = buffer.getInt(body + AUX);
+            }
+            address = buffer.getLong(body + PREV);
+        }
+
+        List<ConversationTurn> result = Arrays.stream(turns).filter(Objects::nonNull).toList();
+        return new StoredConversation(summary, summaryTokens, summarized, summarizedTokens, result);
+    }
+
+    private static String payload(ByteBuffer buffer, int body) {
+        int length = buffer.getInt(body - FRAME);
+        int sessionLength = buffer.getShort(body + SESSION_LENGTH);
+        int start = body + HEADER + sessionLength;
+        return StandardCharsets.UTF_8.decode(buffer.slice(start, length - HEADER - sessionLength)).toString();
+    }
+
+    /**
+     * Compare the session id stored at an address with the given bytes, without copying
+     */
+    private boolean recordMatches(long address, byte[] sessionId) {
+        ByteBuffer buffer = segmentBuffer(address);
+        if (buffer == null) {
+            return false;
+        }
+        int body = offset(address) + FRAME;
+        int sessionLength = buffer.getShort(body + SESSION_LENGTH);
+        return sessionLength == sessionId.length
+                && buffer.slice(body + HEADER, sessionLength).equals(ByteBuffer.wrap(sessionId));
+    }
+
+    private ByteBuffer segmentBuffer(long address) {
+        Segment segment = segments.get((int) (address >>> 32));
+        return segment != null ? segment.buffer : null;
+    }
+
+    // ---- recovery ----
+
+    /**
+     * Map every segment, replay valid records into the index, and continue appending after the
+     * last valid record of the newest segment.
+     */
+    private void recover() throws IOException {
+        long start = System.currentTimeMillis();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+
+        for (Path file : files) {
+            int id = Integer.parseInt(file.getFileName().toString().replace(".seg", ""));
+            Segment segment = Segment.open(file, id, Math.max(Files.size(file), segmentCapacity()));
+            segments.put(id, segment);
+            segment.writePosition = replay(segment);
+            active = segment;
+        }
+
+        if (active != null && active.writePosition + FRAME <= active.capacity()) {
+            // Clear a torn length field so it cannot be mistaken for a record later
+            active.buffer.putInt(active.writePosition, 0);
+        }
+
+        expire(System.currentTimeMillis());
+        recoveryMs = System.currentTimeMillis() - start;
+    }
+
+    private int replay(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        CRC32C crc = new CRC32C();
+
+        while (position + FRAME + HEADER <= segment.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < HEADER || position + FRAME + length > segment.capacity()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(position + FRAME, length));
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                logger.warn("Torn record in segment {} at offset {}, truncating", segment.id, position);
+                break;
+            }
+            apply(buffer, segment.id, position);
+            recoveredRecords++;
+            position += FRAME + length;
+        }
+        return position;
+    }
+
+    private void apply(ByteBuffer buffer, int segmentId, int position) {
+        int body = position + FRAME;
+        long address = address(segmentId, position);
+        byte type = buffer.get(body + TYPE);
+        int sessionLength = buffer.getShort(body + SESSION_LENGTH);
+        byte[] sid = new byte[sessionLength];
+        buffer.get(body + HEADER, sid);
+        long hash = OffHeapSessionIndex.hash(sid);
+
+        if (type == DELETE) {
+            int slot = index.find(sid, hash);
+            if (slot >= 0) {
+                index.remove(slot);
+            }
+            return;
+        }
+
+        int slot = index.findOrInsert(sid, hash);
+        if (buffer.getLong(body + PREV) == 0) {
+            // A chain start (new session or compaction rewrite) supersedes everything before it
+            index.setHead(slot, 0);
+            index.setTurnCount(slot, 0);
+            index.setSummarizedTurns(slot, 0);
+        }
+        long timestamp = buffer.getLong(body + TIMESTAMP);
+        int ordinal = buffer.getInt(body + ORDINAL);
+        linkAppended(slot, address, timestamp);
+        if (type == TURN) {
+            index.setTurnCount(slot, Math.max(index.turnCount(slot), ordinal + 1));
+        } else if (type == SUMMARY) {
+            index.setSummarizedTurns(slot, ordinal);
+            index.setTurnCount(slot, Math.max(index.turnCount(slot), ordinal));
+        }
+    }
+
+    // ---- maintenance ----
+
+    /**
+     * Expire idle sessions and compact the oldest segment; runs on the maintenance schedule
+     */
+    void runMaintenance() {
+        try {
+            long now = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                expire(now);
+                compactOldest();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            logger.warn("Conversation store maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void expire(long now) {
+        List<Integer> expired = new ArrayList<>();
+        index.forEachLive(slot -> {
+            if (isExpired(index.lastAppend(slot), now)) {
+                expired.add(slot);
+            }
+        });
+        for (int slot : expired) {
+            index.remove(slot);
+        }
+        expiredSessions.addAndGet(expired.size());
+    }
+
+    private boolean isExpired(long lastAppend, long now) {
+        return now - lastAppend > conversationConfig.getSessionTtl().toMillis();
+    }
+
+    /**
+     * Rewrite the oldest sealed segment once it is mostly garbage.
+     * Only the oldest segment is ever removed, so a live chain never points into a deleted one.
+     */
+    private void compactOldest() {
+        if (segments.size() < 2) {
+            return;
+        }
+        Segment victim = segments.firstEntry().getValue();
+        if (victim == active) {
+            return;
+        }
+
+        long liveBytes = 0;
+        Set<String> liveSessions = new LinkedHashSet<>();
+        MappedByteBuffer buffer = victim.buffer;
+        for (int position = 0; position < victim.writePosition; ) {
+            int length = buffer.getInt(position);
+            if (isLive(buffer, victim.id, position)) {
+                liveBytes += FRAME + length;
+                int body = position + FRAME;
+                byte[] sid = new byte[buffer.getShort(body + SESSION_LENGTH)];
+                buffer.get(body + HEADER, sid);
+                liveSessions.add(new String(sid, StandardCharsets.UTF_8));
+            }
+            position += FRAME + length;
+        }
+
+        double liveRatio = victim.writePosition == 0 ? 0 : (double) liveBytes / victim.writePosition;
+        if (liveRatio >= storeConfig.getCompactionLiveRatio()) {
+            return;
+        }
+
+        for (String sessionId : liveSessions) {
+            rewrite(sessionId);
+        }
+
+        segments.remove(victim.id);
+        victim.close();
+        try {
+            Files.deleteIfExists(victim.path);
+        } catch (IOException e) {
+            logger.warn("Failed to delete compacted segment {}: {}", victim.path, e.getMessage());
+        }
+        compactions.incrementAndGet();
+        bytesReclaimed.addAndGet(victim.writePosition - liveBytes);
+        logger.info("Compacted conversation segment {} ({} live sessions rewritten, {}% live)",
+                victim.id, liveSessions.size(), Math.round(liveRatio * 100));
+    }
+
+    /**
+     * A record is live if its session is in the index, it belongs to the current chain,
+     * and it is either the current summary or an unsummarized turn
+     */
+    private boolean isLive(ByteBuffer buffer, int segmentId, int position) {
+        int body = position + FRAME;
+        byte type = buffer.get(body + TYPE);
+        if (type == DELETE) {
+            return false;
+        }
+        byte[] sid = new byte[buffer.getShort(body + SESSION_LENGTH)];
+        buffer.get(body + HEADER, sid);
+        int slot = index.find(sid, OffHeapSessionIndex.hash(sid));
+        if (slot < 0 || address(segmentId, position) < index.base(slot)) {
+            return false;
+        }
+        int ordinal = buffer.getInt(body + ORDINAL);
+        int summarized = index.summarizedTurns(slot);
+        return type == TURN ? ordinal >= summarized : ordinal == summarized;
+    }
+
+    /**
+     * Re-append a session's live state as a new chain at the log head
+     */
+    private void rewrite(String sessionId) {
+        byte[] sid = sessionId.getBytes(StandardCharsets.UTF_8);
+        long hash = OffHeapSessionIndex.hash(sid);
+        int slot = index.find(sid, hash);
+        if (slot < 0) {
+            return;
+        }
+        StoredConversation state = loadChain(slot);
+        long lastAppend = index.lastAppend(slot);
+
+        long prev = 0;
+        long base = 0;
+        if (state.summary() != null) {
+            prev = append(SUMMARY, sid, 0, lastAppend, state.summarizedTurns(), state.summaryTokens(),
+                    state.summarizedTokens(), (byte) 0, state.summary().getBytes(StandardCharsets.UTF_8));
+            base = prev;
+        }
+        int ordinal = state.summarizedTurns();
+        for (ConversationTurn turn : state.turns()) {
+            long timestamp = turn.timestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            byte role = ConversationTurn.USER.equals(turn.role()) ? ROLE_USER : ROLE_ASSISTANT;
+            prev = append(TURN, sid, prev, timestamp, ordinal++, turn.tokens(), 0, role,
+                    turn.content().getBytes(StandardCharsets.UTF_8));
+            if (base == 0) {
+                base = prev;
+            }
+        }
+
+        // Appends may have rolled segments but never rehash the index, so the slot is still valid
+        if (base == 0) {
+            index.remove(slot);
+            return;
+        }
+        index.setHead(slot, prev);
+        index.setBase(slot, base);
+    }
+
+    // ---- helpers ----
+
+    private int segmentCapacity() {
+        return (int) Math.min(Integer.MAX_VALUE, storeConfig.getSegmentSize().toBytes());
+    }
+
+    private static long address(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xffffffffL);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static String segmentName(int id) {
+        return String.format("%08d.seg", id);
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            long usedBytes = segments.values().stream().mapToLong(segment -> segment.writePosition).sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("directory", directory.toAbsolutePath().toString());
+            stats.put("segments", segments.size());
+            stats.put("usedBytes", usedBytes);
+            stats.put("sessions", index.size());
+            stats.put("indexOffHeapBytes", index.offHeapBytes());
+            stats.put("appends", appends.get());
+            stats.put("loads", loads.get());
+            stats.put("compactions", compactions.get());
+            stats.put("bytesReclaimed", bytesReclaimed.get());
+            stats.put("expiredSessions", expiredSessions.get());
+            stats.put("recoveredRecords", recoveredRecords);
+            stats.put("recoveryMs", recoveryMs);
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * One log file, mapped in full
+     */
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, int id, long size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new Segment(id, path, channel, buffer);
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close conversation segment {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.drfirst.bblt.session1.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Strips HTML/XML tags, comments and script/style bodies, keeping the text content.
+ * Block-level tags become line breaks and common entities are decoded. Only runs when the input
+ * contains closing tags, so code with generics or comparisons is left alone.
+ */
+@Component
+public class MarkupCompressionStep implements PromptCompressionStep {
+
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "p", "div", "br", "li", "ul", "ol", "tr", "table", "section", "article", "header", "footer",
+            "h1", "h2", "h3", "h4", "h5", "h6", "pre", "blockquote", "hr");
+
+    private static final Map<String, String> ENTITIES = Map.of(
+            "amp", "&", "lt", "<", "gt", ">", "quot", "\"", "apos", "'", "#39", "'", "nbsp", " ");
+
+    @Override
+    public String getName() {
+        return "strip-markup";
+    }
+
+    @Override
+    public String apply(String text, int targetChars) {
+        if (!text.contains("</") && !text.contains("/>")) {
+            return text;
+        }
+
+        // Positions of the last closers bound every forward search, keeping the scan linear
+        int lastTagEnd = text.lastIndexOf('>');
+        int lastCommentEnd = text.lastIndexOf("-->");
+        StringBuilder out = new StringBuilder(text.length());
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '<' && i < lastTagEnd && isTagStart(text.charAt(i + 1))) {
+                int next = skipTag(text, i, lastCommentEnd, out);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+            } else if (c == '&') {
+                int next = decodeEntity(text, i, out);
+                if (next > i) {
+                    i = next;
+                    continue;
+                }
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    private static boolean isTagStart(char c) {
+        return Character.isLetter(c) || c == '/' || c == '!' || c == '?';
+    }
+
+    /**
+     * Index after the tag (and after the element body for script/style), or {@code start} if the
+     * tag is not closed and should be kept as text
+     */
+    private static int skipTag(String text, int start, int lastCommentEnd, StringBuilder out) {
+        if (text.startsWith("<!--", start)) {
+            return lastCommentEnd < start + 4 ? start : text.indexOf("-->", start + 4) + 3;
+        }
+        int end = text.indexOf('>', start + 1);
+        if (end < 0) {
+            return start;
+        }
+
+        int nameStart = text.charAt(start + 1) == '/' ? start + 2 : start + 1;
+        int nameEnd = nameStart;
+        while (nameEnd < end && Character.isLetterOrDigit(text.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        String name = text.substring(nameStart, nameEnd).toLowerCase();
+
+        if (nameStart == start + 1 && (name.equals("script") || name.equals("style"))
+                && text.charAt(end - 1) != '/') {
+            int close = indexOfIgnoreCase(text, "</" + name, end + 1);
+            if (close < 0) {
+                return text.length();
+            }
+            int closeEnd = text.indexOf('>', close);
+            return closeEnd < 0 ? text.length() : closeEnd + 1;
+        }
+        if (BLOCK_TAGS.contains(name) && out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+            out.append('\n');
+        }
+        return end + 1;
+    }
+
+    private static int decodeEntity(String text, int start, StringBuilder out) {
+        int end = start + 1;
+        int limit = Math.min(text.length(), start + 8);
+        while (end < limit && text.charAt(end) != ';') {
+            end++;
+        }
+        if (end >= limit) {
+            return start;
+        }
+        String replacement = ENTITIES.get(text.substring(start + 1, end));
+        if (replacement == null) {
+            return start;
+        }
+        out.append(replacement);
+        return end + 1;
+    }
+
+    /**
+     * Case-insensitive search without lowercasing the whole input
+     */
+    private static int indexOfIgnoreCase(String text, String needle, int from) {
+        for (int i = from; i <= text.length() - needle.length(); i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
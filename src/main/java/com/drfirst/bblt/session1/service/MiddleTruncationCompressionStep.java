@@ -0,0 +1,65 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.PromptCompressionConfig;
+import org.springframework.stereotype.Component;
+
+/**
+ * Last-resort step: keeps the head and tail of an over-budget message and replaces the middle
+ * with a marker. Instructions usually sit at the start and the question at the end, so those survive.
+ * Cut points snap to nearby line breaks so lines are not split.
+ */
+@Component
+public class MiddleTruncationCompressionStep implements PromptCompressionStep {
+
+    private static final int SNAP_WINDOW = 200;
+
+    private final PromptCompressionConfig compressionConfig;
+
+    public MiddleTruncationCompressionStep(PromptCompressionConfig compressionConfig) {
+        this.compressionConfig = compressionConfig;
+    }
+
+    @Override
+    public String getName() {
+        return "truncate-middle";
+    }
+
+    @Override
+    public String apply(String text, int targetChars) {
+        if (text.length() <= targetChars) {
+            return text;
+        }
+        // Reserve room for the marker, which names the omitted length
+        int keep = Math.max(0, targetChars - 48);
+        int headLength = (int) (keep * compressionConfig.getTruncateHeadRatio());
+        int tailLength = keep - headLength;
+
+        int headEnd = snapBackToLineBreak(text, headLength);
+        int tailStart = snapForwardToLineBreak(text, text.length() - tailLength);
+        int omitted = tailStart - headEnd;
+
+        return new StringBuilder(keep + 48)
+                .append(text, 0, headEnd)
+                .append("\n[... ").append(omitted).append(" characters omitted ...]\n")
+                .append(text, tailStart, text.length())
+                .toString();
+    }
+
+    private static int snapBackToLineBreak(String text, int index) {
+        for (int i = index; i > 0 && i > index - SNAP_WINDOW; i--) {
+            if (text.charAt(i - 1) == '\n') {
+                return i;
+            }
+        }
+        return index;
+    }
+
+    private static int snapForwardToLineBreak(String text, int index) {
+        for (int i = index; i < text.length() && i < index + SNAP_WINDOW; i++) {
+            if (text.charAt(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,285 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-model bulkheads: each model has its own bounded set of concurrent-call permits and its own
+ * wait queue, so a model that slows down only uses up its own compartment. A full compartment
+ * rejects quickly with {@link BulkheadFullException} instead of parking the caller's thread.
+ * Limits come from {@link ModelConfig.ModelProperties#getBulkhead()}; models without properties
+ * (e.g. Gemini) get the defaults. Once inside its compartment, a call also needs a slot from the
+ * shared, priority-aware {@link AdmissionController}. Before either, a call takes its request and token
+ * permits from the cluster-wide {@link ClusterRateLimiter}.
+ */
+@Component
+public class ModelBulkheads {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelBulkheads.class);
+
+    private final ModelConfig modelConfig;
+    private final AdmissionController admissionController;
+    private final ClusterRateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Compartment> compartments = new ConcurrentHashMap<>();
+
+    public ModelBulkheads(ModelConfig modelConfig, AdmissionController admissionController,
+                          ClusterRateLimiter rateLimiter, MeterRegistry meterRegistry) {
+        this.modelConfig = modelConfig;
+        this.admissionController = admissionController;
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run a blocking call inside the model's compartment, waiting for a permit for at most the
+     * configured maxWait (or what is left of the request deadline, if less)
+     */
+    public <T> T execute(String modelId, Supplier<T> call) {
+        return execute(modelId, 0, call);
+    }
+
+    /**
+     * Same as {@link #execute(String, Supplier)}, reserving the given tokens of the model's rate limit
+     */
+    public <T> T execute(String modelId, long tokens, Supplier<T> call) {
+        // Rate limit first: a rejected call should not have held a slot while it waited for permits
+        rateLimiter.acquire(modelId, tokens);
+        Compartment compartment = compartment(modelId);
+        compartment.acquire();
+        try {
+            // Model permit first, so a model stuck at its own limit does not also hold shared admission slots
+            AdmissionController.Ticket ticket = admissionController.admit(RequestPriority.current());
+            try {
+                return call.get();
+            } finally {
+                ticket.release();
+            }
+        } finally {
+            compartment.release();
+        }
+    }
+
+    /**
+     * Take the rate-limit permits of one more upstream attempt (a retry or a regional failover) of a
+     * call already inside the model's compartment
+     *
+     * @throws ClusterRateLimiter.RateLimitedException when no permits are left within maxWait
+     */
+    public void acquireAttemptPermits(String modelId, long tokens) {
+        rateLimiter.acquire(modelId, tokens);
+    }
+
+    /**
+     * Return the tokens a completed call reserved but did not use to the model's rate limit
+     */
+    public void releaseUnusedTokens(String modelId, long reservedTokens, long usedTokens) {
+        rateLimiter.release(modelId, reservedTokens, usedTokens);
+    }
+
+    /**
+     * Hold a permit of the model's compartment for the lifetime of the stream. Streams never wait for
+     * a model permit: subscribing happens on reactive threads, so a full compartment fails the stream
+     * at once. The admission slot is awaited without blocking, with the priority from the Reactor context.
+     */
+    public <T> Flux<T> stream(String modelId, Supplier<Flux<T>> stream) {
+        return stream(modelId, 0, stream);
+    }
+
+    /**
+     * Same as {@link #stream(String, Supplier)}, reserving the given tokens of the model's rate limit
+     */
+    public <T> Flux<T> stream(String modelId, long tokens, Supplier<Flux<T>> stream) {
+        return rateLimiter.acquireAsync(modelId, tokens).thenMany(Flux.deferContextual(context -> Flux.using(
+                () -> compartment(modelId).acquireNow(),
+                permit -> Flux.usingWhen(admissionController.admitAsync(RequestPriority.fromContext(context)),
+                        ticket -> stream.get(),
+                        ticket -> Mono.fromRunnable(ticket::release)),
+                Permit::release)));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> models = new TreeMap<>();
+        compartments.forEach((modelId, compartment) -> models.put(modelId, compartment.stats()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rejected", compartments.values().stream().mapToLong(Compartment::rejected).sum());
+        stats.put("models", models);
+        return stats;
+    }
+
+    private Compartment compartment(String modelId) {
+        return compartments.computeIfAbsent(modelId, id -> {
+            ModelConfig.ModelProperties props = modelConfig.getModels().get(id);
+            ModelConfig.Bulkhead limits = props != null ? props.getBulkhead() : new ModelConfig.Bulkhead();
+            logger.info("Bulkhead for model {}: {}", id, limits);
+            return new Compartment(id, limits, meterRegistry);
+        });
+    }
+
+    /**
+     * Thrown when a model's compartment has no free permit and the call cannot wait for one
+     */
+    public static class BulkheadFullException extends RuntimeException {
+
+        private final String modelId;
+
+        BulkheadFullException(String modelId, String message) {
+            super(message);
+            this.modelId = modelId;
+        }
+
+        public String getModelId() {
+            return modelId;
+        }
+    }
+
+    /**
+     * A stream's permit; released exactly once whether the stream completes, fails or is cancelled
+     */
+    static final class Permit {
+
+        private final Compartment compartment;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Compartment compartment) {
+            this.compartment = compartment;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                compartment.release();
+            }
+        }
+    }
+
+    private static final class Compartment {
+
+        private final String modelId;
+        private final ModelConfig.Bulkhead limits;
+        private final int capacity;
+        private final Semaphore permits;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong admitted = new AtomicLong();
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong totalWaitMs = new AtomicLong();
+        private final AtomicInteger peakActive = new AtomicInteger();
+        private final Counter rejectedQueueFull;
+        private final Counter rejectedWaitTimeout;
+
+        Compartment(String modelId, ModelConfig.Bulkhead limits, MeterRegistry meterRegistry) {
+            this.modelId = modelId;
+            this.limits = limits;
+            this.capacity = Math.max(1, limits.getMaxConcurrentCalls());
+            // Fair, so waiting callers are admitted in arrival order
+            this.permits = new Semaphore(capacity, true);
+            this.rejectedQueueFull = meterRegistry.counter("llm.bulkhead.rejected", "model", modelId, "reason", "queue-full");
+            this.rejectedWaitTimeout = meterRegistry.counter("llm.bulkhead.rejected", "model", modelId, "reason", "wait-timeout");
+            Gauge.builder("llm.bulkhead.active", this, Compartment::active).tag("model", modelId).register(meterRegistry);
+            Gauge.builder("llm.bulkhead.waiting", waiting, AtomicInteger::get).tag("model", modelId).register(meterRegistry);
+            Gauge.builder("llm.bulkhead.saturation", this, Compartment::saturation).tag("model", modelId).register(meterRegistry);
+        }
+
+        void acquire() {
+            if (permits.tryAcquire()) {
+                admitted(0);
+                return;
+            }
+            if (waiting.incrementAndGet() > limits.getMaxWaitingCalls()) {
+                waiting.decrementAndGet();
+                throw reject(rejectedQueueFull, "queue is full (" + limits.getMaxWaitingCalls() + " calls already waiting)");
+            }
+            long start = System.nanoTime();
+            try {
+                Duration maxWait = limits.getMaxWait();
+                Duration remaining = Deadline.currentRemaining();
+                if (remaining != null && remaining.compareTo(maxWait) < 0) {
+                    maxWait = remaining;
+                }
+                queued.incrementAndGet();
+                if (!permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw reject(rejectedWaitTimeout, "no permit within " + maxWait.toMillis() + "ms");
+                }
+                admitted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BulkheadFullException(modelId, "Cancelled while waiting for a free slot on model " + modelId);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        Permit acquireNow() {
+            if (!permits.tryAcquire()) {
+                throw reject(rejectedQueueFull, "all " + capacity + " slots are busy");
+            }
+            admitted(0);
+            return new Permit(this);
+        }
+
+        void release() {
+            permits.release();
+        }
+
+        long rejected() {
+            return (long) (rejectedQueueFull.count() + rejectedWaitTimeout.count());
+        }
+
+        private void admitted(long waitMs) {
+            admitted.incrementAndGet();
+            totalWaitMs.addAndGet(waitMs);
+            peakActive.accumulateAndGet(active(), Math::max);
+        }
+
+        private BulkheadFullException reject(Counter counter, String reason) {
+            counter.increment();
+            logger.warn("Bulkhead rejected call to model {}: {}", modelId, reason);
+            return new BulkheadFullException(modelId, "Model " + modelId + " is at its concurrency limit ("
+                    + active() + " calls in flight): " + reason + ". Please retry shortly.");
+        }
+
+        int active() {
+            return Math.max(0, capacity - permits.availablePermits());
+        }
+
+        double saturation() {
+            return (double) active() / capacity;
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("maxConcurrentCalls", capacity);
+            stats.put("maxWaitingCalls", limits.getMaxWaitingCalls());
+            stats.put("active", active());
+            stats.put("peakActive", peakActive.get());
+            stats.put("waiting", waiting.get());
+            stats.put("saturation", Math.round(saturation() * 100) / 100.0);
+            stats.put("admitted", admitted.get());
+            stats.put("queued", queued.get());
+            long admittedCount = admitted.get();
+            stats.put("avgWaitMs", admittedCount > 0 ? Math.round((double) totalWaitMs.get() / admittedCount) : 0);
+            stats.put("rejectedQueueFull", (long) rejectedQueueFull.count());
+            stats.put("rejectedWaitTimeout", (long) rejectedWaitTimeout.count());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Provider SPI: each backend registers itself as a Spring bean and is picked up by
+ * {@link ModelProviderRegistry}. Model ids are the short ids used in {@link ChatRequest#modelId()}.
+ */
+public interface ModelProvider {
+
+    /**
+     * Stable provider name, also usable as a "name:modelId" prefix to pick this provider explicitly
+     */
+    String getName();
+
+    List<String> getModelIds();
+
+    /**
+     * Context window, pricing and defaults for one of this provider's models
+     */
+    ModelConfig.ModelProperties getModelProperties(String modelId);
+
+    /**
+     * Invoke with the provider's own resilience (retry, fallback)
+     */
+    ChatResponse invoke(ChatRequest request);
+
+    /**
+     * Invoke without retry or fallback, used when the caller is already falling back
+     */
+    default ChatResponse invokeDirect(ChatRequest request) {
+        return invoke(request);
+    }
+
+    /**
+     * Stream typed events (content, metadata, error); providers without streaming support fail the flux
+     */
+    default Flux<ChatStreamEvent> stream(ChatRequest request) {
+        return Flux.error(new UnsupportedOperationException("Streaming is not supported by provider " + getName()));
+    }
+
+    /**
+     * Whether the provider feeds {@link ModelStatistics} itself (every call, not only those through the
+     * registry), in which case the registry does not time its calls again
+     */
+    default boolean recordsStatistics() {
+        return false;
+    }
+
+    /**
+     * Lower wins when several providers serve the same model id
+     */
+    default int getPriority() {
+        return 0;
+    }
+}
@@ -0,0 +1,217 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Collects every {@link ModelProvider} bean and resolves model ids to providers.
+ * A bare model id goes to the highest-priority provider serving it; "provider:modelId"
+ * selects a provider explicitly. Calls to providers that do not feed {@link ModelStatistics}
+ * themselves are timed into it here.
+ */
+@Component
+public class ModelProviderRegistry implements ModelInvoker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelProviderRegistry.class);
+
+    private final List<ModelProvider> providers;
+    private final ModelStatistics statistics;
+    private final BedrockErrorHandler errorHandler;
+    private final Map<String, Route> routes = new LinkedHashMap<>();
+
+    public ModelProviderRegistry(List<ModelProvider> providers,
+                                 ModelStatistics statistics,
+                                 BedrockErrorHandler errorHandler) {
+        this.providers = providers.stream()
+                .sorted(Comparator.comparingInt(ModelProvider::getPriority))
+                .toList();
+        this.statistics = statistics;
+        this.errorHandler = errorHandler;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (ModelProvider provider : providers) {
+            for (String modelId : provider.getModelIds()) {
+                Route route = new Route(provider, modelId, provider.getName() + ":" + modelId);
+                routes.put(route.id(), route);
+                // The first (highest-priority) provider owns the bare id
+                routes.putIfAbsent(modelId, new Route(provider, modelId, modelId));
+            }
+        }
+        // Fallbacks from the error handler can now reach any provider
+        errorHandler.setModelInvoker(this);
+        logger.info("ModelProviderRegistry initialized with providers {} and models {}",
+                providers.stream().map(ModelProvider::getName).toList(), getModelIds());
+    }
+
+    /**
+     * Invoke through the provider's own resilience and record live statistics
+     */
+    public ChatResponse invoke(ChatRequest request) {
+        Route route = routes.get(request.modelId());
+        if (route == null) {
+            return ChatResponse.error("Unknown model: " + request.modelId(), request.modelId());
+        }
+        return timed(route, request, route.provider()::invoke);
+    }
+
+    /**
+     * Stream from whichever provider serves the model id
+     */
+    public Flux<ChatStreamEvent> stream(ChatRequest request) {
+        Route route = routes.get(request.modelId());
+        if (route == null) {
+            return Flux.error(new IllegalArgumentException("Unknown model: " + request.modelId()));
+        }
+        return route.provider().stream(withModel(request, route.modelId()));
+    }
+
+    @Override
+    public ChatResponse invokeModelDirect(ChatRequest request) {
+        Route route = routes.get(request.modelId());
+        if (route == null) {
+            return ChatResponse.error("Unknown model: " + request.modelId(), request.modelId());
+        }
+        return timed(route, request, route.provider()::invokeDirect);
+    }
+
+    private ChatResponse timed(Route route, ChatRequest request,
+                               Function<ChatRequest, ChatResponse> call) {
+        ChatRequest providerRequest = withModel(request, route.modelId());
+        if (route.provider().recordsStatistics()) {
+            return call.apply(providerRequest);
+        }
+        long startTime = System.currentTimeMillis();
+        ChatResponse response;
+        try {
+            response = call.apply(providerRequest);
+        } catch (RuntimeException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                statistics.record(route.id(), System.currentTimeMillis() - startTime, false, 0, 0.0);
+            }
+            throw e;
+        }
+        long latencyMs = System.currentTimeMillis() - startTime;
+        if (Thread.currentThread().isInterrupted() || response.isRejected()) {
+            // Cancelled (e.g. lost a fallback race) or turned away before the model: says nothing about its health
+            return response;
+        }
+
+        if (response.isSuccess()) {
+            ModelConfig.ModelProperties props = route.provider().getModelProperties(route.modelId());
+            int outputTokens;
+            double cost;
+            if (response.metrics() != null) {
+                outputTokens = response.metrics().outputTokens();
+                cost = response.metrics().estimatedCost();
+            } else {
+                // Metrics were not requested; estimate from the content as the services do
+                int inputTokens = estimateTokens(request.message()) + estimateTokens(request.systemPrompt());
+                outputTokens = estimateTokens(response.content());
+                cost = props != null ? estimateCost(props, inputTokens, outputTokens) : 0.0;
+            }
+            statistics.record(route.id(), latencyMs, true, outputTokens, cost);
+        } else {
+            statistics.record(route.id(), latencyMs, false, 0, 0.0);
+        }
+        return response;
+    }
+
+    /**
+     * Limits and pricing for a bare or provider-qualified model id, or null if unknown
+     */
+    public ModelConfig.ModelProperties getModelProperties(String modelId) {
+        Route route = routes.get(modelId);
+        return route != null ? route.provider().getModelProperties(route.modelId()) : null;
+    }
+
+    /**
+     * Every routable model: bare ids plus provider-qualified ids for secondary providers
+     */
+    public List<Candidate> getCandidates() {
+        List<Candidate> candidates = new ArrayList<>();
+        for (Route route : routes.values()) {
+            // Skip the qualified alias of a route that already owns the bare id
+            Route bare = routes.get(route.modelId());
+            if (!route.id().equals(route.modelId()) && bare != null && bare.provider() == route.provider()) {
+                continue;
+            }
+            ModelConfig.ModelProperties props = route.provider().getModelProperties(route.modelId());
+            if (props != null) {
+                candidates.add(new Candidate(route.id(), route.modelId(), route.provider().getName(), props));
+            }
+        }
+        return candidates;
+    }
+
+    public List<String> getModelIds() {
+        return getCandidates().stream().map(Candidate::id).toList();
+    }
+
+    public Map<String, List<String>> getProviders() {
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (ModelProvider provider : providers) {
+            result.put(provider.getName(), provider.getModelIds());
+        }
+        return result;
+    }
+
+    static ChatRequest withModel(ChatRequest request, String modelId) {
+        return new ChatRequest(
+                request.message(),
+                request.systemPrompt(),
+                modelId,
+                request.maxTokens(),
+                request.temperature(),
+                request.topP(),
+                request.topK(),
+                request.stream(),
+                request.includeMetrics()
+        );
+    }
+
+    static ChatRequest withMessage(ChatRequest request, String message) {
+        return new ChatRequest(
+                message,
+                request.systemPrompt(),
+                request.modelId(),
+                request.maxTokens(),
+                request.temperature(),
+                request.topP(),
+                request.topK(),
+                request.stream(),
+                request.includeMetrics()
+        );
+    }
+
+    static double estimateCost(ModelConfig.ModelProperties props, double inputTokens, double outputTokens) {
+        return (inputTokens / 1000.0) * props.getCostPer1kInputTokens()
+                + (outputTokens / 1000.0) * props.getCostPer1kOutputTokens();
+    }
+
+    static int estimateTokens(String text) {
+        return text != null ? text.length() / 4 : 0;
+    }
+
+    private record Route(ModelProvider provider, String modelId, String id) {}
+
+    /**
+     * A routable model and its limits and pricing
+     */
+    public record Candidate(String id, String modelId, String provider, ModelConfig.ModelProperties properties) {}
+}
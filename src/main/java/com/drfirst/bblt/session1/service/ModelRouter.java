@@ -0,0 +1,183 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.config.RoutingConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.RoutingDecision;
+import com.drfirst.bblt.session1.model.RoutingSlo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks a model for a request under an SLO (max latency and/or max cost).
+ * Candidates must fit the prompt plus maxTokens in their context window and must not have an
+ * open circuit breaker. Among those meeting the SLO, the one with the lowest combined normalized
+ * latency and cost wins; models without enough samples are treated as unknown-latency so they
+ * still get traffic and build up statistics.
+ */
+@Component
+public class ModelRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+
+    private final ModelProviderRegistry registry;
+    private final ModelStatistics statistics;
+    private final BedrockErrorHandler errorHandler;
+    private final RoutingConfig routingConfig;
+
+    public ModelRouter(ModelProviderRegistry registry,
+                       ModelStatistics statistics,
+                       BedrockErrorHandler errorHandler,
+                       RoutingConfig routingConfig) {
+        this.registry = registry;
+        this.statistics = statistics;
+        this.errorHandler = errorHandler;
+        this.routingConfig = routingConfig;
+    }
+
+    /**
+     * Route and invoke; the decision is added to the response metadata under "routing"
+     */
+    public ChatResponse route(ChatRequest request, RoutingSlo slo) {
+        RoutingDecision decision = decide(request, slo);
+        if (decision == null) {
+            return ChatResponse.error("No model can fit this prompt in its context window", request.modelId());
+        }
+
+        logger.info("Routing request to {} ({}): {}", decision.modelId(), decision.provider(), decision.reason());
+        ChatResponse response = registry.invoke(ModelProviderRegistry.withModel(request, decision.modelId()));
+
+        Map<String, Object> metadata = response.metadata() != null ? new HashMap<>(response.metadata()) : new HashMap<>();
+        metadata.put("routing", decision.toMetadata(slo));
+        return new ChatResponse(
+                response.content(),
+                response.modelId(),
+                response.metrics(),
+                metadata,
+                response.timestamp(),
+                response.requestId(),
+                response.isSuccess(),
+                response.errorMessage()
+        );
+    }
+
+    /**
+     * Select a model without invoking it, or null if none fits the context window
+     */
+    public RoutingDecision decide(ChatRequest request, RoutingSlo slo) {
+        int inputTokens = estimateTokens(request.message()) + estimateTokens(request.systemPrompt());
+
+        List<Estimate> estimates = new ArrayList<>();
+        for (ModelProviderRegistry.Candidate candidate : registry.getCandidates()) {
+            ModelConfig.ModelProperties props = candidate.properties();
+            if (inputTokens + request.maxTokens() > props.getContextWindow()) {
+                continue;
+            }
+            // An open breaker past its timeout moves to HALF_OPEN and lets the model be routed a trial request
+            if (!errorHandler.isAvailable(candidate.modelId())) {
+                continue;
+            }
+            estimates.add(estimate(candidate, inputTokens, request.maxTokens()));
+        }
+
+        if (estimates.isEmpty()) {
+            return null;
+        }
+
+        List<Estimate> meetingSlo = estimates.stream()
+                .filter(e -> slo.allowsCost(e.cost) && (e.latencyMs == null || slo.allowsLatency(e.latencyMs)))
+                .toList();
+
+        Estimate best;
+        String reason;
+        if (!meetingSlo.isEmpty()) {
+            best = bestScore(meetingSlo);
+            reason = best.latencyMs == null
+                    ? "meets cost objective; latency not yet observed"
+                    : "best latency/cost among " + meetingSlo.size() + " models meeting the objective";
+        } else {
+            // Nothing meets the SLO: take the smallest relative overshoot
+            best = estimates.get(0);
+            for (Estimate estimate : estimates) {
+                if (overshoot(estimate, slo) < overshoot(best, slo)) {
+                    best = estimate;
+                }
+            }
+            reason = "no model meets the objective; closest match selected";
+        }
+
+        return new RoutingDecision(
+                best.candidate.id(),
+                best.candidate.provider(),
+                !meetingSlo.isEmpty(),
+                best.latencyMs,
+                best.cost,
+                inputTokens,
+                estimates.size(),
+                reason
+        );
+    }
+
+    private Estimate estimate(ModelProviderRegistry.Candidate candidate, int inputTokens, int maxTokens) {
+        ModelStatistics.ModelStats stats = statistics.get(candidate.id());
+        Double latencyMs = null;
+        if (stats.getRequests() >= routingConfig.getMinSamples()) {
+            latencyMs = stats.getLatencyMs() + stats.getErrorRate() * routingConfig.getErrorPenaltyMs();
+        }
+        // Observed output length once known, otherwise assume the request uses its full budget
+        double outputTokens = Math.min(stats.getOutputTokens(maxTokens), maxTokens);
+        double cost = ModelProviderRegistry.estimateCost(candidate.properties(), inputTokens, outputTokens);
+        return new Estimate(candidate, latencyMs, cost);
+    }
+
+    /**
+     * Lowest sum of latency and cost, each normalized to the largest value among the candidates.
+     * Unknown latency scores as the midpoint so new models are neither favoured nor starved.
+     */
+    private Estimate bestScore(List<Estimate> estimates) {
+        double maxLatency = estimates.stream().filter(e -> e.latencyMs != null)
+                .mapToDouble(e -> e.latencyMs).max().orElse(0);
+        double maxCost = estimates.stream().mapToDouble(e -> e.cost).max().orElse(0);
+
+        Estimate best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Estimate estimate : estimates) {
+            double latencyScore = estimate.latencyMs == null || maxLatency == 0 ? 0.5 : estimate.latencyMs / maxLatency;
+            double costScore = maxCost == 0 ? 0 : estimate.cost / maxCost;
+            double score = latencyScore + costScore;
+            if (score < bestScore) {
+                bestScore = score;
+                best = estimate;
+            }
+        }
+        return best;
+    }
+
+    private static double overshoot(Estimate estimate, RoutingSlo slo) {
+        double overshoot = 0;
+        if (slo.maxCost() != null && slo.maxCost() > 0) {
+            overshoot += Math.max(0, estimate.cost / slo.maxCost() - 1);
+        }
+        if (slo.maxLatencyMs() != null && slo.maxLatencyMs() > 0 && estimate.latencyMs != null) {
+            overshoot += Math.max(0, estimate.latencyMs / slo.maxLatencyMs() - 1);
+        }
+        return overshoot;
+    }
+
+    private int estimateTokens(String text) {
+        return text != null ? (int) Math.ceil(text.length() / routingConfig.getCharsPerToken()) : 0;
+    }
+
+    public Map<String, Map<String, Object>> getStatistics() {
+        return statistics.getSnapshot();
+    }
+
+    private record Estimate(ModelProviderRegistry.Candidate candidate, Double latencyMs, double cost) {}
+}
@@ -0,0 +1,126 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.RoutingConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live per-model statistics: EWMA latency, output tokens, cost and error rate. Bedrock and Gemini calls
+ * (chat, stream and fallback) are recorded by their services whichever endpoint they came through;
+ * other providers are timed by {@link ModelProviderRegistry}. Streaming calls also report time to first
+ * token. Calls rejected before reaching the model and cancelled calls are not recorded.
+ */
+@Component
+public class ModelStatistics {
+
+    private final RoutingConfig routingConfig;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+
+    public ModelStatistics(RoutingConfig routingConfig) {
+        this.routingConfig = routingConfig;
+    }
+
+    public void record(String modelId, long latencyMs, boolean success, int outputTokens, double cost) {
+        ModelStats modelStats = get(modelId);
+        modelStats.requests.incrementAndGet();
+        modelStats.ewmaLatencyMs.update(latencyMs);
+        if (success) {
+            modelStats.ewmaErrorRate.update(0.0);
+            modelStats.ewmaOutputTokens.update(outputTokens);
+            modelStats.ewmaCost.update(cost);
+        } else {
+            modelStats.failures.incrementAndGet();
+            modelStats.ewmaErrorRate.update(1.0);
+        }
+    }
+
+    /**
+     * Time to first token of a streaming call that produced content
+     */
+    public void recordFirstToken(String modelId, long ttftMs) {
+        get(modelId).ewmaTtftMs.update(ttftMs);
+    }
+
+    /**
+     * A streaming call that produced no content before its first-token deadline
+     */
+    public void recordFirstTokenTimeout(String modelId) {
+        get(modelId).ttftDeadlineMisses.incrementAndGet();
+    }
+
+    public ModelStats get(String modelId) {
+        return stats.computeIfAbsent(modelId, id -> new ModelStats(routingConfig.getEwmaAlpha()));
+    }
+
+    /**
+     * Statistics of a model seen before, or null; unlike {@link #get(String)} this never creates an entry
+     */
+    public ModelStats find(String modelId) {
+        return stats.get(modelId);
+    }
+
+    /**
+     * Snapshot of all models seen so far, for monitoring
+     */
+    public Map<String, Map<String, Object>> getSnapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        stats.forEach((modelId, modelStats) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("requests", modelStats.getRequests());
+            entry.put("failures", modelStats.failures.get());
+            entry.put("ewmaLatencyMs", Math.round(modelStats.ewmaLatencyMs.get(0)));
+            entry.put("ewmaErrorRate", Math.round(modelStats.getErrorRate() * 1000) / 1000.0);
+            entry.put("ewmaOutputTokens", Math.round(modelStats.ewmaOutputTokens.get(0)));
+            entry.put("ewmaCost", modelStats.ewmaCost.get(0));
+            if (modelStats.ewmaTtftMs.hasSamples()) {
+                entry.put("ewmaTtftMs", Math.round(modelStats.ewmaTtftMs.get(0)));
+            }
+            entry.put("ttftDeadlineMisses", modelStats.ttftDeadlineMisses.get());
+            snapshot.put(modelId, entry);
+        });
+        return snapshot;
+    }
+
+    public static class ModelStats {
+        private final Ewma ewmaLatencyMs;
+        private final Ewma ewmaErrorRate;
+        private final Ewma ewmaOutputTokens;
+        private final Ewma ewmaCost;
+        private final Ewma ewmaTtftMs;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong ttftDeadlineMisses = new AtomicLong();
+
+        ModelStats(double alpha) {
+            this.ewmaLatencyMs = new Ewma(alpha);
+            this.ewmaErrorRate = new Ewma(alpha);
+            this.ewmaOutputTokens = new Ewma(alpha);
+            this.ewmaCost = new Ewma(alpha);
+            this.ewmaTtftMs = new Ewma(alpha);
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public double getLatencyMs() {
+            return ewmaLatencyMs.get(0);
+        }
+
+        public double getErrorRate() {
+            return ewmaErrorRate.get(0);
+        }
+
+        /**
+         * Observed output length, or the given default before the first successful call
+         */
+        public double getOutputTokens(double defaultValue) {
+            return ewmaOutputTokens.get(defaultValue);
+        }
+    }
+}
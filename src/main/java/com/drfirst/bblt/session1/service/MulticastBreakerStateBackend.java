@@ -0,0 +1,157 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ClusterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gossips breaker updates over UDP multicast on the local network. Updates are newline-separated
+ * lines packed into datagrams that fit a typical MTU; a receiver thread buffers peers' updates until
+ * the next poll, dropping them when the buffer is full.
+ */
+@Component
+public class MulticastBreakerStateBackend implements BreakerStateBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(MulticastBreakerStateBackend.class);
+
+    private static final int MAX_DATAGRAM_BYTES = 1400;
+
+    private final ClusterConfig.MulticastBackend multicastConfig;
+    private final Queue<BreakerUpdate> received = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong datagramsSent = new AtomicLong();
+    private final AtomicLong datagramsReceived = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private MulticastSocket socket;
+    private InetSocketAddress group;
+    private Thread receiver;
+    private String nodeId;
+
+    public MulticastBreakerStateBackend(ClusterConfig clusterConfig) {
+        this.multicastConfig = clusterConfig.getMulticast();
+    }
+
+    @Override
+    public String getName() {
+        return "multicast";
+    }
+
+    @Override
+    public void start(String nodeId) throws IOException {
+        this.nodeId = nodeId;
+        this.group = new InetSocketAddress(InetAddress.getByName(multicastConfig.getGroup()), multicastConfig.getPort());
+        this.socket = new MulticastSocket(multicastConfig.getPort());
+        socket.setTimeToLive(multicastConfig.getTimeToLive());
+        socket.joinGroup(group, null);
+        this.receiver = Thread.ofVirtual().name("breaker-multicast-receiver").start(this::receive);
+        logger.info("Sharing breaker state over multicast {}", group);
+    }
+
+    private void receive() {
+        byte[] buffer = new byte[65507];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    errors.incrementAndGet();
+                    logger.warn("Multicast receive failed: {}", e.getMessage());
+                }
+                continue;
+            }
+            datagramsReceived.incrementAndGet();
+            String payload = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
+            for (String line : payload.split("\n")) {
+                BreakerUpdate update = BreakerUpdate.decode(line);
+                if (update == null || update.nodeId().equals(nodeId)) {
+                    continue;
+                }
+                if (queued.incrementAndGet() > multicastConfig.getMaxQueuedUpdates()) {
+                    queued.decrementAndGet();
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                received.add(update);
+            }
+        }
+    }
+
+    @Override
+    public void publish(List<BreakerUpdate> updates, boolean fullState) {
+        StringBuilder datagram = new StringBuilder();
+        for (BreakerUpdate update : updates) {
+            String line = update.encode();
+            if (datagram.length() > 0 && datagram.length() + line.length() + 1 > MAX_DATAGRAM_BYTES) {
+                send(datagram);
+                datagram.setLength(0);
+            }
+            datagram.append(line).append('\n');
+        }
+        if (datagram.length() > 0) {
+            send(datagram);
+        }
+    }
+
+    private void send(CharSequence datagram) {
+        byte[] bytes = datagram.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            socket.send(new DatagramPacket(bytes, bytes.length, group));
+            datagramsSent.incrementAndGet();
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            logger.warn("Multicast send to {} failed: {}", group, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<BreakerUpdate> poll() {
+        List<BreakerUpdate> updates = new ArrayList<>();
+        BreakerUpdate update;
+        while ((update = received.poll()) != null) {
+            queued.decrementAndGet();
+            updates.add(update);
+        }
+        return updates;
+    }
+
+    @Override
+    public void close() {
+        if (socket != null) {
+            socket.close();
+        }
+        if (receiver != null) {
+            receiver.interrupt();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("group", group != null ? group.toString() : null);
+        stats.put("datagramsSent", datagramsSent.get());
+        stats.put("datagramsReceived", datagramsReceived.get());
+        stats.put("queued", queued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("errors", errors.get());
+        return stats;
+    }
+}
@@ -0,0 +1,119 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Codec for the prompt/generation format used by the Nova Pro direct calls. Responses are also read
+ * in Nova's native messages shape (output.message.content, stopReason, usage), which is what Bedrock
+ * returns for Nova models.
+ */
+class NovaProPayloadCodec implements PayloadCodec {
+
+    @Override
+    public void writeRequest(ChatRequest request, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("prompt", buildPrompt(request));
+        generator.writeNumberField("max_gen_len", request.maxTokens());
+        generator.writeNumberField("temperature", request.temperature());
+        generator.writeNumberField("top_p", request.topP());
+        generator.writeEndObject();
+    }
+
+    private String buildPrompt(ChatRequest request) {
+        String systemPrompt = request.systemPrompt();
+        boolean hasSystemPrompt = systemPrompt != null && !systemPrompt.trim().isEmpty();
+
+        StringBuilder prompt = new StringBuilder(request.message().length()
+                + (hasSystemPrompt ? systemPrompt.length() + 2 : 0) + 24);
+        if (hasSystemPrompt) {
+            prompt.append(systemPrompt).append("\n\n");
+        }
+        prompt.append("Human: ").append(request.message()).append("\n\nAssistant:");
+        return prompt.toString();
+    }
+
+    @Override
+    public DecodedResponse readResponse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object in Nova Pro response");
+        }
+
+        String content = null;
+        int inputTokens = 0;
+        int outputTokens = 0;
+        String stopReason = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "generation" -> content = parser.getValueAsString();
+                case "output" -> content = readOutputMessage(parser, value);
+                case "stop_reason", "stopReason" -> stopReason = parser.getValueAsString();
+                case "prompt_token_count" -> inputTokens = parser.getValueAsInt(0);
+                case "generation_token_count" -> outputTokens = parser.getValueAsInt(0);
+                case "usage" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String usageField = parser.currentName();
+                            parser.nextToken();
+                            switch (usageField) {
+                                case "inputTokens" -> inputTokens = parser.getValueAsInt(0);
+                                case "outputTokens" -> outputTokens = parser.getValueAsInt(0);
+                                default -> parser.skipChildren();
+                            }
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        return new DecodedResponse(content != null ? content : "", inputTokens, outputTokens, stopReason);
+    }
+
+    /**
+     * Concatenate the text blocks of {"message": {"content": [{"text": "..."}]}}
+     */
+    private String readOutputMessage(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+
+        StringBuilder text = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken fieldValue = parser.nextToken();
+            if (!"message".equals(field) || fieldValue != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String messageField = parser.currentName();
+                JsonToken messageValue = parser.nextToken();
+                if (!"content".equals(messageField) || messageValue != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String blockField = parser.currentName();
+                        parser.nextToken();
+                        if ("text".equals(blockField)) {
+                            text = text == null ? new StringBuilder(parser.getText()) : text.append(parser.getText());
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            }
+        }
+        return text != null ? text.toString() : null;
+    }
+}
@@ -0,0 +1,209 @@
+package com.drfirst.bblt.session1.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Open-addressing hash table in a direct buffer, mapping a session id hash to the session's
+ * log addresses. Keys are 64-bit hashes; equal hashes are disambiguated by checking the session
+ * id stored in the head record. Not thread-safe: the owning store guards it with its lock.
+ *
+ * Slot layout (40 bytes): hash, head address, chain base address, last append millis,
+ * turn count, summarized turns. A zero hash marks an empty slot, a head of -1 a deleted one.
+ */
+final class OffHeapSessionIndex {
+
+    static final long DELETED = -1;
+
+    private static final int SLOT_SIZE = 40;
+    private static final int HASH = 0;
+    private static final int HEAD = 8;
+    private static final int BASE = 16;
+    private static final int LAST_APPEND = 24;
+    private static final int TURN_COUNT = 32;
+    private static final int SUMMARIZED = 36;
+    private static final double MAX_LOAD = 0.6;
+
+    /**
+     * Checks whether the record at an address belongs to the given session
+     */
+    interface HeadVerifier {
+        boolean matches(long address, byte[] sessionId);
+    }
+
+    interface SlotVisitor {
+        void visit(int slot);
+    }
+
+    private final HeadVerifier verifier;
+    private ByteBuffer slots;
+    private int capacity;
+    private int live;
+    private int tombstones;
+
+    OffHeapSessionIndex(int initialCapacity, HeadVerifier verifier) {
+        this.verifier = verifier;
+        this.capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.slots = allocate(capacity);
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes with a final avalanche; never returns 0
+     */
+    static long hash(byte[] sessionId) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : sessionId) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Slot of a live session, or -1
+     */
+    int find(byte[] sessionId, long hash) {
+        int mask = capacity - 1;
+        for (int i = (int) hash & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            int offset = i * SLOT_SIZE;
+            long slotHash = slots.getLong(offset + HASH);
+            if (slotHash == 0) {
+                return -1;
+            }
+            long head = slots.getLong(offset + HEAD);
+            if (slotHash == hash && head != DELETED && verifier.matches(head, sessionId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Slot of a live session, inserting an empty entry if absent. The caller must set the head
+     * before the next lookup, since verification reads the head record.
+     */
+    int findOrInsert(byte[] sessionId, long hash) {
+        int existing = find(sessionId, hash);
+        if (existing >= 0) {
+            return existing;
+        }
+        if (live + tombstones + 1 > capacity * MAX_LOAD) {
+            rehash(live * 2 + 1 > capacity * MAX_LOAD ? capacity * 2 : capacity);
+        }
+
+        int mask = capacity - 1;
+        for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+            int offset = i * SLOT_SIZE;
+            long slotHash = slots.getLong(offset + HASH);
+            boolean tombstone = slotHash != 0 && slots.getLong(offset + HEAD) == DELETED;
+            if (slotHash == 0 || tombstone) {
+                if (tombstone) {
+                    tombstones--;
+                }
+                live++;
+                slots.putLong(offset + HASH, hash);
+                slots.putLong(offset + HEAD, 0);
+                slots.putLong(offset + BASE, 0);
+                slots.putLong(offset + LAST_APPEND, 0);
+                slots.putInt(offset + TURN_COUNT, 0);
+                slots.putInt(offset + SUMMARIZED, 0);
+                return i;
+            }
+        }
+    }
+
+    void remove(int slot) {
+        slots.putLong(slot * SLOT_SIZE + HEAD, DELETED);
+        live--;
+        tombstones++;
+    }
+
+    /**
+     * Rebuild without tombstones; slot numbers change
+     */
+    private void rehash(int newCapacity) {
+        ByteBuffer old = slots;
+        int oldCapacity = capacity;
+        slots = allocate(newCapacity);
+        capacity = newCapacity;
+        tombstones = 0;
+
+        int mask = newCapacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            int from = i * SLOT_SIZE;
+            long hash = old.getLong(from + HASH);
+            if (hash == 0 || old.getLong(from + HEAD) == DELETED) {
+                continue;
+            }
+            int j = (int) hash & mask;
+            while (slots.getLong(j * SLOT_SIZE + HASH) != 0) {
+                j = (j + 1) & mask;
+            }
+            slots.put(j * SLOT_SIZE, old, from, SLOT_SIZE);
+        }
+    }
+
+    void forEachLive(SlotVisitor visitor) {
+        for (int i = 0; i < capacity; i++) {
+            int offset = i * SLOT_SIZE;
+            if (slots.getLong(offset + HASH) != 0 && slots.getLong(offset + HEAD) != DELETED) {
+                visitor.visit(i);
+            }
+        }
+    }
+
+    long head(int slot) {
+        return slots.getLong(slot * SLOT_SIZE + HEAD);
+    }
+
+    void setHead(int slot, long address) {
+        slots.putLong(slot * SLOT_SIZE + HEAD, address);
+    }
+
+    long base(int slot) {
+        return slots.getLong(slot * SLOT_SIZE + BASE);
+    }
+
+    void setBase(int slot, long address) {
+        slots.putLong(slot * SLOT_SIZE + BASE, address);
+    }
+
+    long lastAppend(int slot) {
+        return slots.getLong(slot * SLOT_SIZE + LAST_APPEND);
+    }
+
+    void setLastAppend(int slot, long millis) {
+        slots.putLong(slot * SLOT_SIZE + LAST_APPEND, millis);
+    }
+
+    int turnCount(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + TURN_COUNT);
+    }
+
+    void setTurnCount(int slot, int count) {
+        slots.putInt(slot * SLOT_SIZE + TURN_COUNT, count);
+    }
+
+    int summarizedTurns(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + SUMMARIZED);
+    }
+
+    void setSummarizedTurns(int slot, int count) {
+        slots.putInt(slot * SLOT_SIZE + SUMMARIZED, count);
+    }
+
+    int size() {
+        return live;
+    }
+
+    long offHeapBytes() {
+        return (long) capacity * SLOT_SIZE;
+    }
+}
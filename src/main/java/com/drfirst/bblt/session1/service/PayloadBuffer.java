@@ -0,0 +1,52 @@
+package com.drfirst.bblt.session1.service;
+
+import software.amazon.awssdk.core.SdkBytes;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable per-thread output buffer for request payloads.
+ * Avoids growing a fresh buffer for every call; oversized buffers are dropped so one huge
+ * prompt does not pin memory on the thread forever.
+ */
+final class PayloadBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_CAPACITY = 4 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final ThreadLocal<PayloadBuffer> BUFFERS = ThreadLocal.withInitial(PayloadBuffer::new);
+
+    private PayloadBuffer() {
+        super(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get this thread's buffer, reset and ready for writing
+     */
+    static PayloadBuffer acquire() {
+        PayloadBuffer buffer = BUFFERS.get();
+        if (buffer.buf.length > MAX_RETAINED_CAPACITY) {
+            buffer = new PayloadBuffer();
+            BUFFERS.set(buffer);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Hand the written bytes to the SDK. SdkBytes needs an exact-length array, so this is the
+     * single copy on the request path; the SDK takes ownership without copying again.
+     */
+    SdkBytes toSdkBytes() {
+        return SdkBytes.fromByteArrayUnsafe(Arrays.copyOf(buf, count));
+    }
+
+    /**
+     * Decode the buffer for debug logging only
+     */
+    String toUtf8String() {
+        return new String(buf, 0, count, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,24 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Model-family specific request/response codec for direct InvokeModel calls.
+ * Requests are written straight to a JsonGenerator and responses are read with a streaming
+ * JsonParser that only extracts content, usage and stop reason, skipping everything else.
+ */
+interface PayloadCodec {
+
+    void writeRequest(ChatRequest request, JsonGenerator generator) throws IOException;
+
+    DecodedResponse readResponse(JsonParser parser) throws IOException;
+
+    /**
+     * Fields extracted from a model response. Token counts are 0 when the model did not report them.
+     */
+    record DecodedResponse(String content, int inputTokens, int outputTokens, String stopReason) {}
+}
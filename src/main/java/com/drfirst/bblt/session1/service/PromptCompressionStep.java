@@ -0,0 +1,19 @@
+package com.drfirst.bblt.session1.service;
+
+/**
+ * One stage of the prompt compression pipeline. Implementations are Spring beans selected by
+ * name from {@code prompt-compression.steps}; each must run in time linear in the input length.
+ */
+public interface PromptCompressionStep {
+
+    /**
+     * Name used in configuration and in the per-request compression report
+     */
+    String getName();
+
+    /**
+     * Compressed form of the text. Lossy steps may use targetChars to decide how much to keep;
+     * returning the input unchanged is always allowed.
+     */
+    String apply(String text, int targetChars);
+}
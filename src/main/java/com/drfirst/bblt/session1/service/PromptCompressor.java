@@ -0,0 +1,158 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.PromptCompressionConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shrinks over-budget user messages before they reach a model. Runs the configured
+ * {@link PromptCompressionStep}s in order and stops once the message fits the target token budget;
+ * messages already under budget pass through untouched. System prompts are never rewritten.
+ */
+@Service
+public class PromptCompressor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptCompressor.class);
+
+    private final PromptCompressionConfig compressionConfig;
+    private final Map<String, PromptCompressionStep> availableSteps = new LinkedHashMap<>();
+    private List<PromptCompressionStep> pipeline = List.of();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong compressed = new AtomicLong();
+    private final AtomicLong originalChars = new AtomicLong();
+    private final AtomicLong compressedChars = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+    private final Map<String, LongAdder> savedByStep = new ConcurrentHashMap<>();
+
+    public PromptCompressor(PromptCompressionConfig compressionConfig, List<PromptCompressionStep> steps) {
+        this.compressionConfig = compressionConfig;
+        for (PromptCompressionStep step : steps) {
+            availableSteps.put(step.getName(), step);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        List<PromptCompressionStep> configured = new ArrayList<>();
+        for (String name : compressionConfig.getSteps()) {
+            PromptCompressionStep step = availableSteps.get(name);
+            if (step == null) {
+                logger.warn("Unknown prompt compression step '{}', available: {}", name, availableSteps.keySet());
+                continue;
+            }
+            configured.add(step);
+        }
+        pipeline = List.copyOf(configured);
+        logger.info("Prompt compression {} with steps {} and target {} tokens",
+                compressionConfig.isEnabled() ? "enabled" : "disabled",
+                pipeline.stream().map(PromptCompressionStep::getName).toList(), compressionConfig.getTargetTokens());
+    }
+
+    /**
+     * The request with its message compressed, plus a report for the response metadata
+     */
+    public Compression compress(ChatRequest request) {
+        if (!compressionConfig.isEnabled() || request.message() == null) {
+            return new Compression(request, null);
+        }
+        requests.incrementAndGet();
+        String message = request.message();
+        int targetChars = (int) (compressionConfig.getTargetTokens() * compressionConfig.getCharsPerToken());
+        if (message.length() <= targetChars) {
+            return new Compression(request, null);
+        }
+
+        long start = System.nanoTime();
+        String text = message;
+        List<Map<String, Object>> applied = new ArrayList<>();
+        for (PromptCompressionStep step : pipeline) {
+            if (text.length() <= targetChars) {
+                break;
+            }
+            int before = text.length();
+            text = step.apply(text, targetChars);
+            savedByStep.computeIfAbsent(step.getName(), k -> new LongAdder()).add(before - text.length());
+            applied.add(Map.of("step", step.getName(), "chars", text.length()));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        compressed.incrementAndGet();
+        originalChars.addAndGet(message.length());
+        compressedChars.addAndGet(text.length());
+        compressionNanos.addAndGet(elapsed);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("originalChars", message.length());
+        report.put("compressedChars", text.length());
+        report.put("originalTokens", estimateTokens(message.length()));
+        report.put("compressedTokens", estimateTokens(text.length()));
+        report.put("targetTokens", compressionConfig.getTargetTokens());
+        report.put("steps", applied);
+        report.put("compressionMicros", elapsed / 1000);
+        logger.debug("Compressed message for {} from {} to {} chars", request.modelId(), message.length(), text.length());
+
+        return new Compression(ModelProviderRegistry.withMessage(request, text), report);
+    }
+
+    public Map<String, Object> getStats() {
+        long count = compressed.get();
+        Map<String, Object> saved = new LinkedHashMap<>();
+        savedByStep.forEach((name, chars) -> saved.put(name, chars.sum()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", compressionConfig.isEnabled());
+        stats.put("steps", pipeline.stream().map(PromptCompressionStep::getName).toList());
+        stats.put("availableSteps", List.copyOf(availableSteps.keySet()));
+        stats.put("targetTokens", compressionConfig.getTargetTokens());
+        stats.put("requests", requests.get());
+        stats.put("compressed", count);
+        stats.put("originalChars", originalChars.get());
+        stats.put("compressedChars", compressedChars.get());
+        stats.put("tokensSaved", estimateTokens(originalChars.get() - compressedChars.get()));
+        stats.put("charsSavedByStep", saved);
+        stats.put("avgCompressionMicros", count > 0 ? compressionNanos.get() / count / 1000 : 0);
+        return stats;
+    }
+
+    private long estimateTokens(long chars) {
+        return (long) Math.ceil(chars / compressionConfig.getCharsPerToken());
+    }
+
+    /**
+     * Outcome of compressing one request; report is null when the message was left as is
+     */
+    public record Compression(ChatRequest request, Map<String, Object> report) {
+
+        public ChatResponse annotate(ChatResponse response) {
+            if (report == null) {
+                return response;
+            }
+            Map<String, Object> metadata = response.metadata() != null ? new HashMap<>(response.metadata()) : new HashMap<>();
+            metadata.put("compression", report);
+            return new ChatResponse(
+                    response.content(),
+                    response.modelId(),
+                    response.metrics(),
+                    metadata,
+                    response.timestamp(),
+                    response.requestId(),
+                    response.isSuccess(),
+                    response.errorMessage()
+            );
+        }
+    }
+}
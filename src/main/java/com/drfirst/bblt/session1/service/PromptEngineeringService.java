@@ -1,20 +1,209 @@
 package com.drfirst.bblt.session1.service;
 
+import com.drfirst.bblt.session1.config.FewShotConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.drfirst.bblt.session1.model.CodeReviewRequest;
+import com.drfirst.bblt.session1.model.FewShotRequest;
+import com.drfirst.bblt.session1.model.RecipeRequest;
+import com.drfirst.bblt.session1.model.StoryRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
 /**
- * Simplified service providing documentation and examples for prompt engineering techniques.
- * All prompt construction has been moved to the frontend for transparency and user control.
+ * Documentation and examples for prompt engineering techniques, plus server-side templated
+ * prompts for recipes, stories and code reviews. Templates are compiled once by
+ * {@link PromptTemplateEngine} and the request is sent to whichever provider serves the model id.
+ * Few-shot prompts carry only the stored examples most similar to the query that fit the token budget.
  */
 @Service
 public class PromptEngineeringService {
 
     private static final Logger log = Logger.getLogger(PromptEngineeringService.class.getName());
 
+    private static final String RECIPE_SYSTEM_PROMPT = """
+            You are a professional chef and recipe developer. Create delicious, practical recipes that are:
+            - Easy to follow with clear instructions
+            - Include precise measurements and cooking times
+            - Consider dietary restrictions and preferences
+            - Provide helpful cooking tips and variations""";
+
+    private static final String RECIPE_TEMPLATE = """
+            Create a {cuisine} recipe using the following ingredients: {ingredients}
+
+            Dietary restrictions: {dietaryRestrictions}
+
+            Please provide:
+            1. Recipe name
+            2. Prep time and cook time
+            3. Servings
+            4. Complete ingredient list with measurements
+            5. Step-by-step cooking instructions
+            6. Chef's tips or variations
+            7. Nutritional highlights""";
+
+    private static final String STORY_SYSTEM_PROMPT = """
+            You are a creative writer and storyteller. Write engaging stories that:
+            - Have well-developed characters and plot
+            - Include vivid descriptions and dialogue
+            - Maintain consistent tone and style
+            - Create emotional connection with readers
+            - Follow proper story structure""";
+
+    private static final String STORY_TEMPLATE = """
+            Write a {genre} story with the following elements:
+            Theme: {theme}
+            Characters: {characters}
+
+            Requirements:
+            - Length: {length}
+            - Include dialogue and descriptive scenes
+            - Develop character relationships
+            - Create a satisfying conclusion
+            - Maintain appropriate tone for the genre""";
+
+    private static final String CODE_REVIEW_SYSTEM_PROMPT = """
+            You are an experienced senior software engineer and code reviewer.
+            Your task is to review code for:
+            1. Code quality and best practices
+            2. Security vulnerabilities
+            3. Performance optimizations
+            4. Maintainability and readability
+            5. Adherence to language-specific conventions
+
+            Provide constructive feedback with specific examples and suggestions.""";
+
+    static final String CODE_REVIEW_TEMPLATE = """
+            Please review the following {language} code:
+
+            ```{language}
+            {code}
+            ```
+
+            Provide a detailed code review including:
+            - Overall assessment
+            - Specific issues found
+            - Recommendations for improvement
+            - Security considerations
+            - Performance suggestions""";
+
+    private static final Map<String, String> STORY_LENGTHS = Map.of(
+            "short", "800-1200 words",
+            "medium", "1500-2500 words",
+            "long", "3000-4000 words"
+    );
+
+    private final ModelProviderRegistry providerRegistry;
+    private final PromptTemplateEngine templateEngine;
+    private final PromptTemplateEngine.CompiledTemplate recipeTemplate;
+    private final PromptTemplateEngine.CompiledTemplate storyTemplate;
+    private final PromptTemplateEngine.CompiledTemplate codeReviewTemplate;
+    private final FewShotExampleStore exampleStore;
+    private final FewShotConfig fewShotConfig;
+
+    public PromptEngineeringService(ModelProviderRegistry providerRegistry, PromptTemplateEngine templateEngine,
+                                    FewShotExampleStore exampleStore, FewShotConfig fewShotConfig) {
+        this.providerRegistry = providerRegistry;
+        this.templateEngine = templateEngine;
+        this.exampleStore = exampleStore;
+        this.fewShotConfig = fewShotConfig;
+        this.recipeTemplate = templateEngine.compile(RECIPE_TEMPLATE);
+        this.storyTemplate = templateEngine.compile(STORY_TEMPLATE);
+        this.codeReviewTemplate = templateEngine.compile(CODE_REVIEW_TEMPLATE);
+    }
+
+    public ChatResponse generateRecipe(RecipeRequest request) {
+        String dietaryRestrictions = request.getDietaryRestrictions();
+        String prompt = templateEngine.render(recipeTemplate, Map.of(
+                "cuisine", request.getCuisine(),
+                "ingredients", request.getIngredients(),
+                "dietaryRestrictions", dietaryRestrictions.isBlank() ? "None" : dietaryRestrictions
+        ));
+        return invoke(request.getModelId(), RECIPE_SYSTEM_PROMPT, prompt, 0.7);
+    }
+
+    public ChatResponse writeStory(StoryRequest request) {
+        String prompt = templateEngine.render(storyTemplate, Map.of(
+                "genre", request.getGenre(),
+                "theme", request.getTheme(),
+                "characters", request.getCharacters(),
+                "length", STORY_LENGTHS.getOrDefault(request.getLength().toLowerCase(), request.getLength())
+        ));
+        return invoke(request.getModelId(), STORY_SYSTEM_PROMPT, prompt, 0.9);
+    }
+
+    public ChatResponse reviewCode(CodeReviewRequest request) {
+        String language = request.getLanguage() != null && !request.getLanguage().isBlank()
+                ? request.getLanguage() : "java";
+        String prompt = templateEngine.render(codeReviewTemplate, Map.of(
+                "language", language,
+                "code", request.getCode()
+        ));
+        return invoke(request.getModelId(), CODE_REVIEW_SYSTEM_PROMPT, prompt, 0.3);
+    }
+
+    public ChatResponse fewShot(FewShotRequest request) {
+        int maxExamples = request.getMaxExamples() != null ? request.getMaxExamples() : fewShotConfig.getDefaultMaxExamples();
+        int tokenBudget = request.getTokenBudget() != null ? request.getTokenBudget() : fewShotConfig.getDefaultTokenBudget();
+        FewShotExampleStore.Selection selection = exampleStore.select(
+                request.getDomain(), request.getQuery(), maxExamples, tokenBudget);
+        FewShotExampleStore.DomainSpec domain = selection.domain();
+
+        StringBuilder prompt = new StringBuilder("Examples:\n\n");
+        for (FewShotExampleStore.Example example : selection.examples()) {
+            prompt.append(domain.inputLabel()).append(": \"").append(example.input()).append("\"\n")
+                    .append(domain.outputLabel()).append(": ").append(example.output()).append("\n\n");
+        }
+        prompt.append("Now apply the same pattern to this:\n").append(domain.inputLabel()).append(": \"")
+                .append(request.getQuery()).append("\"\n").append(domain.outputLabel()).append(":");
+
+        ChatResponse response = invoke(request.getModelId(), domain.systemPrompt(), prompt.toString(), 0.3);
+
+        Map<String, Object> fewShot = new LinkedHashMap<>();
+        fewShot.put("domain", domain.name());
+        fewShot.put("examplesConsidered", selection.examplesConsidered());
+        fewShot.put("examplesSelected", selection.examples().size());
+        fewShot.put("selectedTokens", selection.selectedTokens());
+        fewShot.put("allExamplesTokens", selection.allExamplesTokens());
+        fewShot.put("tokensSaved", selection.allExamplesTokens() - selection.selectedTokens());
+        fewShot.put("selectionMicros", selection.selectionNanos() / 1000);
+        Map<String, Object> metadata = response.metadata() != null ? new HashMap<>(response.metadata()) : new HashMap<>();
+        metadata.put("fewShot", fewShot);
+        return new ChatResponse(
+                response.content(),
+                response.modelId(),
+                response.metrics(),
+                metadata,
+                response.timestamp(),
+                response.requestId(),
+                response.isSuccess(),
+                response.errorMessage()
+        );
+    }
+
+    public int addFewShotExample(String domain, String input, String output) {
+        return exampleStore.addExample(domain, input, output);
+    }
+
+    public Map<String, Object> getFewShotStats() {
+        return exampleStore.getStats();
+    }
+
+    private ChatResponse invoke(String modelId, String systemPrompt, String prompt, double temperature) {
+        log.info("Templated prompt for model " + modelId + " (" + prompt.length() + " chars)");
+        ChatRequest request = new ChatRequest(prompt, systemPrompt, modelId, 2000, temperature, 0.9, 40, false, true);
+        return providerRegistry.invoke(request);
+    }
+
+    public Map<String, Object> getTemplateStats() {
+        return templateEngine.getStats();
+    }
+
     public Map<String, Object> getPromptingTechniques() {
         return Map.of(
                 "few-shot", Map.of(
@@ -0,0 +1,208 @@
+package com.drfirst.bblt.session1.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles prompt templates once and renders them without re-parsing.
+ * Placeholders use the same {name} syntax as Spring AI's PromptTemplate; braces that do not
+ * enclose an identifier (JSON, code) are kept as literal text. Compiled templates are cached in
+ * a bounded LRU map keyed by a 64-bit hash of the template content.
+ */
+@Component
+public class PromptTemplateEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptTemplateEngine.class);
+
+    private final int maxEntries;
+    private final Map<Long, CompiledTemplate> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong renders = new AtomicLong();
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    public PromptTemplateEngine(@Value("${prompt-templates.cache-size:256}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompiledTemplate> eldest) {
+                boolean evict = size() > PromptTemplateEngine.this.maxEntries;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Compiled form of a template, from the cache when the same content was seen before
+     */
+    public CompiledTemplate compile(String template) {
+        long key = hash(template);
+        synchronized (cache) {
+            CompiledTemplate cached = cache.get(key);
+            if (cached != null && cached.source.equals(template)) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+
+        misses.incrementAndGet();
+        CompiledTemplate compiled = CompiledTemplate.parse(template);
+        synchronized (cache) {
+            cache.put(key, compiled);
+        }
+        logger.debug("Compiled prompt template with variables {}", compiled.getVariables());
+        return compiled;
+    }
+
+    public String render(String template, Map<String, ?> variables) {
+        return render(compile(template), variables);
+    }
+
+    public String render(CompiledTemplate template, Map<String, ?> variables) {
+        long start = System.nanoTime();
+        String rendered = template.render(variables);
+        renders.incrementAndGet();
+        renderNanos.addAndGet(System.nanoTime() - start);
+        return rendered;
+    }
+
+    public Map<String, Object> getStats() {
+        long renderCount = renders.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (cache) {
+            stats.put("entries", cache.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("renders", renderCount);
+        stats.put("avgRenderNanos", renderCount > 0 ? renderNanos.get() / renderCount : 0);
+        return stats;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 chars, with a final avalanche
+     */
+    private static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * A template split into alternating literal and variable segments.
+     * literals has one more entry than variables: literal[0] var[0] literal[1] ... literal[n].
+     */
+    public static final class CompiledTemplate {
+        private final String source;
+        private final String[] literals;
+        private final String[] variables;
+        private final int literalLength;
+
+        private CompiledTemplate(String source, String[] literals, String[] variables) {
+            this.source = source;
+            this.literals = literals;
+            this.variables = variables;
+            int length = 0;
+            for (String literal : literals) {
+                length += literal.length();
+            }
+            this.literalLength = length;
+        }
+
+        static CompiledTemplate parse(String template) {
+            List<String> literals = new ArrayList<>();
+            List<String> variables = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+
+            int i = 0;
+            while (i < template.length()) {
+                char c = template.charAt(i);
+                int close = c == '{' ? identifierEnd(template, i + 1) : -1;
+                if (close > 0) {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    variables.add(template.substring(i + 1, close));
+                    i = close + 1;
+                } else {
+                    literal.append(c);
+                    i++;
+                }
+            }
+            literals.add(literal.toString());
+            return new CompiledTemplate(template, literals.toArray(String[]::new), variables.toArray(String[]::new));
+        }
+
+        /**
+         * Index of the closing brace if an identifier starts at {@code from}, otherwise -1
+         */
+        private static int identifierEnd(String template, int from) {
+            if (from >= template.length() || !Character.isJavaIdentifierStart(template.charAt(from))) {
+                return -1;
+            }
+            for (int j = from + 1; j < template.length(); j++) {
+                char c = template.charAt(j);
+                if (c == '}') {
+                    return j;
+                }
+                if (!Character.isJavaIdentifierPart(c) && c != '.' && c != '-') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Resolve every variable once, size the buffer exactly, then append segments in order
+         */
+        public String render(Map<String, ?> values) {
+            if (variables.length == 0) {
+                return literals[0];
+            }
+            String[] resolved = new String[variables.length];
+            int length = literalLength;
+            for (int i = 0; i < variables.length; i++) {
+                Object value = values.get(variables[i]);
+                if (value == null && !values.containsKey(variables[i])) {
+                    throw new IllegalArgumentException("Missing value for template variable: " + variables[i]);
+                }
+                resolved[i] = String.valueOf(value);
+                length += resolved[i].length();
+            }
+
+            StringBuilder out = new StringBuilder(length);
+            for (int i = 0; i < variables.length; i++) {
+                out.append(literals[i]).append(resolved[i]);
+            }
+            return out.append(literals[variables.length]).toString();
+        }
+
+        public List<String> getVariables() {
+            return List.of(variables);
+        }
+
+        public String getSource() {
+            return source;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.config.RateLimitConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Account-wide token buckets, one request bucket and one token bucket per model, each holding up to
+ * the per-minute limit and refilling continuously at that rate. Nodes lease permits in batches and
+ * return what they did not use. When the buckets run low, a node gets at most its fair share of what
+ * is left among the nodes that leased recently, so one busy node cannot starve the others.
+ * Embeddable: runs in-process, and {@link SocketRateLimitServer} can serve it to other processes.
+ */
+@Component
+public class RateLimitCoordinator implements RateLimitLeaseClient {
+
+    private final ModelConfig modelConfig;
+    private final RateLimitConfig rateLimitConfig;
+    private final Map<String, Buckets> buckets = new ConcurrentHashMap<>();
+
+    public RateLimitCoordinator(ModelConfig modelConfig, RateLimitConfig rateLimitConfig) {
+        this.modelConfig = modelConfig;
+        this.rateLimitConfig = rateLimitConfig;
+    }
+
+    @Override
+    public Grant lease(String nodeId, String modelId, int requests, long tokens, long minTokens) {
+        Buckets model = buckets(modelId);
+        return model != null ? model.lease(nodeId, requests, tokens, minTokens) : Grant.UNLIMITED;
+    }
+
+    @Override
+    public void release(String nodeId, String modelId, int requests, long tokens) {
+        Buckets model = buckets(modelId);
+        if (model != null) {
+            model.release(nodeId, requests, tokens);
+        }
+    }
+
+    private Buckets buckets(String modelId) {
+        ModelConfig.ModelProperties props = modelConfig.getModels().get(modelId);
+        if (props == null || props.getRateLimits() == null) {
+            return null;
+        }
+        return buckets.computeIfAbsent(modelId, id -> new Buckets(props.getRateLimits(),
+                rateLimitConfig.getLeaseTtl().toMillis() * 2));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> models = new TreeMap<>();
+        buckets.forEach((modelId, model) -> models.put(modelId, model.stats()));
+        return models;
+    }
+
+    /**
+     * Both buckets of one model, guarded by its monitor; only leases and returns take it, never a request
+     */
+    private static final class Buckets {
+
+        private final ModelConfig.RateLimits limits;
+        private final long activeWindowMs;
+        private final Map<String, NodeLeases> nodes = new LinkedHashMap<>();
+        private double requests;
+        private double tokens;
+        private long refilledAtMs = System.currentTimeMillis();
+
+        Buckets(ModelConfig.RateLimits limits, long activeWindowMs) {
+            this.limits = limits;
+            this.activeWindowMs = activeWindowMs;
+            this.requests = limits.getRequestsPerMinute();
+            this.tokens = limits.getTokensPerMinute();
+        }
+
+        synchronized Grant lease(String nodeId, int askedRequests, long askedTokens, long minTokens) {
+            long now = System.currentTimeMillis();
+            refill(now);
+            NodeLeases node = nodes.computeIfAbsent(nodeId, id -> new NodeLeases());
+            node.lastLeaseMs = now;
+            nodes.values().removeIf(other -> now - other.lastLeaseMs > activeWindowMs);
+            int activeNodes = Math.max(1, nodes.size());
+
+            int grantedRequests = (int) Math.min(askedRequests,
+                    Math.min(Math.floor(requests), Math.max(1, Math.floor(requests / activeNodes))));
+            long grantedTokens = (long) Math.min(askedTokens,
+                    Math.min(Math.floor(tokens), Math.max(minTokens, Math.floor(tokens / activeNodes))));
+            if (grantedTokens < minTokens) {
+                grantedTokens = 0;
+            }
+            grantedRequests = Math.max(0, grantedRequests);
+            requests -= grantedRequests;
+            tokens -= grantedTokens;
+            node.leasedRequests += grantedRequests;
+            node.leasedTokens += grantedTokens;
+            return new Grant(grantedRequests, grantedTokens, false);
+        }
+
+        synchronized void release(String nodeId, int returnedRequests, long returnedTokens) {
+            refill(System.currentTimeMillis());
+            requests = Math.min(limits.getRequestsPerMinute(), requests + returnedRequests);
+            tokens = Math.min(limits.getTokensPerMinute(), tokens + returnedTokens);
+            NodeLeases node = nodes.get(nodeId);
+            if (node != null) {
+                node.returnedRequests += returnedRequests;
+                node.returnedTokens += returnedTokens;
+            }
+        }
+
+        private void refill(long now) {
+            double minutes = (now - refilledAtMs) / 60_000.0;
+            refilledAtMs = now;
+            requests = Math.min(limits.getRequestsPerMinute(), requests + minutes * limits.getRequestsPerMinute());
+            tokens = Math.min(limits.getTokensPerMinute(), tokens + minutes * limits.getTokensPerMinute());
+        }
+
+        synchronized Map<String, Object> stats() {
+            refill(System.currentTimeMillis());
+            Map<String, Object> perNode = new TreeMap<>();
+            nodes.forEach((nodeId, node) -> perNode.put(nodeId, Map.of(
+                    "leasedRequests", node.leasedRequests, "returnedRequests", node.returnedRequests,
+                    "leasedTokens", node.leasedTokens, "returnedTokens", node.returnedTokens)));
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requestsPerMinute", limits.getRequestsPerMinute());
+            stats.put("tokensPerMinute", limits.getTokensPerMinute());
+            stats.put("availableRequests", (long) requests);
+            stats.put("availableTokens", (long) tokens);
+            stats.put("activeNodes", perNode);
+            return stats;
+        }
+    }
+
+    private static final class NodeLeases {
+        private long lastLeaseMs;
+        private long leasedRequests;
+        private long returnedRequests;
+        private long leasedTokens;
+        private long returnedTokens;
+    }
+}
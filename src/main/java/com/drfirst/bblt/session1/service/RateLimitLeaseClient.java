@@ -0,0 +1,29 @@
+package com.drfirst.bblt.session1.service;
+
+import java.io.IOException;
+
+/**
+ * Where {@link ClusterRateLimiter} leases permits from: the embedded {@link RateLimitCoordinator}
+ * or a coordinator in another process.
+ */
+public interface RateLimitLeaseClient {
+
+    /**
+     * Lease up to the given request and token permits. Fewer may be granted when the account's
+     * budget is short or shared with other nodes; tokens are only granted if at least minTokens are.
+     */
+    Grant lease(String nodeId, String modelId, int requests, long tokens, long minTokens) throws IOException;
+
+    /**
+     * Return leased permits that were not used
+     */
+    void release(String nodeId, String modelId, int requests, long tokens) throws IOException;
+
+    /**
+     * @param unlimited the model has no configured rate limits
+     */
+    record Grant(int requests, long tokens, boolean unlimited) {
+
+        public static final Grant UNLIMITED = new Grant(0, 0, true);
+    }
+}
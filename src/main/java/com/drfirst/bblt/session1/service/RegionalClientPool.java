@@ -0,0 +1,357 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.DeadlineConfig;
+import com.drfirst.bblt.session1.config.RegionConfig;
+import com.drfirst.bblt.session1.config.RetryConfig;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClientBuilder;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClientBuilder;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps one Bedrock runtime client per configured region and routes each call to a region
+ * using power-of-two-choices over EWMA latency and error rate.
+ * Regional failures (throttling, 5xx, connection errors) fail over to another region before
+ * the caller's model fallback kicks in. Each failover is a retry granted by {@link RetryEngine},
+ * so it counts against the same attempts and budgets as every other layer.
+ */
+@Component
+public class RegionalClientPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegionalClientPool.class);
+
+    private final BedrockRuntimeClient defaultClient;
+    private final BedrockRuntimeAsyncClient defaultAsyncClient;
+    private final AwsCredentialsProvider credentialsProvider;
+    private final RegionConfig regionConfig;
+    private final RetryConfig retryConfig;
+    private final DeadlineConfig deadlineConfig;
+    private final RetryEngine retryEngine;
+    private final ObservationRegistry observationRegistry;
+    private final String defaultRegion;
+    private final List<RegionEndpoint> endpoints = new ArrayList<>();
+
+    public RegionalClientPool(BedrockRuntimeClient defaultClient,
+                              BedrockRuntimeAsyncClient defaultAsyncClient,
+                              AwsCredentialsProvider credentialsProvider,
+                              RegionConfig regionConfig,
+                              RetryConfig retryConfig,
+                              DeadlineConfig deadlineConfig,
+                              RetryEngine retryEngine,
+                              ObservationRegistry observationRegistry,
+                              @Value("${spring.ai.bedrock.aws.region:us-east-1}") String defaultRegion) {
+        this.defaultClient = defaultClient;
+        this.defaultAsyncClient = defaultAsyncClient;
+        this.credentialsProvider = credentialsProvider;
+        this.regionConfig = regionConfig;
+        this.retryConfig = retryConfig;
+        this.deadlineConfig = deadlineConfig;
+        this.retryEngine = retryEngine;
+        this.observationRegistry = observationRegistry;
+        this.defaultRegion = defaultRegion;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (regionConfig.getRegions().isEmpty()) {
+            // Single-region mode: reuse the existing client beans
+            endpoints.add(new RegionEndpoint(defaultRegion, defaultClient, defaultAsyncClient, regionConfig.getEwmaAlpha()));
+        } else {
+            for (RegionConfig.RegionProperties props : regionConfig.getRegions()) {
+                endpoints.add(createEndpoint(props));
+            }
+        }
+        logger.info("RegionalClientPool initialized with regions: {}", getRegionNames());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (RegionEndpoint endpoint : endpoints) {
+            if (endpoint.getClient() != defaultClient) {
+                endpoint.getClient().close();
+            }
+            if (endpoint.getAsyncClient() != defaultAsyncClient) {
+                endpoint.getAsyncClient().close();
+            }
+        }
+    }
+
+    private RegionEndpoint createEndpoint(RegionConfig.RegionProperties props) {
+        BedrockRuntimeClientBuilder syncBuilder = BedrockRuntimeClient.builder()
+                .region(Region.of(props.getName()))
+                .credentialsProvider(credentialsProvider)
+                .overrideConfiguration(override -> override
+                        .retryStrategy(retryConfig.sdkRetryStrategy())
+                        .apiCallTimeout(deadlineConfig.getMaxTimeout())
+                        .addExecutionInterceptor(new SdkCallTracing(observationRegistry)));
+        // No apiCallTimeout on the async client: it serves long-running streams
+        BedrockRuntimeAsyncClientBuilder asyncBuilder = BedrockRuntimeAsyncClient.builder()
+                .region(Region.of(props.getName()))
+                .credentialsProvider(credentialsProvider)
+                .overrideConfiguration(override -> override
+                        .retryStrategy(retryConfig.sdkRetryStrategy())
+                        .addExecutionInterceptor(new SdkCallTracing(observationRegistry)));
+
+        if (props.getEndpointOverride() != null && !props.getEndpointOverride().isBlank()) {
+            URI endpointUri = URI.create(props.getEndpointOverride());
+            syncBuilder.endpointOverride(endpointUri);
+            asyncBuilder.endpointOverride(endpointUri);
+            logger.info("Region {} uses endpoint override {}", props.getName(), endpointUri);
+        }
+
+        return new RegionEndpoint(props.getName(), syncBuilder.build(), asyncBuilder.build(), regionConfig.getEwmaAlpha());
+    }
+
+    /**
+     * Execute a call against the best region, failing over to other regions on regional errors.
+     * Non-regional errors (validation, access denied, ...) are rethrown immediately.
+     */
+    public <T> Routed<T> execute(Function<RegionEndpoint, T> call) {
+        return execute(call, () -> {});
+    }
+
+    /**
+     * Same as {@link #execute(Function)}, running acquirePermits before each failover so the extra
+     * upstream call takes its own rate-limit permits; when they are refused, the regional error is thrown
+     */
+    public <T> Routed<T> execute(Function<RegionEndpoint, T> call, Runnable acquirePermits) {
+        Set<String> excluded = new HashSet<>();
+        int maxAttempts = Math.max(1, Math.min(regionConfig.getMaxRegionAttempts(), endpoints.size()));
+        RuntimeException lastError = null;
+
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            RegionEndpoint endpoint = select(excluded);
+            if (endpoint == null) {
+                break;
+            }
+
+            endpoint.health.inFlight.incrementAndGet();
+            long startTime = System.nanoTime();
+            try {
+                T result = call.apply(endpoint);
+                endpoint.health.recordSuccess((System.nanoTime() - startTime) / 1_000_000);
+                return new Routed<>(endpoint.getName(), result);
+            } catch (RuntimeException e) {
+                long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+                if (!isRegionalFailure(e)) {
+                    // The request itself is bad; another region will not help, and the region's
+                    // health is left as it was (a fast 400 says nothing about its latency)
+                    throw e;
+                }
+                endpoint.health.recordFailure(elapsedMs);
+                excluded.add(endpoint.getName());
+                lastError = e;
+                if (attempt + 1 < maxAttempts
+                        && (!retryEngine.acquireRetry(e) || !retryEngine.acquirePermits(acquirePermits, e))) {
+                    throw e; // attempts, retry budget or rate-limit permits used up
+                }
+                logger.warn("Region {} failed ({}), failing over to next region", endpoint.getName(), e.getMessage());
+            } finally {
+                endpoint.health.inFlight.decrementAndGet();
+            }
+        }
+
+        throw lastError != null ? lastError : new IllegalStateException("No Bedrock regions available");
+    }
+
+    /**
+     * Track a stream served by the given region: in flight while subscribed, a success timed to its
+     * first item (a whole stream's length says nothing about the region), a failure on a regional
+     * error. Request-caused errors and cancellation leave the region's health unchanged.
+     */
+    public <T> Flux<T> track(RegionEndpoint endpoint, Flux<T> stream) {
+        return Flux.defer(() -> {
+            long startTime = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            endpoint.health.inFlight.incrementAndGet();
+            return stream
+                    .doOnNext(item -> {
+                        if (first.compareAndSet(true, false)) {
+                            endpoint.health.recordSuccess((System.nanoTime() - startTime) / 1_000_000);
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (first.get() && isRegionalFailure(error)) {
+                            endpoint.health.recordFailure((System.nanoTime() - startTime) / 1_000_000);
+                        }
+                    })
+                    .doFinally(signal -> endpoint.health.inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * Pick a region using power-of-two-choices: sample two distinct regions and keep the lower score.
+     */
+    public RegionEndpoint select(Set<String> excluded) {
+        List<RegionEndpoint> candidates = new ArrayList<>(endpoints.size());
+        for (RegionEndpoint endpoint : endpoints) {
+            if (!excluded.contains(endpoint.getName())) {
+                candidates.add(endpoint);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        RegionEndpoint a = candidates.get(first);
+        RegionEndpoint b = candidates.get(second);
+        return score(a) <= score(b) ? a : b;
+    }
+
+    public RegionEndpoint select() {
+        return select(Set.of());
+    }
+
+    private double score(RegionEndpoint endpoint) {
+        RegionHealth health = endpoint.health;
+        return health.getEwmaLatencyMs() * (health.inFlight.get() + 1)
+                + health.getEwmaErrorRate() * regionConfig.getErrorPenaltyMs();
+    }
+
+    /**
+     * Errors that indicate the region (not the request) is the problem
+     */
+    public static boolean isRegionalFailure(Throwable error) {
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof SdkServiceException serviceException) {
+                return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+            }
+            if (current instanceof SdkClientException) {
+                return true; // connection refused, timeouts, DNS...
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    public List<String> getRegionNames() {
+        return endpoints.stream().map(RegionEndpoint::getName).toList();
+    }
+
+    /**
+     * Per-region health snapshot for monitoring
+     */
+    public Map<String, Map<String, Object>> getRegionHealth() {
+        Map<String, Map<String, Object>> status = new LinkedHashMap<>();
+        for (RegionEndpoint endpoint : endpoints) {
+            RegionHealth health = endpoint.health;
+            Map<String, Object> regionStatus = new LinkedHashMap<>();
+            regionStatus.put("ewmaLatencyMs", Math.round(health.getEwmaLatencyMs()));
+            regionStatus.put("ewmaErrorRate", Math.round(health.getEwmaErrorRate() * 1000) / 1000.0);
+            regionStatus.put("inFlight", health.inFlight.get());
+            regionStatus.put("requests", health.requests.get());
+            regionStatus.put("failures", health.failures.get());
+            regionStatus.put("score", Math.round(score(endpoint)));
+            status.put(endpoint.getName(), regionStatus);
+        }
+        return status;
+    }
+
+    /**
+     * Result of a routed call together with the region that served it
+     */
+    public record Routed<T>(String region, T value) {}
+
+    /**
+     * A region with its clients and live health statistics
+     */
+    public static class RegionEndpoint {
+        private final String name;
+        private final BedrockRuntimeClient client;
+        private final BedrockRuntimeAsyncClient asyncClient;
+        private final RegionHealth health;
+
+        RegionEndpoint(String name, BedrockRuntimeClient client, BedrockRuntimeAsyncClient asyncClient, double ewmaAlpha) {
+            this.name = name;
+            this.client = client;
+            this.asyncClient = asyncClient;
+            this.health = new RegionHealth(ewmaAlpha);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public BedrockRuntimeClient getClient() {
+            return client;
+        }
+
+        public BedrockRuntimeAsyncClient getAsyncClient() {
+            return asyncClient;
+        }
+    }
+
+    /**
+     * EWMA latency and error rate plus in-flight and outcome counters
+     */
+    static class RegionHealth {
+        private final Ewma ewmaLatencyMs;
+        private final Ewma ewmaErrorRate;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        RegionHealth(double alpha) {
+            this.ewmaLatencyMs = new Ewma(alpha);
+            this.ewmaErrorRate = new Ewma(alpha);
+        }
+
+        void recordSuccess(long latencyMs) {
+            requests.incrementAndGet();
+            ewmaLatencyMs.update(latencyMs);
+            ewmaErrorRate.update(0.0);
+        }
+
+        void recordFailure(long latencyMs) {
+            requests.incrementAndGet();
+            failures.incrementAndGet();
+            ewmaLatencyMs.update(latencyMs);
+            ewmaErrorRate.update(1.0);
+        }
+
+        double getEwmaLatencyMs() {
+            return ewmaLatencyMs.get(0);
+        }
+
+        double getEwmaErrorRate() {
+            return ewmaErrorRate.get(0);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.drfirst.bblt.session1.service;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Request, trace and span ids from {@link ThreadLocalRandom}: no shared state, so generating them never
+ * contends, unlike {@link UUID#randomUUID()} which draws from one shared SecureRandom. The ids only need
+ * to be unique, not unpredictable.
+ */
+public final class RequestIds {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private RequestIds() {
+    }
+
+    /**
+     * A random (version 4 layout) UUID string, formatted like {@link UUID#randomUUID()}
+     */
+    public static String next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+
+    /**
+     * 16-byte trace id as 32 lowercase hex digits
+     */
+    public static String traceId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return hex(random.nextLong()) + hex(random.nextLong());
+    }
+
+    /**
+     * 8-byte span id as 16 lowercase hex digits
+     */
+    public static String spanId() {
+        return hex(ThreadLocalRandom.current().nextLong());
+    }
+
+    private static String hex(long value) {
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+}
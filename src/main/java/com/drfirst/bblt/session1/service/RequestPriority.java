@@ -0,0 +1,81 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.model.PriorityClass;
+import reactor.core.publisher.Flux;
+import reactor.util.context.ContextView;
+
+import java.util.function.Supplier;
+
+/**
+ * Priority class of the request running on this thread (or in this reactive pipeline), read by
+ * admission control. Bound per HTTP request by RequestPriorityFilter and carried across thread
+ * hand-offs with {@link #propagate(Supplier)} and {@link #propagate(Flux)}.
+ */
+public final class RequestPriority {
+
+    public static final String HEADER = "X-Request-Priority";
+
+    private static final ThreadLocal<PriorityClass> CURRENT = new ThreadLocal<>();
+    private static final String CONTEXT_KEY = RequestPriority.class.getName();
+
+    private RequestPriority() {
+    }
+
+    /**
+     * Priority of the current thread, or null if none was bound
+     */
+    public static PriorityClass current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind a priority to the current thread
+     *
+     * @return the previous priority, to hand to {@link #restore(PriorityClass)}
+     */
+    public static PriorityClass bind(PriorityClass priority) {
+        PriorityClass previous = CURRENT.get();
+        CURRENT.set(priority);
+        return previous;
+    }
+
+    public static void restore(PriorityClass previous) {
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    public static <T> T call(PriorityClass priority, Supplier<T> call) {
+        PriorityClass previous = bind(priority);
+        try {
+            return call.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * Wrap a call that will run on another thread so it keeps the caller's priority
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> call) {
+        PriorityClass priority = current();
+        return priority == null ? call : () -> call(priority, call);
+    }
+
+    /**
+     * Carry the caller's priority into the Reactor context, for stream stages that run on other threads
+     */
+    public static <T> Flux<T> propagate(Flux<T> flux) {
+        PriorityClass priority = current();
+        return priority == null ? flux : flux.contextWrite(context -> context.hasKey(CONTEXT_KEY) ? context : context.put(CONTEXT_KEY, priority));
+    }
+
+    /**
+     * Priority from the Reactor context, falling back to the current thread's
+     */
+    public static PriorityClass fromContext(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, current());
+    }
+}
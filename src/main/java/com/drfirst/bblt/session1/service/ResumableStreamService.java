@@ -0,0 +1,442 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.StreamResumeConfig;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples a model stream from the HTTP response that started it. Each generation is consumed
+ * into a bounded ring buffer regardless of who is listening; clients attach with the sequence
+ * number of the last chunk they saw and get the rest replayed, then follow live. Metadata and
+ * typed error events from the model stream are buffered and replayed like content.
+ *
+ * Listeners are driven from the ring by their own demand: each keeps a cursor and is sent the next
+ * buffered events only as it requests them, so a slow client costs no memory beyond the ring. A
+ * listener that falls so far behind that the ring overwrites its cursor gets an error event and is
+ * closed; it can resume from a newer event while the generation is buffered.
+ *
+ * A generation without listeners keeps running and stays resumable for the grace period, after
+ * which it is cancelled and dropped. When buffers exceed the global byte cap, detached generations
+ * are evicted early, finished ones first and then the longest detached.
+ */
+@Service
+public class ResumableStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResumableStreamService.class);
+
+    private static final int CHUNK_OVERHEAD_BYTES = 40;
+    private static final int STRUCTURED_EVENT_BYTES = 256; // rough size of a metadata or error map
+
+    private final StreamResumeConfig resumeConfig;
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final ScheduledExecutorService sweeper =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("stream-resume-sweeper").factory());
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+    private final AtomicLong resumeMisses = new AtomicLong();
+    private final AtomicLong replayedChunks = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evictedUnderPressure = new AtomicLong();
+    private final AtomicLong laggingListenersClosed = new AtomicLong();
+
+    public ResumableStreamService(StreamResumeConfig resumeConfig) {
+        this.resumeConfig = resumeConfig;
+    }
+
+    @PostConstruct
+    public void init() {
+        long interval = resumeConfig.getSweepInterval().toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+        logger.info("ResumableStreamService initialized: {} chunks per stream, grace {}, cap {}",
+                resumeConfig.getMaxChunksPerStream(), resumeConfig.getGracePeriod(), resumeConfig.getMaxTotalBytes());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+        generations.values().forEach(Generation::evict);
+        generations.clear();
+    }
+
+    /**
+     * Start consuming a model stream into a new replay buffer and return its generation id
+     */
+    public String start(Flux<ChatStreamEvent> upstream) {
+        Generation generation = new Generation(RequestIds.next());
+        generations.put(generation.id, generation);
+        started.incrementAndGet();
+        generation.subscribe(upstream);
+        return generation.id;
+    }
+
+    /**
+     * Events after the given sequence number, replayed from the buffer and then live.
+     * Returns null if the generation is unknown or already expired.
+     */
+    public Flux<StreamEvent> attach(String generationId, long afterSeq) {
+        Generation generation = generations.get(generationId);
+        if (generation == null) {
+            resumeMisses.incrementAndGet();
+            return null;
+        }
+        if (afterSeq > 0) {
+            resumed.incrementAndGet();
+        }
+        // Buffering only ever holds the out-of-band open and terminal events; chunks are sent on demand
+        return Flux.create(sink -> generation.attach(afterSeq, sink), FluxSink.OverflowStrategy.BUFFER);
+    }
+
+    public Map<String, Object> getStats() {
+        int running = 0;
+        int detached = 0;
+        for (Generation generation : generations.values()) {
+            if (generation.isRunning()) {
+                running++;
+            }
+            if (generation.isDetached()) {
+                detached++;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("generations", generations.size());
+        stats.put("running", running);
+        stats.put("detached", detached);
+        stats.put("bufferedBytes", bufferedBytes.get());
+        stats.put("maxTotalBytes", resumeConfig.getMaxTotalBytes().toBytes());
+        stats.put("started", started.get());
+        stats.put("resumed", resumed.get());
+        stats.put("resumeMisses", resumeMisses.get());
+        stats.put("replayedChunks", replayedChunks.get());
+        stats.put("expired", expired.get());
+        stats.put("evictedUnderPressure", evictedUnderPressure.get());
+        stats.put("laggingListenersClosed", laggingListenersClosed.get());
+        return stats;
+    }
+
+    private void sweep() {
+        try {
+            long cutoff = System.currentTimeMillis() - resumeConfig.getGracePeriod().toMillis();
+            generations.values().removeIf(generation -> {
+                if (generation.detachedBefore(cutoff)) {
+                    generation.evict();
+                    expired.incrementAndGet();
+                    return true;
+                }
+                return false;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Stream replay buffer sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Evict detached generations until buffered bytes fit the cap again. Generations with
+     * listeners are never evicted; their rings are bounded on their own.
+     */
+    private synchronized void relievePressure() {
+        long cap = resumeConfig.getMaxTotalBytes().toBytes();
+        if (bufferedBytes.get() <= cap) {
+            return;
+        }
+        // Snapshot the ordering keys; generations keep changing while we sort
+        List<Victim> victims = new ArrayList<>();
+        for (Generation generation : generations.values()) {
+            if (generation.isDetached()) {
+                victims.add(new Victim(generation, generation.isRunning(), generation.detachedSince()));
+            }
+        }
+        victims.sort(Comparator.comparing(Victim::running).thenComparingLong(Victim::detachedSince));
+        for (Victim candidate : victims) {
+            if (bufferedBytes.get() <= cap) {
+                break;
+            }
+            Generation victim = candidate.generation();
+            if (generations.remove(victim.id, victim)) {
+                victim.evict();
+                evictedUnderPressure.incrementAndGet();
+                logger.debug("Evicted replay buffer {} under memory pressure", victim.id);
+            }
+        }
+    }
+
+    private record Victim(Generation generation, boolean running, long detachedSince) {}
+
+    private static long eventBytes(StreamEvent event) {
+        return event.data() instanceof String text
+                ? (long) text.length() * Character.BYTES + CHUNK_OVERHEAD_BYTES
+                : STRUCTURED_EVENT_BYTES;
+    }
+
+    private static Map<String, Object> errorData(String message, Map<String, Object> details) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("message", message);
+        if (details != null) {
+            data.putAll(details);
+        }
+        return data;
+    }
+
+    /**
+     * An attached client: the sequence number of the last event it was sent, whether it has been sent
+     * its terminal event, and whether a drain of it is already running further up this thread's stack
+     * (a request made from inside onNext)
+     */
+    private static final class Listener {
+
+        private final FluxSink<StreamEvent> sink;
+        private long cursor;
+        private boolean closed;
+        private boolean draining;
+        private boolean missed;
+
+        Listener(FluxSink<StreamEvent> sink, long cursor) {
+            this.sink = sink;
+            this.cursor = cursor;
+        }
+    }
+
+    /**
+     * One generation: a ring of the last maxChunksPerStream events plus the live listeners.
+     * Sequence numbers start at 1; all state is guarded by the instance lock.
+     * An in-band error event ends the generation without a separate terminal event.
+     */
+    private final class Generation {
+
+        private final String id;
+        private final StreamEvent[] ring;
+        // Copy-on-write: a listener may cancel, and so detach, while being drained
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        private long nextSeq = 1;
+        private long bytes;
+        private boolean finished;
+        private String error;
+        private boolean failedInBand;
+        private boolean evicted;
+        private long detachedSince;
+        private Disposable upstream;
+
+        Generation(String id) {
+            this.id = id;
+            this.ring = new StreamEvent[resumeConfig.getMaxChunksPerStream()];
+            this.detachedSince = System.currentTimeMillis();
+        }
+
+        void subscribe(Flux<ChatStreamEvent> source) {
+            Disposable subscription = source.subscribe(this::append, this::fail, this::complete);
+            synchronized (this) {
+                if (evicted) {
+                    subscription.dispose();
+                } else {
+                    upstream = subscription;
+                }
+            }
+        }
+
+        void append(ChatStreamEvent source) {
+            synchronized (this) {
+                if (evicted) {
+                    return;
+                }
+                long seq = nextSeq++;
+                StreamEvent event = switch (source.type()) {
+                    case ChatStreamEvent.METADATA -> new StreamEvent(id, seq, StreamEvent.METADATA, source.metadata());
+                    case ChatStreamEvent.USAGE -> new StreamEvent(id, seq, StreamEvent.USAGE, source.metrics());
+                    case ChatStreamEvent.ERROR -> new StreamEvent(id, seq, StreamEvent.ERROR,
+                            errorData(source.content(), source.metadata()));
+                    default -> new StreamEvent(id, seq, StreamEvent.CONTENT, source.content());
+                };
+                failedInBand |= StreamEvent.ERROR.equals(event.type());
+                int slot = (int) (seq % ring.length);
+                long delta = eventBytes(event) - (ring[slot] != null ? eventBytes(ring[slot]) : 0);
+                ring[slot] = event;
+                bytes += delta;
+                bufferedBytes.addAndGet(delta);
+                for (Listener listener : listeners) {
+                    drain(listener);
+                }
+            }
+            // Outside the instance lock: eviction locks other generations
+            if (bufferedBytes.get() > resumeConfig.getMaxTotalBytes().toBytes()) {
+                relievePressure();
+            }
+        }
+
+        synchronized void complete() {
+            finished = true;
+            // Listeners still behind finish once they have caught up
+            for (Listener listener : listeners) {
+                drain(listener);
+            }
+            if (listeners.isEmpty()) {
+                detachedSince = System.currentTimeMillis();
+            }
+        }
+
+        synchronized void fail(Throwable failure) {
+            logger.warn("Resumable stream {} failed: {}", id, failure.getMessage());
+            error = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+            complete();
+        }
+
+        synchronized void attach(long afterSeq, FluxSink<StreamEvent> sink) {
+            long oldest = Math.max(1, nextSeq - ring.length);
+            if (evicted || afterSeq + 1 < oldest || afterSeq >= nextSeq) {
+                sink.next(new StreamEvent(id, afterSeq, StreamEvent.ERROR,
+                        errorData(evicted ? "Stream expired" : "Resume point " + afterSeq + " is not buffered", null)));
+                sink.complete();
+                return;
+            }
+
+            sink.next(new StreamEvent(id, afterSeq, StreamEvent.OPEN, null));
+            if (afterSeq > 0) {
+                replayedChunks.addAndGet(nextSeq - 1 - afterSeq);
+            }
+
+            Listener listener = new Listener(sink, afterSeq);
+            listeners.add(listener);
+            detachedSince = 0;
+            sink.onDispose(() -> detach(listener));
+            sink.onRequest(n -> drain(listener));
+        }
+
+        /**
+         * Send the listener buffered events from its cursor for as long as it has demand, then the
+         * terminal event once it has caught up with a finished generation
+         */
+        synchronized void drain(Listener listener) {
+            if (listener.draining) {
+                listener.missed = true;
+                return;
+            }
+            listener.draining = true;
+            try {
+                do {
+                    listener.missed = false;
+                    drainOnce(listener);
+                } while (listener.missed);
+            } finally {
+                listener.draining = false;
+            }
+        }
+
+        private void drainOnce(Listener listener) {
+            if (evicted || listener.closed || listener.sink.isCancelled()) {
+                return;
+            }
+            while (listener.cursor + 1 < nextSeq) {
+                if (listener.cursor + 1 < nextSeq - ring.length) {
+                    // The ring has overwritten what this listener was about to read
+                    laggingListenersClosed.incrementAndGet();
+                    close(listener, new StreamEvent(id, listener.cursor, StreamEvent.ERROR,
+                            errorData("Client fell behind the replay buffer; resume from a later event", null)));
+                    return;
+                }
+                if (listener.sink.requestedFromDownstream() <= 0) {
+                    return;
+                }
+                StreamEvent event = ring[(int) (++listener.cursor % ring.length)];
+                listener.sink.next(event);
+            }
+            if (finished) {
+                close(listener, terminalEvent());
+            }
+        }
+
+        private void close(Listener listener, StreamEvent last) {
+            listener.closed = true;
+            if (last != null) {
+                listener.sink.next(last);
+            }
+            listener.sink.complete();
+            detach(listener);
+        }
+
+        private StreamEvent terminalEvent() {
+            if (failedInBand) {
+                return null;
+            }
+            return error != null
+                    ? new StreamEvent(id, nextSeq - 1, StreamEvent.ERROR, errorData(error, null))
+                    : new StreamEvent(id, nextSeq - 1, StreamEvent.DONE, null);
+        }
+
+        synchronized void detach(Listener listener) {
+            if (listeners.remove(listener) && listeners.isEmpty()) {
+                detachedSince = System.currentTimeMillis();
+            }
+        }
+
+        synchronized void evict() {
+            if (evicted) {
+                return;
+            }
+            evicted = true;
+            if (upstream != null) {
+                upstream.dispose();
+            }
+            for (Listener listener : listeners) {
+                listener.closed = true;
+                listener.sink.next(new StreamEvent(id, nextSeq - 1, StreamEvent.ERROR, errorData("Stream expired", null)));
+                listener.sink.complete();
+            }
+            listeners.clear();
+            bufferedBytes.addAndGet(-bytes);
+            bytes = 0;
+        }
+
+        synchronized boolean isRunning() {
+            return !finished && !evicted;
+        }
+
+        synchronized boolean isDetached() {
+            return listeners.isEmpty() && !evicted;
+        }
+
+        synchronized long detachedSince() {
+            return detachedSince;
+        }
+
+        synchronized boolean detachedBefore(long cutoff) {
+            return listeners.isEmpty() && detachedSince > 0 && detachedSince < cutoff;
+        }
+    }
+
+    /**
+     * One SSE event. The event id is "generationId:seq", so Last-Event-ID alone identifies the resume point.
+     * Content data is the text delta; metadata, usage and error data are serialized as JSON objects.
+     */
+    public record StreamEvent(String generationId, long seq, String type, Object data) {
+
+        public static final String OPEN = "open";
+        public static final String CONTENT = "content";
+        public static final String METADATA = "metadata";
+        public static final String USAGE = "usage";
+        public static final String DONE = "done";
+        public static final String ERROR = "error";
+
+        public String eventId() {
+            return generationId + ":" + seq;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.RetryConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * The one place that decides whether an upstream model call is retried.
+ *
+ * A logical request gets maxAttempts upstream calls in total. Layers below the outermost one
+ * (regional failover, nested service calls) draw from the same scope instead of adding their own
+ * attempts, and fallbacks run with a single attempt, so the layers never multiply retries.
+ * Every retry must also fit the global and per-model budgets, which cap retries as a ratio of
+ * recent requests. Backoff is full-jitter exponential, stretched to honour a Retry-After hint
+ * from the server; a hint longer than maxRetryAfter ends the request instead.
+ */
+@Component
+public class RetryEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryEngine.class);
+
+    private final RetryConfig retryConfig;
+    private final DeadlinePolicy deadlinePolicy;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final RetryBudget globalBudget;
+    private final Map<String, ModelRetries> models = new ConcurrentHashMap<>();
+    private final ThreadLocal<Scope> currentScope = new ThreadLocal<>();
+
+    private final Counter budgetExhausted;
+    private final Counter retryAfterHonored;
+    private final Counter retryAfterTooLong;
+    private final Counter notRetryable;
+    private final Counter nestedCalls;
+    private final Counter deadlineDenied;
+    private final Counter permitsDenied;
+
+    public RetryEngine(RetryConfig retryConfig, DeadlinePolicy deadlinePolicy, MeterRegistry meterRegistry,
+                       ObservationRegistry observationRegistry) {
+        this.retryConfig = retryConfig;
+        this.deadlinePolicy = deadlinePolicy;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.globalBudget = new RetryBudget(retryConfig.getBudgetWindow());
+        this.budgetExhausted = meterRegistry.counter("llm.retry.denied", "reason", "budget");
+        this.retryAfterTooLong = meterRegistry.counter("llm.retry.denied", "reason", "retry-after");
+        this.notRetryable = meterRegistry.counter("llm.retry.denied", "reason", "not-retryable");
+        this.retryAfterHonored = meterRegistry.counter("llm.retry.retry-after.honored");
+        this.nestedCalls = meterRegistry.counter("llm.retry.nested");
+        this.deadlineDenied = meterRegistry.counter("llm.retry.denied", "reason", "deadline");
+        this.permitsDenied = meterRegistry.counter("llm.retry.denied", "reason", "rate-limit");
+    }
+
+    /**
+     * Run a logical request with retries. When already inside a retry scope, the call runs once
+     * and its retries come out of the enclosing scope.
+     */
+    public <T> T execute(String modelId, Supplier<T> call) {
+        return execute(modelId, call, () -> {});
+    }
+
+    /**
+     * Same as {@link #execute(String, Supplier)}, running acquirePermits after each retry's backoff and
+     * before its call, so every upstream attempt takes its own rate-limit permits. When the permits
+     * are refused the request ends with the error of the last attempt.
+     */
+    public <T> T execute(String modelId, Supplier<T> call, Runnable acquirePermits) {
+        return run(modelId, call, retryConfig.getMaxAttempts(), acquirePermits);
+    }
+
+    /**
+     * Run a call with exactly one upstream attempt, e.g. a fallback after retries were exhausted
+     */
+    public <T> T executeOnce(String modelId, Supplier<T> call) {
+        return run(modelId, call, 1, () -> {});
+    }
+
+    /**
+     * Permission for an inner layer to try again against a different target (another region).
+     * Inside a scope this consumes one of its attempts; outside, only the budgets apply.
+     */
+    public boolean acquireRetry(Throwable error) {
+        Scope scope = currentScope.get();
+        if (scope != null) {
+            RetryDecision decision = decide(scope.modelId, error, scope.attempts, scope.maxAttempts, false);
+            if (decision.allowed()) {
+                scope.attempts++;
+            }
+            return decision.allowed();
+        }
+        return withdraw(null);
+    }
+
+    /**
+     * Count a logical request and its first attempt, for callers that drive attempts themselves (streams)
+     */
+    public void recordRequest(String modelId) {
+        ModelRetries retries = modelRetries(modelId);
+        retries.requests.increment();
+        retries.attempts.increment();
+        long now = System.currentTimeMillis();
+        globalBudget.recordRequest(now);
+        retries.budget.recordRequest(now);
+    }
+
+    /**
+     * Whether attempt number attemptsSoFar + 1 may go ahead, and after which delay. Retrying the same
+     * target needs a transient error, backs off and honours Retry-After; moving to a different target
+     * goes immediately. Both count against the attempts and budgets.
+     */
+    public RetryDecision decide(String modelId, Throwable error, int attemptsSoFar, int maxAttempts, boolean sameTarget) {
+        if (sameTarget && !isRetryable(error)) {
+            notRetryable.increment();
+            return RetryDecision.deny("not retryable: " + describe(error));
+        }
+        if (attemptsSoFar >= maxAttempts) {
+            return RetryDecision.deny("attempts exhausted (" + attemptsSoFar + "/" + maxAttempts + ")");
+        }
+
+        Duration delay = Duration.ZERO;
+        if (sameTarget) {
+            Duration retryAfter = retryAfter(error).orElse(Duration.ZERO);
+            if (retryAfter.compareTo(retryConfig.getMaxRetryAfter()) > 0) {
+                retryAfterTooLong.increment();
+                return RetryDecision.deny("server asked to retry after " + retryAfter.toSeconds() + "s");
+            }
+            delay = fullJitter(attemptsSoFar);
+            if (retryAfter.compareTo(delay) > 0) {
+                retryAfterHonored.increment();
+                delay = retryAfter;
+            }
+        }
+
+        // The request deadline (if any) must outlast the backoff plus a useful attempt
+        if (!deadlinePolicy.hasTimeFor("retry of " + modelId, delay)) {
+            deadlineDenied.increment();
+            return RetryDecision.deny("deadline or cancellation");
+        }
+        if (!withdraw(modelId)) {
+            return RetryDecision.deny("retry budget exhausted");
+        }
+        ModelRetries retries = modelRetries(modelId);
+        retries.retries.increment();
+        retries.attempts.increment();
+        return new RetryDecision(true, delay, null);
+    }
+
+    private <T> T run(String modelId, Supplier<T> call, int maxAttempts, Runnable acquirePermits) {
+        if (currentScope.get() != null) {
+            // A nested layer shares the enclosing attempts instead of multiplying them
+            nestedCalls.increment();
+            return call.get();
+        }
+
+        Scope scope = new Scope(modelId, maxAttempts);
+        currentScope.set(scope);
+        recordRequest(modelId);
+        try {
+            while (true) {
+                try {
+                    // One span per upstream attempt; SDK call spans nest below it
+                    return Observation.createNotStarted("llm.retry.attempt", observationRegistry)
+                            .lowCardinalityKeyValue(Traces.MODEL, modelId)
+                            .lowCardinalityKeyValue("attempt", Integer.toString(scope.attempts))
+                            .observe(call);
+                } catch (RuntimeException e) {
+                    RetryDecision decision = decide(modelId, e, scope.attempts, maxAttempts, true);
+                    if (!decision.allowed()) {
+                        logger.debug("Not retrying {}: {}", modelId, decision.reason());
+                        throw e;
+                    }
+                    scope.attempts++;
+                    logger.warn("Retrying {} (attempt {}/{}) in {}ms: {}",
+                            modelId, scope.attempts, maxAttempts, decision.delay().toMillis(), describe(e));
+                    sleep(decision.delay(), e);
+                    if (!acquirePermits(acquirePermits, e)) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            currentScope.remove();
+        }
+    }
+
+    /**
+     * Take the permits of one more upstream attempt; a refusal is added to the attempt's error
+     */
+    boolean acquirePermits(Runnable acquirePermits, RuntimeException lastError) {
+        try {
+            acquirePermits.run();
+            return true;
+        } catch (RuntimeException e) {
+            permitsDenied.increment();
+            lastError.addSuppressed(e);
+            logger.debug("Not retrying: {}", describe(e));
+            return false;
+        }
+    }
+
+    private boolean withdraw(String modelId) {
+        long now = System.currentTimeMillis();
+        int minRetries = retryConfig.getMinRetriesPerWindow();
+        if (!globalBudget.tryWithdraw(now, retryConfig.getBudgetRatio(), minRetries)) {
+            budgetExhausted.increment();
+            return false;
+        }
+        if (modelId != null && !modelRetries(modelId).budget.tryWithdraw(now, retryConfig.getModelBudgetRatio(), minRetries)) {
+            globalBudget.refund(now);
+            budgetExhausted.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private Duration fullJitter(int attemptsSoFar) {
+        long base = retryConfig.getBaseDelay().toMillis();
+        long cap = retryConfig.getMaxDelay().toMillis();
+        long ceiling = Math.min(cap, base << Math.min(20, Math.max(0, attemptsSoFar - 1)));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static void sleep(Duration delay, RuntimeException cause) {
+        if (delay.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    /**
+     * Transient failures only: throttling, 5xx, connection problems and timeouts. A call aborted
+     * because the request was cancelled is never retried.
+     */
+    static boolean isRetryable(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof AbortedException || current instanceof InterruptedException) {
+                return false;
+            }
+            if (current instanceof SdkServiceException serviceException) {
+                return serviceException.isThrottlingException() || serviceException.statusCode() >= 500;
+            }
+            if (current instanceof SdkClientException || current instanceof TimeoutException || current instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retry-After from the service response, in seconds or as an HTTP date
+     */
+    static Optional<Duration> retryAfter(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof AwsServiceException serviceException
+                    && serviceException.awsErrorDetails() != null
+                    && serviceException.awsErrorDetails().sdkHttpResponse() != null) {
+                return serviceException.awsErrorDetails().sdkHttpResponse()
+                        .firstMatchingHeader("Retry-After")
+                        .flatMap(RetryEngine::parseRetryAfter);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Duration> parseRetryAfter(String value) {
+        try {
+            return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim()))));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration until = Duration.between(ZonedDateTime.now(at.getZone()), at);
+                return Optional.of(until.isNegative() ? Duration.ZERO : until);
+            } catch (DateTimeParseException ignored) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    private static String describe(Throwable error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    private ModelRetries modelRetries(String modelId) {
+        return models.computeIfAbsent(modelId, id -> new ModelRetries(id, meterRegistry, retryConfig.getBudgetWindow()));
+    }
+
+    public Map<String, Object> getStats() {
+        long requests = 0;
+        long attempts = 0;
+        long retries = 0;
+        Map<String, Object> perModel = new LinkedHashMap<>();
+        for (ModelRetries model : models.values()) {
+            long modelRequests = (long) model.requests.count();
+            long modelAttempts = (long) model.attempts.count();
+            long modelRetries = (long) model.retries.count();
+            requests += modelRequests;
+            attempts += modelAttempts;
+            retries += modelRetries;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requests", modelRequests);
+            stats.put("attempts", modelAttempts);
+            stats.put("retries", modelRetries);
+            stats.put("amplification", amplification(modelAttempts, modelRequests));
+            stats.put("budget", model.budget.snapshot(System.currentTimeMillis()));
+            perModel.put(model.modelId, stats);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxAttempts", retryConfig.getMaxAttempts());
+        stats.put("sdkMaxAttempts", retryConfig.getSdkMaxAttempts());
+        stats.put("requests", requests);
+        stats.put("attempts", attempts);
+        stats.put("retries", retries);
+        stats.put("amplification", amplification(attempts, requests));
+        stats.put("budget", globalBudget.snapshot(System.currentTimeMillis()));
+        stats.put("deniedByBudget", (long) budgetExhausted.count());
+        stats.put("deniedByRetryAfter", (long) retryAfterTooLong.count());
+        stats.put("notRetryable", (long) notRetryable.count());
+        stats.put("retryAfterHonored", (long) retryAfterHonored.count());
+        stats.put("deniedByDeadline", (long) deadlineDenied.count());
+        stats.put("deniedByRateLimit", (long) permitsDenied.count());
+        stats.put("nestedCalls", (long) nestedCalls.count());
+        stats.put("models", perModel);
+        return stats;
+    }
+
+    private static double amplification(long attempts, long requests) {
+        return requests > 0 ? Math.round(attempts * 1000.0 / requests) / 1000.0 : 0.0;
+    }
+
+    /**
+     * Outcome of a retry decision; delay is how long to wait before the next attempt
+     */
+    public record RetryDecision(boolean allowed, Duration delay, String reason) {
+
+        static RetryDecision deny(String reason) {
+            return new RetryDecision(false, Duration.ZERO, reason);
+        }
+    }
+
+    private static final class Scope {
+        private final String modelId;
+        private final int maxAttempts;
+        private int attempts = 1;
+
+        Scope(String modelId, int maxAttempts) {
+            this.modelId = modelId;
+            this.maxAttempts = maxAttempts;
+        }
+    }
+
+    private static final class ModelRetries {
+        private final String modelId;
+        private final Counter requests;
+        private final Counter attempts;
+        private final Counter retries;
+        private final RetryBudget budget;
+
+        ModelRetries(String modelId, MeterRegistry meterRegistry, Duration window) {
+            this.modelId = modelId;
+            this.requests = meterRegistry.counter("llm.retry.requests", "model", modelId);
+            this.attempts = meterRegistry.counter("llm.retry.attempts", "model", modelId);
+            this.retries = meterRegistry.counter("llm.retry.retries", "model", modelId);
+            this.budget = new RetryBudget(window);
+        }
+    }
+
+    /**
+     * Requests and retries over a sliding window of one-second buckets. A retry is allowed while
+     * retries stay within minRetries + ratio * requests.
+     */
+    static final class RetryBudget {
+
+        private final long[] bucketSecond;
+        private final long[] requests;
+        private final long[] retries;
+
+        RetryBudget(Duration window) {
+            int buckets = (int) Math.max(1, window.toSeconds());
+            this.bucketSecond = new long[buckets];
+            this.requests = new long[buckets];
+            this.retries = new long[buckets];
+        }
+
+        synchronized void recordRequest(long nowMillis) {
+            requests[bucket(nowMillis)]++;
+        }
+
+        synchronized boolean tryWithdraw(long nowMillis, double ratio, int minRetries) {
+            int current = bucket(nowMillis);
+            if (sum(retries, nowMillis) + 1 > minRetries + ratio * sum(requests, nowMillis)) {
+                return false;
+            }
+            retries[current]++;
+            return true;
+        }
+
+        synchronized void refund(long nowMillis) {
+            int current = bucket(nowMillis);
+            if (retries[current] > 0) {
+                retries[current]--;
+            }
+        }
+
+        synchronized Map<String, Object> snapshot(long nowMillis) {
+            return Map.of("windowRequests", sum(requests, nowMillis), "windowRetries", sum(retries, nowMillis));
+        }
+
+        private long sum(long[] counts, long nowMillis) {
+            long second = nowMillis / 1000;
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (second - bucketSecond[i] < bucketSecond.length) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Slot for the current second, reset if it still holds an older second
+         */
+        private int bucket(long nowMillis) {
+            long second = nowMillis / 1000;
+            int index = (int) (second % bucketSecond.length);
+            if (bucketSecond[index] != second) {
+                bucketSecond[index] = second;
+                requests[index] = 0;
+                retries[index] = 0;
+            }
+            return index;
+        }
+    }
+}
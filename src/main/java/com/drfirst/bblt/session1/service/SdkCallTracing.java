@@ -0,0 +1,68 @@
+package com.drfirst.bblt.session1.service;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import software.amazon.awssdk.awscore.AwsExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+/**
+ * Client span for every Bedrock SDK call, including SDK-level retries, as a child of the span that
+ * was current when the call started. Added to every Bedrock client as an execution interceptor.
+ */
+public class SdkCallTracing implements ExecutionInterceptor {
+
+    public static final String OBSERVATION = "aws.sdk.call";
+
+    private static final ExecutionAttribute<Observation> OBSERVATION_ATTRIBUTE = new ExecutionAttribute<>("SdkCallObservation");
+
+    private final ObservationRegistry observationRegistry;
+
+    public SdkCallTracing(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        String service = executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME);
+        String operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        Observation observation = Observation.createNotStarted(OBSERVATION, observationRegistry)
+                .contextualName(service + "." + operation)
+                .lowCardinalityKeyValue("rpc.system", "aws-api")
+                .lowCardinalityKeyValue("rpc.service", String.valueOf(service))
+                .lowCardinalityKeyValue("rpc.method", String.valueOf(operation));
+        if (executionAttributes.getAttribute(AwsExecutionAttribute.AWS_REGION) != null) {
+            observation.lowCardinalityKeyValue("cloud.region", executionAttributes.getAttribute(AwsExecutionAttribute.AWS_REGION).id());
+        }
+        context.request().getValueForField("modelId", String.class)
+                .ifPresent(modelId -> observation.lowCardinalityKeyValue(Traces.MODEL, modelId));
+        executionAttributes.putAttribute(OBSERVATION_ATTRIBUTE, observation.start());
+    }
+
+    @Override
+    public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+        Observation observation = executionAttributes.getAttribute(OBSERVATION_ATTRIBUTE);
+        if (observation != null) {
+            observation.highCardinalityKeyValue("http.response.status_code", Integer.toString(context.httpResponse().statusCode()));
+        }
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        Observation observation = executionAttributes.getAttribute(OBSERVATION_ATTRIBUTE);
+        if (observation != null) {
+            observation.stop();
+        }
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Observation observation = executionAttributes.getAttribute(OBSERVATION_ATTRIBUTE);
+        if (observation != null) {
+            observation.error(context.exception()).stop();
+        }
+    }
+}
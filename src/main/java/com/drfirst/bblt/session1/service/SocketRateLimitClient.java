@@ -0,0 +1,97 @@
+package com.drfirst.bblt.session1.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Leases from a {@link SocketRateLimitServer} in another process over one persistent connection,
+ * reconnecting after a failure. Only the background refill and return paths call it.
+ */
+final class SocketRateLimitClient implements RateLimitLeaseClient {
+
+    private final InetSocketAddress address;
+    private final int timeoutMs;
+    // Not synchronized: blocking socket I/O inside a monitor would pin the calling virtual thread's carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private Socket socket;
+    private BufferedReader in;
+    private PrintWriter out;
+
+    SocketRateLimitClient(String host, int port, Duration timeout) {
+        this.address = new InetSocketAddress(host, port);
+        this.timeoutMs = (int) timeout.toMillis();
+    }
+
+    @Override
+    public Grant lease(String nodeId, String modelId, int requests, long tokens, long minTokens) throws IOException {
+        String reply = call("LEASE " + nodeId + " " + modelId + " " + requests + " " + tokens + " " + minTokens);
+        if (reply.equals("UNLIMITED")) {
+            return Grant.UNLIMITED;
+        }
+        String[] fields = reply.split(" ");
+        if (fields.length != 3 || !fields[0].equals("GRANT")) {
+            throw new IOException("Unexpected coordinator reply: " + reply);
+        }
+        return new Grant(Integer.parseInt(fields[1]), Long.parseLong(fields[2]), false);
+    }
+
+    @Override
+    public void release(String nodeId, String modelId, int requests, long tokens) throws IOException {
+        String reply = call("RELEASE " + nodeId + " " + modelId + " " + requests + " " + tokens);
+        if (!reply.equals("OK")) {
+            throw new IOException("Unexpected coordinator reply: " + reply);
+        }
+    }
+
+    private String call(String request) throws IOException {
+        lock.lock();
+        try {
+            if (socket == null) {
+                socket = new Socket();
+                socket.connect(address, timeoutMs);
+                socket.setSoTimeout(timeoutMs);
+                in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            }
+            out.println(request);
+            String reply = in.readLine();
+            if (reply == null) {
+                throw new IOException("Coordinator closed the connection");
+            }
+            return reply;
+        } catch (IOException e) {
+            close();
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // already broken
+                }
+                socket = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "socket " + address;
+    }
+}
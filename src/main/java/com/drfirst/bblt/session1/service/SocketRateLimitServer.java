@@ -0,0 +1,110 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.RateLimitConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the embedded {@link RateLimitCoordinator} to other processes (rate-limit.mode=server), one
+ * virtual thread per connection. Line protocol, one reply per request:
+ * <pre>
+ * LEASE nodeId modelId requests tokens minTokens   -&gt;  GRANT requests tokens | UNLIMITED
+ * RELEASE nodeId modelId requests tokens           -&gt;  OK
+ * </pre>
+ */
+@Component
+public class SocketRateLimitServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketRateLimitServer.class);
+
+    private final RateLimitConfig rateLimitConfig;
+    private final RateLimitCoordinator coordinator;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+
+    public SocketRateLimitServer(RateLimitConfig rateLimitConfig, RateLimitCoordinator coordinator) {
+        this.rateLimitConfig = rateLimitConfig;
+        this.coordinator = coordinator;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!rateLimitConfig.isEnabled() || !"server".equals(rateLimitConfig.getMode())) {
+            return;
+        }
+        serverSocket = new ServerSocket(rateLimitConfig.getPort(), 50, InetAddress.getByName(rateLimitConfig.getHost()));
+        Thread.ofVirtual().name("rate-limit-coordinator").start(this::accept);
+        logger.info("Rate limit coordinator listening on {}", serverSocket.getLocalSocketAddress());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket connection = serverSocket.accept();
+                connections.add(connection);
+                Thread.ofVirtual().name("rate-limit-connection").start(() -> serve(connection));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Rate limit coordinator accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (connection;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(connection.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.println(handle(line));
+            }
+        } catch (IOException e) {
+            logger.debug("Rate limit connection closed: {}", e.getMessage());
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private String handle(String line) {
+        String[] fields = line.trim().split(" ");
+        try {
+            if (fields[0].equals("LEASE") && fields.length == 6) {
+                RateLimitLeaseClient.Grant grant = coordinator.lease(fields[1], fields[2], Integer.parseInt(fields[3]),
+                        Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+                return grant.unlimited() ? "UNLIMITED" : "GRANT " + grant.requests() + " " + grant.tokens();
+            }
+            if (fields[0].equals("RELEASE") && fields.length == 5) {
+                coordinator.release(fields[1], fields[2], Integer.parseInt(fields[3]), Long.parseLong(fields[4]));
+                return "OK";
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        return "ERROR malformed request";
+    }
+}
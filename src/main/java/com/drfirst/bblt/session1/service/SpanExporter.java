@@ -0,0 +1,292 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.TracingConfig;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns every finished {@link Observation} into a span and exports it without an OpenTelemetry SDK:
+ * trace and span ids follow the observation parent chain, and finished spans are queued and written
+ * in batches by a background thread, as OTLP/JSON lines to a file or as log lines. Request threads
+ * only enqueue; when the queue is full the span is dropped. Observations come from this application
+ * (chat, retry attempts, fallback hops, SDK calls) and from Spring itself (HTTP server requests,
+ * Spring AI chat client calls).
+ */
+@Component
+public class SpanExporter implements ObservationHandler<Observation.Context> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpanExporter.class);
+
+    private static final int KIND_INTERNAL = 1;
+    private static final int KIND_SERVER = 2;
+    private static final int KIND_CLIENT = 3;
+
+    private final TracingConfig tracingConfig;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final BlockingQueue<Span> finished;
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("span-exporter").factory());
+    private final AtomicLong exported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong exportErrors = new AtomicLong();
+    private Path file;
+
+    public SpanExporter(TracingConfig tracingConfig) {
+        this.tracingConfig = tracingConfig;
+        this.finished = new ArrayBlockingQueue<>(Math.max(1, tracingConfig.getQueueCapacity()));
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!tracingConfig.isEnabled() || "none".equals(tracingConfig.getExporter())) {
+            return;
+        }
+        if ("file".equals(tracingConfig.getExporter())) {
+            file = Paths.get(tracingConfig.getFile());
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            logger.info("Exporting spans as OTLP/JSON to {}", file.toAbsolutePath());
+        }
+        long intervalMs = tracingConfig.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    @Override
+    public boolean supportsContext(Observation.Context context) {
+        return tracingConfig.isEnabled();
+    }
+
+    @Override
+    public void onStart(Observation.Context context) {
+        Span parent = null;
+        for (Observation.ContextView ancestor = parentOf(context); ancestor != null; ancestor = parentOfView(ancestor)) {
+            parent = ancestor.get(Span.class);
+            if (parent != null) {
+                break;
+            }
+        }
+        Span span = parent != null
+                ? new Span(parent.traceId, RequestIds.spanId(), parent.spanId, parent.sampled)
+                : new Span(RequestIds.traceId(), RequestIds.spanId(), null,
+                        ThreadLocalRandom.current().nextDouble() < tracingConfig.getSampleRatio());
+        context.put(Span.class, span);
+    }
+
+    @Override
+    public void onStop(Observation.Context context) {
+        Span span = context.get(Span.class);
+        if (span == null) {
+            return;
+        }
+        if (!span.sampled) {
+            sampledOut.incrementAndGet();
+            return;
+        }
+        span.durationNanos = System.nanoTime() - span.startNanos;
+        span.name = context.getContextualName() != null ? context.getContextualName() : context.getName();
+        span.kind = kind(context.getName());
+        for (KeyValue keyValue : context.getAllKeyValues()) {
+            span.attributes.put(keyValue.getKey(), keyValue.getValue());
+        }
+        if (context.getError() != null) {
+            span.error = context.getError().getClass().getSimpleName() + ": " + context.getError().getMessage();
+        } else if (Traces.isFailure(span.attributes.get(Traces.OUTCOME))) {
+            span.error = span.attributes.getOrDefault("error.message", "error");
+        }
+        if (!finished.offer(span)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static Observation.ContextView parentOf(Observation.Context context) {
+        return context.getParentObservation() != null ? context.getParentObservation().getContextView() : null;
+    }
+
+    private static Observation.ContextView parentOfView(Observation.ContextView view) {
+        return view.getParentObservation() != null ? view.getParentObservation().getContextView() : null;
+    }
+
+    private static int kind(String observationName) {
+        if (observationName.startsWith("http.server")) {
+            return KIND_SERVER;
+        }
+        if (observationName.startsWith("http.client") || observationName.equals(SdkCallTracing.OBSERVATION)) {
+            return KIND_CLIENT;
+        }
+        return KIND_INTERNAL;
+    }
+
+    /**
+     * Write the queued spans: one OTLP/JSON export request per line for the file exporter
+     */
+    void flush() {
+        List<Span> batch = new ArrayList<>();
+        finished.drainTo(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (file != null) {
+                writeFile(batch);
+            } else {
+                batch.forEach(span -> logger.info("span {} trace={} id={} parent={} {}ms {} {}", span.name, span.traceId,
+                        span.spanId, span.parentSpanId, span.durationNanos / 1_000_000,
+                        span.error != null ? "ERROR " + span.error : "OK", span.attributes));
+            }
+            exported.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            exportErrors.incrementAndGet();
+            logger.warn("Failed to export {} spans: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private void writeFile(List<Span> batch) throws IOException {
+        if (Files.exists(file) && Files.size(file) >= tracingConfig.getMaxFileSize().toBytes()) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        ByteArrayOutputStream line = new ByteArrayOutputStream(512 * batch.size());
+        try (JsonGenerator json = jsonFactory.createGenerator(line, JsonEncoding.UTF8)) {
+            writeExportRequest(json, batch);
+        }
+        line.write('\n');
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            line.writeTo(out);
+        }
+    }
+
+    private void writeExportRequest(JsonGenerator json, List<Span> batch) throws IOException {
+        json.writeStartObject();
+        json.writeArrayFieldStart("resourceSpans");
+        json.writeStartObject();
+        json.writeObjectFieldStart("resource");
+        json.writeArrayFieldStart("attributes");
+        writeAttribute(json, "service.name", tracingConfig.getServiceName());
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeArrayFieldStart("scopeSpans");
+        json.writeStartObject();
+        json.writeObjectFieldStart("scope");
+        json.writeStringField("name", "com.drfirst.bblt.session1");
+        json.writeEndObject();
+        json.writeArrayFieldStart("spans");
+        for (Span span : batch) {
+            json.writeStartObject();
+            json.writeStringField("traceId", span.traceId);
+            json.writeStringField("spanId", span.spanId);
+            if (span.parentSpanId != null) {
+                json.writeStringField("parentSpanId", span.parentSpanId);
+            }
+            json.writeStringField("name", span.name);
+            json.writeNumberField("kind", span.kind);
+            // OTLP/JSON encodes 64-bit integers as strings
+            json.writeStringField("startTimeUnixNano", Long.toString(span.startEpochNanos));
+            json.writeStringField("endTimeUnixNano", Long.toString(span.startEpochNanos + span.durationNanos));
+            json.writeArrayFieldStart("attributes");
+            for (Map.Entry<String, String> attribute : span.attributes.entrySet()) {
+                writeAttribute(json, attribute.getKey(), attribute.getValue());
+            }
+            json.writeEndArray();
+            json.writeObjectFieldStart("status");
+            json.writeNumberField("code", span.error != null ? 2 : 1);
+            if (span.error != null) {
+                json.writeStringField("message", span.error);
+            }
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+
+    private static void writeAttribute(JsonGenerator json, String key, String value) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("key", key);
+        json.writeObjectFieldStart("value");
+        json.writeStringField("stringValue", value);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", tracingConfig.isEnabled());
+        stats.put("exporter", tracingConfig.getExporter());
+        stats.put("file", file != null ? file.toAbsolutePath().toString() : null);
+        stats.put("sampleRatio", tracingConfig.getSampleRatio());
+        stats.put("queued", finished.size());
+        stats.put("exported", exported.get());
+        stats.put("dropped", dropped.get());
+        stats.put("sampledOut", sampledOut.get());
+        stats.put("exportErrors", exportErrors.get());
+        return stats;
+    }
+
+    /**
+     * Span state carried in the observation context from start to stop
+     */
+    private static final class Span {
+
+        private final String traceId;
+        private final String spanId;
+        private final String parentSpanId;
+        private final boolean sampled;
+        private final long startEpochNanos;
+        private final long startNanos = System.nanoTime();
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+        private long durationNanos;
+        private String name;
+        private int kind;
+        private String error;
+
+        Span(String traceId, String spanId, String parentSpanId, boolean sampled) {
+            this.traceId = traceId;
+            this.spanId = spanId;
+            this.parentSpanId = parentSpanId;
+            this.sampled = sampled;
+            Instant now = Instant.now();
+            this.startEpochNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.StreamReplayCacheConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Records streamed generations chunk by chunk, with each chunk's offset from the start of the stream,
+ * and replays them for repeat requests with the same deterministic prompt. Replays are emitted either
+ * all at once or paced like the original.
+ *
+ * Only streams made entirely of content are recorded: a stream that carried a model switch or an error,
+ * was cancelled, or outgrew maxEntryBytes is passed through without being stored.
+ */
+@Service
+public class StreamReplayCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamReplayCache.class);
+
+    private static final int CHUNK_OVERHEAD_BYTES = 24;
+
+    private final StreamReplayCacheConfig cacheConfig;
+
+    // Access-ordered, so iteration starts at the least recently used entry; guarded by this
+    private final LinkedHashMap<String, Recording> recordings = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bypassed;
+    private final Counter recorded;
+    private final Counter notRecorded;
+    private final Counter chunksServed;
+    private final Counter upstreamMillisSaved;
+
+    public StreamReplayCache(StreamReplayCacheConfig cacheConfig, MeterRegistry meterRegistry) {
+        this.cacheConfig = cacheConfig;
+        this.hits = meterRegistry.counter("stream.replay.requests", "result", "hit");
+        this.misses = meterRegistry.counter("stream.replay.requests", "result", "miss");
+        this.bypassed = meterRegistry.counter("stream.replay.requests", "result", "bypass");
+        this.recorded = meterRegistry.counter("stream.replay.recordings", "result", "stored");
+        this.notRecorded = meterRegistry.counter("stream.replay.recordings", "result", "skipped");
+        this.chunksServed = meterRegistry.counter("stream.replay.chunks.served");
+        this.upstreamMillisSaved = meterRegistry.counter("stream.replay.upstream.saved.ms");
+    }
+
+    /**
+     * Serve the stream from a recording when there is one, otherwise stream from upstream and record it.
+     *
+     * @param provider  namespace of the key, so different providers never share recordings
+     * @param contentOf text of a content event, or null for any other event (which stops the recording)
+     * @param toEvent   turns a recorded chunk back into a content event
+     */
+    public <T> Flux<T> stream(String provider, ChatRequest request, Supplier<Flux<T>> upstream,
+                              Function<T, String> contentOf, Function<String, T> toEvent) {
+        if (!isCacheable(request)) {
+            bypassed.increment();
+            return upstream.get();
+        }
+        String key = keyFor(provider, request);
+        return Flux.defer(() -> {
+            Recording recording = lookup(key);
+            if (recording != null) {
+                hits.increment();
+                upstreamMillisSaved.increment(recording.durationMillis());
+                chunksServed.increment(recording.chunks().length);
+                logger.debug("Replaying {} chunks for {} {} from cache", recording.chunks().length, provider, request.modelId());
+                return replay(recording).map(toEvent);
+            }
+            misses.increment();
+            Recorder recorder = new Recorder(key);
+            return upstream.get()
+                    .doOnNext(event -> recorder.append(contentOf.apply(event)))
+                    .doOnComplete(recorder::finish);
+        });
+    }
+
+    public boolean isCacheable(ChatRequest request) {
+        return cacheConfig.isEnabled() && request.temperature() <= cacheConfig.getMaxTemperature();
+    }
+
+    public synchronized void clear() {
+        recordings.clear();
+        totalBytes = 0;
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = (long) hits.count();
+        long missCount = (long) misses.count();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cacheConfig.isEnabled());
+        stats.put("replayMode", cacheConfig.getReplayMode());
+        synchronized (this) {
+            stats.put("entries", recordings.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxTotalBytes", cacheConfig.getMaxTotalBytes().toBytes());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("bypassed", (long) bypassed.count());
+        stats.put("hitRate", hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0);
+        stats.put("recorded", (long) recorded.count());
+        stats.put("notRecorded", (long) notRecorded.count());
+        stats.put("chunksServed", (long) chunksServed.count());
+        stats.put("upstreamMillisSaved", (long) upstreamMillisSaved.count());
+        return stats;
+    }
+
+    private Flux<String> replay(Recording recording) {
+        String[] chunks = recording.chunks();
+        if (cacheConfig.getReplayMode() == StreamReplayCacheConfig.ReplayMode.FAST) {
+            return Flux.fromArray(chunks);
+        }
+        long[] offsets = recording.offsetsMillis();
+        return Flux.range(0, chunks.length).concatMap(i -> {
+            long gap = offsets[i] - (i > 0 ? offsets[i - 1] : 0);
+            Mono<String> chunk = Mono.just(chunks[i]);
+            return gap > 0 ? chunk.delayElement(Duration.ofMillis(gap)) : chunk;
+        });
+    }
+
+    private synchronized Recording lookup(String key) {
+        Recording recording = recordings.get(key);
+        if (recording != null && System.currentTimeMillis() - recording.createdAt() > cacheConfig.getTtl().toMillis()) {
+            recordings.remove(key);
+            totalBytes -= recording.bytes();
+            return null;
+        }
+        return recording;
+    }
+
+    private synchronized void store(String key, Recording recording) {
+        Recording previous = recordings.put(key, recording);
+        if (previous != null) {
+            totalBytes -= previous.bytes();
+        }
+        totalBytes += recording.bytes();
+
+        long cap = cacheConfig.getMaxTotalBytes().toBytes();
+        Iterator<Recording> eldest = recordings.values().iterator();
+        while ((recordings.size() > cacheConfig.getMaxEntries() || totalBytes > cap) && eldest.hasNext()) {
+            totalBytes -= eldest.next().bytes();
+            eldest.remove();
+        }
+    }
+
+    private static String keyFor(String provider, ChatRequest request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : List.of(provider, request.modelId(), String.valueOf(request.systemPrompt()),
+                    request.message(), request.maxTokens(), request.temperature(), request.topP(), request.topK())) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0); // separator so fields cannot run into each other
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Recording(String[] chunks, long[] offsetsMillis, long durationMillis, long bytes, long createdAt) {}
+
+    /**
+     * Captures one upstream subscription; signals arrive serially, so no locking is needed
+     */
+    private final class Recorder {
+
+        private final String key;
+        private final long startNanos = System.nanoTime();
+        private final List<String> chunks = new ArrayList<>();
+        private long[] offsets = new long[64];
+        private long bytes;
+        private boolean abandoned;
+
+        Recorder(String key) {
+            this.key = key;
+            this.bytes = key.length() * 2L;
+        }
+
+        void append(String chunk) {
+            if (abandoned) {
+                return;
+            }
+            if (chunk == null) {
+                abandon();
+                return;
+            }
+            bytes += chunk.length() * 2L + CHUNK_OVERHEAD_BYTES;
+            if (bytes > cacheConfig.getMaxEntryBytes().toBytes()) {
+                abandon();
+                return;
+            }
+            if (chunks.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[chunks.size()] = elapsedMillis();
+            chunks.add(chunk);
+        }
+
+        void finish() {
+            if (abandoned) {
+                return;
+            }
+            store(key, new Recording(chunks.toArray(String[]::new), Arrays.copyOf(offsets, chunks.size()),
+                    elapsedMillis(), bytes, System.currentTimeMillis()));
+            recorded.increment();
+        }
+
+        private void abandon() {
+            abandoned = true;
+            chunks.clear();
+            notRecorded.increment();
+        }
+
+        private long elapsedMillis() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+    }
+}
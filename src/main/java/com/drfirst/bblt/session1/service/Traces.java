@@ -0,0 +1,67 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.model.ChatResponse;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.util.function.Supplier;
+
+/**
+ * Span helpers on the Micrometer Observation API. Attribute names follow the OpenTelemetry GenAI
+ * conventions, so spans read the same whether {@link SpanExporter} or an OpenTelemetry bridge exports them.
+ */
+public final class Traces {
+
+    public static final String MODEL = "gen_ai.request.model";
+    public static final String OUTCOME = "outcome";
+    public static final String INPUT_TOKENS = "gen_ai.usage.input_tokens";
+    public static final String OUTPUT_TOKENS = "gen_ai.usage.output_tokens";
+    public static final String REQUEST_ID = "request.id";
+
+    private Traces() {
+    }
+
+    /**
+     * Record the outcome, tokens and request id of a finished model call on its span
+     */
+    public static ChatResponse annotate(Observation observation, ChatResponse response) {
+        String outcome = !response.isSuccess() ? "error"
+                : response.metadata() != null && response.metadata().containsKey("fallback") ? "fallback" : "success";
+        observation.lowCardinalityKeyValue(OUTCOME, outcome);
+        if (response.metrics() != null) {
+            observation.highCardinalityKeyValue(INPUT_TOKENS, Integer.toString(response.metrics().inputTokens()));
+            observation.highCardinalityKeyValue(OUTPUT_TOKENS, Integer.toString(response.metrics().outputTokens()));
+        }
+        if (response.requestId() != null) {
+            observation.highCardinalityKeyValue(REQUEST_ID, response.requestId());
+        }
+        if (!response.isSuccess() && response.errorMessage() != null) {
+            observation.highCardinalityKeyValue("error.message", response.errorMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Whether a span's outcome attribute marks it as failed: a failed call that returned an error response
+     * rather than throwing
+     */
+    static boolean isFailure(String outcome) {
+        return "error".equals(outcome) || "failed".equals(outcome);
+    }
+
+    /**
+     * Run the call with the calling thread's current span as parent, e.g. on a worker thread
+     */
+    @SuppressWarnings("try") // the scope is opened only to parent the call's spans
+    public static <T> Supplier<T> propagate(ObservationRegistry registry, Supplier<T> call) {
+        Observation parent = registry.getCurrentObservation();
+        if (parent == null) {
+            return call;
+        }
+        return () -> {
+            try (Observation.Scope scope = parent.openScope()) {
+                return call.get();
+            }
+        };
+    }
+}
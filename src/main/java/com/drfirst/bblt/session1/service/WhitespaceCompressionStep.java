@@ -0,0 +1,60 @@
+package com.drfirst.bblt.session1.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Collapses runs of spaces and tabs inside a line, drops trailing whitespace and carriage returns,
+ * and keeps at most one blank line in a row. Leading indentation is preserved so code keeps its shape.
+ */
+@Component
+public class WhitespaceCompressionStep implements PromptCompressionStep {
+
+    @Override
+    public String getName() {
+        return "whitespace";
+    }
+
+    @Override
+    public String apply(String text, int targetChars) {
+        StringBuilder out = new StringBuilder(text.length());
+        int lineStart = 0;          // index of the first char of the current line
+        boolean content = false;    // current line has non-whitespace output
+        boolean pendingSpace = false;
+        int newlines = 0;           // consecutive newlines without content between them
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                if (!content && newlines < 2 && out.length() > 0) {
+                    newlines++;
+                    out.append('\n');
+                } else if (content) {
+                    newlines = 1;
+                    out.append('\n');
+                }
+                content = false;
+                pendingSpace = false;
+                lineStart = i + 1;
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                pendingSpace = content;
+            } else {
+                if (!content) {
+                    // Indentation is only emitted once the line turns out to have content
+                    for (int j = lineStart; j < i; j++) {
+                        char indent = text.charAt(j);
+                        if (indent != '\r') {
+                            out.append(indent);
+                        }
+                    }
+                } else if (pendingSpace) {
+                    out.append(' ');
+                }
+                out.append(c);
+                content = true;
+                pendingSpace = false;
+                newlines = 0;
+            }
+        }
+        return out.toString();
+    }
+}
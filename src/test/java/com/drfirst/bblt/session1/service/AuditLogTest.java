@@ -0,0 +1,236 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.AuditConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.drfirst.bblt.session1.model.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The multi-producer ring under contention, crash recovery of open segments, and a timed append run
+ */
+class AuditLogTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogTest.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int PRODUCERS = 8;
+    private static final int RECORDS_PER_PRODUCER = 2_000;
+
+    @TempDir
+    Path directory;
+
+    private AuditLog auditLog;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (auditLog != null) {
+            auditLog.stop();
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseAndDuplicateNothingWhenBlocking() throws Exception {
+        // A ring much smaller than the load makes producers wrap it many times and contend on every claim
+        AuditConfig config = config(64, AuditConfig.Overflow.BLOCK);
+        config.setMaxBlock(Duration.ofSeconds(10));
+        auditLog = start(config);
+
+        produce(auditLog);
+        auditLog.stop();
+
+        Map<String, Object> stats = auditLog.getStats();
+        auditLog = null;
+        assertThat(stats.get("appended")).isEqualTo((long) PRODUCERS * RECORDS_PER_PRODUCER);
+        assertThat(stats.get("dropped")).isEqualTo(0L);
+        assertThat(stats.get("written")).isEqualTo((long) PRODUCERS * RECORDS_PER_PRODUCER);
+
+        List<String> prompts = readPrompts();
+        assertThat(prompts).hasSize(PRODUCERS * RECORDS_PER_PRODUCER);
+        assertThat(new HashSet<>(prompts)).hasSize(PRODUCERS * RECORDS_PER_PRODUCER);
+        assertProducerOrder(prompts);
+    }
+
+    @Test
+    void droppingOverflowAccountsForEveryRecord() throws Exception {
+        AuditConfig config = config(16, AuditConfig.Overflow.DROP);
+        auditLog = start(config);
+
+        produce(auditLog);
+        auditLog.stop();
+
+        Map<String, Object> stats = auditLog.getStats();
+        auditLog = null;
+        long appended = (long) stats.get("appended");
+        assertThat(appended + (long) stats.get("dropped")).isEqualTo((long) PRODUCERS * RECORDS_PER_PRODUCER);
+        assertThat(stats.get("written")).isEqualTo(appended);
+
+        List<String> prompts = readPrompts();
+        assertThat(prompts).hasSize((int) appended);
+        assertThat(new HashSet<>(prompts)).hasSize((int) appended);
+        assertProducerOrder(prompts);
+    }
+
+    @Test
+    void segmentLeftOpenByACrashIsRecoveredUpToItsLastFlush() throws Exception {
+        // Two sync-flushed lines and no gzip trailer, as a crash between batches leaves it
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes, true);
+        gzip.write("{\"prompt\":\"before crash 1\"}\n{\"prompt\":\"before crash 2\"}\n".getBytes(StandardCharsets.UTF_8));
+        gzip.flush();
+        Path open = directory.resolve("audit-20260101T000000Z-0.jsonl.gz.open");
+        Files.write(open, bytes.toByteArray());
+
+        auditLog = start(config(64, AuditConfig.Overflow.DROP));
+
+        assertThat(open).doesNotExist();
+        Path recovered = directory.resolve("audit-20260101T000000Z-0.jsonl.gz");
+        assertThat(recovered).exists();
+        assertThat(readPrompts(recovered)).containsExactly("before crash 1", "before crash 2");
+    }
+
+    @Test
+    void timedAppendFromTheRequestPath() throws Exception {
+        int records = 200_000;
+        // A ring that holds the whole run, so every append is a claim and publish rather than a drop
+        auditLog = start(config(records, AuditConfig.Overflow.DROP));
+        ChatRequest request = new ChatRequest("timed prompt");
+        ChatResponse response = ChatResponse.success("timed response", request.modelId(), null);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            auditLog.record("chat", request, response, 12);
+        }
+        long nanos = System.nanoTime() - start;
+
+        Map<String, Object> stats = auditLog.getStats();
+        logger.info("AuditLog: {} appends at {} ns/append (sampled avg {} ns, max {} ns), {} dropped",
+                records, nanos / records, stats.get("appendNanosAvg"), stats.get("appendNanosMax"),
+                stats.get("dropped"));
+        assertThat(stats.get("dropped")).isEqualTo(0L);
+        assertThat((long) stats.get("appendSamples")).isPositive();
+        // The request path only claims a slot; this guards against it ever doing I/O or taking locks
+        assertThat(nanos / records).isLessThan(50_000);
+    }
+
+    private AuditConfig config(int ringSize, AuditConfig.Overflow overflow) {
+        AuditConfig config = new AuditConfig();
+        config.setDirectory(directory.toString());
+        config.setRingSize(ringSize);
+        config.setOverflow(overflow);
+        config.setBatchSize(32);
+        config.setFsync(AuditConfig.Fsync.NONE);
+        return config;
+    }
+
+    private static AuditLog start(AuditConfig config) throws IOException {
+        AuditLog started = new AuditLog(config, new SimpleMeterRegistry());
+        started.start();
+        return started;
+    }
+
+    /**
+     * Producers start together and each records prompts "producer-sequence"
+     */
+    private static void produce(AuditLog auditLog) throws Exception {
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < PRODUCERS; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    for (int i = 0; i < RECORDS_PER_PRODUCER; i++) {
+                        ChatRequest request = new ChatRequest(producer + "-" + i);
+                        auditLog.record("chat", request, ChatResponse.success("ok", request.modelId(), null), 1);
+                    }
+                    return null;
+                }));
+            }
+            go.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A producer's records are written in the order it recorded them
+     */
+    private static void assertProducerOrder(List<String> prompts) {
+        int[] last = new int[PRODUCERS];
+        Arrays.fill(last, -1);
+        for (String prompt : prompts) {
+            String[] parts = prompt.split("-");
+            int producer = Integer.parseInt(parts[0]);
+            int sequence = Integer.parseInt(parts[1]);
+            assertThat(sequence).isGreaterThan(last[producer]);
+            last[producer] = sequence;
+        }
+    }
+
+    private List<String> readPrompts() throws IOException {
+        List<String> prompts = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path segment : files.filter(path -> path.toString().endsWith(".jsonl.gz")).sorted().toList()) {
+                prompts.addAll(readPrompts(segment));
+            }
+        }
+        return prompts;
+    }
+
+    /**
+     * Every complete line of a segment; a missing gzip trailer ends the read like a crash would
+     */
+    private static List<String> readPrompts(Path segment) throws IOException {
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segment))) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                decompressed.write(chunk, 0, read);
+            }
+        } catch (EOFException e) {
+            // truncated segment: everything up to the last sync flush has been read
+        }
+
+        List<String> prompts = new ArrayList<>();
+        String text = decompressed.toString(StandardCharsets.UTF_8);
+        for (String line : text.substring(0, text.lastIndexOf('\n') + 1).split("\n")) {
+            if (!line.isEmpty()) {
+                prompts.add(MAPPER.readTree(line).path("prompt").asText());
+            }
+        }
+        return prompts;
+    }
+}
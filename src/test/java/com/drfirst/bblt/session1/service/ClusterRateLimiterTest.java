@@ -0,0 +1,140 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ModelConfig;
+import com.drfirst.bblt.session1.config.RateLimitConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Fair-share leasing, returning unused permits and reservations, and rebalancing permits between nodes of one coordinator
+ */
+class ClusterRateLimiterTest {
+
+    private static final String MODEL = "limited-model";
+
+    private ModelConfig modelConfig;
+    private RateLimitCoordinator coordinator;
+    private final List<ClusterRateLimiter> limiters = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ModelConfig.RateLimits limits = new ModelConfig.RateLimits();
+        limits.setRequestsPerMinute(10);
+        limits.setTokensPerMinute(1_000_000);
+        ModelConfig.ModelProperties props = new ModelConfig.ModelProperties();
+        props.setRateLimits(limits);
+        modelConfig = new ModelConfig();
+        modelConfig.setModels(Map.of(MODEL, props));
+        coordinator = new RateLimitCoordinator(modelConfig, new RateLimitConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiters.forEach(ClusterRateLimiter::stop);
+    }
+
+    @Test
+    void coordinatorSplitsWhatIsLeftAmongActiveNodes() {
+        assertThat(coordinator.lease("a", MODEL, 4, 1000, 1).requests()).isEqualTo(4);
+        // Six left between two active nodes: b gets its fair share of three, not all six
+        assertThat(coordinator.lease("b", MODEL, 10, 1000, 1).requests()).isEqualTo(3);
+        assertThat(coordinator.lease("a", MODEL, 10, 1000, 1).requests()).isEqualTo(1);
+        assertThat(coordinator.lease("a", "unlimited-model", 10, 1000, 1).unlimited()).isTrue();
+    }
+
+    @Test
+    void returnedPermitsAreCappedAtTheLimitAndLeasableByOtherNodes() {
+        assertThat(coordinator.lease("a", MODEL, 10, 1000, 1).requests()).isEqualTo(10);
+        assertThat(coordinator.lease("b", MODEL, 10, 1000, 1).requests()).isZero();
+
+        coordinator.release("a", MODEL, 10, 1000);
+        coordinator.release("a", MODEL, 10, 1000); // a double return must not raise the account quota
+        assertThat(available()).isEqualTo(10L);
+        assertThat(coordinator.lease("b", MODEL, 10, 1000, 1).requests()).isEqualTo(5);
+    }
+
+    @Test
+    void permitsLeasedByOneNodeGoBackWhenItStops() {
+        ClusterRateLimiter a = limiter("a", Duration.ofMinutes(1));
+        ClusterRateLimiter b = limiter("b", Duration.ofMinutes(1));
+
+        a.acquire(MODEL, 100); // leases the whole quota as the only active node
+        assertThat(available()).isZero();
+        assertThatThrownBy(() -> b.acquire(MODEL, 100)).isInstanceOf(ClusterRateLimiter.RateLimitedException.class);
+
+        a.stop();
+        limiters.remove(a);
+        assertThat(available()).isEqualTo(9L);
+        b.acquire(MODEL, 100);
+    }
+
+    @Test
+    void expiredLeaseIsReturnedByMaintenanceAndRebalanced() throws InterruptedException {
+        ClusterRateLimiter a = limiter("a", Duration.ofMillis(50));
+        ClusterRateLimiter b = limiter("b", Duration.ofMillis(50));
+
+        a.acquire(MODEL, 100);
+        assertThat(available()).isZero();
+
+        Thread.sleep(80);
+        a.maintain(); // idle past the lease TTL: everything unused goes back and is not leased again
+        assertThat(available()).isEqualTo(9L);
+
+        b.acquire(MODEL, 100);
+        assertThat(localPool(a).get("returnedRequests")).isEqualTo(9L);
+    }
+
+    @Test
+    void unusedTokensOfACompletedCallGoBackToTheLocalPool() {
+        ClusterRateLimiter a = limiter("a", Duration.ofMinutes(1));
+        long reservation = ClusterRateLimiter.reservation("x".repeat(400), 4096);
+        assertThat(reservation).isEqualTo(100 + 4096);
+
+        a.acquire(MODEL, reservation);
+        assertThat(localPool(a).get("localTokens")).isEqualTo(1_000_000L - reservation);
+
+        // 100 prompt and 250 output tokens used: the rest of the output allowance is refunded
+        a.release(MODEL, reservation, 350);
+        assertThat(localPool(a).get("localTokens")).isEqualTo(1_000_000L - 350);
+        assertThat(localPool(a).get("refundedTokens")).isEqualTo(reservation - 350);
+
+        // A call that used at least its reservation has nothing to give back, and nothing is over-refunded
+        a.release(MODEL, reservation, reservation + 10);
+        a.release("unlimited-model", reservation, 0);
+        assertThat(localPool(a).get("localTokens")).isEqualTo(1_000_000L - 350);
+        assertThat(localPool(a).get("refundedTokens")).isEqualTo(reservation - 350);
+    }
+
+    private ClusterRateLimiter limiter(String nodeId, Duration leaseTtl) {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setNodeId(nodeId);
+        config.setBatchFraction(1.0);
+        config.setLeaseTtl(leaseTtl);
+        config.setMaxWait(Duration.ofMillis(100));
+        config.setMaintenanceInterval(Duration.ofHours(1)); // maintenance is driven by the tests
+        ClusterRateLimiter limiter = new ClusterRateLimiter(config, modelConfig, coordinator, new SimpleMeterRegistry());
+        limiter.start();
+        limiters.add(limiter);
+        return limiter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> localPool(ClusterRateLimiter limiter) {
+        return (Map<String, Object>) ((Map<String, Object>) limiter.getStats().get("local")).get(MODEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long available() {
+        return (long) ((Map<String, Object>) coordinator.getStats().get(MODEL)).get("availableRequests");
+    }
+}
@@ -0,0 +1,98 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.FewShotConfig;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Similarity ranking, the example and token budgets, and a timed selection over a large domain
+ */
+class FewShotExampleStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(FewShotExampleStoreTest.class);
+
+    private final FewShotExampleStore store = new FewShotExampleStore(new FewShotConfig());
+
+    @Test
+    void examplesAreRankedBySimilarityToTheQuery() {
+        store.addExample("support", "How do I reset my password?", "TECHNICAL_SUPPORT");
+        store.addExample("support", "When will my order arrive?", "SHIPPING");
+        store.addExample("support", "I want to return this item for a refund", "RETURNS");
+        store.addExample("other", "How do I reset my password please?", "ELSEWHERE");
+
+        FewShotExampleStore.Selection selection = store.select("support", "how can I reset my password", 3, 1000);
+
+        assertThat(selection.examples()).hasSize(3);
+        assertThat(selection.examples().get(0).output()).isEqualTo("TECHNICAL_SUPPORT");
+        assertThat(selection.examples()).extracting(FewShotExampleStore.Example::similarity).isSortedAccordingTo(
+                (a, b) -> Double.compare(b, a));
+        // Examples of other domains are never considered
+        assertThat(selection.examplesConsidered()).isEqualTo(3);
+        assertThat(selection.examples()).extracting(FewShotExampleStore.Example::output).doesNotContain("ELSEWHERE");
+    }
+
+    @Test
+    void selectionRespectsTheExampleCountAndTokenBudget() {
+        store.addExample("sentiment", "great product, works great", "POSITIVE");       // 7 + 2 + 4 = 13 tokens
+        store.addExample("sentiment", "great product " + "x".repeat(200), "POSITIVE"); // 54 + 2 + 4 = 60 tokens
+        store.addExample("sentiment", "terrible product, broke", "NEGATIVE");          // 6 + 2 + 4 = 12 tokens
+        store.addExample("sentiment", "it is okay", "NEUTRAL");                        // 3 + 2 + 4 = 9 tokens
+
+        FewShotExampleStore.Selection budgeted = store.select("sentiment", "great product", 4, 30);
+        assertThat(budgeted.selectedTokens()).isLessThanOrEqualTo(30);
+        assertThat(budgeted.examples()).extracting(FewShotExampleStore.Example::tokens).doesNotContain(60);
+        assertThat(budgeted.selectedTokens()).isEqualTo(
+                budgeted.examples().stream().mapToInt(FewShotExampleStore.Example::tokens).sum());
+        assertThat(budgeted.allExamplesTokens()).isEqualTo(13 + 60 + 12 + 9);
+
+        // A similar example too large for the budget is skipped, not the end of the selection
+        assertThat(budgeted.examples().get(0).output()).isEqualTo("POSITIVE");
+        assertThat(budgeted.examples()).hasSizeGreaterThan(1);
+
+        assertThat(store.select("sentiment", "great product", 2, 1000).examples()).hasSize(2);
+        assertThat(store.select("sentiment", "great product", 4, 5).examples()).isEmpty();
+    }
+
+    @Test
+    void unknownDomainSelectsNothingWithAGenericSpec() {
+        store.addExample("sentiment", "great product", "POSITIVE");
+
+        FewShotExampleStore.Selection selection = store.select("poetry", "roses are red", 3, 1000);
+
+        assertThat(selection.examples()).isEmpty();
+        assertThat(selection.domain().name()).isEqualTo("poetry");
+        assertThat(selection.domain().inputLabel()).isEqualTo("Input");
+    }
+
+    @Test
+    void timedSelectionOverOneHundredThousandExamples() {
+        int examples = 100_000;
+        String[] topics = {"billing", "shipping", "password", "refund", "warranty", "account", "invoice", "delivery"};
+        for (int i = 0; i < examples; i++) {
+            String topic = topics[i % topics.length];
+            store.addExample("tickets", "Question " + i + " about my " + topic + " and order number " + (i * 7919 % 100_003),
+                    topic.toUpperCase());
+        }
+        store.addExample("tickets", "My parcel delivery is late, where is my package?", "DELIVERY_LATE");
+
+        int selections = 50;
+        FewShotExampleStore.Selection selection = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < selections; i++) {
+            selection = store.select("tickets", "where is my package? the parcel delivery is late", 3, 1000);
+        }
+        long nanos = System.nanoTime() - start;
+
+        logger.info("FewShotExampleStore: {} selections over {} examples at {} us/selection",
+                selections, examples + 1, nanos / selections / 1000);
+        assertThat(selection.examplesConsidered()).isEqualTo(examples + 1);
+        assertThat(selection.examples().get(0).output()).isEqualTo("DELIVERY_LATE");
+        // A linear scan of flat signature arrays; this only guards against pathological slowdowns
+        assertThat(Duration.ofNanos(nanos / selections)).isLessThan(Duration.ofMillis(200));
+    }
+}
@@ -0,0 +1,188 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.GeminiCacheConfig;
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Registration, reuse, expiry and LRU eviction of cached contexts against a local stand-in for Vertex AI
+ */
+class GeminiContextCacheTest {
+
+    private static final Pattern TTL = Pattern.compile("\"ttl\"\\s*:\\s*\"(\\d+)s\"");
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final List<String> deleted = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private GeminiCacheConfig cacheConfig;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+
+        cacheConfig = new GeminiCacheConfig();
+        cacheConfig.setEnabled(true);
+        cacheConfig.setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/v1");
+        cacheConfig.setUseApplicationDefaultCredentials(false);
+        cacheConfig.setExpiryMargin(Duration.ofSeconds(30));
+        cacheConfig.setMaxEntries(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void identicalContextIsRegisteredOnceAndReused() {
+        GeminiContextCache cache = cache();
+
+        GeminiContextCache.CacheEntry first = cache.register("system", List.of("doc"), Duration.ofHours(1));
+        GeminiContextCache.CacheEntry second = cache.register("system", List.of("doc"), Duration.ofHours(1));
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.get(first.getHandle())).isSameAs(first);
+        assertThat(created.get()).isEqualTo(1);
+        assertThat(first.getCachedTokens()).isEqualTo(1234);
+        Map<String, Object> stats = cache.getStats();
+        assertThat(stats.get("misses")).isEqualTo(1L);
+        assertThat(stats.get("hits")).isEqualTo(1L);
+    }
+
+    @Test
+    void documentBoundariesArePartOfTheHandle() {
+        GeminiContextCache cache = cache();
+
+        GeminiContextCache.CacheEntry joined = cache.register("system", List.of("ab"), Duration.ofHours(1));
+        GeminiContextCache.CacheEntry split = cache.register("system", List.of("a", "b"), Duration.ofHours(1));
+
+        assertThat(split.getHandle()).isNotEqualTo(joined.getHandle());
+        assertThat(created.get()).isEqualTo(2);
+    }
+
+    @Test
+    void entriesWithinTheExpiryMarginAreDroppedAndRegisteredAgain() {
+        GeminiContextCache cache = cache();
+
+        // A TTL shorter than the margin is expired as soon as it is created
+        GeminiContextCache.CacheEntry entry = cache.register("system", List.of("doc"), Duration.ofSeconds(10));
+        assertThat(cache.get(entry.getHandle())).isNull();
+
+        GeminiContextCache.CacheEntry renewed = cache.register("system", List.of("doc"), Duration.ofHours(1));
+        assertThat(renewed).isNotSameAs(entry);
+        assertThat(renewed.getHandle()).isEqualTo(entry.getHandle());
+        assertThat(created.get()).isEqualTo(2);
+        assertThat(cache.get(renewed.getHandle())).isSameAs(renewed);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvictedAndDeletedRemotely() throws InterruptedException {
+        GeminiContextCache cache = cache();
+
+        GeminiContextCache.CacheEntry a = cache.register("a", List.of(), Duration.ofHours(1));
+        Thread.sleep(5);
+        GeminiContextCache.CacheEntry b = cache.register("b", List.of(), Duration.ofHours(1));
+        Thread.sleep(5);
+        cache.get(a.getHandle()); // a is now more recent than b
+        Thread.sleep(5);
+        GeminiContextCache.CacheEntry c = cache.register("c", List.of(), Duration.ofHours(1));
+
+        assertThat(cache.get(b.getHandle())).isNull();
+        assertThat(cache.get(a.getHandle())).isSameAs(a);
+        assertThat(cache.get(c.getHandle())).isSameAs(c);
+        assertThat(deleted).containsExactly(b.getName());
+    }
+
+    @Test
+    void evictDeletesRemotely() {
+        GeminiContextCache cache = cache();
+        GeminiContextCache.CacheEntry entry = cache.register("system", List.of("doc"), Duration.ofHours(1));
+
+        assertThat(cache.evict(entry.getHandle())).isTrue();
+        assertThat(cache.evict(entry.getHandle())).isFalse();
+        assertThat(deleted).containsExactly(entry.getName());
+    }
+
+    @Test
+    void generationReferencesTheCachedContent() {
+        GeminiContextCache cache = cache();
+        GeminiContextCache.CacheEntry entry = cache.register("system", List.of("doc"), Duration.ofHours(1));
+
+        GeminiContextCache.CachedGeneration generation = cache.generate(entry, new ChatRequest("hello"));
+
+        assertThat(generation.content()).isEqualTo("Hello from the cache");
+        assertThat(generation.cachedTokens()).isEqualTo(1234);
+        assertThat(generation.promptTokens()).isEqualTo(1300);
+        assertThat(generation.outputTokens()).isEqualTo(5);
+        assertThat(cache.getStats().get("cachedTokensServed")).isEqualTo(1234L);
+    }
+
+    private GeminiContextCache cache() {
+        return new GeminiContextCache(cacheConfig, new SimpleMeterRegistry(), "test-project", "us-central1",
+                "gemini-2.5-flash");
+    }
+
+    /**
+     * Minimal cachedContents create/delete and generateContent endpoints
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+
+        if ("DELETE".equals(method)) {
+            deleted.add(path.substring("/v1/".length()));
+            respond(exchange, "{}");
+        } else if (path.endsWith("/cachedContents")) {
+            Matcher ttl = TTL.matcher(body);
+            long ttlSeconds = ttl.find() ? Long.parseLong(ttl.group(1)) : 3600;
+            respond(exchange, """
+                    {"name": "projects/test-project/locations/us-central1/cachedContents/%d",
+                     "expireTime": "%s",
+                     "usageMetadata": {"totalTokenCount": 1234}}
+                    """.formatted(created.incrementAndGet(), Instant.now().plusSeconds(ttlSeconds)));
+        } else if (path.endsWith(":generateContent")) {
+            assertThat(body).contains("cachedContents/");
+            respond(exchange, """
+                    {"candidates": [{"content": {"parts": [{"text": "Hello "}, {"text": "from the cache"}]},
+                                     "finishReason": "STOP"}],
+                     "usageMetadata": {"promptTokenCount": 1300, "candidatesTokenCount": 5,
+                                       "cachedContentTokenCount": 1234}}
+                    """);
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.ConversationConfig;
+import com.drfirst.bblt.session1.model.ConversationTurn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trips, crash recovery of a torn tail, compaction and expiry across a reopen, and a timed
+ * append/load run of the mapped log
+ */
+class MappedConversationStoreTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedConversationStoreTest.class);
+
+    @TempDir
+    Path directory;
+
+    private MappedConversationStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void turnsAndSummariesSurviveReopening() throws IOException {
+        store = open(DataSize.ofMegabytes(1));
+        store.appendTurn("s1", 0, turn(ConversationTurn.USER, "hello"));
+        store.appendTurn("s1", 1, turn(ConversationTurn.ASSISTANT, "hi there"));
+        store.appendTurn("s1", 2, turn(ConversationTurn.USER, "how are you?"));
+        store.appendSummary("s1", 2, 40, "greetings exchanged", 5);
+        store.appendTurn("s2", 0, turn(ConversationTurn.USER, "other session"));
+        store.delete("s2");
+        store.close();
+
+        store = open(DataSize.ofMegabytes(1));
+        ConversationStore.StoredConversation loaded = store.load("s1");
+        assertThat(loaded.summary()).isEqualTo("greetings exchanged");
+        assertThat(loaded.summarizedTurns()).isEqualTo(2);
+        assertThat(loaded.summarizedTokens()).isEqualTo(40);
+        assertThat(loaded.turns()).extracting(ConversationTurn::content).containsExactly("how are you?");
+        assertThat(store.load("s2")).isNull();
+        assertThat(store.getStats().get("recoveredRecords")).isEqualTo(6L);
+    }
+
+    @Test
+    void tornTailIsTruncatedAndOverwrittenOnRecovery() throws IOException {
+        store = open(DataSize.ofMegabytes(1));
+        store.appendTurn("s1", 0, turn(ConversationTurn.USER, "first"));
+        store.appendTurn("s1", 1, turn(ConversationTurn.ASSISTANT, "second"));
+        store.appendTurn("s1", 2, turn(ConversationTurn.USER, "third, torn by the crash"));
+        store.close();
+        store = null;
+
+        // Simulate a crash mid-write: the last record's length made it to disk, part of its body did not
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int last = lastRecordOffset(buffer);
+            int length = buffer.getInt(last);
+            buffer.put(last + 8 + length - 1, (byte) (buffer.get(last + 8 + length - 1) ^ 0x5a));
+            buffer.force();
+        }
+
+        store = open(DataSize.ofMegabytes(1));
+        assertThat(store.load("s1").turns()).extracting(ConversationTurn::content).containsExactly("first", "second");
+        assertThat(store.getStats().get("recoveredRecords")).isEqualTo(2L);
+
+        // The next append reuses the torn space and is itself recovered after another restart
+        store.appendTurn("s1", 2, turn(ConversationTurn.USER, "third, written again"));
+        store.close();
+        store = open(DataSize.ofMegabytes(1));
+        assertThat(store.load("s1").turns()).extracting(ConversationTurn::content)
+                .containsExactly("first", "second", "third, written again");
+        assertThat(store.getStats().get("recoveredRecords")).isEqualTo(3L);
+    }
+
+    @Test
+    void compactedSegmentIsGoneAndEveryChainSurvivesReopening() throws IOException {
+        store = open(DataSize.ofKilobytes(4));
+        String content = "y".repeat(100); // about 150 bytes a record, so a segment holds about 27
+
+        for (int ordinal = 0; ordinal < 3; ordinal++) {
+            store.appendTurn("live", ordinal, turn(ordinal % 2 == 0 ? ConversationTurn.USER : ConversationTurn.ASSISTANT,
+                    "live " + ordinal + " " + content));
+        }
+        for (int ordinal = 0; ordinal < 4; ordinal++) {
+            store.appendTurn("summarized", ordinal, turn(ConversationTurn.USER, "summarized " + ordinal + " " + content));
+        }
+        store.appendSummary("summarized", 4, 120, "four turns folded", 6);
+        store.appendTurn("summarized", 4, turn(ConversationTurn.ASSISTANT, "after the summary"));
+        for (int ordinal = 0; ordinal < 3; ordinal++) {
+            store.appendTurn("deleted", ordinal, turn(ConversationTurn.USER, "deleted " + ordinal + " " + content));
+        }
+        store.delete("deleted");
+        // Churn fills the rest of the oldest segment with garbage and spills into the next one,
+        // so its tombstone lands after the oldest segment is sealed
+        for (int ordinal = 0; ordinal < 30; ordinal++) {
+            store.appendTurn("churn", ordinal, turn(ConversationTurn.USER, "churn " + ordinal + " " + content));
+        }
+        store.delete("churn");
+        // The rest of the live session chains back into the oldest segment
+        for (int ordinal = 3; ordinal < 6; ordinal++) {
+            store.appendTurn("live", ordinal, turn(ConversationTurn.USER, "live " + ordinal + " " + content));
+        }
+
+        List<Path> before = segmentFiles();
+        assertThat(before).hasSizeGreaterThanOrEqualTo(2);
+        ConversationStore.StoredConversation live = store.load("live");
+        ConversationStore.StoredConversation summarized = store.load("summarized");
+        assertThat(live.turns()).hasSize(6);
+
+        store.runMaintenance();
+
+        Map<String, Object> stats = store.getStats();
+        assertThat(stats.get("compactions")).isEqualTo(1L);
+        assertThat((long) stats.get("bytesReclaimed")).isPositive();
+        assertThat(stats.get("sessions")).isEqualTo(2);
+        assertThat(before.get(0)).doesNotExist();
+        assertThat(store.load("live")).isEqualTo(live);
+        assertThat(store.load("summarized")).isEqualTo(summarized);
+        store.close();
+
+        store = open(DataSize.ofKilobytes(4));
+        // The rewrite keeps contents, tokens and millisecond timestamps, and the summary ahead of later turns
+        assertThat(store.load("live")).isEqualTo(live);
+        assertThat(store.load("summarized")).isEqualTo(summarized);
+        assertThat(store.load("summarized").summary()).isEqualTo("four turns folded");
+        assertThat(store.load("summarized").turns()).extracting(ConversationTurn::content).containsExactly("after the summary");
+        // Neither tombstone was in the compacted segment's live set, and neither session comes back
+        assertThat(store.load("deleted")).isNull();
+        assertThat(store.load("churn")).isNull();
+        assertThat(store.getStats().get("sessions")).isEqualTo(2);
+        store.close();
+        store = null;
+
+        Map<Long, RecordHeader> records = readRecords();
+        assertThat(chainOrdinals(records, "live")).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(chainOrdinals(records, "summarized")).containsExactly(4, 4);
+        assertThat(records.values()).noneMatch(record -> record.sessionId().equals("deleted") && record.type() != 3);
+    }
+
+    @Test
+    void idleSessionExpiresAndStaysExpiredAfterReopening() throws IOException {
+        store = open(DataSize.ofMegabytes(1));
+        LocalDateTime longAgo = LocalDateTime.now().minusHours(3); // past the default two hour TTL
+        store.appendTurn("idle", 0, new ConversationTurn(ConversationTurn.USER, "still there?", 3, longAgo));
+        store.appendTurn("idle", 1, new ConversationTurn(ConversationTurn.ASSISTANT, "yes", 1, longAgo.plusMinutes(1)));
+        store.appendTurn("active", 0, turn(ConversationTurn.USER, "hello"));
+
+        assertThat(store.load("idle")).isNull();
+
+        store.runMaintenance();
+        assertThat(store.getStats().get("expiredSessions")).isEqualTo(1L);
+        assertThat(store.getStats().get("sessions")).isEqualTo(1);
+        store.close();
+
+        store = open(DataSize.ofMegabytes(1));
+        assertThat(store.load("idle")).isNull();
+        assertThat(store.load("active").turns()).extracting(ConversationTurn::content).containsExactly("hello");
+        assertThat(store.getStats().get("sessions")).isEqualTo(1);
+    }
+
+    @Test
+    void timedAppendAndLoadAcrossSegments() throws IOException {
+        int sessions = 1_000;
+        int turnsPerSession = 200;
+        String content = "x".repeat(200);
+        store = open(DataSize.ofMegabytes(4));
+
+        long appendStart = System.nanoTime();
+        for (int ordinal = 0; ordinal < turnsPerSession; ordinal++) {
+            for (int session = 0; session < sessions; session++) {
+                store.appendTurn("session-" + session, ordinal, turn(ConversationTurn.USER, content));
+            }
+        }
+        long appendNanos = System.nanoTime() - appendStart;
+
+        long loadStart = System.nanoTime();
+        for (int session = 0; session < sessions; session++) {
+            assertThat(store.load("session-" + session).turns()).hasSize(turnsPerSession);
+        }
+        long loadNanos = System.nanoTime() - loadStart;
+
+        int records = sessions * turnsPerSession;
+        logger.info("MappedConversationStore: {} appends at {} ns/append, {} loads of {} turns at {} us/load, {} segments",
+                records, appendNanos / records, sessions, turnsPerSession,
+                loadNanos / 1000 / sessions, store.getStats().get("segments"));
+        assertThat(store.getStats().get("appends")).isEqualTo((long) records);
+        // Interleaved sessions make every chain hop across segments; this only guards against pathological slowdowns
+        assertThat((int) store.getStats().get("segments")).isGreaterThan(10);
+        assertThat(Duration.ofNanos(appendNanos + loadNanos)).isLessThan(Duration.ofSeconds(60));
+    }
+
+    private MappedConversationStore open(DataSize segmentSize) throws IOException {
+        ConversationConfig config = new ConversationConfig();
+        config.getStore().setDirectory(directory.toString());
+        config.getStore().setSegmentSize(segmentSize);
+        config.getStore().setMaintenanceInterval(Duration.ofHours(1));
+        MappedConversationStore opened = new MappedConversationStore(config);
+        opened.init();
+        return opened;
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = segmentFiles();
+        assertThat(segments).hasSize(1);
+        return segments.get(0);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+
+    private record RecordHeader(byte type, long prev, int ordinal, String sessionId) {
+    }
+
+    /**
+     * Every record on disk by address (segment id in the high word, offset in the low word)
+     */
+    private Map<Long, RecordHeader> readRecords() throws IOException {
+        Map<Long, RecordHeader> records = new HashMap<>();
+        for (Path segment : segmentFiles()) {
+            long segmentId = Long.parseLong(segment.getFileName().toString().replace(".seg", ""));
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment)).order(ByteOrder.LITTLE_ENDIAN);
+            int position = 0;
+            while (position + 8 <= buffer.capacity() && buffer.getInt(position) > 0) {
+                int body = position + 8;
+                byte[] sid = new byte[buffer.getShort(body + 30)];
+                buffer.get(body + 32, sid);
+                records.put((segmentId << 32) | position, new RecordHeader(buffer.get(body),
+                        buffer.getLong(body + 1), buffer.getInt(body + 17), new String(sid, StandardCharsets.UTF_8)));
+                position += 8 + buffer.getInt(position);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Follow a session's chain from its newest record; every prev must be an existing record of the same session
+     */
+    private static List<Integer> chainOrdinals(Map<Long, RecordHeader> records, String sessionId) {
+        long address = records.entrySet().stream()
+                .filter(entry -> entry.getValue().sessionId().equals(sessionId))
+                .mapToLong(Map.Entry::getKey)
+                .max()
+                .orElseThrow();
+        List<Integer> ordinals = new ArrayList<>();
+        while (address != 0) {
+            RecordHeader record = records.get(address);
+            assertThat(record).as("record at %x of %s", address, sessionId).isNotNull();
+            assertThat(record.sessionId()).isEqualTo(sessionId);
+            ordinals.add(0, record.ordinal());
+            address = record.prev();
+        }
+        return ordinals;
+    }
+
+    /**
+     * Walk the length-prefixed records (length, crc, body) to the last one written
+     */
+    private static int lastRecordOffset(MappedByteBuffer buffer) {
+        int position = 0;
+        int last = -1;
+        while (position + 8 <= buffer.capacity() && buffer.getInt(position) > 0) {
+            last = position;
+            position += 8 + buffer.getInt(position);
+        }
+        return last;
+    }
+
+    private static ConversationTurn turn(String role, String content) {
+        // The log keeps milliseconds, so loaded turns compare equal to the ones appended
+        return new ConversationTurn(role, content, content.length() / 4, LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS));
+    }
+}
@@ -0,0 +1,211 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.model.ChatRequest;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.SdkBytes;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The streaming codecs against the Map/readTree code they replaced: identical request JSON, real
+ * model responses, and the bytes each path allocates per call
+ */
+class PayloadCodecTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadCodecTest.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    private static final ChatRequest WITH_SYSTEM = new ChatRequest("Explain \"MinHash\" in one line.\nThanks!",
+            "You are terse. Keep {braces}, accents (é) and symbols (✓) intact.", "claude-3-7-sonnet", 512, 0.2, 0.9, 50, false, false);
+    private static final ChatRequest WITHOUT_SYSTEM = new ChatRequest("Hello there");
+
+    // Response shapes as Bedrock returns them, including fields the codecs must skip
+    private static final String CLAUDE_RESPONSE = """
+            {"id":"msg_bdrk_01XyZ","type":"message","role":"assistant","model":"claude-3-7-sonnet-20250219",
+             "content":[{"type":"text","text":"MinHash estimates Jaccard similarity "},
+                        {"type":"tool_use","id":"toolu_1","name":"lookup","input":{"q":["a",{"b":1}]}},
+                        {"type":"text","text":"from hashed shingles."}],
+             "stop_reason":"end_turn","stop_sequence":null,
+             "usage":{"input_tokens":21,"cache_creation_input_tokens":0,"cache_read_input_tokens":0,"output_tokens":14}}
+            """;
+    private static final String NOVA_RESPONSE = """
+            {"output":{"message":{"role":"assistant","content":[{"text":"Hola, "},{"text":"¿qué tal?"}]}},
+             "stopReason":"end_turn",
+             "usage":{"inputTokens":9,"outputTokens":6,"totalTokens":15,"cacheReadInputTokenCount":0}}
+            """;
+    private static final String NOVA_GENERATION_RESPONSE = """
+            {"generation":"Hi! How can I help?","prompt_token_count":7,"generation_token_count":6,"stop_reason":"stop"}
+            """;
+
+    private final ClaudePayloadCodec claude = new ClaudePayloadCodec();
+    private final NovaProPayloadCodec novaPro = new NovaProPayloadCodec();
+
+    @Test
+    void requestJsonMatchesTheMapBasedPayloads() throws IOException {
+        for (ChatRequest request : List.of(WITH_SYSTEM, WITHOUT_SYSTEM)) {
+            assertThat(MAPPER.readTree(write(claude, request)))
+                    .isEqualTo(MAPPER.readTree(MAPPER.writeValueAsString(legacyClaudePayload(request))));
+            assertThat(MAPPER.readTree(write(novaPro, request)))
+                    .isEqualTo(MAPPER.readTree(MAPPER.writeValueAsString(legacyNovaProPayload(request))));
+        }
+    }
+
+    @Test
+    void claudeResponseIsDecoded() throws IOException {
+        PayloadCodec.DecodedResponse decoded = read(claude, CLAUDE_RESPONSE);
+
+        assertThat(decoded.content()).isEqualTo("MinHash estimates Jaccard similarity from hashed shingles.");
+        assertThat(decoded.inputTokens()).isEqualTo(21);
+        assertThat(decoded.outputTokens()).isEqualTo(14);
+        assertThat(decoded.stopReason()).isEqualTo("end_turn");
+        // The old path read only the first block; the first block still decodes the same
+        assertThat(decoded.content()).startsWith(MAPPER.readTree(CLAUDE_RESPONSE).path("content").get(0).path("text").asText());
+    }
+
+    @Test
+    void novaResponsesAreDecoded() throws IOException {
+        PayloadCodec.DecodedResponse messages = read(novaPro, NOVA_RESPONSE);
+        assertThat(messages.content()).isEqualTo("Hola, ¿qué tal?");
+        assertThat(messages.inputTokens()).isEqualTo(9);
+        assertThat(messages.outputTokens()).isEqualTo(6);
+        assertThat(messages.stopReason()).isEqualTo("end_turn");
+
+        PayloadCodec.DecodedResponse generation = read(novaPro, NOVA_GENERATION_RESPONSE);
+        assertThat(generation.content()).isEqualTo(MAPPER.readTree(NOVA_GENERATION_RESPONSE).path("generation").asText());
+        assertThat(generation.inputTokens()).isEqualTo(7);
+        assertThat(generation.outputTokens()).isEqualTo(6);
+        assertThat(generation.stopReason()).isEqualTo("stop");
+    }
+
+    @Test
+    void responseWithoutContentDecodesToEmpty() throws IOException {
+        PayloadCodec.DecodedResponse decoded = read(claude, "{\"type\":\"message\",\"content\":[]}");
+
+        assertThat(decoded.content()).isEmpty();
+        assertThat(decoded.inputTokens()).isZero();
+        assertThat(decoded.stopReason()).isNull();
+    }
+
+    @Test
+    void streamingCodecsAllocateLessThanTheMapAndTreePath() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertThat(threads.isThreadAllocatedMemorySupported()).isTrue();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        byte[] response = CLAUDE_RESPONSE.getBytes(StandardCharsets.UTF_8);
+        int calls = 20_000;
+
+        long legacyBytes = 0;
+        long codecBytes = 0;
+        long consumed = 0; // keeps the results live
+        // The first round warms both paths up; only the second is measured
+        for (int round = 0; round < 2; round++) {
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < calls; i++) {
+                consumed += legacyCall(response);
+            }
+            legacyBytes = threads.getCurrentThreadAllocatedBytes() - before;
+
+            before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < calls; i++) {
+                consumed += codecCall(response);
+            }
+            codecBytes = threads.getCurrentThreadAllocatedBytes() - before;
+        }
+
+        assertThat(consumed).isPositive();
+        logger.info("Direct payload path: {} bytes/call with Map and readTree, {} bytes/call with the streaming codec",
+                legacyBytes / calls, codecBytes / calls);
+        assertThat(codecBytes).isLessThan(legacyBytes);
+    }
+
+    /**
+     * Request and response handling of one call as DirectBedrockService did it before the codecs
+     */
+    private static long legacyCall(byte[] response) throws IOException {
+        SdkBytes body = SdkBytes.fromString(MAPPER.writeValueAsString(legacyClaudePayload(WITH_SYSTEM)), StandardCharsets.UTF_8);
+        JsonNode tree = MAPPER.readTree(new String(response, StandardCharsets.UTF_8));
+        String content = tree.path("content").get(0).path("text").asText();
+        JsonNode usage = tree.path("usage");
+        return body.asByteArrayUnsafe().length + content.length() + usage.path("input_tokens").asInt(0)
+                + usage.path("output_tokens").asInt(0) + tree.path("stop_reason").asText("complete").length();
+    }
+
+    /**
+     * The same call through the thread's payload buffer and the streaming codec, as DirectBedrockService does now
+     */
+    private long codecCall(byte[] response) throws IOException {
+        PayloadBuffer buffer = PayloadBuffer.acquire();
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer, JsonEncoding.UTF8)) {
+            claude.writeRequest(WITH_SYSTEM, generator);
+        }
+        SdkBytes body = buffer.toSdkBytes();
+        try (JsonParser parser = FACTORY.createParser(response)) {
+            PayloadCodec.DecodedResponse decoded = claude.readResponse(parser);
+            return body.asByteArrayUnsafe().length + decoded.content().length() + decoded.inputTokens()
+                    + decoded.outputTokens() + decoded.stopReason().length();
+        }
+    }
+
+    private static String write(PayloadCodec codec, ChatRequest request) throws IOException {
+        PayloadBuffer buffer = PayloadBuffer.acquire();
+        try (JsonGenerator generator = FACTORY.createGenerator(buffer, JsonEncoding.UTF8)) {
+            codec.writeRequest(request, generator);
+        }
+        return buffer.toUtf8String();
+    }
+
+    private static PayloadCodec.DecodedResponse read(PayloadCodec codec, String json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json.getBytes(StandardCharsets.UTF_8))) {
+            return codec.readResponse(parser);
+        }
+    }
+
+    private static Map<String, Object> legacyClaudePayload(ChatRequest request) {
+        Map<String, Object> payload = new HashMap<>();
+        Map<String, Object> message = new HashMap<>();
+        message.put("role", "user");
+        message.put("content", request.message());
+        payload.put("messages", List.of(message));
+        payload.put("max_tokens", request.maxTokens());
+        payload.put("temperature", request.temperature());
+        payload.put("top_p", request.topP());
+        payload.put("top_k", request.topK());
+        if (request.systemPrompt() != null && !request.systemPrompt().trim().isEmpty()) {
+            payload.put("system", request.systemPrompt());
+        }
+        payload.put("anthropic_version", "bedrock-2023-05-31");
+        return payload;
+    }
+
+    private static Map<String, Object> legacyNovaProPayload(ChatRequest request) {
+        Map<String, Object> payload = new HashMap<>();
+        String prompt;
+        if (request.systemPrompt() != null && !request.systemPrompt().trim().isEmpty()) {
+            prompt = request.systemPrompt() + "\n\nHuman: " + request.message() + "\n\nAssistant:";
+        } else {
+            prompt = "Human: " + request.message() + "\n\nAssistant:";
+        }
+        payload.put("prompt", prompt);
+        payload.put("max_gen_len", request.maxTokens());
+        payload.put("temperature", request.temperature());
+        payload.put("top_p", request.topP());
+        return payload;
+    }
+}
@@ -0,0 +1,116 @@
+package com.drfirst.bblt.session1.service;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Placeholder parsing, literal braces, missing values, LRU eviction of compiled templates and a timed render run
+ */
+class PromptTemplateEngineTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptTemplateEngineTest.class);
+
+    private final PromptTemplateEngine engine = new PromptTemplateEngine(2);
+
+    @Test
+    void placeholdersAreSubstituted() {
+        PromptTemplateEngine.CompiledTemplate template = engine.compile("Create a {cuisine} recipe with {ingredients}, {cuisine} style.");
+
+        assertThat(template.getVariables()).containsExactly("cuisine", "ingredients", "cuisine");
+        assertThat(engine.render(template, Map.of("cuisine", "Italian", "ingredients", "tomatoes")))
+                .isEqualTo("Create a Italian recipe with tomatoes, Italian style.");
+        assertThat(engine.render("{a}{b}", Map.of("a", 1, "b", true))).isEqualTo("1true");
+        assertThat(engine.render("{model.id} and {top-k}", Map.of("model.id", "nova", "top-k", 40)))
+                .isEqualTo("nova and 40");
+        assertThat(engine.render("no placeholders", Map.of())).isEqualTo("no placeholders");
+    }
+
+    @Test
+    void bracesAroundNonIdentifiersStayLiteral() {
+        String template = """
+                Answer as JSON: {"sentiment": "POSITIVE", "scores": [{ "p": 0.9 }]}
+                Empty {} and spaced { name } and numeric {1} and unclosed {topic
+                Text: {text}""";
+
+        PromptTemplateEngine.CompiledTemplate compiled = engine.compile(template);
+
+        assertThat(compiled.getVariables()).containsExactly("text");
+        assertThat(engine.render(compiled, Map.of("text", "great")))
+                .isEqualTo(template.replace("{text}", "great"));
+    }
+
+    @Test
+    void codeIsSubstitutedInsideTheReviewFenceAndNotParsedAgain() {
+        PromptTemplateEngine.CompiledTemplate template = engine.compile(PromptEngineeringService.CODE_REVIEW_TEMPLATE);
+        String code = """
+                public String greet(String name) {
+                    return String.format("{name}", Map.of("k", "{code}"));
+                }""";
+
+        String rendered = engine.render(template, Map.of("language", "java", "code", code));
+
+        assertThat(template.getVariables()).containsExactly("language", "language", "code");
+        assertThat(rendered).startsWith("Please review the following java code:\n\n```java\n" + code + "\n```\n");
+        // Braces in a value are output as they are, never treated as placeholders
+        assertThat(rendered).contains("\"{name}\"", "\"{code}\"");
+    }
+
+    @Test
+    void missingVariableIsRejectedButAnExplicitNullIsRendered() {
+        PromptTemplateEngine.CompiledTemplate template = engine.compile("Hello {name}, welcome to {place}");
+
+        assertThatThrownBy(() -> engine.render(template, Map.of("name", "Ada")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("place");
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("name", "Ada");
+        values.put("place", null);
+        assertThat(engine.render(template, values)).isEqualTo("Hello Ada, welcome to null");
+    }
+
+    @Test
+    void leastRecentlyUsedTemplateIsEvicted() {
+        PromptTemplateEngine.CompiledTemplate a = engine.compile("template {a}");
+        PromptTemplateEngine.CompiledTemplate b = engine.compile("template {b}");
+        assertThat(engine.compile("template {a}")).isSameAs(a); // a is now more recent than b
+
+        engine.compile("template {c}");
+
+        assertThat(engine.compile("template {a}")).isSameAs(a);
+        assertThat(engine.compile("template {b}")).isNotSameAs(b);
+        Map<String, Object> stats = engine.getStats();
+        assertThat(stats.get("entries")).isEqualTo(2);
+        assertThat(stats.get("hits")).isEqualTo(2L);
+        assertThat(stats.get("misses")).isEqualTo(4L);
+        assertThat(stats.get("evictions")).isEqualTo(2L);
+    }
+
+    @Test
+    void timedRenderOfACompiledTemplate() {
+        PromptTemplateEngine.CompiledTemplate template = engine.compile(PromptEngineeringService.CODE_REVIEW_TEMPLATE);
+        Map<String, Object> values = Map.of("language", "java", "code", "int x = 1;\n".repeat(50));
+        int renders = 200_000;
+
+        long length = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < renders; i++) {
+            length += engine.render(template, values).length();
+        }
+        long nanos = System.nanoTime() - start;
+
+        logger.info("PromptTemplateEngine: {} renders at {} ns/render (engine avg {} ns)",
+                renders, nanos / renders, engine.getStats().get("avgRenderNanos"));
+        assertThat(length).isEqualTo((long) renders * engine.render(template, values).length());
+        // Rendering is segment appends into an exactly sized builder; this only guards against re-parsing per call
+        assertThat(Duration.ofNanos(nanos / renders)).isLessThan(Duration.ofMillis(1));
+    }
+}
@@ -0,0 +1,194 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.DeadlineConfig;
+import com.drfirst.bblt.session1.config.RegionConfig;
+import com.drfirst.bblt.session1.config.RetryConfig;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Failover and power-of-two-choices routing against two local stand-ins for Bedrock regions
+ */
+class RegionalClientPoolTest {
+
+    private static final InvokeModelRequest REQUEST = InvokeModelRequest.builder()
+            .modelId("anthropic.claude-3-haiku-20240307-v1:0")
+            .body(SdkBytes.fromUtf8String("{}"))
+            .contentType("application/json")
+            .accept("application/json")
+            .build();
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private RegionalClientPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void regionalFailureFailsOverAndSteersTrafficAway() {
+        StubRegion east = stub(503, 0);
+        StubRegion west = stub(200, 0);
+        pool = pool(east, west);
+
+        for (int i = 0; i < 10; i++) {
+            RegionalClientPool.Routed<String> routed = pool.execute(this::invoke);
+            assertThat(routed.region()).isEqualTo("us-west-2");
+            assertThat(routed.value()).isEqualTo("{\"ok\":true}");
+        }
+
+        // At most the first call tries the failing region; its error rate keeps it out of P2C afterwards
+        assertThat(east.calls.get()).isLessThanOrEqualTo(1);
+        assertThat(west.calls.get()).isEqualTo(10);
+        assertThat(pool.getRegionHealth().get("us-east-1").get("failures")).isEqualTo((long) east.calls.get());
+        assertThat(pool.getRegionHealth().get("us-west-2").get("failures")).isEqualTo(0L);
+    }
+
+    @Test
+    void failoverTakesPermitsForTheExtraAttempt() {
+        StubRegion east = stub(503, 0);
+        StubRegion west = stub(503, 0);
+        pool = pool(east, west);
+        AtomicInteger permits = new AtomicInteger();
+
+        assertThatThrownBy(() -> pool.execute(this::invoke, permits::incrementAndGet))
+                .isInstanceOf(SdkServiceException.class);
+
+        assertThat(east.calls.get() + west.calls.get()).isEqualTo(2);
+        assertThat(permits.get()).isEqualTo(1);
+    }
+
+    @Test
+    void refusedPermitsStopTheFailover() {
+        StubRegion east = stub(503, 0);
+        StubRegion west = stub(503, 0);
+        pool = pool(east, west);
+
+        assertThatThrownBy(() -> pool.execute(this::invoke, () -> {
+            throw new IllegalStateException("no permits");
+        })).isInstanceOf(SdkServiceException.class)
+                .satisfies(e -> assertThat(e.getSuppressed()).hasSize(1));
+
+        assertThat(east.calls.get() + west.calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void requestErrorsNeitherFailOverNorTouchRegionHealth() {
+        StubRegion east = stub(400, 0);
+        StubRegion west = stub(400, 0);
+        pool = pool(east, west);
+
+        assertThatThrownBy(() -> pool.execute(this::invoke)).isInstanceOf(SdkServiceException.class);
+
+        assertThat(east.calls.get() + west.calls.get()).isEqualTo(1);
+        for (Map<String, Object> health : pool.getRegionHealth().values()) {
+            assertThat(health.get("requests")).isEqualTo(0L);
+            assertThat(health.get("failures")).isEqualTo(0L);
+        }
+    }
+
+    @Test
+    void powerOfTwoChoicesPrefersTheFasterRegion() {
+        StubRegion east = stub(200, 300);
+        StubRegion west = stub(200, 0);
+        pool = pool(east, west);
+        // Warm both clients up outside the pool's bookkeeping, so connection setup does not skew the EWMAs
+        invoke(pool.select(Set.of("us-west-2")));
+        invoke(pool.select(Set.of("us-east-1")));
+        east.calls.set(0);
+        west.calls.set(0);
+
+        for (int i = 0; i < 20; i++) {
+            pool.execute(this::invoke);
+        }
+
+        // Unscored regions win until each has a latency sample; after that the slow one loses every comparison
+        assertThat(east.calls.get()).isLessThanOrEqualTo(2);
+        assertThat(west.calls.get()).isGreaterThanOrEqualTo(18);
+    }
+
+    private String invoke(RegionalClientPool.RegionEndpoint endpoint) {
+        return endpoint.getClient().invokeModel(REQUEST).body().asUtf8String();
+    }
+
+    private RegionalClientPool pool(StubRegion east, StubRegion west) {
+        RegionConfig regionConfig = new RegionConfig();
+        regionConfig.setRegions(List.of(region("us-east-1", east), region("us-west-2", west)));
+        RetryConfig retryConfig = new RetryConfig();
+        DeadlineConfig deadlineConfig = new DeadlineConfig();
+        RetryEngine retryEngine = new RetryEngine(retryConfig, new DeadlinePolicy(deadlineConfig),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+
+        RegionalClientPool regionalClientPool = new RegionalClientPool(null, null,
+                StaticCredentialsProvider.create(AwsBasicCredentials.create("test", "test")),
+                regionConfig, retryConfig, deadlineConfig, retryEngine, ObservationRegistry.NOOP, "us-east-1");
+        regionalClientPool.init();
+        return regionalClientPool;
+    }
+
+    private static RegionConfig.RegionProperties region(String name, StubRegion stub) {
+        RegionConfig.RegionProperties props = new RegionConfig.RegionProperties();
+        props.setName(name);
+        props.setEndpointOverride("http://localhost:" + stub.server.getAddress().getPort());
+        return props;
+    }
+
+    /**
+     * A region answering every InvokeModel call with a fixed status after a fixed delay
+     */
+    private StubRegion stub(int status, long delayMs) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            StubRegion stub = new StubRegion(server, new AtomicInteger());
+            server.createContext("/", exchange -> {
+                stub.calls.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = (status == 200 ? "{\"ok\":true}" : "{\"message\":\"stub error\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            servers.add(server);
+            return stub;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StubRegion(HttpServer server, AtomicInteger calls) {
+    }
+}
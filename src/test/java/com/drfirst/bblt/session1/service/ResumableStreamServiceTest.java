@@ -0,0 +1,118 @@
+package com.drfirst.bblt.session1.service;
+
+import com.drfirst.bblt.session1.config.StreamResumeConfig;
+import com.drfirst.bblt.session1.model.ChatStreamEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Demand-driven listeners: replay from the ring as requested, and closing a listener the ring has lapped
+ */
+class ResumableStreamServiceTest {
+
+    private ResumableStreamService service;
+    private Sinks.Many<ChatStreamEvent> upstream;
+
+    @BeforeEach
+    void setUp() {
+        StreamResumeConfig config = new StreamResumeConfig();
+        config.setMaxChunksPerStream(8);
+        service = new ResumableStreamService(config);
+        upstream = Sinks.many().unicast().onBackpressureBuffer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void listenerIsOnlySentWhatItRequested() {
+        String id = service.start(upstream.asFlux());
+
+        StepVerifier.create(service.attach(id, 0), 0)
+                .then(() -> emit(5))
+                .thenRequest(3)
+                .assertNext(event -> assertThat(event.type()).isEqualTo(ResumableStreamService.StreamEvent.OPEN))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-1"))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-2"))
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(10)
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-3"))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-4"))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-5"))
+                .then(() -> {
+                    emit(6, 6);
+                    upstream.tryEmitComplete();
+                })
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-6"))
+                .assertNext(event -> assertThat(event.type()).isEqualTo(ResumableStreamService.StreamEvent.DONE))
+                .verifyComplete();
+    }
+
+    @Test
+    void listenerLappedByTheRingIsClosedWithAnError() {
+        String id = service.start(upstream.asFlux());
+
+        StepVerifier.create(service.attach(id, 0), 0)
+                .thenRequest(2)
+                .then(() -> emit(1, 1))
+                .assertNext(event -> assertThat(event.type()).isEqualTo(ResumableStreamService.StreamEvent.OPEN))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-1"))
+                // Ten more chunks into a ring of eight while the listener asks for nothing
+                .then(() -> emit(2, 11))
+                .thenRequest(1)
+                .assertNext(event -> {
+                    assertThat(event.type()).isEqualTo(ResumableStreamService.StreamEvent.ERROR);
+                    assertThat(event.seq()).isEqualTo(1);
+                })
+                .verifyComplete();
+
+        assertThat(service.getStats().get("laggingListenersClosed")).isEqualTo(1L);
+
+        // The generation itself is unaffected: a client can resume from what is still buffered
+        StepVerifier.create(service.attach(id, 9))
+                .assertNext(event -> assertThat(event.type()).isEqualTo(ResumableStreamService.StreamEvent.OPEN))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-10"))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-11"))
+                .then(upstream::tryEmitComplete)
+                .assertNext(event -> assertThat(event.type()).isEqualTo(ResumableStreamService.StreamEvent.DONE))
+                .verifyComplete();
+    }
+
+    @Test
+    void finishedGenerationIsReplayedInFull() {
+        String id = service.start(upstream.asFlux());
+        emit(3);
+        upstream.tryEmitComplete();
+
+        StepVerifier.create(service.attach(id, 1))
+                .expectNextCount(1) // open
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-2"))
+                .assertNext(event -> assertThat(event.data()).isEqualTo("chunk-3"))
+                .assertNext(event -> assertThat(event.type()).isEqualTo(ResumableStreamService.StreamEvent.DONE))
+                .verifyComplete();
+
+        Map<String, Object> stats = service.getStats();
+        assertThat(stats.get("resumed")).isEqualTo(1L);
+        assertThat(stats.get("replayedChunks")).isEqualTo(2L);
+    }
+
+    private void emit(int count) {
+        emit(1, count);
+    }
+
+    private void emit(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            upstream.tryEmitNext(ChatStreamEvent.content("chunk-" + i));
+        }
+    }
+}